@@ -0,0 +1,147 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.ajax;
+
+import org.airsonic.player.domain.PlayQueue.RepeatStatus;
+import org.airsonic.player.domain.PlayQueue.Status;
+
+import java.util.List;
+
+/**
+ * Changes of the play queue of a player since a given version, sent instead of a whole {@link PlayQueueInfo} when
+ * songs are added, removed or moved.
+ * <p>
+ * The operations are applied in order to the entries of version {@link #getBaseVersion()}, which gives the entries of
+ * version {@link #getVersion()}. A client holding another version ignores older deltas, and asks for the whole play
+ * queue otherwise.
+ */
+public class PlayQueueDelta {
+    private final long baseVersion;
+    private final long version;
+    private final List<Operation> operations;
+    private final Status playStatus;
+    private final RepeatStatus repeatStatus;
+    private final boolean shuffleRadioEnabled;
+    private final boolean internetRadioEnabled;
+    private final float gain;
+
+    public PlayQueueDelta(long baseVersion, long version, List<Operation> operations, Status playStatus,
+            RepeatStatus repeatStatus, boolean shuffleRadioEnabled, boolean internetRadioEnabled, float gain) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.operations = operations;
+        this.playStatus = playStatus;
+        this.repeatStatus = repeatStatus;
+        this.shuffleRadioEnabled = shuffleRadioEnabled;
+        this.internetRadioEnabled = internetRadioEnabled;
+        this.gain = gain;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    public Status getPlayStatus() {
+        return playStatus;
+    }
+
+    public RepeatStatus getRepeatStatus() {
+        return repeatStatus;
+    }
+
+    public boolean isShuffleRadioEnabled() {
+        return shuffleRadioEnabled;
+    }
+
+    public boolean isInternetRadioEnabled() {
+        return internetRadioEnabled;
+    }
+
+    public float getGain() {
+        return gain;
+    }
+
+    /**
+     * One change of the entries of a play queue.
+     */
+    public static class Operation {
+        private final Type type;
+        private final int index;
+        private final int to;
+        private final List<MediaFileEntry> entries;
+
+        private Operation(Type type, int index, int to, List<MediaFileEntry> entries) {
+            this.type = type;
+            this.index = index;
+            this.to = to;
+            this.entries = entries;
+        }
+
+        /**
+         * Inserts entries before the given index.
+         */
+        public static Operation insert(int index, List<MediaFileEntry> entries) {
+            return new Operation(Type.INSERT, index, index, entries);
+        }
+
+        /**
+         * Removes the entry at the given index.
+         */
+        public static Operation remove(int index) {
+            return new Operation(Type.REMOVE, index, index, null);
+        }
+
+        /**
+         * Moves the entry at the given index so that it ends up at index {@code to}.
+         */
+        public static Operation move(int index, int to) {
+            return new Operation(Type.MOVE, index, to, null);
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        public List<MediaFileEntry> getEntries() {
+            return entries;
+        }
+
+        public enum Type {
+            INSERT,
+            REMOVE,
+            MOVE
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of Airsonic.
+ *
+ * Airsonic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Airsonic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2024 (C) Airsonic Authors
+ */
+
+package org.airsonic.player.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "airsonic.cache")
+@Validated
+public class AirsonicCacheConfig {
+
+    private Map<String, Size> sizes = new HashMap<>();
+
+    /**
+     * Get the sizes of the caches by cache name, e.g. {@code airsonic.cache.sizes.mediaFileIdCache.heap=20000}. Caches
+     * without a size keep their default one.
+     *
+     * @return sizes by cache name
+     */
+    public Map<String, Size> getSizes() {
+        return sizes;
+    }
+
+    public void setSizes(Map<String, Size> sizes) {
+        this.sizes = sizes;
+    }
+
+    /**
+     * Get the size of a cache, its name being matched regardless of case and dashes.
+     *
+     * @param cacheName name of the cache
+     * @return size of the cache, or null if not configured
+     */
+    public Size getSize(String cacheName) {
+        String name = normalize(cacheName);
+        return sizes.entrySet().stream()
+                .filter(e -> normalize(e.getKey()).equals(name))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String normalize(String name) {
+        return name.replace("-", "").toLowerCase();
+    }
+
+    public static class Size {
+
+        private String heap;
+
+        private DataSize offHeap;
+
+        private DataSize disk;
+
+        /**
+         * Get the size of the heap tier, either a number of entries (e.g. {@code 20000}) or an amount of memory (e.g.
+         * {@code 64MB}).
+         *
+         * @return heap size
+         */
+        public String getHeap() {
+            return heap;
+        }
+
+        /**
+         * @return heap size in entries, or null if the heap is sized in memory or not configured
+         */
+        public Long getHeapEntries() {
+            return heap != null && heap.trim().matches("\\d+") ? Long.valueOf(heap.trim()) : null;
+        }
+
+        /**
+         * @return heap size in memory, or null if the heap is sized in entries or not configured
+         */
+        public DataSize getHeapMemory() {
+            return heap != null && getHeapEntries() == null ? DataSize.parse(heap.trim()) : null;
+        }
+
+        /**
+         * Get the size of the off-heap tier, which needs enough direct memory (-XX:MaxDirectMemorySize). Only caches
+         * whose values can be serialized support it.
+         *
+         * @return off-heap size, or null for none
+         */
+        public DataSize getOffHeap() {
+            return offHeap;
+        }
+
+        /**
+         * Get the size of the disk tier, kept in the cache directory of the Airsonic home and cleared on restart. Only
+         * caches whose values can be serialized support it.
+         *
+         * @return disk size, or null for none
+         */
+        public DataSize getDisk() {
+            return disk;
+        }
+
+        public void setHeap(String heap) {
+            this.heap = heap;
+        }
+
+        public void setOffHeap(DataSize offHeap) {
+            this.offHeap = offHeap;
+        }
+
+        public void setDisk(DataSize disk) {
+            this.disk = disk;
+        }
+    }
+}
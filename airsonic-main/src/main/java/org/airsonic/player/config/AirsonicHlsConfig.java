@@ -0,0 +1,86 @@
+/*
+ * This file is part of Airsonic.
+ *
+ * Airsonic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Airsonic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2023 (C) Y.Tory
+ */
+
+package org.airsonic.player.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Positive;
+
+@Component
+@ConfigurationProperties(prefix = "airsonic.hls")
+@Validated
+public class AirsonicHlsConfig {
+
+    private static final int DEFAULT_LOOK_AHEAD = 3;
+    private static final int DEFAULT_CACHE_SIZE = 10;
+    private static final long DEFAULT_CACHE_MEGABYTES = 2048;
+
+    @Positive
+    private Integer lookAhead = DEFAULT_LOOK_AHEAD;
+
+    @Positive
+    private Integer cacheSize = DEFAULT_CACHE_SIZE;
+
+    @Positive
+    private Long cacheMegabytes = DEFAULT_CACHE_MEGABYTES;
+
+    /**
+     * Get the number of segments transcoded ahead of the latest requested segment. Transcoding pauses once twice as
+     * many segments are ready.
+     *
+     * @return look-ahead in segments
+     */
+    public Integer getLookAhead() {
+        return lookAhead;
+    }
+
+    /**
+     * Get the number of renditions whose completed segments are kept, least recently used ones being dropped first.
+     *
+     * @return cache size in renditions
+     */
+    public Integer getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Get the maximum size in megabytes of the completed segments kept, least recently used renditions being dropped
+     * first.
+     *
+     * @return cache size in megabytes
+     */
+    public Long getCacheMegabytes() {
+        return cacheMegabytes;
+    }
+
+    public void setLookAhead(Integer lookAhead) {
+        this.lookAhead = lookAhead;
+    }
+
+    public void setCacheSize(Integer cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public void setCacheMegabytes(Long cacheMegabytes) {
+        this.cacheMegabytes = cacheMegabytes;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * This file is part of Airsonic.
+ *
+ * Airsonic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Airsonic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2024 (C) Airsonic Authors
+ */
+
+package org.airsonic.player.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.PositiveOrZero;
+
+@Component
+@ConfigurationProperties(prefix = "airsonic.lastfm")
+@Validated
+public class AirsonicLastFmConfig {
+
+    @PositiveOrZero
+    private Integer prefetchInterval = 0;
+
+    /**
+     * Get the number of hours between two prefetches of the similar artists and top songs of every artist from
+     * Last.fm. 0 disables prefetching, artists being then looked up when first requested.
+     *
+     * @return prefetch interval in hours
+     */
+    public Integer getPrefetchInterval() {
+        return prefetchInterval;
+    }
+
+    public void setPrefetchInterval(Integer prefetchInterval) {
+        this.prefetchInterval = prefetchInterval;
+    }
+}
@@ -39,6 +39,9 @@ public class AirsonicScanConfig {
 
     private static final int DEFAULT_SCAN = 60 * 60;
     private static final int DEFAULT_FULLSCAN = 4 * 60 * 60;
+    private static final int DEFAULT_WRITE_BATCH_SIZE = 500;
+    private static final int DEFAULT_WRITE_FLUSH_INTERVAL = 10;
+    private static final int DEFAULT_WATCH_DELAY = 60;
 
     @Positive
     private Integer fullTimeout = DEFAULT_FULLSCAN;
@@ -49,6 +52,24 @@ public class AirsonicScanConfig {
     @Positive
     private Integer parallelism;
 
+    @Positive
+    private Integer writeBatchSize = DEFAULT_WRITE_BATCH_SIZE;
+
+    @Positive
+    private Integer writeFlushInterval = DEFAULT_WRITE_FLUSH_INTERVAL;
+
+    private boolean incremental;
+
+    private boolean watch = true;
+
+    @Positive
+    private Integer watchDelay = DEFAULT_WATCH_DELAY;
+
+    @Positive
+    private Integer probeParallelism;
+
+    private boolean probeCache = true;
+
     public Integer getFullTimeout() {
         return fullTimeout;
     }
@@ -74,6 +95,69 @@ public class AirsonicScanConfig {
         return Runtime.getRuntime().availableProcessors() + 1;
     }
 
+    /**
+     * Get the number of pending media file, album and artist updates after which a scan writes them to the database.
+     *
+     * @return write batch size
+     */
+    public Integer getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    /**
+     * Get the maximum number of seconds a scan keeps pending updates before writing them to the database.
+     *
+     * @return write flush interval in seconds
+     */
+    public Integer getWriteFlushInterval() {
+        return writeFlushInterval;
+    }
+
+    /**
+     * Whether scans only visit the directories that changed since the previous scan, unless FullScan is enabled.
+     *
+     * @return true if scans are incremental
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Whether incremental scans watch the scanned directories for changes instead of checking every directory.
+     *
+     * @return true if directories are watched
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Get the number of seconds to wait after a watched directory changed before starting an incremental scan.
+     *
+     * @return watch delay in seconds
+     */
+    public Integer getWatchDelay() {
+        return watchDelay;
+    }
+
+    /**
+     * Get the maximum number of ffprobe processes run at the same time. If not set, use availableProcessors
+     *
+     * @return probe parallelism
+     */
+    public Integer getProbeParallelism() {
+        return Objects.nonNull(probeParallelism) ? probeParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Whether the output of ffprobe is kept in the Airsonic home, so that unchanged files are not probed again.
+     *
+     * @return true if ffprobe output is cached
+     */
+    public boolean isProbeCache() {
+        return probeCache;
+    }
+
     public void setFullTimeout(Integer fullTimeout) {
         this.fullTimeout = fullTimeout;
     }
@@ -85,4 +169,32 @@ public class AirsonicScanConfig {
     public void setParallelism(Integer parallelism) {
         this.parallelism = parallelism;
     }
+
+    public void setWriteBatchSize(Integer writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    public void setWriteFlushInterval(Integer writeFlushInterval) {
+        this.writeFlushInterval = writeFlushInterval;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public void setWatchDelay(Integer watchDelay) {
+        this.watchDelay = watchDelay;
+    }
+
+    public void setProbeParallelism(Integer probeParallelism) {
+        this.probeParallelism = probeParallelism;
+    }
+
+    public void setProbeCache(boolean probeCache) {
+        this.probeCache = probeCache;
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * This file is part of Airsonic.
+ *
+ * Airsonic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Airsonic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2024 (C) Airsonic Authors
+ */
+
+package org.airsonic.player.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+@Component
+@ConfigurationProperties(prefix = "airsonic.search")
+@Validated
+public class AirsonicSearchConfig {
+
+    private static final DataSize DEFAULT_RAM_BUFFER = DataSize.ofMegabytes(64);
+    private static final double DEFAULT_SEGMENTS_PER_TIER = 10.0;
+    private static final DataSize DEFAULT_MAX_MERGED_SEGMENT = DataSize.ofGigabytes(5);
+    private static final int DEFAULT_REFRESH_INTERVAL = 5;
+    private static final int DEFAULT_REBUILD_BATCH_SIZE = 1000;
+
+    private DataSize ramBuffer = DEFAULT_RAM_BUFFER;
+
+    @Positive
+    private Double segmentsPerTier = DEFAULT_SEGMENTS_PER_TIER;
+
+    private DataSize maxMergedSegment = DEFAULT_MAX_MERGED_SEGMENT;
+
+    @Positive
+    private Integer mergeThreads;
+
+    @Positive
+    private Integer maxMerges;
+
+    @PositiveOrZero
+    private Integer refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    @Positive
+    private Integer rebuildBatchSize = DEFAULT_REBUILD_BATCH_SIZE;
+
+    /**
+     * Get the amount of memory each index writer buffers documents in before flushing a new segment.
+     *
+     * @return RAM buffer size
+     */
+    public DataSize getRamBuffer() {
+        return ramBuffer;
+    }
+
+    /**
+     * Get the number of segments of about the same size allowed before they are merged.
+     *
+     * @return segments per tier
+     */
+    public Double getSegmentsPerTier() {
+        return segmentsPerTier;
+    }
+
+    /**
+     * Get the size above which segments are no longer merged during indexing.
+     *
+     * @return maximum merged segment size
+     */
+    public DataSize getMaxMergedSegment() {
+        return maxMergedSegment;
+    }
+
+    /**
+     * Get the number of threads merging segments of each index. If not set, Lucene picks it from the number of
+     * processors.
+     *
+     * @return merge threads, or null for the default
+     */
+    public Integer getMergeThreads() {
+        return mergeThreads;
+    }
+
+    /**
+     * Get the number of merges of each index that may be pending before indexing threads are stalled. If not set, the
+     * merge threads plus five are allowed.
+     *
+     * @return maximum pending merges, or null for the default
+     */
+    public Integer getMaxMerges() {
+        return maxMerges;
+    }
+
+    /**
+     * Get the number of seconds between refreshes of the searchers while a scan is indexing, so that new files become
+     * searchable before the scan completes. 0 only refreshes them at the end of the scan.
+     *
+     * @return refresh interval in seconds
+     */
+    public Integer getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Get the number of media files, albums or artists read from the database at a time when rebuilding the index.
+     *
+     * @return rebuild batch size
+     */
+    public Integer getRebuildBatchSize() {
+        return rebuildBatchSize;
+    }
+
+    public void setRamBuffer(DataSize ramBuffer) {
+        this.ramBuffer = ramBuffer;
+    }
+
+    public void setSegmentsPerTier(Double segmentsPerTier) {
+        this.segmentsPerTier = segmentsPerTier;
+    }
+
+    public void setMaxMergedSegment(DataSize maxMergedSegment) {
+        this.maxMergedSegment = maxMergedSegment;
+    }
+
+    public void setMergeThreads(Integer mergeThreads) {
+        this.mergeThreads = mergeThreads;
+    }
+
+    public void setMaxMerges(Integer maxMerges) {
+        this.maxMerges = maxMerges;
+    }
+
+    public void setRefreshInterval(Integer refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public void setRebuildBatchSize(Integer rebuildBatchSize) {
+        this.rebuildBatchSize = rebuildBatchSize;
+    }
+}
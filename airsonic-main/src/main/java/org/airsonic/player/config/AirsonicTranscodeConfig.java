@@ -0,0 +1,70 @@
+/*
+ * This file is part of Airsonic.
+ *
+ * Airsonic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Airsonic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2023 (C) Y.Tory
+ */
+
+package org.airsonic.player.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+@Component
+@ConfigurationProperties(prefix = "airsonic.transcode")
+@Validated
+public class AirsonicTranscodeConfig {
+
+    private static final long DEFAULT_CACHE_SIZE = 0;
+    private static final int DEFAULT_COPY_THREADS = 64;
+
+    @PositiveOrZero
+    private Long cacheSize = DEFAULT_CACHE_SIZE;
+
+    @Positive
+    private Integer copyThreads = DEFAULT_COPY_THREADS;
+
+    /**
+     * Get the maximum size in megabytes of the transcoded outputs kept on disk, least recently used ones being removed
+     * first. 0, the default, disables the cache.
+     *
+     * @return cache size in megabytes
+     */
+    public Long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Get the maximum number of threads copying data into chained transcoders, one per running chained transcoder.
+     * Once all of them are busy, further chained transcodes are refused instead of waiting.
+     *
+     * @return maximum number of copy threads
+     */
+    public Integer getCopyThreads() {
+        return copyThreads;
+    }
+
+    public void setCacheSize(Long cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public void setCopyThreads(Integer copyThreads) {
+        this.copyThreads = copyThreads;
+    }
+}
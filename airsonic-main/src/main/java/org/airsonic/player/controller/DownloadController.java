@@ -22,12 +22,9 @@ package org.airsonic.player.controller;
 
 import org.airsonic.player.domain.*;
 import org.airsonic.player.io.PipeStreams.MonitoredResource;
-import org.airsonic.player.io.PipeStreams.PipedInputStream;
-import org.airsonic.player.io.PipeStreams.PipedOutputStream;
+import org.airsonic.player.io.ZipStreamWriter;
 import org.airsonic.player.service.*;
-import org.airsonic.player.spring.KnownLengthInputStreamResource;
 import org.airsonic.player.util.FileUtil;
-import org.airsonic.player.util.LambdaUtils;
 import org.airsonic.player.util.StringUtil;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -38,6 +35,7 @@ import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -47,9 +45,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.context.request.ServletWebRequest;
 
-import java.io.BufferedInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -58,19 +56,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import java.util.zip.CRC32;
-import java.util.zip.CheckedInputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * A controller used for downloading files to a remote client. If the requested
@@ -160,31 +152,11 @@ public class DownloadController {
         headers.setContentDisposition(ContentDisposition.builder("attachment").filename(filename, StandardCharsets.UTF_8).build());
         headers.setContentType(MediaType.parseMediaType(StringUtil.getMimeType(FilenameUtils.getExtension(filename))));
         LOG.info("Downloading '{}' to {}", filename, player);
-        return ResponseEntity.ok().headers(headers).body(response.getResource());
-    }
-
-    /**
-     * Computes the CRC checksum for the given file.
-     *
-     * @param file The file to compute checksum for.
-     * @return A CRC32 checksum.
-     * @throws IOException If an I/O error occurs.
-     */
-    private static long computeCrc(Path file) throws IOException {
-        try (InputStream is = Files.newInputStream(file);
-                BufferedInputStream bis = new BufferedInputStream(is);
-                CheckedInputStream cis = new CheckedInputStream(bis, new CRC32())) {
-            byte[] buf = new byte[8192];
-            while ((cis.read(buf)) != -1) {
-                continue;
-            }
-
-            return cis.getChecksum().getValue();
+        if (response.getZipEntries() != null) {
+            sendZip(response, headers, statusSupplier, statusCloser, swr);
+            return null;
         }
-    }
-
-    private static long zipSize(Stream<Entry<String, Long>> paths) {
-        return paths.mapToLong(e -> 30 + 46 + (2L * e.getKey().length()) + e.getValue()).sum() + 22;
+        return ResponseEntity.ok().headers(headers).body(response.getResource());
     }
 
     private ResponseDTO prepareResponse(List<MediaFile> files, List<Integer> indices,
@@ -252,61 +224,44 @@ public class DownloadController {
                     // need to preserve order because zip file creation needs to create folders first then files
                     .collect(Collectors.toCollection(LinkedHashSet::new));
 
-            // zip to out
-            BiConsumer<InputStream, TransferStatus> poutInit = (input, status) -> {
-                PipedInputStream pin = (PipedInputStream) input;
-
-                // start a new thread to feed data in
-                new Thread(() -> {
-                    try (PipedOutputStream pout = new PipedOutputStream(pin);
-                            ZipOutputStream zout = new ZipOutputStream(pout)) {
-                        zout.setMethod(ZipOutputStream.STORED); // No compression.
-                        pathsToZip.stream().forEach(LambdaUtils.uncheckConsumer(f -> {
-                            status.setExternalFile(f.getLeft());
-                            ZipEntry zipEntry = new ZipEntry(f.getRight().getKey());
-                            zipEntry.setSize(f.getRight().getValue());
-                            zipEntry.setCompressedSize(f.getRight().getValue());
-
-                            if (f.getRight().getKey().endsWith("/") && f.getRight().getValue() == 0L) {
-                                // directory
-                                zipEntry.setCrc(0);
-                                zout.putNextEntry(zipEntry);
-                            } else {
-                                zipEntry.setCrc(computeCrc(f.getLeft()));
-                                zout.putNextEntry(zipEntry);
-                                Files.copy(f.getLeft(), zout);
-                            }
-
-                            zout.closeEntry();
-                        }));
-                    } catch (Exception e1) {
-                        LOG.debug("Error with output to zip", e1);
-                    }
-                }, "DownloadControllerDatafeed").start();
-
-                // wait for src data thread to connect
-                while (pin.source == null) {
-                    // sit and wait and ponder life
-                }
-            };
+            List<ZipStreamWriter.Entry> zipEntries = pathsToZip.stream()
+                    .map(f -> new ZipStreamWriter.Entry(f.getLeft(), f.getRight().getKey(), f.getRight().getValue()))
+                    .collect(Collectors.toList());
 
-            long size = zipSize(pathsToZip.stream().map(e -> e.getRight()));
+            return new ResponseDTO(zipEntries, ZipStreamWriter.size(zipEntries));
+        }
+    }
 
-            PipedInputStream pin = new PipedInputStream(null, 16 * 1024); // 16 Kb buffer
+    /**
+     * Writes a zip archive directly to the response, reading each file once.
+     */
+    private void sendZip(ResponseDTO response, HttpHeaders headers, Supplier<TransferStatus> statusSupplier,
+            Consumer<TransferStatus> statusCloser, ServletWebRequest swr) {
+        HttpServletResponse httpResponse = swr.getResponse();
+        headers.forEach((name, values) -> values.forEach(value -> httpResponse.addHeader(name, value)));
+        httpResponse.setContentLengthLong(response.getSize());
+        if (HttpMethod.HEAD.matches(swr.getRequest().getMethod())) {
+            return;
+        }
 
-            return new ResponseDTO(
-                    new MonitoredResource(
-                            new KnownLengthInputStreamResource(pin, size),
-                            settingsService.getDownloadBitrateLimiter(),
-                            statusSupplier,
-                            statusCloser,
-                            poutInit),
-                    null, size, -1);
+        TransferStatus status = statusSupplier.get();
+        try {
+            ZipStreamWriter zip = new ZipStreamWriter(httpResponse.getOutputStream(),
+                    settingsService.getDownloadBitrateLimiter(), status);
+            for (ZipStreamWriter.Entry entry : response.getZipEntries()) {
+                zip.write(entry);
+            }
+            zip.finish();
+        } catch (IOException e) {
+            LOG.debug("Error with output to zip", e);
+        } finally {
+            statusCloser.accept(status);
         }
     }
 
     public static class ResponseDTO {
         private final Resource resource;
+        private final List<ZipStreamWriter.Entry> zipEntries;
         private final String proposedName;
         // used as an ETag to see if a resource has changed
         private final long size;
@@ -315,15 +270,28 @@ public class DownloadController {
 
         public ResponseDTO(Resource resource, String proposedName, long size, long changed) {
             this.resource = resource;
+            this.zipEntries = null;
             this.proposedName = proposedName;
             this.size = size;
             this.changed = changed;
         }
 
+        public ResponseDTO(List<ZipStreamWriter.Entry> zipEntries, long size) {
+            this.resource = null;
+            this.zipEntries = zipEntries;
+            this.proposedName = null;
+            this.size = size;
+            this.changed = -1;
+        }
+
         public Resource getResource() {
             return resource;
         }
 
+        public List<ZipStreamWriter.Entry> getZipEntries() {
+            return zipEntries;
+        }
+
         public String getProposedName() {
             return proposedName;
         }
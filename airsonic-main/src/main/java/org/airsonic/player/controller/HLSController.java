@@ -21,6 +21,7 @@
 package org.airsonic.player.controller;
 
 import com.auth0.jwt.interfaces.DecodedJWT;
+import org.airsonic.player.config.AirsonicHlsConfig;
 import org.airsonic.player.config.AirsonicHomeConfig;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.Player;
@@ -30,11 +31,13 @@ import org.airsonic.player.io.PipeStreams.MonitoredResource;
 import org.airsonic.player.security.JWTAuthenticationToken;
 import org.airsonic.player.service.JWTSecurityService;
 import org.airsonic.player.service.MediaFileService;
+import org.airsonic.player.service.PathWatcherService;
 import org.airsonic.player.service.PlayerService;
 import org.airsonic.player.service.SecurityService;
 import org.airsonic.player.service.SettingsService;
 import org.airsonic.player.service.StatusService;
 import org.airsonic.player.service.TranscodingService;
+import org.airsonic.player.service.hls.HlsSegmentCache;
 import org.airsonic.player.service.hls.HlsSession;
 import org.airsonic.player.util.FileUtil;
 import org.airsonic.player.util.NetworkUtil;
@@ -106,8 +109,11 @@ public class HLSController {
     private final SettingsService settingsService;
     private final TranscodingService transcodingService;
     private final AirsonicHomeConfig homeConfig;
+    private final AirsonicHlsConfig hlsConfig;
+    private final HlsSegmentCache segmentCache;
+    private final PathWatcherService pathWatcherService;
 
-    public HLSController(PlayerService playerService, MediaFileService mediaFileService, SecurityService securityService, JWTSecurityService jwtSecurityService, StatusService statusService, SettingsService settingsService, TranscodingService transcodingService, AirsonicHomeConfig homeConfig) {
+    public HLSController(PlayerService playerService, MediaFileService mediaFileService, SecurityService securityService, JWTSecurityService jwtSecurityService, StatusService statusService, SettingsService settingsService, TranscodingService transcodingService, AirsonicHomeConfig homeConfig, AirsonicHlsConfig hlsConfig, HlsSegmentCache segmentCache, PathWatcherService pathWatcherService) {
         this.playerService = playerService;
         this.mediaFileService = mediaFileService;
         this.securityService = securityService;
@@ -116,6 +122,9 @@ public class HLSController {
         this.settingsService = settingsService;
         this.transcodingService = transcodingService;
         this.homeConfig = homeConfig;
+        this.hlsConfig = hlsConfig;
+        this.segmentCache = segmentCache;
+        this.pathWatcherService = pathWatcherService;
         init();
     }
 
@@ -312,7 +321,8 @@ public class HLSController {
         }
         TransferStatus status = this.statusService.createStreamStatus(player);
         status.setMediaFile(mediaFile);
-        HlsSession.Key sessionKey = new HlsSession.Key(id, playerId, maxBitRate, size, duration, audioTrack);
+        HlsSession.Key sessionKey = new HlsSession.Key(id, mediaFile.getChanged(), playerId, maxBitRate, size,
+                duration, audioTrack);
         HlsSession session = getOrCreateSession(sessionKey, mediaFile);
         Path segmentFile = session.waitForSegment(segmentIndex, 30000L);
         if (segmentFile == null) {
@@ -350,7 +360,8 @@ public class HLSController {
                 }
             }
 
-            return new HlsSession(k, mediaFile, transcodingService, homeConfig.getAirsonicHome().resolve("hls"));
+            return new HlsSession(k, mediaFile, transcodingService, homeConfig.getAirsonicHome().resolve("hls"),
+                    segmentCache, pathWatcherService, hlsConfig.getLookAhead());
         });
     }
 
@@ -41,9 +41,14 @@ import jakarta.xml.bind.Marshaller;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.GregorianCalendar;
 import java.util.Map;
@@ -62,7 +67,12 @@ public class JAXBWriter {
 
     private final jakarta.xml.bind.JAXBContext jaxbContext;
     private final DatatypeFactory datatypeFactory;
+
+    // Marshallers are not thread-safe, but are cheap to reuse once configured
+    private final ThreadLocal<Marshaller> xmlMarshaller = ThreadLocal.withInitial(this::createXmlMarshaller);
+    private final ThreadLocal<Marshaller> jsonMarshaller = ThreadLocal.withInitial(this::createJsonMarshaller);
     private static final String restProtocolVersion = parseRESTProtocolVersion();
+    private static final int STREAM_BUFFER_SIZE = 8192;
 
     private final String SERVER_TYPE = "Airsonic-Advanced";
 
@@ -82,7 +92,7 @@ public class JAXBWriter {
         try {
             marshaller = jaxbContext.createMarshaller();
             marshaller.setProperty(Marshaller.JAXB_ENCODING, StringUtil.ENCODING_UTF8);
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
             return marshaller;
         } catch (JAXBException e) {
             throw new RuntimeException(e);
@@ -94,7 +104,7 @@ public class JAXBWriter {
             Marshaller marshaller;
             marshaller = jaxbContext.createMarshaller();
             marshaller.setProperty(Marshaller.JAXB_ENCODING, StringUtil.ENCODING_UTF8);
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
             marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, "application/json");
             marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, true);
             return marshaller;
@@ -126,13 +136,26 @@ public class JAXBWriter {
     }
 
     public void writeResponse(HttpServletRequest request, HttpServletResponse httpResponse, Response jaxbResponse) {
-        Entry<String, String> serializedResp = serializeForType(request, jaxbResponse);
+        OutputFormat format = OutputFormat.of(request);
 
         httpResponse.setCharacterEncoding(StringUtil.ENCODING_UTF8);
-        httpResponse.setContentType(serializedResp.getKey());
+        httpResponse.setContentType(format.getMediaType().toString());
+
+        try {
+            OutputStream out = httpResponse.getOutputStream();
+            marshal(format, jaxbResponse, out);
+        } catch (IllegalStateException x) {
+            // the writer has already been obtained for this response, e.g. when an error is reported mid-request
+            writeToWriter(request, httpResponse, jaxbResponse);
+        } catch (IOException | JAXBException x) {
+            LOG.error("Failed to marshal JAXB", x);
+            throw new RuntimeException(x);
+        }
+    }
 
+    private void writeToWriter(HttpServletRequest request, HttpServletResponse httpResponse, Response jaxbResponse) {
         try {
-            httpResponse.getWriter().append(serializedResp.getValue());
+            httpResponse.getWriter().append(serializeForType(request, jaxbResponse).getValue());
         } catch (IOException x) {
             LOG.error("Failed to marshal JAXB", x);
             throw new RuntimeException(x);
@@ -159,39 +182,34 @@ public class JAXBWriter {
     }
 
     public Entry<String, String> serializeForType(HttpServletRequest request, Response resp) {
-        String format = getStringParameter(request, "f", "xml");
-        String jsonpCallback = request.getParameter("callback");
-        boolean json = "json".equals(format);
-        boolean jsonp = "jsonp".equals(format) && jsonpCallback != null;
-        Marshaller marshaller;
-        MediaType type;
-
-        if (json) {
-            marshaller = createJsonMarshaller();
-            type = MediaType.JSON_UTF_8;
-        } else if (jsonp) {
-            marshaller = createJsonMarshaller();
-            type = MediaType.JAVASCRIPT_UTF_8;
-        } else {
-            marshaller = createXmlMarshaller();
-            type = MediaType.XML_UTF_8;
-        }
-
-        StringWriter writer = new StringWriter();
+        OutputFormat format = OutputFormat.of(request);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
-            if (jsonp) {
-                writer.append(jsonpCallback).append('(');
-            }
-            marshaller.marshal(new ObjectFactory().createSubsonicResponse(resp), writer);
-            if (jsonp) {
-                writer.append(");");
-            }
-        } catch (JAXBException x) {
+            marshal(format, resp, out);
+        } catch (IOException | JAXBException x) {
             LOG.error("Failed to marshal JAXB", x);
             throw new RuntimeException(x);
         }
 
-        return Pair.of(type.toString(), writer.toString());
+        return Pair.of(format.getMediaType().toString(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Marshals the response directly onto the given stream, without buffering the whole document in memory.
+     * The stream is flushed but left open.
+     */
+    void marshal(OutputFormat format, Response resp, OutputStream out) throws IOException, JAXBException {
+        Marshaller marshaller = format.isJson() ? jsonMarshaller.get() : xmlMarshaller.get();
+        // MOXy emits many tiny writes, so keep a small buffer between it and the stream
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE);
+        if (format.getJsonpCallback() != null) {
+            writer.append(format.getJsonpCallback()).append('(');
+        }
+        marshaller.marshal(new ObjectFactory().createSubsonicResponse(resp), writer);
+        if (format.getJsonpCallback() != null) {
+            writer.append(");");
+        }
+        writer.flush();
     }
 
     public XMLGregorianCalendar convertDate(Instant date) {
@@ -203,4 +221,45 @@ public class JAXBWriter {
         c.setTimeInMillis(date.toEpochMilli());
         return datatypeFactory.newXMLGregorianCalendar(c).normalize();
     }
+
+    /**
+     * Output format requested by the client through the "f" and "callback" parameters.
+     */
+    static class OutputFormat {
+        static final OutputFormat XML = new OutputFormat(MediaType.XML_UTF_8, false, null);
+        static final OutputFormat JSON = new OutputFormat(MediaType.JSON_UTF_8, true, null);
+
+        private final MediaType mediaType;
+        private final boolean json;
+        private final String jsonpCallback;
+
+        private OutputFormat(MediaType mediaType, boolean json, String jsonpCallback) {
+            this.mediaType = mediaType;
+            this.json = json;
+            this.jsonpCallback = jsonpCallback;
+        }
+
+        static OutputFormat of(HttpServletRequest request) {
+            String format = getStringParameter(request, "f", "xml");
+            String jsonpCallback = request.getParameter("callback");
+            if ("json".equals(format)) {
+                return JSON;
+            } else if ("jsonp".equals(format) && jsonpCallback != null) {
+                return new OutputFormat(MediaType.JAVASCRIPT_UTF_8, true, jsonpCallback);
+            }
+            return XML;
+        }
+
+        MediaType getMediaType() {
+            return mediaType;
+        }
+
+        boolean isJson() {
+            return json;
+        }
+
+        String getJsonpCallback() {
+            return jsonpCallback;
+        }
+    }
 }
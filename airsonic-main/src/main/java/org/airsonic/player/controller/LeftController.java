@@ -22,7 +22,6 @@ package org.airsonic.player.controller;
 import org.airsonic.player.domain.*;
 import org.airsonic.player.service.*;
 import org.airsonic.player.service.search.IndexManager;
-import org.airsonic.player.util.FileUtil;
 import org.airsonic.player.util.StringUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -35,7 +34,6 @@ import org.springframework.web.servlet.support.RequestContextUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
-import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
 
@@ -89,21 +87,14 @@ public class LeftController {
         // When was settings last changed?
         lastModified = Math.max(lastModified, settingsService.getSettingsChanged());
 
-        // When was music folder(s) on disk last changed?
+        // When was the index of the music folder(s) last changed?
 
         List<MusicFolder> allMusicFolders = mediaFolderService.getMusicFoldersForUser(username);
         MusicFolder selectedMusicFolder = allMusicFolders.stream()
                 .filter(f -> f.getId().equals(userSettings.getSelectedMusicFolderId()))
                 .findAny().orElse(null);
-        if (selectedMusicFolder != null) {
-            Path file = selectedMusicFolder.getPath();
-            lastModified = Math.max(lastModified, FileUtil.lastModified(file).toEpochMilli());
-        } else {
-            for (MusicFolder musicFolder : allMusicFolders) {
-                Path file = musicFolder.getPath();
-                lastModified = Math.max(lastModified, FileUtil.lastModified(file).toEpochMilli());
-            }
-        }
+        List<MusicFolder> indexedMusicFolders = selectedMusicFolder != null ? Collections.singletonList(selectedMusicFolder) : allMusicFolders;
+        lastModified = Math.max(lastModified, musicIndexService.getLastModified(indexedMusicFolders).toEpochMilli());
 
         // When was music folder table last changed?
         for (MusicFolder musicFolder : allMusicFolders) {
@@ -91,6 +91,7 @@ public class MusicFolderSettingsController {
     @ModelAttribute
     protected void formBackingObject(@RequestParam(value = "scanNow", required = false) String scanNow,
                                        @RequestParam(value = "expunge", required = false) String expunge,
+                                       @RequestParam(value = "rebuildIndex", required = false) String rebuildIndex,
                                        Model model) {
         MusicFolderSettingsCommand command = new MusicFolderSettingsCommand();
 
@@ -101,6 +102,9 @@ public class MusicFolderSettingsController {
         if (expunge != null) {
             expunge();
         }
+        if (rebuildIndex != null) {
+            mediaScannerService.rebuildIndex();
+        }
 
         command.setInterval(String.valueOf(settingsService.getIndexCreationInterval()));
         command.setHour(String.valueOf(settingsService.getIndexCreationHour()));
@@ -23,11 +23,11 @@ package org.airsonic.player.controller;
 import com.google.re2j.Matcher;
 import com.google.re2j.Pattern;
 import org.airsonic.player.domain.*;
+import org.airsonic.player.io.FileRegionTransfer;
 import org.airsonic.player.io.PipeStreams.MonitoredInputStream;
-import org.airsonic.player.io.PipeStreams.PipedInputStream;
-import org.airsonic.player.io.PipeStreams.PipedOutputStream;
 import org.airsonic.player.io.PlayQueueInputStream;
-import org.airsonic.player.io.ShoutCastOutputStream;
+import org.airsonic.player.io.ShoutCastInputStream;
+import org.airsonic.player.monitor.MetricsManager;
 import org.airsonic.player.security.JWTAuthenticationToken;
 import org.airsonic.player.service.*;
 import org.airsonic.player.service.sonos.SonosHelper;
@@ -41,12 +41,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
-import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.ServletRequestBindingException;
 import org.springframework.web.bind.ServletRequestUtils;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -57,14 +59,19 @@ import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.async.AsyncRequestNotUsableException;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import java.awt.*;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -84,6 +91,12 @@ public class StreamController {
 
     private static final Set<String> ICY_IGNORED_CLIENT = Set.of("Tempo");
 
+    // request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private StatusService statusService;
     @Autowired
@@ -102,6 +115,8 @@ public class StreamController {
     private MediaFileService mediaFileService;
     @Autowired
     private SearchService searchService;
+    @Autowired
+    private MetricsManager metricsManager;
 
     @GetMapping
     public ResponseEntity<Resource> handleRequest(Authentication authentication,
@@ -114,6 +129,25 @@ public class StreamController {
             @RequestParam(required = false, name = "offsetSeconds") Double offsetSeconds,
             ServletWebRequest swr) throws Exception {
 
+        FirstByteTimer firstByteTimer = new FirstByteTimer(metricsManager.timer(StreamController.class, "firstByte"));
+        boolean streaming = false;
+        try {
+            ResponseEntity<Resource> response = stream(authentication, playlist, format, suffix, maxBitRate, id, path,
+                    offsetSeconds, swr, firstByteTimer);
+            streaming = response != null;
+            return response;
+        } finally {
+            if (!streaming) {
+                // no stream left to read: not modified, sent from disk, or failed
+                firstByteTimer.stop();
+            }
+        }
+    }
+
+    private ResponseEntity<Resource> stream(Authentication authentication, Integer playlist, String format, String suffix,
+            Optional<Integer> maxBitRate, Optional<Integer> id, Optional<String> path, Double offsetSeconds,
+            ServletWebRequest swr, FirstByteTimer firstByteTimer) throws Exception {
+
         String username = securityService.getCurrentUsername(swr.getRequest());
         User user = securityService.getUserByName(username);
         if (!(authentication instanceof JWTAuthenticationToken) && !user.isStreamRole()) {
@@ -121,6 +155,8 @@ public class StreamController {
         }
 
         Player player = playerService.getPlayer(swr.getRequest(), swr.getResponse(), username, false, true);
+        // the player is shared with other requests, so a separate play queue is only used by this request
+        PlayQueue playQueue = player.getPlayQueue();
 
         Long expectedSize = null;
 
@@ -128,9 +164,8 @@ public class StreamController {
         // play queue (in order to support multiple parallel Podcast streams).
         boolean isPodcast = Objects.nonNull(playlist);
         if (isPodcast) {
-            PlayQueue playQueue = new PlayQueue();
+            playQueue = new PlayQueue();
             playQueue.addFiles(false, playlistService.getFilesInPlaylist(playlist));
-            player.setPlayQueue(playQueue);
             // Note: does not take transcoding into account
             expectedSize = playQueue.length();
             LOG.info("{}: Incoming Podcast request for playlist {}", swr.getRequest().getRemoteAddr(), playlist);
@@ -151,6 +186,7 @@ public class StreamController {
         boolean isSingleFile = Objects.nonNull(file);
 
         Long byteOffset = null;
+        boolean rawFile = false;
 
         if (isSingleFile) {
 
@@ -162,15 +198,14 @@ public class StreamController {
             // Update the index of the currently playing media file. At
             // this point we haven't yet modified the play queue to support
             // multiple streams, so the current play queue is the real one.
-            int currentIndex = player.getPlayQueue().getFiles().indexOf(file);
-            player.getPlayQueue().setIndex(currentIndex);
+            int currentIndex = playQueue.getFiles().indexOf(file);
+            playQueue.setIndex(currentIndex);
 
             // Create a new, fake play queue that only contains the
             // currently playing media file, in case multiple streams want
             // to use the same player.
-            PlayQueue playQueue = new PlayQueue();
+            playQueue = new PlayQueue();
             playQueue.addFiles(true, file);
-            player.setPlayQueue(playQueue);
 
             if (file.isVideo() && !TranscodingService.FORMAT_RAW.equals(targetFormat)) {
                 videoTranscodingSettings = createVideoTranscodingSettings(file, swr.getRequest());
@@ -196,6 +231,8 @@ public class StreamController {
 
             // Set content type of response
             suffix = transcodingService.getSuffix(player, file, targetFormat);
+
+            rawFile = !parameters.isTranscode() && byteOffset == null;
         }
 
         // Terminate any other streams to this player.
@@ -204,9 +241,9 @@ public class StreamController {
         }
 
         // If playqueue is in auto-random mode, populate it with new random songs.
-        if (player.getPlayQueue().getIndex() == -1 && player.getPlayQueue().getRandomSearchCriteria() != null) {
-            player.getPlayQueue().addFiles(false, searchService.getRandomSongs(player.getPlayQueue().getRandomSearchCriteria()));
-            LOG.info("Recreated random playlist with {} songs.", player.getPlayQueue().size());
+        if (playQueue.getIndex() == -1 && playQueue.getRandomSearchCriteria() != null) {
+            playQueue.addFiles(false, searchService.getRandomSongs(playQueue.getRandomSearchCriteria()));
+            LOG.info("Recreated random playlist with {} songs.", playQueue.size());
         }
 
         VideoTranscodingSettings videoTranscodingSettingsF = videoTranscodingSettings;
@@ -229,21 +266,36 @@ public class StreamController {
             statusService.removeActiveLocalPlay(
                     new PlayStatus(status.getId(), mediaFile, player, status.getMillisSinceLastUpdate()));
         };
+        Consumer<TransferStatus> statusCloser = s -> {
+            securityService.incrementBytesStreamed(user.getUsername(), s.getBytesTransferred());
+            statusService.removeStreamStatus(s);
+        };
+        boolean sonos = SonosHelper.AIRSONIC_CLIENT_ID.equals(player.getClientId());
+        String clientId = Optional.ofNullable(swr.getParameter("c")).orElse("");
+        boolean shoutcast = !ICY_IGNORED_CLIENT.contains(clientId) && "1".equals(swr.getHeader("icy-metadata"));
+
+        // Serve files that need no transcoding straight from disk, unless several ranges are requested
+        List<HttpRange> ranges = rawFile && !shoutcast ? parseRanges(swr.getHeader(HttpHeaders.RANGE)) : null;
+        if (ranges != null && ranges.size() <= 1) {
+            firstByteTimer.stop();
+            sendFile(file, ranges.isEmpty() ? null : ranges.get(0), StringUtil.getMimeType(suffix, sonos), status,
+                    fileStartListener, fileEndListener, statusCloser, swr);
+            return null;
+        }
+
         Function<MediaFile, InputStream> streamGenerator = LambdaUtils.uncheckFunction(
             mediaFile -> transcodingService.getTranscodedInputStream(
                     transcodingService.getParameters(mediaFile, player, bitRate, targetFormat, videoTranscodingSettingsF)));
 
         HttpHeaders headers = new HttpHeaders();
-        InputStream playStream = new PlayQueueInputStream(player.getPlayQueue(), fileStartListener, fileEndListener, streamGenerator);
+        InputStream playStream = new PlayQueueInputStream(playQueue, fileStartListener, fileEndListener, streamGenerator);
         BiConsumer<InputStream, TransferStatus> streamInit = (i, s) -> {};
 
         // Enabled SHOUTcast, if requested.
-        String clientId = Optional.ofNullable(swr.getParameter("c")).orElse("");
-        if (!ICY_IGNORED_CLIENT.contains(clientId) && "1".equals(swr.getHeader("icy-metadata"))) {
+        if (shoutcast) {
             expectedSize = null;
-            ShoutcastDetails shoutcastDetails = getShoutcastDetails(playStream);
+            ShoutcastDetails shoutcastDetails = getShoutcastDetails(playStream, status);
             playStream = shoutcastDetails.getStream();
-            streamInit = shoutcastDetails.getStreamInit();
             headers.addAll(shoutcastDetails.getHeaders());
         }
 
@@ -265,22 +317,18 @@ public class StreamController {
         }
 
         Supplier<TransferStatus> statusSupplier = () -> status;
-        Consumer<TransferStatus> statusCloser = s -> {
-            securityService.incrementBytesStreamed(user.getUsername(), s.getBytesTransferred());
-            statusService.removeStreamStatus(s);
-        };
 
         InputStream monitoredStream = new MonitoredInputStream(
                 playStream,
                 settingsService.getDownloadBitrateLimiter(),
                 statusSupplier, statusCloser,
                 streamInit);
+        monitoredStream = new FirstByteTimingInputStream(monitoredStream, firstByteTimer);
 
         Resource resource = expectedSize == null ?
                 new InputStreamResource(monitoredStream) :
                 new KnownLengthInputStreamResource(monitoredStream, expectedSize);
 
-        boolean sonos = SonosHelper.AIRSONIC_CLIENT_ID.equals(player.getClientId());
         headers.setContentType(MediaType.parseMediaType(StringUtil.getMimeType(suffix, sonos)));
 
         return ResponseEntity.ok().headers(headers).body(resource);
@@ -291,6 +339,95 @@ public class StreamController {
         LOG.info("Client Aborted");
     }
 
+    /**
+     * Parses the Range header of a request.
+     *
+     * @return the requested ranges, empty if none, or null if the header is invalid
+     */
+    private static List<HttpRange> parseRanges(String rangeHeader) {
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a file that needs no transcoding directly to the response. Without download rate limit, the file is left
+     * to the container to send with sendfile if it supports it, otherwise it is copied with {@link FileRegionTransfer}.
+     * <p>
+     * The container reports neither the progress nor an abort of a sendfile transfer, so such a transfer is counted
+     * as fully sent when it is handed off: the transferred bytes, the play count, the scrobble and the end of the
+     * local play are all recorded before the first byte is written.
+     */
+    private void sendFile(MediaFile file, HttpRange range, String contentType, TransferStatus status,
+            Consumer<MediaFile> fileStartListener, BiConsumer<Integer, MediaFile> fileEndListener,
+            Consumer<TransferStatus> statusCloser, ServletWebRequest swr) throws IOException {
+        HttpServletResponse response = swr.getResponse();
+        try {
+            Path path = file.getFullPath();
+            long length = Files.size(path);
+            long start = 0;
+            long end = length - 1;
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (range != null) {
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                status.addBytesSkipped(start);
+            }
+            response.setContentType(contentType);
+            response.setContentLengthLong(end - start + 1);
+            if (HttpMethod.HEAD.matches(swr.getRequest().getMethod())) {
+                return;
+            }
+
+            fileStartListener.accept(file);
+            if (settingsService.getDownloadBitrateLimit() == 0 && sendfile(swr.getRequest(), path, start, end + 1)) {
+                // the container sends the file once this request returns, count it as sent in full
+                status.addBytesTransferred(end - start + 1);
+                fileEndListener.accept(1, file);
+                return;
+            }
+            long transferred = 0;
+            try {
+                transferred = FileRegionTransfer.transfer(path, start, end - start + 1, response.getOutputStream(),
+                        settingsService.getDownloadBitrateLimiter(), status);
+            } catch (IOException e) {
+                LOG.info("Client Aborted");
+                LOG.debug("Error while streaming {}", path, e);
+            } finally {
+                fileEndListener.accept(transferred > 0 ? 1 : 0, file);
+            }
+        } finally {
+            statusCloser.accept(status);
+        }
+    }
+
+    /**
+     * Asks Tomcat to send a region of a file with sendfile once the request returns, if the connector supports it for
+     * this request.
+     *
+     * @param end position after the last byte to send
+     * @return whether the file will be sent by the container
+     */
+    private static boolean sendfile(HttpServletRequest request, Path file, long start, long end) {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTR, start);
+        request.setAttribute(SENDFILE_END_ATTR, end);
+        return true;
+    }
+
     private void scrobble(MediaFile mediaFile, Player player, boolean submission) {
         // Don't scrobble REST players (except Sonos)
         if (player.getClientId() == null || player.getClientId().equals(SonosHelper.AIRSONIC_CLIENT_ID)) {
@@ -298,56 +435,29 @@ public class StreamController {
         }
     }
 
-    private ShoutcastDetails getShoutcastDetails(InputStream input) throws IOException {
+    private ShoutcastDetails getShoutcastDetails(InputStream input, TransferStatus status) {
         HttpHeaders responseHeaders = new HttpHeaders();
-        responseHeaders.set("icy-metaint", String.valueOf(ShoutCastOutputStream.META_DATA_INTERVAL));
+        responseHeaders.set("icy-metaint", String.valueOf(ShoutCastInputStream.META_DATA_INTERVAL));
         responseHeaders.set("icy-notice1", "This stream is served using Airsonic");
         responseHeaders.set("icy-notice2", "Airsonic - Free media streamer");
         responseHeaders.set("icy-name", "Airsonic");
         responseHeaders.set("icy-genre", "Mixed");
         responseHeaders.set("icy-url", "https://airsonic.github.io/");
 
-        return new ShoutcastDetails(new PipedInputStream(), (i, s) -> {
-            PipedInputStream pin = (PipedInputStream) i;
-
-            // start a new thread to feed data in
-            new Thread(() -> {
-                try (InputStream in = input;
-                        PipedOutputStream pout = new PipedOutputStream(pin);
-                        ShoutCastOutputStream shout = new ShoutCastOutputStream(pout,
-                            () -> Optional.ofNullable(s)
-                                    .map(TransferStatus::getMediaFile)
-                                    .map(MediaFile::getTitle)
-                                .orElseGet(settingsService::getWelcomeTitle))) {
-                    StreamUtils.copy(in, shout);
-                } catch (Exception e) {
-                    LOG.debug("Error with output to Shoutcast stream", e);
-                }
-            }, "ShoutcastStreamDatafeed").start();
-
-            // wait for src data thread to connect
-            while (pin.source == null) {
-                // sit and wait and ponder life
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    LOG.debug("Interrupted while waiting for PipedInputStream to connect", e);
-                    Thread.currentThread().interrupt();
-                    return;
-                }
-                LOG.debug("Waiting for a source {}", pin.source == null);
-            }
-        }, responseHeaders);
+        // meta-data is interleaved while the response is written, on the request thread
+        return new ShoutcastDetails(new ShoutCastInputStream(input,
+            () -> Optional.ofNullable(status)
+                    .map(TransferStatus::getMediaFile)
+                    .map(MediaFile::getTitle)
+                .orElseGet(settingsService::getWelcomeTitle)), responseHeaders);
     }
 
     private static class ShoutcastDetails {
         private final InputStream stream;
-        private final BiConsumer<InputStream, TransferStatus> streamInit;
         private final HttpHeaders headers;
 
-        public ShoutcastDetails(InputStream stream, BiConsumer<InputStream, TransferStatus> streamInit, HttpHeaders headers) {
+        public ShoutcastDetails(InputStream stream, HttpHeaders headers) {
             this.stream = stream;
-            this.streamInit = streamInit;
             this.headers = headers;
         }
 
@@ -355,15 +465,65 @@ public class StreamController {
             return stream;
         }
 
-        public BiConsumer<InputStream, TransferStatus> getStreamInit() {
-            return streamInit;
-        }
-
         public HttpHeaders getHeaders() {
             return headers;
         }
     }
 
+    /**
+     * Timer started with the request, stopped once when the response starts.
+     */
+    private static class FirstByteTimer {
+        private final MetricsManager.Timer timer;
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        FirstByteTimer(MetricsManager.Timer timer) {
+            this.timer = timer;
+        }
+
+        void stop() {
+            if (stopped.compareAndSet(false, true)) {
+                timer.close();
+            }
+        }
+    }
+
+    /**
+     * Stops the first byte timer once the stream is first read, even if no byte is returned, or once it is closed.
+     */
+    private static class FirstByteTimingInputStream extends FilterInputStream {
+        private final FirstByteTimer timer;
+
+        protected FirstByteTimingInputStream(InputStream in, FirstByteTimer timer) {
+            super(in);
+            this.timer = timer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } finally {
+                timer.stop();
+            }
+        }
+
+        @Override
+        public int read(byte b[], int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } finally {
+                timer.stop();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            timer.stop();
+            super.close();
+        }
+    }
+
     /**
      *
      * Class that ensures a stream meets at least minimum length. If underlying
@@ -245,12 +245,17 @@ public class SubsonicRESTController {
             }
         }
 
-        for (MediaFile shortcut : musicIndexService.getShortcuts(musicFolders)) {
-            indexes.getShortcut().add(createJaxbArtist(shortcut, username));
-        }
+        indexes.getShortcut().addAll(createJaxbArtists(musicIndexService.getShortcuts(musicFolders), username));
 
         MusicFolderContent musicFolderContent = musicIndexService.getMusicFolderContent(musicFolders, false);
 
+        List<MediaFile> artistDirectories = musicFolderContent.getIndexedArtists().values().stream()
+            .flatMap(List::stream)
+            .flatMap(artist -> artist.getMediaFiles().stream())
+            .filter(MediaFile::isDirectory)
+            .collect(Collectors.toList());
+        UserAnnotations annotations = mediaFileService.getUserAnnotations(artistDirectories, username);
+
         for (Map.Entry<MusicIndex, List<MusicIndex.SortableArtistWithMediaFiles>> entry : musicFolderContent.getIndexedArtists().entrySet()) {
             Index index = new Index();
             indexes.getIndex().add(index);
@@ -259,16 +264,15 @@ public class SubsonicRESTController {
             for (MusicIndex.SortableArtistWithMediaFiles artist : entry.getValue()) {
                 for (MediaFile mediaFile : artist.getMediaFiles()) {
                     if (mediaFile.isDirectory()) {
-                        Instant starredDate = mediaFileService.getMediaFileStarredDate(mediaFile, username);
                         org.subsonic.restapi.Artist a = new org.subsonic.restapi.Artist();
                         index.getArtist().add(a);
                         a.setId(String.valueOf(mediaFile.getId()));
                         a.setName(artist.getName());
-                        a.setStarred(jaxbWriter.convertDate(starredDate));
+                        a.setStarred(jaxbWriter.convertDate(annotations.getStarredDate(mediaFile)));
 
                         if (mediaFile.isAlbum()) {
-                            a.setAverageRating(ratingService.getAverageRating(mediaFile));
-                            a.setUserRating(ratingService.getRatingForUser(username, mediaFile));
+                            a.setAverageRating(annotations.getAverageRating(mediaFile));
+                            a.setUserRating(annotations.getUserRating(mediaFile));
                         }
                     }
                 }
@@ -278,9 +282,7 @@ public class SubsonicRESTController {
         // Add children
         Player player = playerService.getPlayer(request, response, username);
 
-        for (MediaFile singleSong : musicFolderContent.getSingleSongs()) {
-            indexes.getChild().add(createJaxbChild(player, singleSong, username));
-        }
+        indexes.getChild().addAll(createJaxbChildren(player, musicFolderContent.getSingleSongs(), username));
 
         res.setIndexes(indexes);
         jaxbWriter.writeResponse(request, response, res);
@@ -318,9 +320,7 @@ public class SubsonicRESTController {
         Integer musicFolderId = getIntParameter(request, "musicFolderId");
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username, musicFolderId);
 
-        for (MediaFile mediaFile : mediaFileService.getSongsByGenre(offset, count, genre, musicFolders)) {
-            songs.getSong().add(createJaxbChild(player, mediaFile, username));
-        }
+        songs.getSong().addAll(createJaxbChildren(player, mediaFileService.getSongsByGenre(offset, count, genre, musicFolders), username));
         Response res = createResponse();
         res.setSongsByGenre(songs);
         jaxbWriter.writeResponse(request, response, res);
@@ -370,9 +370,7 @@ public class SubsonicRESTController {
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username);
         List<MediaFile> similarSongs = lastFmService.getSimilarSongsByMediaFile(mediaFile, count, musicFolders);
         Player player = playerService.getPlayer(request, response, username);
-        for (MediaFile similarSong : similarSongs) {
-            result.getSong().add(createJaxbChild(player, similarSong, username));
-        }
+        result.getSong().addAll(createJaxbChildren(player, similarSongs, username));
 
         Response res = createResponse();
         res.setSimilarSongs(result);
@@ -398,9 +396,7 @@ public class SubsonicRESTController {
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username);
         List<MediaFile> similarSongs = lastFmService.getSimilarSongs(artist, count, musicFolders);
         Player player = playerService.getPlayer(request, response, username);
-        for (MediaFile similarSong : similarSongs) {
-            result.getSong().add(createJaxbChild(player, similarSong, username));
-        }
+        result.getSong().addAll(createJaxbChildren(player, similarSongs, username));
 
         Response res = createResponse();
         res.setSimilarSongs2(result);
@@ -420,9 +416,7 @@ public class SubsonicRESTController {
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username);
         List<MediaFile> topSongs = lastFmService.getTopSongs(artist, count, musicFolders);
         Player player = playerService.getPlayer(request, response, username);
-        for (MediaFile topSong : topSongs) {
-            result.getSong().add(createJaxbChild(player, topSong, username));
-        }
+        result.getSong().addAll(createJaxbChildren(player, topSongs, username));
 
         Response res = createResponse();
         res.setTopSongs(result);
@@ -447,9 +441,7 @@ public class SubsonicRESTController {
         }
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username);
         List<MediaFile> similarArtists = lastFmService.getSimilarArtistsByMediaFile(mediaFile, count, includeNotPresent, musicFolders);
-        for (MediaFile similarArtist : similarArtists) {
-            result.getSimilarArtist().add(createJaxbArtist(similarArtist, username));
-        }
+        result.getSimilarArtist().addAll(createJaxbArtists(similarArtists, username));
         ArtistBio artistBio = lastFmService.getArtistBioByMediaFile(mediaFile, localeResolver.resolveLocale(request));
         if (artistBio != null) {
             result.setBiography(artistBio.getBiography());
@@ -513,15 +505,19 @@ public class SubsonicRESTController {
         return jaxbArtist;
     }
 
-    private org.subsonic.restapi.Artist createJaxbArtist(MediaFile artist, String username) {
+    private org.subsonic.restapi.Artist createJaxbArtist(MediaFile artist, Instant starred) {
         org.subsonic.restapi.Artist result = new org.subsonic.restapi.Artist();
         result.setId(String.valueOf(artist.getId()));
         result.setName(artist.getArtist());
-        Instant starred = mediaFileService.getMediaFileStarredDate(artist, username);
         result.setStarred(jaxbWriter.convertDate(starred));
         return result;
     }
 
+    private List<org.subsonic.restapi.Artist> createJaxbArtists(List<MediaFile> artists, String username) {
+        Map<Integer, Instant> starredDates = mediaFileService.getMediaFileStarredDates(artists, username);
+        return artists.stream().map(artist -> createJaxbArtist(artist, starredDates.get(artist.getId()))).collect(Collectors.toList());
+    }
+
     @RequestMapping({"/getArtist", "/getArtist.view"})
     public void getArtist(HttpServletRequest request, HttpServletResponse response) throws Exception {
         request = wrapRequest(request);
@@ -599,9 +595,7 @@ public class SubsonicRESTController {
         }
 
         AlbumWithSongsID3 result = createJaxbAlbum(new AlbumWithSongsID3(), album, username);
-        for (MediaFile mediaFile : mediaFileService.getSongsForAlbum(album.getArtist(), album.getName())) {
-            result.getSong().add(createJaxbChild(player, mediaFile, username));
-        }
+        result.getSong().addAll(createJaxbChildren(player, mediaFileService.getSongsForAlbum(album.getArtist(), album.getName()), username));
 
         Response res = createResponse();
         res.setAlbum(result);
@@ -666,9 +660,7 @@ public class SubsonicRESTController {
             directory.setUserRating(ratingService.getRatingForUser(username, dir));
         }
 
-        for (MediaFile child : mediaFileService.getVisibleChildrenOf(dir, true, true)) {
-            directory.getChild().add(createJaxbChild(player, child, username));
-        }
+        directory.getChild().addAll(createJaxbChildren(player, mediaFileService.getVisibleChildrenOf(dir, true, true), username));
 
         Response res = createResponse();
         res.setDirectory(directory);
@@ -711,9 +703,7 @@ public class SubsonicRESTController {
         searchResult.setOffset(result.getOffset());
         searchResult.setTotalHits(result.getTotalHits());
 
-        for (MediaFile mediaFile : result.getMediaFiles()) {
-            searchResult.getMatch().add(createJaxbChild(player, mediaFile, username));
-        }
+        searchResult.getMatch().addAll(createJaxbChildren(player, result.getMediaFiles(), username));
         Response res = createResponse();
         res.setSearchResult(searchResult);
         jaxbWriter.writeResponse(request, response, res);
@@ -735,23 +725,17 @@ public class SubsonicRESTController {
         criteria.setCount(getIntParameter(request, "artistCount", 20));
         criteria.setOffset(getIntParameter(request, "artistOffset", 0));
         org.airsonic.player.domain.SearchResult artists = searchService.search(criteria, musicFolders, IndexType.ARTIST);
-        for (MediaFile mediaFile : artists.getMediaFiles()) {
-            searchResult.getArtist().add(createJaxbArtist(mediaFile, username));
-        }
+        searchResult.getArtist().addAll(createJaxbArtists(artists.getMediaFiles(), username));
 
         criteria.setCount(getIntParameter(request, "albumCount", 20));
         criteria.setOffset(getIntParameter(request, "albumOffset", 0));
         org.airsonic.player.domain.SearchResult albums = searchService.search(criteria, musicFolders, IndexType.ALBUM);
-        for (MediaFile mediaFile : albums.getMediaFiles()) {
-            searchResult.getAlbum().add(createJaxbChild(player, mediaFile, username));
-        }
+        searchResult.getAlbum().addAll(createJaxbChildren(player, albums.getMediaFiles(), username));
 
         criteria.setCount(getIntParameter(request, "songCount", 20));
         criteria.setOffset(getIntParameter(request, "songOffset", 0));
         org.airsonic.player.domain.SearchResult songs = searchService.search(criteria, musicFolders, IndexType.SONG);
-        for (MediaFile mediaFile : songs.getMediaFiles()) {
-            searchResult.getSong().add(createJaxbChild(player, mediaFile, username));
-        }
+        searchResult.getSong().addAll(createJaxbChildren(player, songs.getMediaFiles(), username));
 
         Response res = createResponse();
         res.setSearchResult2(searchResult);
@@ -785,7 +769,7 @@ public class SubsonicRESTController {
                 albumService.getAlbums(musicFolders, albumCount, albumOffset).forEach(album -> searchResult.getAlbum().add(createJaxbAlbum(new AlbumID3(), album, username)));
             }
             if (songCount > 0) {
-                mediaFileService.getSongs(musicFolders, songCount, songOffset).forEach(song -> searchResult.getSong().add(createJaxbChild(player, song, username)));
+                searchResult.getSong().addAll(createJaxbChildren(player, mediaFileService.getSongs(musicFolders, songCount, songOffset), username));
             }
         } else {
             SearchCriteria criteria = new SearchCriteria();
@@ -807,9 +791,7 @@ public class SubsonicRESTController {
             criteria.setCount(songCount);
             criteria.setOffset(songOffset);
             result = searchService.search(criteria, musicFolders, IndexType.SONG);
-            for (MediaFile song : result.getMediaFiles()) {
-                searchResult.getSong().add(createJaxbChild(player, song, username));
-            }
+            searchResult.getSong().addAll(createJaxbChildren(player, result.getMediaFiles(), username));
         }
 
         Response res = createResponse();
@@ -861,11 +843,8 @@ public class SubsonicRESTController {
             return;
         }
         PlaylistWithSongs result = createJaxbPlaylist(new PlaylistWithSongs(), playlist);
-        for (MediaFile mediaFile : playlistService.getFilesInPlaylist(id)) {
-            if (securityService.isFolderAccessAllowed(mediaFile, username)) {
-                result.getEntry().add(createJaxbChild(player, mediaFile, username));
-            }
-        }
+        List<MediaFile> accessibleFiles = securityService.filterFolderAccessAllowed(playlistService.getFilesInPlaylist(id), username);
+        result.getEntry().addAll(createJaxbChildren(player, accessibleFiles, username));
 
         Response res = createResponse();
         res.setPlaylist(result);
@@ -952,9 +931,7 @@ public class SubsonicRESTController {
             result.setPlaying(playing);
             result.setGain(gain);
             result.setPosition(position);
-            for (MediaFile mediaFile : playQueue.getFiles()) {
-                result.getEntry().add(createJaxbChild(player, mediaFile, username));
-            }
+            result.getEntry().addAll(createJaxbChildren(player, playQueue.getFiles(), username));
         } else {
             JukeboxStatus result = new JukeboxStatus();
             res.setJukeboxStatus(result);
@@ -1131,9 +1108,7 @@ public class SubsonicRESTController {
         }
 
         AlbumList result = new AlbumList();
-        for (MediaFile album : albums) {
-            result.getAlbum().add(createJaxbChild(player, album, username));
-        }
+        result.getAlbum().addAll(createJaxbChildren(player, albums, username));
 
         Response res = createResponse();
         res.setAlbumList(result);
@@ -1200,9 +1175,7 @@ public class SubsonicRESTController {
         RandomSearchCriteria criteria = new RandomSearchCriteria(size, genre, fromYear, toYear, musicFolders);
 
         Songs result = new Songs();
-        for (MediaFile mediaFile : searchService.getRandomSongs(criteria)) {
-            result.getSong().add(createJaxbChild(player, mediaFile, username));
-        }
+        result.getSong().addAll(createJaxbChildren(player, searchService.getRandomSongs(criteria), username));
         Response res = createResponse();
         res.setRandomSongs(result);
         jaxbWriter.writeResponse(request, response, res);
@@ -1219,9 +1192,7 @@ public class SubsonicRESTController {
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username);
 
         Videos result = new Videos();
-        for (MediaFile mediaFile : mediaFileService.getVideos(musicFolders, size, offset)) {
-            result.getVideo().add(createJaxbChild(player, mediaFile, username));
-        }
+        result.getVideo().addAll(createJaxbChildren(player, mediaFileService.getVideos(musicFolders, size, offset), username));
         Response res = createResponse();
         res.setVideos(result);
         jaxbWriter.writeResponse(request, response, res);
@@ -1249,11 +1220,25 @@ public class SubsonicRESTController {
         jaxbWriter.writeResponse(request, response, res);
     }
 
+    /**
+     * Creates the children for a list of media files, loading starred dates and ratings for all of them at once.
+     */
+    private List<Child> createJaxbChildren(Player player, List<MediaFile> mediaFiles, String username) {
+        UserAnnotations annotations = mediaFileService.getUserAnnotations(mediaFiles, username);
+        return mediaFiles.stream()
+            .map(mediaFile -> createJaxbChild(new Child(), player, mediaFile, annotations))
+            .collect(Collectors.toList());
+    }
+
     private Child createJaxbChild(Player player, MediaFile mediaFile, String username) {
         return createJaxbChild(new Child(), player, mediaFile, username);
     }
 
     private <T extends Child> T createJaxbChild(T child, Player player, MediaFile mediaFile, String username) {
+        return createJaxbChild(child, player, mediaFile, mediaFileService.getUserAnnotations(Collections.singletonList(mediaFile), username));
+    }
+
+    private <T extends Child> T createJaxbChild(T child, Player player, MediaFile mediaFile, UserAnnotations annotations) {
         MediaFile parent = mediaFileService.getParentOf(mediaFile);
         child.setId(String.valueOf(mediaFile.getId()));
         try {
@@ -1271,9 +1256,9 @@ public class SubsonicRESTController {
         child.setYear(mediaFile.getYear());
         child.setGenre(mediaFile.getGenre());
         child.setCreated(jaxbWriter.convertDate(mediaFile.getCreated()));
-        child.setStarred(jaxbWriter.convertDate(mediaFileService.getMediaFileStarredDate(mediaFile, username)));
-        child.setUserRating(ratingService.getRatingForUser(username, mediaFile));
-        child.setAverageRating(ratingService.getAverageRating(mediaFile));
+        child.setStarred(jaxbWriter.convertDate(annotations.getStarredDate(mediaFile)));
+        child.setUserRating(annotations.getUserRating(mediaFile));
+        child.setAverageRating(annotations.getAverageRating(mediaFile));
         child.setPlayCount((long) mediaFile.getPlayCount());
 
         if (mediaFile.isFile()) {
@@ -1500,15 +1485,9 @@ public class SubsonicRESTController {
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username, musicFolderId);
 
         Starred result = new Starred();
-        for (MediaFile artist : mediaFileService.getStarredArtists(0, Integer.MAX_VALUE, username, musicFolders)) {
-            result.getArtist().add(createJaxbArtist(artist, username));
-        }
-        for (MediaFile album : mediaFileService.getStarredAlbums(0, Integer.MAX_VALUE, username, musicFolders)) {
-            result.getAlbum().add(createJaxbChild(player, album, username));
-        }
-        for (MediaFile song : mediaFileService.getStarredSongs(0, Integer.MAX_VALUE, username, musicFolders)) {
-            result.getSong().add(createJaxbChild(player, song, username));
-        }
+        result.getArtist().addAll(createJaxbArtists(mediaFileService.getStarredArtists(0, Integer.MAX_VALUE, username, musicFolders), username));
+        result.getAlbum().addAll(createJaxbChildren(player, mediaFileService.getStarredAlbums(0, Integer.MAX_VALUE, username, musicFolders), username));
+        result.getSong().addAll(createJaxbChildren(player, mediaFileService.getStarredSongs(0, Integer.MAX_VALUE, username, musicFolders), username));
         Response res = createResponse();
         res.setStarred(result);
         jaxbWriter.writeResponse(request, response, res);
@@ -1529,9 +1508,7 @@ public class SubsonicRESTController {
         for (Album album : albumService.getStarredAlbums(username, musicFolders)) {
             result.getAlbum().add(createJaxbAlbum(new AlbumID3(), album, username));
         }
-        for (MediaFile song : mediaFileService.getStarredSongs(0, Integer.MAX_VALUE, username, musicFolders)) {
-            result.getSong().add(createJaxbChild(player, song, username));
-        }
+        result.getSong().addAll(createJaxbChildren(player, mediaFileService.getStarredSongs(0, Integer.MAX_VALUE, username, musicFolders), username));
         Response res = createResponse();
         res.setStarred2(result);
         jaxbWriter.writeResponse(request, response, res);
@@ -1789,11 +1766,8 @@ public class SubsonicRESTController {
         restPlayQueue.setChanged(jaxbWriter.convertDate(playQueue.getChanged()));
         restPlayQueue.setChangedBy(playQueue.getChangedBy());
 
-        for (MediaFile mediaFile : playQueue.getMediaFiles()) {
-            if (mediaFile != null) {
-                restPlayQueue.getEntry().add(createJaxbChild(player, mediaFile, username));
-            }
-        }
+        List<MediaFile> queuedFiles = playQueue.getMediaFiles().stream().filter(Objects::nonNull).collect(Collectors.toList());
+        restPlayQueue.getEntry().addAll(createJaxbChildren(player, queuedFiles, username));
 
         Response res = createResponse();
         res.setPlayQueue(restPlayQueue);
@@ -1832,9 +1806,7 @@ public class SubsonicRESTController {
             org.subsonic.restapi.Share s = createJaxbShare(request, share);
             result.getShare().add(s);
 
-            for (MediaFile mediaFile : shareService.getSharedFiles(share.getId(), musicFolders)) {
-                s.getEntry().add(createJaxbChild(player, mediaFile, username));
-            }
+            s.getEntry().addAll(createJaxbChildren(player, shareService.getSharedFiles(share.getId(), musicFolders), username));
         }
         Response res = createResponse();
         res.setShares(result);
@@ -1872,9 +1844,7 @@ public class SubsonicRESTController {
 
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username);
 
-        for (MediaFile mediaFile : shareService.getSharedFiles(share.getId(), musicFolders)) {
-            s.getEntry().add(createJaxbChild(player, mediaFile, username));
-        }
+        s.getEntry().addAll(createJaxbChildren(player, shareService.getSharedFiles(share.getId(), musicFolders), username));
 
         Response res = createResponse();
         res.setShares(result);
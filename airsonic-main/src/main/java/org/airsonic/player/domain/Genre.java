@@ -78,10 +78,18 @@ public class Genre {
         albumCount.incrementAndGet();
     }
 
+    public void incrementAlbumCount(int n) {
+        albumCount.addAndGet(n);
+    }
+
     public void incrementSongCount() {
         songCount.incrementAndGet();
     }
 
+    public void incrementSongCount(int n) {
+        songCount.addAndGet(n);
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(name);
@@ -44,25 +44,33 @@ public class Genres {
     // - abc; xyz --> ['abc', ' xyz']
 
     public void incrementAlbumCount(String genreName, String separators) {
+        incrementAlbumCount(genreName, separators, 1);
+    }
+
+    public void incrementAlbumCount(String genreName, String separators, int n) {
         String[] splitGenres = StringUtils.split(genreName, separators);
         if (splitGenres.length > 1) { // otherwise it's the same genre as the original
             Stream.of(splitGenres)
                     .map(StringUtils::trim)
                     .filter(StringUtils::isNotBlank)
-                    .forEach(s -> genres.computeIfAbsent(s, k -> new Genre(k)).incrementAlbumCount());
+                    .forEach(s -> genres.computeIfAbsent(s, k -> new Genre(k)).incrementAlbumCount(n));
         }
-        genres.computeIfAbsent(genreName, k -> new Genre(k)).incrementAlbumCount();
+        genres.computeIfAbsent(genreName, k -> new Genre(k)).incrementAlbumCount(n);
     }
 
     public void incrementSongCount(String genreName, String separators) {
+        incrementSongCount(genreName, separators, 1);
+    }
+
+    public void incrementSongCount(String genreName, String separators, int n) {
         String[] splitGenres = StringUtils.split(genreName, separators);
         if (splitGenres.length > 1) { // otherwise it's the same genre as the original
             Stream.of(splitGenres)
                     .map(StringUtils::trim)
                     .filter(StringUtils::isNotBlank)
-                    .forEach(s -> genres.computeIfAbsent(s, k -> new Genre(k)).incrementSongCount());
+                    .forEach(s -> genres.computeIfAbsent(s, k -> new Genre(k)).incrementSongCount(n));
         }
-        genres.computeIfAbsent(genreName, k -> new Genre(k)).incrementSongCount();
+        genres.computeIfAbsent(genreName, k -> new Genre(k)).incrementSongCount(n);
     }
 
     public List<Genre> getGenres() {
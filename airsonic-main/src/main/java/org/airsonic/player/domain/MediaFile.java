@@ -500,6 +500,10 @@ public class MediaFile {
         return version;
     }
 
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public Double getAverageRating() {
         return averageRating;
     }
@@ -128,6 +128,12 @@ public class MusicIndex implements Serializable {
             collationKey = collator.getCollationKey(sortableName);
         }
 
+        public SortableArtist(String name, String sortableName, CollationKey collationKey) {
+            this.name = name;
+            this.sortableName = sortableName;
+            this.collationKey = collationKey;
+        }
+
         public String getName() {
             return name;
         }
@@ -149,6 +155,10 @@ public class MusicIndex implements Serializable {
             super(name, sortableName, collator);
         }
 
+        public SortableArtistWithMediaFiles(String name, String sortableName, CollationKey collationKey) {
+            super(name, sortableName, collationKey);
+        }
+
         public void addMediaFile(MediaFile mediaFile) {
             mediaFiles.add(mediaFile);
         }
@@ -55,6 +55,12 @@ public class PlayQueue {
     private List<MediaFile> filesBackup = new ArrayList<>();
     private int indexBackup = 0;
 
+    /**
+     * Incremented on every change of the list of files, so that clients can tell whether an update applies to their
+     * copy of the list.
+     */
+    private volatile long version = 0;
+
     /**
      * Returns the user-defined name of the playlist.
      *
@@ -88,6 +94,7 @@ public class PlayQueue {
             // Remove file from playlist if it doesn't exist.
             if (!Files.exists(file.getFullPath())) {
                 files.remove(index);
+                version++;
                 index = Math.max(0, Math.min(index, size() - 1));
                 return getCurrentFile();
             }
@@ -132,6 +139,15 @@ public class PlayQueue {
         }
     }
 
+    /**
+     * Returns the version of the list of files, which changes whenever files are added, removed or reordered.
+     *
+     * @return The version of the list of files.
+     */
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * Returns the number of songs in the playlists.
      *
@@ -179,6 +195,7 @@ public class PlayQueue {
     public synchronized void addFilesAt(Collection<MediaFile> mediaFiles, int index) {
         makeBackup();
         files.addAll(index, mediaFiles);
+        version++;
         setStatus(Status.PLAYING);
     }
 
@@ -195,6 +212,7 @@ public class PlayQueue {
             files.clear();
         }
         files.addAll(mediaFiles);
+        version++;
         setStatus(Status.PLAYING);
     }
 
@@ -209,16 +227,19 @@ public class PlayQueue {
      * Removes the music file at the given index.
      *
      * @param index The playlist index.
+     * @return The index of the removed file, which is the given index brought within the playlist.
      */
-    public synchronized void removeFileAt(int index) {
+    public synchronized int removeFileAt(int index) {
         makeBackup();
         index = Math.max(0, Math.min(index, size() - 1));
         if (this.index > index) {
             this.index--;
         }
         files.remove(index);
+        version++;
 
         this.index = Math.max(0, Math.min(this.index, size() - 1));
+        return index;
     }
 
     /**
@@ -227,6 +248,7 @@ public class PlayQueue {
     public synchronized void clear() {
         makeBackup();
         files.clear();
+        version++;
         setRandomSearchCriteria(null);
         setInternetRadio(null);
         index = 0;
@@ -239,6 +261,7 @@ public class PlayQueue {
         makeBackup();
         MediaFile currentFile = getCurrentFile();
         Collections.shuffle(files);
+        version++;
         if (currentFile != null) {
             Collections.swap(files, files.indexOf(currentFile), 0);
             index = 0;
@@ -280,6 +303,7 @@ public class PlayQueue {
         };
 
         files.sort(comparator);
+        version++;
         if (currentFile != null) {
             index = files.indexOf(currentFile);
         }
@@ -303,6 +327,7 @@ public class PlayQueue {
 
         files.clear();
         files.addAll(Arrays.asList(newFiles));
+        version++;
     }
 
     /**
@@ -325,6 +350,7 @@ public class PlayQueue {
         }
         makeBackup();
         Collections.swap(files, index, index + 1);
+        version++;
 
         if (this.index == index) {
             this.index++;
@@ -376,6 +402,7 @@ public class PlayQueue {
 
         indexBackup = indexTmp;
         filesBackup = filesTmp;
+        version++;
     }
 
     /**
@@ -404,7 +431,11 @@ public class PlayQueue {
      *
      * @param internetRadio An internet radio, or <code>null</code> if this is not an internet radio playlist
      */
-    public void setInternetRadio(InternetRadio internetRadio) {
+    public synchronized void setInternetRadio(InternetRadio internetRadio) {
+        if (this.internetRadio != internetRadio) {
+            // the files are replaced by the sources of the radio, or the other way round
+            version++;
+        }
         this.internetRadio = internetRadio;
     }
 
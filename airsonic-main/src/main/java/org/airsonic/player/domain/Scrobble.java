@@ -0,0 +1,178 @@
+package org.airsonic.player.domain;
+
+import org.airsonic.player.domain.UserCredential.App;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * A play waiting in the outbox to be submitted to an audio scrobbling service.
+ */
+@Entity
+@Table(name = "scrobble_outbox")
+public class Scrobble {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "username", nullable = false)
+    private String username;
+
+    @Column(name = "app", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private App app;
+
+    @Column(name = "artist")
+    private String artist;
+
+    @Column(name = "album")
+    private String album;
+
+    @Column(name = "title")
+    private String title;
+
+    @Column(name = "musicbrainz_release_id")
+    private String musicBrainzReleaseId;
+
+    @Column(name = "musicbrainz_recording_id")
+    private String musicBrainzRecordingId;
+
+    @Column(name = "track_number")
+    private Integer trackNumber;
+
+    @Column(name = "duration")
+    private Integer duration;
+
+    @Column(name = "played", nullable = false)
+    private Instant played;
+
+    @Column(name = "submission", nullable = false)
+    private boolean submission;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt", nullable = false)
+    private Instant nextAttempt;
+
+    @Column(name = "created")
+    private Instant created;
+
+    public Scrobble() {
+    }
+
+    public Scrobble(String username, App app, MediaFile mediaFile, boolean submission, Instant played) {
+        this.username = username;
+        this.app = app;
+        this.artist = mediaFile.getArtist();
+        this.album = mediaFile.getAlbumName();
+        this.title = mediaFile.getTitle();
+        this.musicBrainzReleaseId = mediaFile.getMusicBrainzReleaseId();
+        this.musicBrainzRecordingId = mediaFile.getMusicBrainzRecordingId();
+        this.trackNumber = mediaFile.getTrackNumber();
+        this.duration = mediaFile.getDuration() == null ? 0 : (int) Math.round(mediaFile.getDuration());
+        this.submission = submission;
+        this.played = played;
+        this.created = Instant.now();
+        this.nextAttempt = this.created;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public App getApp() {
+        return app;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getMusicBrainzReleaseId() {
+        return musicBrainzReleaseId;
+    }
+
+    public String getMusicBrainzRecordingId() {
+        return musicBrainzRecordingId;
+    }
+
+    public Integer getTrackNumber() {
+        return trackNumber;
+    }
+
+    public Integer getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return when the media file was played
+     */
+    public Instant getPlayed() {
+        return played;
+    }
+
+    /**
+     * @return whether this is a submission or a now playing notification
+     */
+    public boolean getSubmission() {
+        return submission;
+    }
+
+    /**
+     * @return number of failed submission attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return earliest time of the next submission attempt
+     */
+    public Instant getNextAttempt() {
+        return nextAttempt;
+    }
+
+    public void setNextAttempt(Instant nextAttempt) {
+        this.nextAttempt = nextAttempt;
+    }
+
+    public Instant getCreated() {
+        return created;
+    }
+
+    @Override
+    public String toString() {
+        return "Scrobble{id=" + id + ", username='" + username + "', app=" + app + ", title='" + title + "', played="
+                + played + ", submission=" + submission + '}';
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.domain;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Starred dates and ratings of a set of media files, as seen by a single user.
+ * Loaded in bulk so that building long lists does not cost several queries per entry.
+ */
+public class UserAnnotations {
+
+    public static final UserAnnotations EMPTY = new UserAnnotations(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<Integer, Instant> starredDates;
+    private final Map<Integer, Integer> userRatings;
+    private final Map<Integer, Double> averageRatings;
+
+    public UserAnnotations(Map<Integer, Instant> starredDates, Map<Integer, Integer> userRatings, Map<Integer, Double> averageRatings) {
+        this.starredDates = starredDates;
+        this.userRatings = userRatings;
+        this.averageRatings = averageRatings;
+    }
+
+    public Instant getStarredDate(MediaFile mediaFile) {
+        return starredDates.get(mediaFile.getId());
+    }
+
+    public Integer getUserRating(MediaFile mediaFile) {
+        return userRatings.get(mediaFile.getId());
+    }
+
+    public Double getAverageRating(MediaFile mediaFile) {
+        return averageRatings.get(mediaFile.getId());
+    }
+}
@@ -0,0 +1,63 @@
+package org.airsonic.player.io;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.airsonic.player.domain.TransferStatus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Copies a region of a file to an output stream in chunks, instead of reading it through a chain of wrapping input
+ * streams. The data still goes through a heap buffer, as the output stream is not a channel the file can be sent to
+ * directly; the transfer status and the rate limiter are updated once per chunk rather than on every read.
+ */
+public class FileRegionTransfer {
+
+    /**
+     * Number of bytes transferred between two status and rate limiter updates.
+     */
+    static final int CHUNK_SIZE = 256 * 1024;
+
+    private FileRegionTransfer() {
+    }
+
+    /**
+     * Transfers a region of a file, stopping early if the transfer gets terminated.
+     *
+     * @param file        The file to read.
+     * @param position    Position of the first byte to transfer.
+     * @param count       Number of bytes to transfer.
+     * @param out         The output stream to write to. Not closed by this method.
+     * @param rateLimiter Limits the transfer rate. May be {@code null}.
+     * @param status      Receives the number of bytes transferred.
+     * @return The number of bytes transferred.
+     * @throws IOException If an I/O error occurs, e.g. because the client disconnected.
+     */
+    public static long transfer(Path file, long position, long count, OutputStream out, RateLimiter rateLimiter,
+            TransferStatus status) throws IOException {
+        long transferred = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            while (transferred < count && !status.terminated()) {
+                int chunk = (int) Math.min(CHUNK_SIZE, count - transferred);
+                if (rateLimiter != null) {
+                    rateLimiter.acquire(chunk);
+                }
+                long n = channel.transferTo(position + transferred, chunk, target);
+                if (n <= 0) {
+                    // end of file reached, the file got shorter
+                    break;
+                }
+                transferred += n;
+                status.addBytesTransferred(n);
+            }
+        }
+        out.flush();
+        return transferred;
+    }
+}
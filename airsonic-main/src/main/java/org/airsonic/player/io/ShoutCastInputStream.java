@@ -0,0 +1,217 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2016 (C) Airsonic Authors
+ Based upon Subsonic, Copyright 2009 (C) Sindre Mehus
+ */
+package org.airsonic.player.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Implements SHOUTcast support by decorating an existing input stream, interleaving meta-data while the stream is
+ * read, so that no copying thread is needed.
+ * <p/>
+ * Based on protocol description found on
+ * <em>http://www.smackfu.com/stuff/programming/shoutcast.html</em>
+ *
+ * @author Sindre Mehus
+ */
+public class ShoutCastInputStream extends FilterInputStream {
+
+    /**
+     * Number of bytes between each SHOUTcast metadata block.
+     */
+    public static final int META_DATA_INTERVAL = 20480;
+
+    private static final byte[] NO_META_DATA = new byte[0];
+
+    private static final AtomicInteger OPEN_STREAMS = new AtomicInteger();
+
+    /**
+     * Keeps track of the number of bytes read (excluding meta-data).  Between 0 and {@link #META_DATA_INTERVAL}.
+     */
+    private int byteCount;
+
+    /**
+     * Meta-data block still to be read, starting at {@link #metaDataPosition}.
+     */
+    private byte[] metaData = NO_META_DATA;
+
+    private int metaDataPosition;
+
+    /**
+     * The last stream title sent.
+     */
+    private String previousStreamTitle;
+
+    private final Supplier<String> titleSupplier;
+
+    private boolean closed;
+
+    /**
+     * Creates a new SHOUTcast-decorated stream for the given input stream.
+     *
+     * @param in            The input stream to decorate.
+     * @param titleSupplier Meta-data title is fetched from this supplier.
+     */
+    public ShoutCastInputStream(InputStream in, Supplier<String> titleSupplier) {
+        super(in);
+        this.titleSupplier = titleSupplier;
+        OPEN_STREAMS.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of SHOUTcast streams currently open.
+     *
+     * @return number of open streams
+     */
+    public static int getOpenStreams() {
+        return OPEN_STREAMS.get();
+    }
+
+    /**
+     * Reads from the underlying stream, adding SHOUTcast meta-data as necessary.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        // Finish the pending meta-data block first
+        if (metaDataPosition < metaData.length) {
+            int n = Math.min(len, metaData.length - metaDataPosition);
+            System.arraycopy(metaData, metaDataPosition, b, off, n);
+            metaDataPosition += n;
+            return n;
+        }
+
+        // 'n' is the number of bytes to read before the next meta-data block.
+        int n = Math.min(len, META_DATA_INTERVAL - byteCount);
+        int read = in.read(b, off, n);
+        if (read > 0) {
+            byteCount += read;
+
+            // Reached meta-data block?
+            if (byteCount == META_DATA_INTERVAL) {
+                metaData = createMetaData();
+                metaDataPosition = 0;
+                byteCount = 0;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Reads a byte from the underlying stream, adding SHOUTcast meta-data as necessary.
+     */
+    @Override
+    public int read() throws IOException {
+        byte[] buf = new byte[1];
+        int read;
+        do {
+            read = read(buf, 0, 1);
+        } while (read == 0);
+        return read == -1 ? -1 : buf[0] & 0xff;
+    }
+
+    /**
+     * Skips by reading, so that meta-data is counted like any other byte.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buf = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return metaData.length - metaDataPosition;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            OPEN_STREAMS.decrementAndGet();
+        }
+        super.close();
+    }
+
+    private byte[] createMetaData() {
+        String streamTitle = titleSupplier.get();
+
+        byte[] bytes;
+
+        if (streamTitle.equals(previousStreamTitle)) {
+            bytes = new byte[0];
+        } else {
+            previousStreamTitle = streamTitle;
+            bytes = createStreamTitle(streamTitle);
+        }
+
+        // Length in groups of 16 bytes.
+        int length = bytes.length / 16;
+        if (bytes.length % 16 > 0) {
+            length++;
+        }
+
+        // The length as a single byte, followed by the message and padding zero bytes.
+        byte[] block = new byte[1 + length * 16];
+        block[0] = (byte) length;
+        System.arraycopy(bytes, 0, block, 1, bytes.length);
+        return block;
+    }
+
+    /**
+     * creates a stream title for the given title data.
+     *
+     * @param title title data
+     * @return stream title.
+     */
+    private byte[] createStreamTitle(String title) {
+        // Remove any quotes from the title.
+        title = title.replaceAll("'", "");
+
+        title = "StreamTitle='" + title + "';";
+
+        // Original icy specification needs ascii encode,
+        // but external player (Winamp/AIMP/foobar etc) support UTF-8 encoded value.
+        return title.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -29,6 +29,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -49,14 +51,15 @@ public class TranscodeInputStream extends InputStream {
 
     /**
      * Creates a transcoded input stream by executing an external process. If <code>in</code> is not null,
-     * data from it is copied to the command.
+     * data from it is copied to the command by a thread of <code>copyExecutor</code>.
      *
      * @param processBuilder Used to create the external process.
      * @param in Data to feed to the process.  May be {@code null}.
      * @param tmpFile Temporary file to delete when this stream is closed.  May be {@code null}.
-     * @throws IOException If an I/O error occurs.
+     * @param copyExecutor Runs the copy of <code>in</code> to the process.
+     * @throws IOException If an I/O error occurs, or if the copy executor refuses the copy.
      */
-    public TranscodeInputStream(ProcessBuilder processBuilder, final InputStream in, Path tmpFile) throws IOException {
+    public TranscodeInputStream(ProcessBuilder processBuilder, final InputStream in, Path tmpFile, Executor copyExecutor) throws IOException {
         this.tmpFile = tmpFile;
         LOG.info("Starting transcoder: {}", processBuilder.command().stream().collect(Collectors.joining("][", "[", "]")));
 
@@ -70,9 +73,8 @@ public class TranscodeInputStream extends InputStream {
 
         // Copy data in a separate thread
         if (in != null) {
-            new Thread(name + " TranscodedInputStream copy thread") {
-                @Override
-                public void run() {
+            try {
+                copyExecutor.execute(() -> {
                     try {
                         IOUtils.copy(in, processOutputStream);
                     } catch (IOException x) {
@@ -81,8 +83,12 @@ public class TranscodeInputStream extends InputStream {
                         FileUtil.closeQuietly(in);
                         FileUtil.closeQuietly(processOutputStream);
                     }
-                }
-            }.start();
+                });
+            } catch (RejectedExecutionException e) {
+                FileUtil.closeQuietly(in);
+                close();
+                throw new IOException("No thread available to feed transcoder " + name, e);
+            }
         }
     }
 
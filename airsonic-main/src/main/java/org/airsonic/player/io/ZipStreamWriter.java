@@ -0,0 +1,395 @@
+package org.airsonic.player.io;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.airsonic.player.domain.TransferStatus;
+import org.airsonic.player.util.FileUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Writes an uncompressed zip archive to an output stream, reading every zipped file only once.
+ * <p>
+ * The sizes of the files are known beforehand, only their CRC is not: it is computed while a file is copied and
+ * written after its data in a data descriptor. The length of the archive can thus be computed with {@link #size}
+ * before anything is written. ZIP64 records are used for the sizes, offsets and entry counts that do not fit the
+ * classic format.
+ * <p>
+ * Stored entries with a data descriptor are read by {@link java.util.zip.ZipFile} and the usual zip tools, which rely
+ * on the central directory, but are rejected by streaming readers like {@link java.util.zip.ZipInputStream}.
+ */
+public class ZipStreamWriter {
+
+    /**
+     * Number of bytes read from a file at once.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int ZIP64_END_LENGTH = 56;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int END_LENGTH = 22;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    private static final int FLAG_UTF8 = 0x800;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int DOS_DIRECTORY_ATTRIBUTE = 0x10;
+
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private final OutputStream out;
+
+    private final RateLimiter rateLimiter;
+
+    private final TransferStatus status;
+
+    private final List<CentralEntry> centralEntries = new ArrayList<>();
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private long written;
+
+    /**
+     * @param out         The output stream to write to. Not closed by this writer.
+     * @param rateLimiter Limits the transfer rate. May be {@code null}.
+     * @param status      Receives the number of bytes written and the file being zipped.
+     */
+    public ZipStreamWriter(OutputStream out, RateLimiter rateLimiter, TransferStatus status) {
+        this.out = out;
+        this.rateLimiter = rateLimiter;
+        this.status = status;
+    }
+
+    /**
+     * Returns the exact length of the archive of the given entries.
+     *
+     * @param entries The entries, in the order they will be written.
+     * @return The length of the archive in bytes.
+     */
+    public static long size(Collection<Entry> entries) {
+        long offset = 0;
+        long centralSize = 0;
+        for (Entry entry : entries) {
+            centralSize += centralHeaderLength(entry, offset);
+            offset += localHeaderLength(entry) + entry.size + dataDescriptorLength(entry);
+        }
+        return offset + centralSize + endLength(entries.size(), offset, centralSize);
+    }
+
+    /**
+     * Writes an entry: a directory, or a file with its content.
+     *
+     * @param entry The entry.
+     * @throws IOException If an I/O error occurs, if the file got shorter or if the transfer got terminated.
+     */
+    public void write(Entry entry) throws IOException {
+        status.setExternalFile(entry.file);
+        long offset = written;
+        long time = dosTime(FileUtil.lastModified(entry.file));
+        write(localHeader(entry, time));
+        long crc = 0;
+        if (!entry.isDirectory()) {
+            crc = copy(entry);
+            write(dataDescriptor(entry, crc));
+        }
+        centralEntries.add(new CentralEntry(entry, offset, time, crc));
+    }
+
+    /**
+     * Writes the central directory, which ends the archive.
+     *
+     * @throws IOException If an I/O error occurs or if the transfer got terminated.
+     */
+    public void finish() throws IOException {
+        long centralOffset = written;
+        for (CentralEntry e : centralEntries) {
+            write(centralHeader(e));
+        }
+        long centralSize = written - centralOffset;
+        if (endLength(centralEntries.size(), centralOffset, centralSize) > END_LENGTH) {
+            long zip64EndOffset = written;
+            write(zip64End(centralEntries.size(), centralOffset, centralSize));
+            write(zip64Locator(zip64EndOffset));
+        }
+        write(end(centralEntries.size(), centralOffset, centralSize));
+        out.flush();
+    }
+
+    /**
+     * @return The number of bytes written so far.
+     */
+    public long getBytesWritten() {
+        return written;
+    }
+
+    private long copy(Entry entry) throws IOException {
+        CRC32 crc = new CRC32();
+        long copied = 0;
+        try (FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.wrap(buffer);
+            while (copied < entry.size) {
+                buf.clear().limit((int) Math.min(buffer.length, entry.size - copied));
+                int n = channel.read(buf);
+                if (n < 0) {
+                    // the announced length can not be honoured anymore
+                    throw new IOException("File " + entry.file + " got shorter while being zipped");
+                }
+                crc.update(buffer, 0, n);
+                write(buffer, 0, n);
+                copied += n;
+            }
+        }
+        return crc.getValue();
+    }
+
+    private void write(ByteBuffer record) throws IOException {
+        write(record.array(), 0, record.position());
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        if (status.terminated()) {
+            throw new IOException("Transfer terminated");
+        }
+        if (rateLimiter != null) {
+            rateLimiter.acquire(len);
+        }
+        out.write(b, off, len);
+        written += len;
+        status.addBytesTransferred(len);
+    }
+
+    private static ByteBuffer localHeader(Entry entry, long time) {
+        boolean zip64 = isZip64(entry);
+        ByteBuffer b = record(localHeaderLength(entry));
+        b.putInt(LOCAL_HEADER_SIGNATURE);
+        b.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+        b.putShort((short) flags(entry));
+        b.putShort((short) 0); // stored
+        b.putInt((int) time);
+        b.putInt(0); // in the data descriptor
+        b.putInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+        b.putInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+        b.putShort((short) entry.name.length);
+        b.putShort((short) (zip64 ? 20 : 0));
+        b.put(entry.name);
+        if (zip64) {
+            b.putShort((short) ZIP64_EXTRA_ID);
+            b.putShort((short) 16);
+            b.putLong(entry.size);
+            b.putLong(entry.size);
+        }
+        return b;
+    }
+
+    private static ByteBuffer dataDescriptor(Entry entry, long crc) {
+        ByteBuffer b = record(dataDescriptorLength(entry));
+        b.putInt(DATA_DESCRIPTOR_SIGNATURE);
+        b.putInt((int) crc);
+        if (isZip64(entry)) {
+            b.putLong(entry.size);
+            b.putLong(entry.size);
+        } else {
+            b.putInt((int) entry.size);
+            b.putInt((int) entry.size);
+        }
+        return b;
+    }
+
+    private static ByteBuffer centralHeader(CentralEntry e) {
+        Entry entry = e.entry;
+        boolean zip64Size = isZip64(entry);
+        boolean zip64Offset = e.offset >= ZIP64_MAGIC;
+        int extraLength = zip64ExtraLength(entry, e.offset);
+        int version = extraLength > 0 ? VERSION_ZIP64 : VERSION;
+        ByteBuffer b = record(centralHeaderLength(entry, e.offset));
+        b.putInt(CENTRAL_HEADER_SIGNATURE);
+        b.putShort((short) version);
+        b.putShort((short) version);
+        b.putShort((short) flags(entry));
+        b.putShort((short) 0); // stored
+        b.putInt((int) e.time);
+        b.putInt((int) e.crc);
+        b.putInt((int) (zip64Size ? ZIP64_MAGIC : entry.size));
+        b.putInt((int) (zip64Size ? ZIP64_MAGIC : entry.size));
+        b.putShort((short) entry.name.length);
+        b.putShort((short) extraLength);
+        b.putShort((short) 0); // comment length
+        b.putShort((short) 0); // disk number
+        b.putShort((short) 0); // internal attributes
+        b.putInt(entry.isDirectory() ? DOS_DIRECTORY_ATTRIBUTE : 0);
+        b.putInt((int) (zip64Offset ? ZIP64_MAGIC : e.offset));
+        b.put(entry.name);
+        if (extraLength > 0) {
+            b.putShort((short) ZIP64_EXTRA_ID);
+            b.putShort((short) (extraLength - 4));
+            if (zip64Size) {
+                b.putLong(entry.size);
+                b.putLong(entry.size);
+            }
+            if (zip64Offset) {
+                b.putLong(e.offset);
+            }
+        }
+        return b;
+    }
+
+    private static ByteBuffer zip64End(int count, long centralOffset, long centralSize) {
+        ByteBuffer b = record(ZIP64_END_LENGTH);
+        b.putInt(ZIP64_END_SIGNATURE);
+        b.putLong(ZIP64_END_LENGTH - 12);
+        b.putShort((short) VERSION_ZIP64);
+        b.putShort((short) VERSION_ZIP64);
+        b.putInt(0); // disk number
+        b.putInt(0); // disk of the central directory
+        b.putLong(count);
+        b.putLong(count);
+        b.putLong(centralSize);
+        b.putLong(centralOffset);
+        return b;
+    }
+
+    private static ByteBuffer zip64Locator(long zip64EndOffset) {
+        ByteBuffer b = record(ZIP64_LOCATOR_LENGTH);
+        b.putInt(ZIP64_LOCATOR_SIGNATURE);
+        b.putInt(0); // disk of the ZIP64 end record
+        b.putLong(zip64EndOffset);
+        b.putInt(1); // number of disks
+        return b;
+    }
+
+    private static ByteBuffer end(int count, long centralOffset, long centralSize) {
+        ByteBuffer b = record(END_LENGTH);
+        b.putInt(END_SIGNATURE);
+        b.putShort((short) 0); // disk number
+        b.putShort((short) 0); // disk of the central directory
+        b.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        b.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        b.putInt((int) Math.min(centralSize, ZIP64_MAGIC));
+        b.putInt((int) Math.min(centralOffset, ZIP64_MAGIC));
+        b.putShort((short) 0); // comment length
+        return b;
+    }
+
+    private static ByteBuffer record(int length) {
+        return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int flags(Entry entry) {
+        return entry.isDirectory() ? FLAG_UTF8 : FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+    }
+
+    private static boolean isZip64(Entry entry) {
+        return entry.size >= ZIP64_MAGIC;
+    }
+
+    private static int localHeaderLength(Entry entry) {
+        return LOCAL_HEADER_LENGTH + entry.name.length + (isZip64(entry) ? 20 : 0);
+    }
+
+    private static int dataDescriptorLength(Entry entry) {
+        if (entry.isDirectory()) {
+            return 0;
+        }
+        return isZip64(entry) ? 24 : 16;
+    }
+
+    private static int zip64ExtraLength(Entry entry, long offset) {
+        int fields = (isZip64(entry) ? 2 : 0) + (offset >= ZIP64_MAGIC ? 1 : 0);
+        return fields == 0 ? 0 : 4 + 8 * fields;
+    }
+
+    private static int centralHeaderLength(Entry entry, long offset) {
+        return CENTRAL_HEADER_LENGTH + entry.name.length + zip64ExtraLength(entry, offset);
+    }
+
+    private static int endLength(int count, long centralOffset, long centralSize) {
+        boolean zip64 = count >= ZIP64_MAGIC_COUNT || centralOffset >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC;
+        return zip64 ? ZIP64_END_LENGTH + ZIP64_LOCATOR_LENGTH + END_LENGTH : END_LENGTH;
+    }
+
+    /**
+     * Converts an instant to an MS-DOS date and time, in the local time zone like other zip tools do.
+     */
+    static long dosTime(Instant instant) {
+        LocalDateTime t = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+        if (t.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        if (t.getYear() > 2107) {
+            t = LocalDateTime.of(2107, 12, 31, 23, 59, 58);
+        }
+        return ((long) (t.getYear() - 1980) << 25 | t.getMonthValue() << 21 | t.getDayOfMonth() << 16
+                | t.getHour() << 11 | t.getMinute() << 5 | t.getSecond() >> 1) & ZIP64_MAGIC;
+    }
+
+    /**
+     * A file or directory to zip.
+     */
+    public static class Entry {
+        private final Path file;
+        private final byte[] name;
+        private final long size;
+
+        /**
+         * @param file The file or directory.
+         * @param name The name in the archive, ending with a slash for a directory.
+         * @param size The length of the file, 0 for a directory.
+         */
+        public Entry(Path file, String name, long size) {
+            this.file = file;
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.size = size;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDirectory() {
+            return name.length > 0 && name[name.length - 1] == '/';
+        }
+    }
+
+    private static class CentralEntry {
+        private final Entry entry;
+        private final long offset;
+        private final long time;
+        private final long crc;
+
+        CentralEntry(Entry entry, long offset, long time, long crc) {
+            this.entry = entry;
+            this.offset = offset;
+            this.time = time;
+            this.crc = crc;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.airsonic.player.monitor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import javax.cache.CacheManager;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Publishes the hit, miss and eviction statistics of every cache through {@link MetricsManager}.
+ * <p>
+ * The statistics are read from the JSR-107 statistics MBean of each cache, which exists once statistics are enabled
+ * on the cache.
+ */
+@Component
+public class CacheMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheMetrics.class);
+
+    private static final String[] STATISTICS = {"CacheHits", "CacheMisses", "CacheHitPercentage", "CacheEvictions"};
+
+    private final CacheManager cacheManager;
+
+    private final MetricsManager metricsManager;
+
+    public CacheMetrics(CacheManager cacheManager, MetricsManager metricsManager) {
+        this.cacheManager = cacheManager;
+        this.metricsManager = metricsManager;
+    }
+
+    @PostConstruct
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (String cacheName : cacheManager.getCacheNames()) {
+            cacheManager.enableStatistics(cacheName, true);
+            for (String statistic : STATISTICS) {
+                metricsManager.gauge(CacheMetrics.class, cacheName + "." + statistic,
+                    () -> getStatistic(server, cacheName, statistic));
+            }
+        }
+    }
+
+    private static Object getStatistic(MBeanServer server, String cacheName, String statistic) {
+        try {
+            ObjectName pattern = new ObjectName("javax.cache:type=CacheStatistics,Cache=" + cacheName + ",*");
+            for (ObjectName name : server.queryNames(pattern, null)) {
+                return server.getAttribute(name, statistic);
+            }
+        } catch (JMException e) {
+            LOG.debug("Could not read statistic {} of cache {}", statistic, cacheName, e);
+        }
+        return null;
+    }
+}
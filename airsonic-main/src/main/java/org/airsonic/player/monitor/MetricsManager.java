@@ -1,5 +1,6 @@
 package org.airsonic.player.monitor;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.jmx.JmxReporter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +8,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Created by remi on 17/01/17.
@@ -72,6 +74,18 @@ public class MetricsManager {
         return timer(ref.getClass(),name);
     }
 
+    /**
+     * Registers a gauge whose name is based on a class name and a qualified
+     * name, replacing any gauge registered under the same name.
+     */
+    public <T> void gauge(Class<?> clazz, String name, Supplier<T> value) {
+        if (metricsActivatedByConfiguration()) {
+            String gaugeName = MetricRegistry.name(clazz, name);
+            metrics.remove(gaugeName);
+            metrics.register(gaugeName, (Gauge<T>) value::get);
+        }
+    }
+
     /**
      * Initiate a {@link TimerBuilder} using a condition.
      * If the condition is false, a void {@link Timer} will finally be built thus
@@ -43,6 +43,8 @@ public interface AlbumRepository extends JpaRepository<Album, Integer> {
 
     public List<Album> findByPresentFalse();
 
+    public List<Album> findByIdGreaterThanAndPresentTrue(Integer id, Pageable pageable);
+
     public Optional<Album> findByIdAndStarredAlbumsUsername(Integer id, String username);
 
     public boolean existsByLastScannedBeforeAndPresentTrue(Instant lastScanned);
@@ -55,4 +57,9 @@ public interface AlbumRepository extends JpaRepository<Album, Integer> {
     @Query("UPDATE Album a SET a.present = false WHERE a.lastScanned < :lastScanned")
     public void markNonPresent(@Param("lastScanned") Instant lastScanned);
 
+    @Transactional
+    @Modifying
+    @Query("UPDATE Album a SET a.present = false WHERE a.folder = :folder AND a.path IN :paths AND a.lastScanned < :lastScanned")
+    public int markNonPresent(@Param("folder") MusicFolder folder, @Param("paths") Iterable<String> paths, @Param("lastScanned") Instant lastScanned);
+
 }
\ No newline at end of file
@@ -30,6 +30,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,6 +41,12 @@ public interface ArtistRepository extends JpaRepository<Artist, Integer> {
 
     public Optional<Artist> findByNameAndFolderIn(String name, Iterable<MusicFolder> folders);
 
+    public List<Artist> findByNameInAndFolderIn(Collection<String> names, Iterable<MusicFolder> folders);
+
+    public List<Artist> findByNameIn(Collection<String> names);
+
+    public List<Artist> findByPresentTrue();
+
     public List<Artist> findByFolderInAndPresentTrue(Iterable<MusicFolder> folders, Sort sort);
 
     public List<Artist> findByFolderInAndPresentTrue(Iterable<MusicFolder> musicFolders,
@@ -47,8 +54,12 @@ public interface ArtistRepository extends JpaRepository<Artist, Integer> {
 
     public List<Artist> findByPresentFalse();
 
+    public List<Artist> findByIdGreaterThanAndPresentTrue(Integer id, Pageable pageable);
+
     public boolean existsByName(String name);
 
+    public int countByFolderInAndPresentTrue(Iterable<MusicFolder> folders);
+
     public boolean existsByLastScannedBeforeAndPresentTrue(Instant lastScanned);
 
     @Transactional
@@ -59,4 +70,10 @@ public interface ArtistRepository extends JpaRepository<Artist, Integer> {
     @Query("UPDATE Artist a SET a.present = false WHERE a.lastScanned < :lastScanned")
     public void markNonPresent(@Param("lastScanned") Instant lastScanned);
 
+    @Transactional
+    @Modifying
+    @Query("UPDATE Artist ar SET ar.present = false WHERE ar.present = true AND ar.lastScanned < :lastScanned "
+            + "AND NOT EXISTS (SELECT a.id FROM Album a WHERE a.artist = ar.name AND a.present = true)")
+    public void markNonPresentWithoutAlbums(@Param("lastScanned") Instant lastScanned);
+
 }
@@ -1,9 +1,15 @@
 package org.airsonic.player.repository;
 
 import org.airsonic.player.domain.Genre;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface GenreRepository extends JpaRepository<Genre, String> {
+
+    public List<Genre> findAllBy(Pageable pageable);
+
 }
@@ -32,6 +32,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -65,6 +66,8 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Integer> {
 
     public List<MediaFile> findByFolderInAndMediaTypeAndPresentTrue(List<MusicFolder> folders, MediaType mediaType, Pageable page);
 
+    public List<MediaFile> findByIdGreaterThanAndPresentTrue(Integer id, Pageable pageable);
+
     public List<MediaFile> findByFolderInAndMediaTypeAndGenreAndPresentTrue(List<MusicFolder> folders, MediaType mediaType, String genre, Pageable page);
 
     public List<MediaFile> findByFolderInAndMediaTypeInAndGenreAndPresentTrue(List<MusicFolder> folders, Iterable<MediaType> mediaType, String genre, Pageable page);
@@ -82,6 +85,8 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Integer> {
 
     public List<MediaFile> findByFolderInAndMediaTypeAndArtistAndTitleAndPresentTrue(List<MusicFolder> folders, MediaType mediaType, String artist, String title);
 
+    public List<MediaFile> findByFolderInAndMediaTypeAndArtistInAndPresentTrue(List<MusicFolder> folders, MediaType mediaType, Collection<String> artists);
+
     public List<MediaFile> findByAlbumArtistAndAlbumNameAndMediaTypeInAndPresentTrue(String albumArtist, String albumName,
             List<MediaType> mediaTypes, Sort sort);
 
@@ -94,6 +99,8 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Integer> {
 
     public int countByFolderInAndMediaTypeAndPlayCountGreaterThanAndPresentTrue(List<MusicFolder> folders, MediaType mediaType, Integer playCount);
 
+    public int countByFolderInAndMediaTypeInAndGenreAndPresentTrue(List<MusicFolder> folders, Iterable<MediaType> mediaType, String genre);
+
     public List<MediaFile> findAll(Specification<MediaFile> spec, Pageable page);
 
     @Transactional
@@ -104,12 +111,37 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Integer> {
 
     @Modifying
     @Transactional
-    @Query("UPDATE MediaFile m SET m.present = true, m.lastScanned = :lastScanned WHERE m.folder = :folder AND m.path IN :paths")
-    public int markPresent(@Param("folder") MusicFolder folder, @Param("paths") Iterable<String> paths, @Param("lastScanned") Instant lastScanned);
+    @Query("UPDATE MediaFile m SET m.present = true, m.lastScanned = :lastScanned WHERE m.id IN :ids")
+    public int markPresent(@Param("ids") Iterable<Integer> ids, @Param("lastScanned") Instant lastScanned);
 
     @Modifying
     @Transactional
     @Query("UPDATE MediaFile m SET m.present = false, m.childrenLastUpdated = :childrenLastUpdated WHERE m.lastScanned < :lastScanned")
     public void markNonPresent(@Param("childrenLastUpdated") Instant childrenLastUpdated, @Param("lastScanned") Instant lastScanned);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaFile m SET m.present = false, m.childrenLastUpdated = :childrenLastUpdated WHERE m.folder = :folder AND (m.path IN :paths OR m.parentPath IN :paths)")
+    public int markNonPresent(@Param("folder") MusicFolder folder, @Param("paths") Iterable<String> paths, @Param("childrenLastUpdated") Instant childrenLastUpdated);
+
+    @Query("SELECT COUNT(m), SUM(CASE WHEN m.startPosition < 0 THEN m.duration ELSE 0.0 END), SUM(CASE WHEN m.startPosition < 0 THEN m.fileSize ELSE 0L END) "
+            + "FROM MediaFile m WHERE m.folder IN :folders AND m.mediaType NOT IN :excludedTypes AND m.present = true")
+    public List<Object[]> getStatisticsByFolderIn(@Param("folders") Iterable<MusicFolder> folders, @Param("excludedTypes") Iterable<MediaType> excludedTypes);
+
+    @Query("SELECT m.genre, m.mediaType, COUNT(m) FROM MediaFile m WHERE m.folder IN :folders AND m.genre IS NOT NULL AND m.present = true GROUP BY m.genre, m.mediaType")
+    public List<Object[]> countGenresByFolderIn(@Param("folders") Iterable<MusicFolder> folders);
+
+    @Query("SELECT m.id, m.folder.id, m.artist, m.title FROM MediaFile m WHERE m.mediaType = :mediaType AND m.artist IS NOT NULL AND m.present = true")
+    public List<Object[]> findArtistsAndTitlesByMediaType(@Param("mediaType") MediaType mediaType);
+
+    @Query("SELECT m.id, m.folder.id, m.year, m.genre, m.format FROM MediaFile m WHERE m.mediaType = :mediaType AND m.indexPath IS NULL AND m.present = true")
+    public List<Object[]> findRandomSelectionAttributesByMediaType(@Param("mediaType") MediaType mediaType);
+
+    @Query(value = "SELECT m.* FROM playlist_file pf JOIN media_file m ON m.id = pf.media_file_id "
+            + "WHERE pf.playlist_id = :playlistId AND m.present = true ORDER BY pf.id", nativeQuery = true)
+    public List<MediaFile> findByPlaylistIdAndPresentTrue(@Param("playlistId") Integer playlistId, Pageable page);
+
+    @Query("SELECT COUNT(m) FROM Playlist p JOIN p.mediaFiles m WHERE p.id = :playlistId AND m.present = true")
+    public int countByPlaylistIdAndPresentTrue(@Param("playlistId") Integer playlistId);
+
 }
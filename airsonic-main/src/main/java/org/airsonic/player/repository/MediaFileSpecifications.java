@@ -10,11 +10,15 @@ import org.springframework.data.jpa.domain.Specification;
 import jakarta.persistence.criteria.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class MediaFileSpecifications {
 
-    public static Specification<MediaFile> matchCriteria(RandomSearchCriteria criteria, String username, String databaseType) {
+    /**
+     * Matches the songs meeting the given criteria, in no particular order.
+     */
+    public static Specification<MediaFile> matchCriteria(RandomSearchCriteria criteria, String username) {
         return (Root<MediaFile> root, CriteriaQuery<?> query, CriteriaBuilder cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
@@ -112,6 +116,19 @@ public class MediaFileSpecifications {
                     predicates.add(cb.lessThanOrEqualTo(root.get("playCount"), criteria.getMaxPlayCount()));
                 }
             }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Matches the songs meeting the given criteria, in random order. Sorting by a random value reads every matching
+     * song, so prefer {@link #matchCriteria(RandomSearchCriteria, String)} with {@link #idIn(Collection)} on large
+     * libraries.
+     */
+    public static Specification<MediaFile> matchCriteria(RandomSearchCriteria criteria, String username, String databaseType) {
+        Specification<MediaFile> matchCriteria = matchCriteria(criteria, username);
+        return (Root<MediaFile> root, CriteriaQuery<?> query, CriteriaBuilder cb) -> {
+            Predicate predicate = matchCriteria.toPredicate(root, query, cb);
             String randomFunctionName;
             switch (databaseType.toLowerCase()) {
                 case "postgresql":
@@ -126,7 +143,16 @@ public class MediaFileSpecifications {
             }
             Expression<Double> randomFunction = cb.function(randomFunctionName, Double.class);
             query.orderBy(cb.asc(randomFunction));
-            return cb.and(predicates.toArray(new Predicate[0]));
+            return predicate;
         };
     }
+
+    /**
+     * Matches the media files with the given IDs.
+     */
+    public static Specification<MediaFile> idIn(Collection<Integer> ids) {
+        return (Root<MediaFile> root, CriteriaQuery<?> query, CriteriaBuilder cb) -> ids.isEmpty()
+                ? cb.disjunction()
+                : root.get("id").in(ids);
+    }
 }
@@ -20,6 +20,9 @@ package org.airsonic.player.repository;
 
 import org.airsonic.player.domain.Player;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -40,4 +43,10 @@ public interface PlayerRepository extends JpaRepository<Player, Integer> {
 
     @Transactional
     public void deleteAllByNameIsNullAndClientIdIsNullAndLastSeenBefore(Instant lastSeen);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Player p SET p.username = :username, p.ipAddress = :ipAddress, p.type = :type, p.lastSeen = :lastSeen WHERE p.id = :id")
+    public int updateSeen(@Param("id") Integer id, @Param("username") String username, @Param("ipAddress") String ipAddress,
+            @Param("type") String type, @Param("lastSeen") Instant lastSeen);
 }
\ No newline at end of file
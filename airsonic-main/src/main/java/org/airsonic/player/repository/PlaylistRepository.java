@@ -1,6 +1,7 @@
 package org.airsonic.player.repository;
 
 import org.airsonic.player.domain.Playlist;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,6 +11,8 @@ import java.util.Optional;
 @Repository
 public interface PlaylistRepository extends JpaRepository<Playlist, Integer> {
 
+    public List<Playlist> findAllBy(Pageable pageable);
+
     public List<Playlist> findByUsername(String username);
 
     public List<Playlist> findByUsernameOrderByNameAsc(String username);
@@ -0,0 +1,16 @@
+package org.airsonic.player.repository;
+
+import org.airsonic.player.domain.Scrobble;
+import org.airsonic.player.domain.UserCredential.App;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface ScrobbleRepository extends JpaRepository<Scrobble, Integer> {
+
+    public List<Scrobble> findFirst500ByAppAndNextAttemptLessThanEqualOrderByIdAsc(App app, Instant now);
+
+    public Optional<Scrobble> findFirstByOrderByIdAsc();
+}
@@ -26,6 +26,8 @@ import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.domain.entity.StarredMediaFile;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -42,6 +44,15 @@ public interface StarredMediaFileRepository extends JpaRepository<StarredMediaFi
 
     public List<StarredMediaFile> findByUsername(String username);
 
+    /**
+     * @return rows of [media file id (Integer), starred date (Instant)]
+     */
+    @Query("SELECT s.mediaFile.id, s.created FROM StarredMediaFile s WHERE s.username = :username AND s.mediaFile.id IN :mediaFileIds")
+    public List<Object[]> findStarredDatesByUsernameAndMediaFileIdIn(@Param("username") String username, @Param("mediaFileIds") Iterable<Integer> mediaFileIds);
+
+    @Query("SELECT s.mediaFile.id FROM StarredMediaFile s WHERE s.username = :username")
+    public List<Integer> findMediaFileIdsByUsername(@Param("username") String username);
+
     public List<StarredMediaFile> findByUsernameAndMediaFileMediaTypeAndMediaFileFolderInAndMediaFilePresentTrue(
             String username, MediaType mediaType, Iterable<MusicFolder> folders, Pageable page);
 
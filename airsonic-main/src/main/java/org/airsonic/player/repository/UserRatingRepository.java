@@ -39,9 +39,17 @@ public interface UserRatingRepository extends JpaRepository<UserRating, UserRati
 
     public List<UserRating> findByUsernameAndRatingBetween(String username, Integer fromRating, Integer toRating);
 
+    public List<UserRating> findByUsernameAndMediaFileIdIn(String username, Iterable<Integer> mediaFileIds);
+
     @Query("SELECT AVG(u.rating) FROM UserRating u WHERE u.mediaFileId = :mediaFileId")
     public Double getAverageRatingByMediaFileId(@Param("mediaFileId") int mediaFileId);
 
+    /**
+     * @return rows of [media file id (Integer), average rating (Double)]
+     */
+    @Query("SELECT u.mediaFileId, AVG(u.rating) FROM UserRating u WHERE u.mediaFileId IN :mediaFileIds GROUP BY u.mediaFileId")
+    public List<Object[]> getAverageRatingsByMediaFileIdIn(@Param("mediaFileIds") Iterable<Integer> mediaFileIds);
+
     @Transactional
     public void deleteByUsernameAndMediaFileId(String username, int mediaFileId);
 
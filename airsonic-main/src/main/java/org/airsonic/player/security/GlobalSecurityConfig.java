@@ -106,6 +106,9 @@ public class GlobalSecurityConfig {
     @Autowired
     SettingsService settingsService;
 
+    @Autowired
+    private JWTSecurityService jwtSecurityService;
+
     @Lazy
     @Autowired
     MultipleCredsMatchingAuthenticationProvider multipleCredsProvider;
@@ -201,7 +204,7 @@ public class GlobalSecurityConfig {
             settingsService.setJWTKey(jwtKey);
             settingsService.save();
         }
-        JWTAuthenticationProvider jwtAuth = new JWTAuthenticationProvider(jwtKey);
+        JWTAuthenticationProvider jwtAuth = new JWTAuthenticationProvider(jwtSecurityService);
         jwtAuth.addAdditionalCheck("/ws/Sonos", sonosJwtVerification);
         auth.authenticationProvider(jwtAuth);
         auth.authenticationProvider(multipleCredsProvider);
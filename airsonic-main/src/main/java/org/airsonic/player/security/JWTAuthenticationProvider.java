@@ -30,10 +30,10 @@ public class JWTAuthenticationProvider implements AuthenticationProvider {
 
     private static final Logger LOG = LoggerFactory.getLogger(JWTAuthenticationProvider.class);
 
-    private final String jwtKey;
+    private final JWTSecurityService jwtSecurityService;
 
-    public JWTAuthenticationProvider(String jwtSignAndVerifyKey) {
-        this.jwtKey = jwtSignAndVerifyKey;
+    public JWTAuthenticationProvider(JWTSecurityService jwtSecurityService) {
+        this.jwtSecurityService = jwtSecurityService;
     }
 
     private Map<String, List<VerificationCheck>> additionalChecks = new HashMap<>();
@@ -49,7 +49,7 @@ public class JWTAuthenticationProvider implements AuthenticationProvider {
         DecodedJWT token = null;
 
         try {
-            token = JWTSecurityService.verify(jwtKey, rawToken);
+            token = jwtSecurityService.verify(rawToken);
         } catch (TokenExpiredException ex) {
             throw new CredentialsExpiredException("Credentials have expired", ex);
         } catch (Exception ex) {
@@ -3,8 +3,10 @@ package org.airsonic.player.security;
 import org.airsonic.player.controller.SubsonicRESTController.APIException;
 import org.airsonic.player.controller.SubsonicRESTController.ErrorCode;
 import org.airsonic.player.domain.UserCredential;
+import org.airsonic.player.monitor.MetricsManager;
 import org.airsonic.player.repository.UserCredentialRepository;
 import org.airsonic.player.service.SecurityService.UserDetail;
+import org.airsonic.player.service.cache.VerifiedCredentialCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.CredentialsExpiredException;
@@ -26,6 +28,10 @@ public class MultipleCredsMatchingAuthenticationProvider extends DaoAuthenticati
 
     private UserCredentialRepository userCredentialRepository;
 
+    private VerifiedCredentialCache verifiedCredentialCache;
+
+    private MetricsManager metricsManager;
+
     @Override
     protected void additionalAuthenticationChecks(UserDetails userDetails,
             UsernamePasswordAuthenticationToken authentication) throws AuthenticationException {
@@ -47,9 +53,19 @@ public class MultipleCredsMatchingAuthenticationProvider extends DaoAuthenticati
 
         UserDetail userDetail = (UserDetail) userDetails;
 
-        Optional<UserCredential> matchedCred = userDetail.getCredentials().parallelStream()
-                .filter(c -> getPasswordEncoder().matches(presentedPassword, "{" + c.getEncoder() + encoderSpecialization + "}" + c.getCredential()))
-                .findAny();
+        // matching runs the password encoders (bcrypt, decryption...), skip it for secrets verified recently
+        Optional<UserCredential> matchedCred;
+        try (MetricsManager.Timer t = metricsManager.timer(getClass(), "verify")) {
+            matchedCred = verifiedCredentialCache.getVerified(userDetail.getUsername(),
+                    encoderSpecialization, presentedPassword, userDetail.getCredentials());
+            if (!matchedCred.isPresent()) {
+                matchedCred = userDetail.getCredentials().stream()
+                        .filter(c -> getPasswordEncoder().matches(presentedPassword, "{" + c.getEncoder() + encoderSpecialization + "}" + c.getCredential()))
+                        .findAny();
+                matchedCred.ifPresent(c -> verifiedCredentialCache.putVerified(userDetail.getUsername(),
+                        encoderSpecialization, presentedPassword, c));
+            }
+        }
 
         if (!matchedCred.isPresent()) {
             logger.debug("Authentication failed: password does not match any stored values");
@@ -77,6 +93,7 @@ public class MultipleCredsMatchingAuthenticationProvider extends DaoAuthenticati
                 c.setComment(c.getComment() + " | Automatically upgraded by system");
                 if (c.updateEncoder(c.getEncoder(), true)) {
                     userCredentialRepository.save(c);
+                    verifiedCredentialCache.clear();
                 } else {
                     logger.debug("Password needs to be upgraded, but failed");
                 }
@@ -89,6 +106,16 @@ public class MultipleCredsMatchingAuthenticationProvider extends DaoAuthenticati
         this.userCredentialRepository = userCredentialRepository;
     }
 
+    @Autowired
+    public void setVerifiedCredentialCache(VerifiedCredentialCache verifiedCredentialCache) {
+        this.verifiedCredentialCache = verifiedCredentialCache;
+    }
+
+    @Autowired
+    public void setMetricsManager(MetricsManager metricsManager) {
+        this.metricsManager = metricsManager;
+    }
+
     @Override
     @Autowired
     public void setUserDetailsService(UserDetailsService userDetailsService) {
@@ -1,5 +1,6 @@
 package org.airsonic.player.service;
 
+import com.google.common.collect.Lists;
 import org.airsonic.player.domain.Album;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.MusicFolder;
@@ -15,6 +16,8 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -84,6 +87,23 @@ public class AlbumService {
                 new OffsetBasedPageRequest(offset, count, Sort.by("id")));
     }
 
+    /**
+     * Get albums in the given order, the id being used to break ties
+     *
+     * @param musicFolders music folders to search in
+     * @param count        count
+     * @param offset       offset
+     * @param sort         order of the albums, e.g. by name
+     * @return albums or empty list if not found
+     */
+    public List<Album> getAlbums(List<MusicFolder> musicFolders, int count, long offset, Sort sort) {
+        if (CollectionUtils.isEmpty(musicFolders) || count < 1) {
+            return Collections.emptyList();
+        }
+        return albumRepository.findByFolderInAndPresentTrue(musicFolders,
+                new OffsetBasedPageRequest(offset, count, sort.and(Sort.by("id"))));
+    }
+
 
     /**
      * Get album by artist name in music folders
@@ -368,6 +388,21 @@ public class AlbumService {
         }
     }
 
+    /**
+     * mark albums in the given directories as non present if they were last scanned before lastScanned
+     *
+     * @param folder music folder of the directories
+     * @param paths relative paths of the directories
+     * @param lastScanned last scanned date
+     */
+    @Transactional
+    public void markNonPresent(MusicFolder folder, Collection<String> paths, Instant lastScanned) {
+        if (CollectionUtils.isEmpty(paths)) {
+            return;
+        }
+        Lists.partition(new ArrayList<>(paths), 1000).forEach(p -> albumRepository.markNonPresent(folder, p, lastScanned));
+    }
+
     /**
      * Save album to database
      *
@@ -379,4 +414,14 @@ public class AlbumService {
         return album;
     }
 
+    /**
+     * Save albums to database in a single transaction
+     *
+     * @param albums albums to save
+     */
+    @Transactional
+    public void saveAll(Collection<Album> albums) {
+        albumRepository.saveAll(albums);
+    }
+
 }
@@ -33,6 +33,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -192,6 +193,29 @@ public class ArtistService {
         }
     }
 
+    /**
+     * Mark artists that were last scanned before lastScanned and have no present album left
+     *
+     * @param lastScanned last scanned date
+     */
+    @Transactional
+    public void markNonPresentWithoutAlbums(Instant lastScanned) {
+        artistRepository.markNonPresentWithoutAlbums(lastScanned);
+    }
+
+    /**
+     * Get the number of present artists in the given music folders
+     *
+     * @param musicFolders music folders
+     * @return count of artists
+     */
+    public int getArtistCount(List<MusicFolder> musicFolders) {
+        if (CollectionUtils.isEmpty(musicFolders)) {
+            return 0;
+        }
+        return artistRepository.countByFolderInAndPresentTrue(musicFolders);
+    }
+
     /**
      * Save artist
      *
@@ -204,4 +228,14 @@ public class ArtistService {
         return artist;
     }
 
+    /**
+     * Save artists to database in a single transaction
+     *
+     * @param artists artists to save
+     */
+    @Transactional
+    public void saveAll(Collection<Artist> artists) {
+        artistRepository.saveAll(artists);
+    }
+
 }
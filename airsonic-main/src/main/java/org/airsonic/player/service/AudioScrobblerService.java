@@ -20,25 +20,53 @@
  */
 package org.airsonic.player.service;
 
+import com.google.common.collect.Lists;
 import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.Scrobble;
 import org.airsonic.player.domain.UserCredential;
 import org.airsonic.player.domain.UserCredential.App;
 import org.airsonic.player.domain.UserSettings;
+import org.airsonic.player.monitor.MetricsManager;
+import org.airsonic.player.repository.ScrobbleRepository;
 import org.airsonic.player.service.scrobbler.LastFMScrobbler;
 import org.airsonic.player.service.scrobbler.ListenBrainzScrobbler;
+import org.airsonic.player.service.scrobbler.ScrobbleResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+
+import java.time.Duration;
 import java.time.Instant;
-import java.util.EnumSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Provides services for "audioscrobbling", which is the process of
  * registering what songs are played at website.
+ * <p>
+ * Plays are appended to a persistent outbox, which is drained periodically in batches. Submissions failing because a
+ * service cannot be reached are retried with an exponential backoff.
  */
 @Service
 public class AudioScrobblerService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AudioScrobblerService.class);
+
+    private static final Duration SUBMIT_PERIOD = Duration.ofSeconds(10);
+    private static final Duration INITIAL_BACKOFF = Duration.ofMinutes(1);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(6);
+    /** Plays older than this are refused by Last.fm. */
+    private static final Duration MAX_SUBMISSION_AGE = Duration.ofDays(14);
+    private static final Duration MAX_NOW_PLAYING_AGE = Duration.ofMinutes(5);
+
     @Autowired
     private LastFMScrobbler lastFMScrobbler;
     @Autowired
@@ -47,49 +75,159 @@ public class AudioScrobblerService {
     private PersonalSettingsService personalSettingsService;
     @Autowired
     private SecurityService securityService;
+    @Autowired
+    private ScrobbleRepository scrobbleRepository;
+    @Autowired
+    private TaskSchedulingService taskService;
+    @Autowired
+    private MetricsManager metricsManager;
+
+    private volatile long outboxSize;
+    private volatile Instant oldestPending;
+
+    @PostConstruct
+    public void init() {
+        metricsManager.gauge(AudioScrobblerService.class, "outboxSize", () -> outboxSize);
+        metricsManager.gauge(AudioScrobblerService.class, "outboxLag", this::getOutboxLag);
+    }
+
+    @EventListener
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        taskService.scheduleFixedDelayTask("scrobble-outbox", this::submitPending,
+                Instant.now().plus(SUBMIT_PERIOD), SUBMIT_PERIOD, true);
+    }
 
     /**
      * Registers the given media file at audio scrobble service.
-     * This method returns immediately, the actual registration is done by separate threads.
+     * This method returns immediately, the play is appended to the outbox and submitted later on.
      *
      * @param mediaFile  The media file to register.
      * @param username   The user which played the music file.
      * @param submission Whether this is a submission or a now playing notification.
      * @param time       Event time, or {@code null} to use current time.
      */
-
-    public synchronized void register(MediaFile mediaFile, String username, boolean submission, Instant time) {
+    public void register(MediaFile mediaFile, String username, boolean submission, Instant time) {
         if (mediaFile == null || mediaFile.isVideo()) {
             return;
         }
 
         UserSettings userSettings = personalSettingsService.getUserSettings(username);
+        Instant played = time == null ? Instant.now() : time;
 
-        EnumSet<App> enabledApps = EnumSet.noneOf(App.class);
+        List<Scrobble> scrobbles = new ArrayList<>();
         if (userSettings.getLastFmEnabled()) {
-            enabledApps.add(App.LASTFM);
+            scrobbles.add(new Scrobble(username, App.LASTFM, mediaFile, submission, played));
         }
-
         if (userSettings.getListenBrainzEnabled()) {
-            enabledApps.add(App.LISTENBRAINZ);
+            scrobbles.add(new Scrobble(username, App.LISTENBRAINZ, mediaFile, submission, played));
+        }
+        if (!scrobbles.isEmpty()) {
+            scrobbleRepository.saveAll(scrobbles);
+        }
+    }
+
+    /**
+     * Submits the plays of the outbox that are due, in batches per user and service.
+     */
+    public void submitPending() {
+        try {
+            for (App app : new App[] { App.LASTFM, App.LISTENBRAINZ }) {
+                Map<String, List<Scrobble>> scrobblesByUser = scrobbleRepository
+                        .findFirst500ByAppAndNextAttemptLessThanEqualOrderByIdAsc(app, Instant.now()).stream()
+                        .collect(Collectors.groupingBy(Scrobble::getUsername, LinkedHashMap::new, Collectors.toList()));
+                scrobblesByUser.forEach((username, scrobbles) -> submit(app, username, scrobbles));
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to submit scrobbles", e);
+        }
+        outboxSize = scrobbleRepository.count();
+        oldestPending = scrobbleRepository.findFirstByOrderByIdAsc().map(Scrobble::getCreated).orElse(null);
+    }
+
+    private void submit(App app, String username, List<Scrobble> scrobbles) {
+        UserSettings userSettings = personalSettingsService.getUserSettings(username);
+        boolean enabled = app == App.LASTFM ? userSettings.getLastFmEnabled() : userSettings.getListenBrainzEnabled();
+        UserCredential cred = enabled ? securityService.getDecodableCredsForApps(username, app).get(app) : null;
+        String decoded = cred == null ? null : SecurityService.decodeCredentials(cred);
+        if (decoded == null) {
+            LOG.debug("Dropping {} scrobble(s) of user {} for {}, no usable credentials", scrobbles.size(), username, app);
+            scrobbleRepository.deleteAll(scrobbles);
+            return;
         }
 
-        Map<App, UserCredential> creds = securityService.getDecodableCredsForApps(username, enabledApps.toArray(new App[0]));
+        Instant now = Instant.now();
+        List<Scrobble> nowPlaying = new ArrayList<>();
+        List<Scrobble> submissions = new ArrayList<>();
+        List<Scrobble> expired = new ArrayList<>();
+        for (Scrobble scrobble : scrobbles) {
+            if (!scrobble.getSubmission()) {
+                nowPlaying.add(scrobble);
+            } else if (scrobble.getPlayed().isBefore(now.minus(MAX_SUBMISSION_AGE))) {
+                expired.add(scrobble);
+            } else {
+                submissions.add(scrobble);
+            }
+        }
+        if (!expired.isEmpty()) {
+            LOG.info("Dropping {} scrobble(s) of user {} for {}, they are too old", expired.size(), username, app);
+            scrobbleRepository.deleteAll(expired);
+        }
 
-        UserCredential cred = creds.get(App.LASTFM);
-        if (cred != null) {
-            String decoded = SecurityService.decodeCredentials(cred);
-            if (decoded != null) {
-                lastFMScrobbler.register(mediaFile, cred.getAppUsername(), decoded, submission, time);
+        // only the latest notification matters, and it is not worth retrying
+        if (!nowPlaying.isEmpty()) {
+            Scrobble latest = nowPlaying.get(nowPlaying.size() - 1);
+            if (latest.getPlayed().isAfter(now.minus(MAX_NOW_PLAYING_AGE))) {
+                if (app == App.LASTFM) {
+                    lastFMScrobbler.nowPlaying(cred.getAppUsername(), decoded, latest);
+                } else {
+                    listenBrainzScrobbler.nowPlaying(userSettings.getListenBrainzUrl(), decoded, latest);
+                }
             }
+            scrobbleRepository.deleteAll(nowPlaying);
         }
 
-        cred = creds.get(App.LISTENBRAINZ);
-        if (cred != null) {
-            String decoded = SecurityService.decodeCredentials(cred);
-            if (decoded != null) {
-                listenBrainzScrobbler.register(mediaFile, userSettings.getListenBrainzUrl(), decoded, submission, time);
+        int batchSize = app == App.LASTFM ? LastFMScrobbler.MAX_BATCH_SIZE : ListenBrainzScrobbler.MAX_BATCH_SIZE;
+        List<List<Scrobble>> batches = Lists.partition(submissions, batchSize);
+        for (int i = 0; i < batches.size(); i++) {
+            List<Scrobble> batch = batches.get(i);
+            ScrobbleResult result = app == App.LASTFM
+                    ? lastFMScrobbler.submit(cred.getAppUsername(), decoded, batch)
+                    : listenBrainzScrobbler.submit(userSettings.getListenBrainzUrl(), decoded, batch);
+            if (result == ScrobbleResult.RETRY) {
+                backOff(submissions.subList(i * batchSize, submissions.size()));
+                return;
+            }
+            if (result == ScrobbleResult.REJECTED) {
+                LOG.warn("{} refused {} scrobble(s) of user {}, dropping them", app, batch.size(), username);
             }
+            scrobbleRepository.deleteAll(batch);
         }
     }
+
+    private void backOff(List<Scrobble> scrobbles) {
+        Instant now = Instant.now();
+        for (Scrobble scrobble : scrobbles) {
+            int attempts = scrobble.getAttempts() + 1;
+            scrobble.setAttempts(attempts);
+            scrobble.setNextAttempt(now.plus(getBackoff(attempts)));
+        }
+        scrobbleRepository.saveAll(scrobbles);
+    }
+
+    /**
+     * Returns the delay before the next attempt, doubling with each failed attempt.
+     *
+     * @param attempts number of failed attempts, at least 1
+     * @return delay
+     */
+    static Duration getBackoff(int attempts) {
+        int shift = Math.min(attempts - 1, 30);
+        Duration backoff = INITIAL_BACKOFF.multipliedBy(1L << shift);
+        return backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff;
+    }
+
+    private double getOutboxLag() {
+        Instant oldest = oldestPending;
+        return oldest == null ? 0 : Math.max(0, Duration.between(oldest, Instant.now()).toSeconds());
+    }
 }
@@ -0,0 +1,303 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MusicFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps track of the directories of the music folders that changed since they were last scanned, so that an
+ * incremental scan only has to visit those.
+ * <p>
+ * Every scanned directory is fingerprinted by its modification time and number of entries, and optionally watched
+ * through {@link PathWatcherService}. Watch events are queued as dirty directories. As long as every directory could
+ * be watched and no event was lost, the queue alone tells which directories changed; otherwise the music folders are
+ * walked and compared against the recorded fingerprints. If a directory cannot be watched, typically because the
+ * inotify watch limit is reached, every watch is dropped and only fingerprints are used from then on. Fingerprints are
+ * kept in memory only, so the first scan after a restart visits everything.
+ */
+@Service
+public class DirectoryChangeTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryChangeTracker.class);
+
+    private final PathWatcherService pathWatcherService;
+
+    private final NavigableMap<String, Fingerprint> fingerprints = new ConcurrentSkipListMap<>();
+    private final Set<String> changedDirectories = ConcurrentHashMap.newKeySet();
+    private final Set<String> watchedDirectories = ConcurrentHashMap.newKeySet();
+    private volatile boolean eventsReliable = false;
+    private volatile boolean watchDisabled = false;
+    private volatile Runnable changeListener = () -> { };
+
+    public DirectoryChangeTracker(PathWatcherService pathWatcherService) {
+        this.pathWatcherService = pathWatcherService;
+    }
+
+    /**
+     * Sets the callback invoked whenever a watched directory changes.
+     *
+     * @param changeListener callback, run on a watcher thread
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Records the current fingerprint of a directory that is being scanned, and watches it if requested.
+     *
+     * @param directory full path of the directory
+     * @param watch     whether to watch the directory for changes
+     */
+    public void record(Path directory, boolean watch) {
+        Fingerprint fingerprint = Fingerprint.of(directory);
+        if (fingerprint == null) {
+            fingerprints.remove(directory.toString());
+            return;
+        }
+        fingerprints.put(directory.toString(), fingerprint);
+        if (watch && !watchDisabled) {
+            watch(directory);
+        }
+    }
+
+    /**
+     * Returns whether the directory was recorded by a previous scan.
+     *
+     * @param directory full path of the directory
+     * @return true if the directory has a fingerprint
+     */
+    public boolean isKnown(Path directory) {
+        return fingerprints.containsKey(directory.toString());
+    }
+
+    /**
+     * Returns whether a change of a watched directory is waiting to be scanned.
+     *
+     * @return true if a change is pending
+     */
+    public boolean hasPendingChanges() {
+        return !changedDirectories.isEmpty();
+    }
+
+    /**
+     * Marks the start of a scan that visits every directory of the music folders. Changes queued so far are covered
+     * by that scan.
+     */
+    public void startFullScan() {
+        changedDirectories.clear();
+        eventsReliable = true;
+    }
+
+    /**
+     * Collects the directories of the given music folders that changed since they were last recorded: directories whose
+     * fingerprint differs, directories not recorded before and directories reported by watch events. Unrecorded
+     * directories below an unchanged directory are skipped, as they were excluded from the previous scan.
+     *
+     * @param musicFolders music folders to check
+     * @param watching     whether scanned directories are watched for changes
+     * @return full paths of the changed directories
+     */
+    public Set<Path> collectChangedDirectories(List<MusicFolder> musicFolders, boolean watching) {
+        boolean walk = !watching || watchDisabled || !eventsReliable;
+        // Events arriving from now on are picked up by the next scan
+        eventsReliable = true;
+        Set<Path> changed = new HashSet<>();
+        for (String directory : new ArrayList<>(changedDirectories)) {
+            changedDirectories.remove(directory);
+            changed.add(Paths.get(directory));
+        }
+        for (MusicFolder musicFolder : musicFolders) {
+            Path root = musicFolder.getPath();
+            if (!isKnown(root)) {
+                changed.add(root);
+            } else if (walk) {
+                walk(root, changed);
+            }
+        }
+        changed.removeIf(directory -> musicFolders.stream().noneMatch(f -> directory.startsWith(f.getPath())));
+        return changed;
+    }
+
+    /**
+     * Returns the recorded directories below {@code directory} that no longer exist on disk, and forgets them.
+     *
+     * @param directory full path of a directory that was just scanned
+     * @return full paths of the deleted directories and their recorded descendants
+     */
+    public List<Path> removeDeletedDirectories(Path directory) {
+        String prefix = directory.toString().endsWith(File.separator) ? directory.toString() : directory + File.separator;
+        List<Path> deleted = new ArrayList<>();
+        Set<Path> deletedChildren = new HashSet<>();
+        // a directory always sorts before its descendants
+        for (String candidate : fingerprints.subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+            Path path = Paths.get(candidate);
+            Path child = directory.resolve(directory.relativize(path).getName(0));
+            if (deletedChildren.contains(child)) {
+                deleted.add(path);
+            } else if (child.equals(path) && !Files.isDirectory(path)) {
+                deletedChildren.add(path);
+                deleted.add(path);
+            }
+        }
+        deleted.forEach(path -> fingerprints.remove(path.toString()));
+        return deleted;
+    }
+
+    private void walk(Path root, Set<Path> changed) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    Fingerprint recorded = fingerprints.get(dir.toString());
+                    if (recorded == null) {
+                        if (changed.contains(dir.getParent())) {
+                            // new directory, all of it gets scanned
+                            changed.add(dir);
+                        }
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    if (!recorded.equals(Fingerprint.of(dir))) {
+                        changed.add(dir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    LOG.debug("Unable to check {} for changes", file, exc);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Unable to check {} for changes, scanning it completely", root, e);
+            changed.add(root);
+        }
+    }
+
+    private void watch(Path directory) {
+        String id = directory.toString();
+        try {
+            pathWatcherService.setWatcher(id, directory,
+                (dir, event) -> markChanged(dir),
+                (dir, event) -> {
+                    String deleted = dir.resolve(event.context()).toString();
+                    pathWatcherService.invalidateWatcher(deleted);
+                    watchedDirectories.remove(deleted);
+                    markChanged(dir);
+                },
+                (dir, event) -> markChanged(dir),
+                (dir, event) -> {
+                    LOG.debug("Directory watch events lost for {}", dir);
+                    eventsReliable = false;
+                    changeListener.run();
+                });
+            watchedDirectories.add(id);
+            if (watchDisabled) {
+                // disabled while registering
+                pathWatcherService.invalidateWatcher(id);
+                watchedDirectories.remove(id);
+            }
+        } catch (IOException | RuntimeException e) {
+            disableWatch(directory, e);
+        }
+    }
+
+    /**
+     * Drops every watch once a directory could not be watched: a partially watched library gives unreliable events
+     * anyway, and the watches held would keep the system limit exhausted for other processes.
+     */
+    private synchronized void disableWatch(Path directory, Exception e) {
+        eventsReliable = false;
+        if (watchDisabled) {
+            return;
+        }
+        watchDisabled = true;
+        LOG.warn("Unable to watch {} for changes, incremental scans will check directory fingerprints instead", directory, e);
+        for (String id : new ArrayList<>(watchedDirectories)) {
+            pathWatcherService.invalidateWatcher(id);
+        }
+        watchedDirectories.clear();
+    }
+
+    private void markChanged(Path directory) {
+        changedDirectories.add(directory.toString());
+        changeListener.run();
+    }
+
+    /**
+     * Modification time and number of entries of a directory.
+     */
+    static final class Fingerprint {
+        private final long lastModified;
+        private final int entryCount;
+
+        Fingerprint(long lastModified, int entryCount) {
+            this.lastModified = lastModified;
+            this.entryCount = entryCount;
+        }
+
+        static Fingerprint of(Path directory) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                int count = 0;
+                for (Path ignored : entries) {
+                    count++;
+                }
+                return new Fingerprint(Files.getLastModifiedTime(directory).toMillis(), count);
+            } catch (IOException e) {
+                LOG.debug("Unable to fingerprint {}", directory, e);
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) obj;
+            return lastModified == other.lastModified && entryCount == other.entryCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModified, entryCount);
+        }
+    }
+}
@@ -25,6 +25,9 @@ import com.auth0.jwt.JWTCreator.Builder;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.airsonic.player.monitor.MetricsManager;
 import org.airsonic.player.security.JWTAuthenticationToken;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
@@ -35,11 +38,16 @@ import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @Service("jwtSecurityService")
 public class JWTSecurityService {
@@ -51,10 +59,18 @@ public class JWTSecurityService {
     public static final int DEFAULT_DAYS_VALID_FOR = 7;
     private static SecureRandom secureRandom = new SecureRandom();
 
+    // Tokens expiring by default are issued with the same expiry within this period, so that they can be reused
+    private static final long EXPIRY_BUCKET_MINUTES = 60;
+    private static final int TOKEN_CACHE_SIZE = 10_000;
+
+    private static volatile KeyedAlgorithm keyedAlgorithm;
+
     private final SettingsService settingsService;
+    private final MetricsManager metricsManager;
 
-    public JWTSecurityService(SettingsService settingsService) {
+    public JWTSecurityService(SettingsService settingsService, MetricsManager metricsManager) {
         this.settingsService = settingsService;
+        this.metricsManager = metricsManager;
     }
 
     public static String generateKey() {
@@ -63,25 +79,56 @@ public class JWTSecurityService {
     }
 
     public static Algorithm getAlgorithm(String jwtKey) {
-        return Algorithm.HMAC256(jwtKey);
+        return getKeyedAlgorithm(jwtKey).algorithm;
+    }
+
+    /**
+     * Returns the algorithm and the caches of the given key, built again only when the key changes.
+     */
+    private static KeyedAlgorithm getKeyedAlgorithm(String jwtKey) {
+        KeyedAlgorithm current = keyedAlgorithm;
+        if (current == null || !current.key.equals(jwtKey)) {
+            current = new KeyedAlgorithm(jwtKey);
+            keyedAlgorithm = current;
+        }
+        return current;
     }
 
     private static String createToken(String jwtKey, String user, String path, Instant expireDate, Map<String, String> additionalClaims) {
         UriComponents components = UriComponentsBuilder.fromUriString(path).build();
         String query = components.getQuery();
         String pathClaim = components.getPath() + (!StringUtils.isBlank(query) ? "?" + components.getQuery() : "");
-        Builder builder = JWT
-                .create()
-                .withIssuer("airsonic")
-                .withSubject(user)
-                .withClaim(CLAIM_PATH, pathClaim)
-                .withExpiresAt(Date.from(expireDate));
-
-        for (Entry<String, String> claim : additionalClaims.entrySet()) {
-            builder = builder.withClaim(claim.getKey(), claim.getValue());
+        KeyedAlgorithm keyed = getKeyedAlgorithm(jwtKey);
+        // tokens have no issue date, so signing the same claims again gives the same token
+        List<Object> signedKey = Arrays.asList(user, pathClaim, expireDate, new HashMap<>(additionalClaims));
+        try {
+            return keyed.signedTokens.get(signedKey, () -> {
+                Builder builder = JWT
+                        .create()
+                        .withIssuer("airsonic")
+                        .withSubject(user)
+                        .withClaim(CLAIM_PATH, pathClaim)
+                        .withExpiresAt(Date.from(expireDate));
+
+                for (Entry<String, String> claim : additionalClaims.entrySet()) {
+                    builder = builder.withClaim(claim.getKey(), claim.getValue());
+                }
+
+                return builder.sign(keyed.algorithm);
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not sign token for " + pathClaim, e.getCause());
         }
+    }
 
-        return builder.sign(getAlgorithm(jwtKey));
+    /**
+     * Returns the default expiry of a token issued now, rounded up so that tokens issued within the same period expire
+     * at the same time.
+     */
+    private static Instant getDefaultExpiry() {
+        Instant expiry = Instant.now().plus(DEFAULT_DAYS_VALID_FOR, ChronoUnit.DAYS);
+        long bucket = TimeUnit.MINUTES.toSeconds(EXPIRY_BUCKET_MINUTES);
+        return Instant.ofEpochSecond((expiry.getEpochSecond() / bucket + 1) * bucket);
     }
 
     public String addJWTToken(String user, String uri) {
@@ -102,25 +149,42 @@ public class JWTSecurityService {
 
     public UriComponentsBuilder addJWTToken(String user, UriComponentsBuilder builder, Instant expires, Map<String, String> additionalClaims) {
         if (expires == null) {
-            expires = Instant.now().plus(DEFAULT_DAYS_VALID_FOR, ChronoUnit.DAYS);
+            expires = getDefaultExpiry();
+        }
+        try (MetricsManager.Timer t = metricsManager.timer(JWTSecurityService.class, "sign")) {
+            String token = JWTSecurityService.createToken(
+                    settingsService.getJWTKey(),
+                    user,
+                    builder.toUriString(),
+                    expires,
+                    additionalClaims);
+            return builder.queryParam(JWTSecurityService.JWT_PARAM_NAME, token);
         }
-        String token = JWTSecurityService.createToken(
-                settingsService.getJWTKey(),
-                user,
-                builder.toUriString(),
-                expires,
-                additionalClaims);
-        return builder.queryParam(JWTSecurityService.JWT_PARAM_NAME, token);
     }
 
+    /**
+     * Verifies a token. Tokens verified lately are not verified again until they expire.
+     *
+     * @param jwtKey The key the token must be signed with.
+     * @param token  The token.
+     * @return The decoded token.
+     * @throws com.auth0.jwt.exceptions.JWTVerificationException If the token is not valid.
+     */
     public static DecodedJWT verify(String jwtKey, String token) {
-        Algorithm algorithm = JWTSecurityService.getAlgorithm(jwtKey);
-        JWTVerifier verifier = JWT.require(algorithm).build();
-        return verifier.verify(token);
+        KeyedAlgorithm keyed = getKeyedAlgorithm(jwtKey);
+        DecodedJWT verified = keyed.verifiedTokens.getIfPresent(token);
+        if (verified != null && (verified.getExpiresAt() == null || verified.getExpiresAt().toInstant().isAfter(Instant.now()))) {
+            return verified;
+        }
+        verified = keyed.verifier.verify(token);
+        keyed.verifiedTokens.put(token, verified);
+        return verified;
     }
 
     public DecodedJWT verify(String credentials) {
-        return verify(settingsService.getJWTKey(), credentials);
+        try (MetricsManager.Timer t = metricsManager.timer(JWTSecurityService.class, "verify")) {
+            return verify(settingsService.getJWTKey(), credentials);
+        }
     }
 
     public static DecodedJWT decode(String token) {
@@ -134,4 +198,27 @@ public class JWTSecurityService {
                 .map(x -> x.toInstant())
                 .orElse(null);
     }
+
+    /**
+     * The algorithm and verifier of a key, with the tokens lately signed and verified with it.
+     */
+    private static final class KeyedAlgorithm {
+        private final String key;
+        private final Algorithm algorithm;
+        private final JWTVerifier verifier;
+        private final Cache<List<Object>, String> signedTokens = CacheBuilder.newBuilder()
+                .maximumSize(TOKEN_CACHE_SIZE)
+                .expireAfterWrite(EXPIRY_BUCKET_MINUTES, TimeUnit.MINUTES)
+                .build();
+        private final Cache<String, DecodedJWT> verifiedTokens = CacheBuilder.newBuilder()
+                .maximumSize(TOKEN_CACHE_SIZE)
+                .expireAfterWrite(EXPIRY_BUCKET_MINUTES, TimeUnit.MINUTES)
+                .build();
+
+        private KeyedAlgorithm(String key) {
+            this.key = key;
+            this.algorithm = Algorithm.HMAC256(key);
+            this.verifier = JWT.require(algorithm).build();
+        }
+    }
 }
@@ -19,6 +19,7 @@
 
 package org.airsonic.player.service;
 
+import com.google.common.util.concurrent.RateLimiter;
 import de.umass.lastfm.cache.Cache;
 import de.umass.lastfm.cache.FileSystemCache;
 import org.airsonic.player.util.FileUtil;
@@ -35,14 +36,33 @@ import java.util.stream.Stream;
 /**
  * Based on {@link FileSystemCache}, but properly closes files and enforces
  * time-to-live (by ignoring HTTP header directives).
+ * <p>
+ * Expired entries keep being served, so that lookups do not wait for Last.fm,
+ * and are only fetched again by calls made through {@link #refresh(Runnable)},
+ * typically from a background thread. {@link #takeStale()} tells whether the
+ * last calls of the current thread were served an expired entry.
+ * <p>
+ * Last.fm is called right after an entry is found missing or expired, so this
+ * is where the requests of every thread are throttled, to stay within the
+ * request rate allowed by Last.fm.
  *
  * @author Sindre Mehus
  * @version $Id$
  */
 public class LastFmCache extends Cache {
 
+    /**
+     * Last.fm allows 5 requests per second at most.
+     */
+    private static final double MAX_REQUESTS_PER_SECOND = 5.0;
+
     private final Path cacheDir;
     private final long ttl;
+    private final RateLimiter rateLimiter = RateLimiter.create(MAX_REQUESTS_PER_SECOND);
+
+    private final ThreadLocal<Boolean> refreshing = ThreadLocal.withInitial(() -> false);
+    private final ThreadLocal<Boolean> stale = ThreadLocal.withInitial(() -> false);
+    private final ThreadLocal<Boolean> fetched = ThreadLocal.withInitial(() -> false);
 
     public LastFmCache(Path cacheDir, final long ttl) {
         this.cacheDir = cacheDir;
@@ -53,7 +73,11 @@ public class LastFmCache extends Cache {
 
     @Override
     public boolean contains(String cacheEntryName) {
-        return Files.exists(getXmlFile(cacheEntryName));
+        boolean contains = Files.exists(getXmlFile(cacheEntryName));
+        if (!contains) {
+            rateLimiter.acquire();
+        }
+        return contains;
     }
 
     @Override
@@ -74,6 +98,7 @@ public class LastFmCache extends Cache {
 
     @Override
     public void store(String cacheEntryName, InputStream inputStream, long expirationDate) {
+        fetched.set(true);
         createCache();
 
         Path xmlFile = getXmlFile(cacheEntryName);
@@ -114,12 +139,49 @@ public class LastFmCache extends Cache {
             Properties p = new Properties();
             p.load(r);
             long expirationDate = Long.valueOf(p.getProperty("expiration-date"));
-            return expirationDate < System.currentTimeMillis();
+            boolean expired = expirationDate < System.currentTimeMillis();
+            if (expired && !refreshing.get()) {
+                stale.set(true);
+                return false;
+            }
+            if (expired) {
+                rateLimiter.acquire();
+            }
+            return expired;
         } catch (Exception e) {
             return false;
         }
     }
 
+    /**
+     * Runs Last.fm calls, fetching the entries they use again if expired.
+     *
+     * @param calls The Last.fm calls.
+     * @return Whether an entry was fetched from Last.fm.
+     */
+    public boolean refresh(Runnable calls) {
+        refreshing.set(true);
+        fetched.set(false);
+        try {
+            calls.run();
+            return fetched.get();
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Returns whether an expired entry was served to the current thread since the last time this method was called,
+     * and resets it.
+     *
+     * @return Whether an expired entry was served.
+     */
+    public boolean takeStale() {
+        boolean result = stale.get();
+        stale.set(false);
+        return result;
+    }
+
     @Override
     public void clear() {
         try (Stream<Path> walk = Files.list(cacheDir)) {
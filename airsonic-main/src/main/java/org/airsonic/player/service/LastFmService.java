@@ -23,21 +23,37 @@ import de.umass.lastfm.*;
 import de.umass.lastfm.Album;
 import de.umass.lastfm.Artist;
 import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicLastFmConfig;
 import org.airsonic.player.domain.*;
 import org.airsonic.player.repository.ArtistRepository;
+import org.airsonic.player.util.Util;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * Provides services from the Last.fm REST API.
+ * <p>
+ * Last.fm responses are kept in a {@link LastFmCache}. Expired responses keep being served while they are fetched
+ * again in the background, and the similar artists and top songs of every artist can be prefetched periodically, so
+ * that lookups seldom wait for Last.fm.
  *
  * @author Sindre Mehus
  * @version $Id$
@@ -48,18 +64,28 @@ public class LastFmService {
     private static final String LAST_FM_KEY = "ece4499898a9440896dfdce5dab26bbf";
     private static final long CACHE_TIME_TO_LIVE_MILLIS = 6 * 30 * 24 * 3600 * 1000L; // 6 months
     private static final Logger LOG = LoggerFactory.getLogger(LastFmService.class);
+    private static final String PREFETCH_TASK_NAME = "lastfm-prefetch";
 
     private final MediaFileService mediaFileService;
     private final ArtistRepository artistRepository;
     private final AirsonicHomeConfig homeConfig;
+    private final AirsonicLastFmConfig lastFmConfig;
+    private final TaskSchedulingService taskService;
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(Util.getDaemonThreadfactory("lastfm-refresh"));
+    private final Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet();
+    private LastFmCache cache;
 
     public LastFmService(
         AirsonicHomeConfig homeConfig,
         ArtistRepository artistRepository,
-        MediaFileService mediaFileService) {
+        MediaFileService mediaFileService,
+        AirsonicLastFmConfig lastFmConfig,
+        TaskSchedulingService taskService) {
         this.homeConfig = homeConfig;
         this.artistRepository = artistRepository;
         this.mediaFileService = mediaFileService;
+        this.lastFmConfig = lastFmConfig;
+        this.taskService = taskService;
         init();
     }
 
@@ -68,7 +94,81 @@ public class LastFmService {
         caller.setUserAgent("Airsonic");
 
         Path cacheDir = homeConfig.getAirsonicHome().resolve("lastfmcache");
-        caller.setCache(new LastFmCache(cacheDir, CACHE_TIME_TO_LIVE_MILLIS));
+        cache = new LastFmCache(cacheDir, CACHE_TIME_TO_LIVE_MILLIS);
+        caller.setCache(cache);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    @EventListener
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        int hours = lastFmConfig.getPrefetchInterval();
+        if (hours > 0) {
+            Duration interval = Duration.ofHours(hours);
+            taskService.scheduleAtFixedRate(PREFETCH_TASK_NAME, this::prefetch, Instant.now().plus(Duration.ofMinutes(5)), interval, true);
+            LOG.info("Scheduled Last.fm prefetch every {} hours", hours);
+        }
+    }
+
+    /**
+     * Fetches the similar artists and top songs of every present artist that are not cached or expired, one at a time.
+     * The requests are throttled by the {@link LastFmCache}.
+     */
+    void prefetch() {
+        LOG.info("Starting Last.fm prefetch.");
+        int fetched = 0;
+        for (org.airsonic.player.domain.Artist artist : artistRepository.findByPresentTrue()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                boolean fetchedArtist = cache.refresh(() -> {
+                    String canonicalArtistName = getCanonicalArtistName(artist.getName());
+                    if (StringUtils.isNotBlank(canonicalArtistName)) {
+                        getSimilar(canonicalArtistName);
+                        getTopTracks(canonicalArtistName);
+                    }
+                });
+                if (fetchedArtist) {
+                    fetched++;
+                }
+            } catch (Throwable x) {
+                LOG.warn("Failed to prefetch Last.fm data for " + artist.getName(), x);
+            }
+        }
+        LOG.info("Completed Last.fm prefetch, fetched {} artists.", fetched);
+    }
+
+    /**
+     * Runs a Last.fm call, served from the cache when possible. If the cached response is expired, it is returned
+     * anyway and fetched again in the background.
+     */
+    private <T> T lookup(String key, Supplier<T> call) {
+        cache.takeStale();
+        T result = call.get();
+        if (cache.takeStale() && pendingRefreshes.add(key)) {
+            refreshExecutor.execute(() -> {
+                try {
+                    cache.refresh(call::get);
+                } catch (Throwable x) {
+                    LOG.debug("Failed to refresh Last.fm data for {}", key, x);
+                } finally {
+                    pendingRefreshes.remove(key);
+                }
+            });
+        }
+        return result;
+    }
+
+    private Collection<Artist> getSimilar(String canonicalArtistName) {
+        return lookup("similar/" + canonicalArtistName, () -> Artist.getSimilar(canonicalArtistName, LAST_FM_KEY));
+    }
+
+    private Collection<Track> getTopTracks(String canonicalArtistName) {
+        return lookup("toptracks/" + canonicalArtistName, () -> Artist.getTopTracks(canonicalArtistName, LAST_FM_KEY));
     }
 
     /**
@@ -88,11 +188,12 @@ public class LastFmService {
 
         String artistName = getArtistName(mediaFile);
         try {
-            Collection<Artist> similarArtists = Artist.getSimilar(getCanonicalArtistName(artistName), LAST_FM_KEY);
+            Collection<Artist> similarArtists = getSimilar(getCanonicalArtistName(artistName));
+            Map<String, MediaFile> presentArtists = mediaFileService.getArtistsByNames(getNames(similarArtists), musicFolders);
 
             // First select artists that are present.
             for (Artist lastFmArtist : similarArtists) {
-                MediaFile similarArtist = mediaFileService.getArtistByName(lastFmArtist.getName(), musicFolders);
+                MediaFile similarArtist = presentArtists.get(lastFmArtist.getName());
                 if (similarArtist != null) {
                     result.add(similarArtist);
                     if (result.size() == count) {
@@ -104,8 +205,7 @@ public class LastFmService {
             // Then fill up with non-present artists
             if (includeNotPresent) {
                 for (Artist lastFmArtist : similarArtists) {
-                    MediaFile similarArtist = mediaFileService.getArtistByName(lastFmArtist.getName(), musicFolders);
-                    if (similarArtist == null) {
+                    if (!presentArtists.containsKey(lastFmArtist.getName())) {
                         MediaFile notPresentArtist = new MediaFile();
                         notPresentArtist.setId(-1);
                         notPresentArtist.setArtist(lastFmArtist.getName());
@@ -141,19 +241,29 @@ public class LastFmService {
         try {
 
             // First select artists that are present.
-            Collection<Artist> similarArtists = Artist.getSimilar(getCanonicalArtistName(artist.getName()), LAST_FM_KEY);
+            Collection<Artist> similarArtists = getSimilar(getCanonicalArtistName(artist.getName()));
+            List<String> names = getNames(similarArtists);
+            if (names.isEmpty()) {
+                return result;
+            }
+            Map<String, org.airsonic.player.domain.Artist> presentArtists = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            artistRepository.findByNameInAndFolderIn(names, musicFolders).forEach(a -> presentArtists.putIfAbsent(a.getName(), a));
             for (Artist lastFmArtist : similarArtists) {
-                artistRepository.findByNameAndFolderIn(lastFmArtist.getName(), musicFolders)
-                    .ifPresent(entity -> result.add(entity));
-                if (result.size() == count) {
-                    return result;
+                org.airsonic.player.domain.Artist similarArtist = presentArtists.get(lastFmArtist.getName());
+                if (similarArtist != null) {
+                    result.add(similarArtist);
+                    if (result.size() == count) {
+                        return result;
+                    }
                 }
             }
 
             // Then fill up with non-present artists
             if (includeNotPresent) {
+                Set<String> knownArtists = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                artistRepository.findByNameIn(names).forEach(a -> knownArtists.add(a.getName()));
                 for (Artist lastFmArtist : similarArtists) {
-                    if (!artistRepository.existsByName(lastFmArtist.getName())) {
+                    if (!knownArtists.contains(lastFmArtist.getName())) {
                         org.airsonic.player.domain.Artist notPresentArtist = new org.airsonic.player.domain.Artist();
                         notPresentArtist.setId(-1);
                         notPresentArtist.setName(lastFmArtist.getName());
@@ -182,12 +292,12 @@ public class LastFmService {
     public List<MediaFile> getSimilarSongs(org.airsonic.player.domain.Artist artist, int count,
                                            List<MusicFolder> musicFolders) {
 
-        List<MediaFile> similarSongs = new ArrayList<MediaFile>(mediaFileService.getSongsByArtist(0, 1000, artist.getName()));
+        List<String> artists = new ArrayList<>();
+        artists.add(artist.getName());
         for (org.airsonic.player.domain.Artist similarArtist : getSimilarArtists(artist, 100, false, musicFolders)) {
-            similarSongs.addAll(mediaFileService.getSongsByArtist(0, 1000, similarArtist.getName()));
+            artists.add(similarArtist.getName());
         }
-        Collections.shuffle(similarSongs);
-        return similarSongs.subList(0, Math.min(count, similarSongs.size()));
+        return mediaFileService.getRandomSongsByArtists(artists, count, musicFolders);
     }
 
     /**
@@ -240,7 +350,8 @@ public class LastFmService {
                 return null;
             }
 
-            Artist info = Artist.getInfo(artistName, locale, null /* username */, LAST_FM_KEY);
+            Artist info = lookup("info/" + locale + "/" + artistName,
+                () -> Artist.getInfo(artistName, locale, null /* username */, LAST_FM_KEY));
             if (info == null) {
                 return null;
             }
@@ -287,18 +398,10 @@ public class LastFmService {
                 return Collections.emptyList();
             }
 
-            List<MediaFile> result = new ArrayList<MediaFile>();
-            for (Track topTrack : Artist.getTopTracks(canonicalArtistName, LAST_FM_KEY)) {
-                MediaFile song = mediaFileService.getSongByArtistAndTitle(artistName, topTrack.getName(), musicFolders);
-
-                if (song != null) {
-                    result.add(song);
-                    if (result.size() == count) {
-                        return result;
-                    }
-                }
-            }
-            return result;
+            List<String> titles = getTopTracks(canonicalArtistName).stream()
+                    .map(Track::getName)
+                    .collect(Collectors.toList());
+            return mediaFileService.getSongsByArtistAndTitles(artistName, titles, count, musicFolders);
         } catch (Throwable x) {
             LOG.warn("Failed to find top songs for " + artistName, x);
             return Collections.emptyList();
@@ -337,7 +440,7 @@ public class LastFmService {
             return null;
         }
         try {
-            Album info = Album.getInfo(artist, album, LAST_FM_KEY);
+            Album info = lookup("album/" + artist + "/" + album, () -> Album.getInfo(artist, album, LAST_FM_KEY));
             if (info == null) {
                 return null;
             }
@@ -400,7 +503,7 @@ public class LastFmService {
                 return null;
             }
 
-            Artist info = Artist.getInfo(artistName, LAST_FM_KEY);
+            Artist info = lookup("info/" + artistName, () -> Artist.getInfo(artistName, LAST_FM_KEY));
             if (info == null) {
                 return null;
             }
@@ -460,6 +563,10 @@ public class LastFmService {
         return text;
     }
 
+    private static List<String> getNames(Collection<Artist> artists) {
+        return artists.stream().map(Artist::getName).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
     private String getArtistName(MediaFile mediaFile) {
         String artistName = mediaFile.getName();
         if (mediaFile.isAlbum() || mediaFile.isFile()) {
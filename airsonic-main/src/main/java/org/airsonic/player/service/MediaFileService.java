@@ -20,6 +20,7 @@
  */
 package org.airsonic.player.service;
 
+import com.google.common.collect.Lists;
 import com.google.common.math.DoubleMath;
 import com.ibm.icu.text.CharsetDetector;
 import com.ibm.icu.text.CharsetMatch;
@@ -38,6 +39,8 @@ import org.airsonic.player.repository.MediaFileSpecifications;
 import org.airsonic.player.repository.MusicFileInfoRepository;
 import org.airsonic.player.repository.OffsetBasedPageRequest;
 import org.airsonic.player.repository.StarredMediaFileRepository;
+import org.airsonic.player.repository.UserRatingRepository;
+import org.airsonic.player.service.MediaFolderService.MusicFolderAccess;
 import org.airsonic.player.service.cache.MediaFileCache;
 import org.airsonic.player.service.metadata.Chapter;
 import org.airsonic.player.service.metadata.FFmpegParser;
@@ -61,6 +64,7 @@ import org.springframework.context.MessageSource;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
@@ -86,7 +90,6 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -99,8 +102,6 @@ public class MediaFileService {
 
     private static final Logger LOG = LoggerFactory.getLogger(MediaFileService.class);
 
-    @Autowired
-    private SecurityService securityService;
     @Autowired
     private SettingsService settingsService;
     @Autowired
@@ -116,6 +117,8 @@ public class MediaFileService {
     @Autowired
     private StarredMediaFileRepository starredMediaFileRepository;
     @Autowired
+    private UserRatingRepository userRatingRepository;
+    @Autowired
     private LocaleResolver localeResolver;
     @Autowired
     private MessageSource messageSource;
@@ -127,9 +130,19 @@ public class MediaFileService {
     private MediaFileCache mediaFileCache;
     @Autowired
     private FFmpegParser ffmpegParser;
+    @Autowired
+    private SongTitleIndex songTitleIndex;
+    @Autowired
+    private RandomSongIndex randomSongIndex;
 
     private final double DURATION_EPSILON = 1e-2;
 
+    // keeps bulk lookups below the bind parameter limits of the supported databases
+    private static final int MAX_IN_CLAUSE_SIZE = 1000;
+
+    // batches of random candidates checked before sorting the matching songs by a random value instead
+    private static final int MAX_RANDOM_SONG_BATCHES = 4;
+
     private final Set<String> CUE_EXTENSIONS = Set.of("cue", "flac");
 
     private final Map<Integer, Pair<Integer, Instant>> lastPlayed = new ConcurrentHashMap<>();
@@ -427,6 +440,20 @@ public class MediaFileService {
         return mediaFileRepository.findByFolderInAndMediaTypeInAndGenreAndPresentTrue(musicFolders, MediaType.audioTypes(), genre, new OffsetBasedPageRequest(offset, count, Sort.by("id")));
     }
 
+    /**
+     * Returns the number of songs in a genre.
+     *
+     * @param genre      The genre name.
+     * @param musicFolders Only count songs in these folders.
+     * @return Number of songs in the genre.
+     */
+    public int getSongCountByGenre(String genre, List<MusicFolder> musicFolders) {
+        if (CollectionUtils.isEmpty(musicFolders)) {
+            return 0;
+        }
+        return mediaFileRepository.countByFolderInAndMediaTypeInAndGenreAndPresentTrue(musicFolders, MediaType.audioTypes(), genre);
+    }
+
     /**
      * Returns songs by a given artist.
      *
@@ -457,6 +484,64 @@ public class MediaFileService {
         return results.get(0);
     }
 
+    /**
+     * Returns songs by a given artist with the given titles, resolved through the {@link SongTitleIndex} in one lookup.
+     *
+     * @param artist The artist name.
+     * @param titles The titles.
+     * @param count Maximum number of songs to return.
+     * @param musicFolders Only return songs in these folders.
+     * @return Songs by the artist, in the order of the titles. Titles without a song are skipped.
+     */
+    public List<MediaFile> getSongsByArtistAndTitles(String artist, List<String> titles, int count, List<MusicFolder> musicFolders) {
+        if (CollectionUtils.isEmpty(musicFolders) || StringUtils.isBlank(artist) || CollectionUtils.isEmpty(titles) || count <= 0) {
+            return Collections.emptyList();
+        }
+        return getPresentMediaFiles(songTitleIndex.getSongIds(artist, titles, musicFolders), count);
+    }
+
+    /**
+     * Returns random songs by the given artists, resolved through the {@link SongTitleIndex} in one lookup.
+     *
+     * @param artists The artist names.
+     * @param count Maximum number of songs to return.
+     * @param musicFolders Only return songs in these folders.
+     * @return Random songs by the artists.
+     */
+    public List<MediaFile> getRandomSongsByArtists(Collection<String> artists, int count, List<MusicFolder> musicFolders) {
+        if (CollectionUtils.isEmpty(musicFolders) || CollectionUtils.isEmpty(artists) || count <= 0) {
+            return Collections.emptyList();
+        }
+        List<Integer> ids = new ArrayList<>(songTitleIndex.getSongIds(artists, musicFolders));
+        Collections.shuffle(ids);
+        return getPresentMediaFiles(ids, count);
+    }
+
+    /**
+     * Loads the present media files with the given IDs in bulk, in the order of the IDs. Only as many IDs as media
+     * files are still missing are loaded at a time, so usually a single query loads them all.
+     *
+     * @param ids The media file IDs.
+     * @param count Maximum number of media files to return.
+     * @return The present media files.
+     */
+    private List<MediaFile> getPresentMediaFiles(List<Integer> ids, int count) {
+        List<MediaFile> result = new ArrayList<>(Math.min(count, ids.size()));
+        int next = 0;
+        while (result.size() < count && next < ids.size()) {
+            int size = Math.min(MAX_IN_CLAUSE_SIZE, count - result.size());
+            List<Integer> chunk = ids.subList(next, Math.min(ids.size(), next + size));
+            next += chunk.size();
+            Map<Integer, MediaFile> found = mediaFileRepository.findAllById(chunk).stream()
+                    .collect(Collectors.toMap(MediaFile::getId, Function.identity()));
+            chunk.stream()
+                    .map(found::get)
+                    .filter(file -> file != null && file.isPresent())
+                    .forEachOrdered(result::add);
+        }
+        return result;
+    }
+
     /**
      * Returns the most recently starred songs.
      *
@@ -500,6 +585,25 @@ public class MediaFileService {
         return results.get(0);
     }
 
+    /**
+     * Returns artists by name in one query.
+     *
+     * @param artists The artist names.
+     * @param folders Only return artists in these folders.
+     * @return The first artist found by name, for the names with an artist. Names are compared regardless of case.
+     */
+    public Map<String, MediaFile> getArtistsByNames(Collection<String> artists, List<MusicFolder> folders) {
+        if (CollectionUtils.isEmpty(folders) || CollectionUtils.isEmpty(artists)) {
+            return Collections.emptyMap();
+        }
+        Map<String, MediaFile> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (List<String> names : Lists.partition(new ArrayList<>(new LinkedHashSet<>(artists)), MAX_IN_CLAUSE_SIZE)) {
+            mediaFileRepository.findByFolderInAndMediaTypeAndArtistInAndPresentTrue(folders, MediaType.DIRECTORY, names)
+                    .forEach(artist -> result.putIfAbsent(artist.getArtist(), artist));
+        }
+        return result;
+    }
+
     /**
      * Returns the most recently starred artists.
      *
@@ -560,6 +664,28 @@ public class MediaFileService {
         return genreRepository.findAll(sort.and(Sort.by(Direction.ASC, "name")));
     }
 
+    /**
+     * Returns a page of the genres in the music collection.
+     *
+     * @param sortByAlbum Whether to sort by album count, rather than song count.
+     * @param offset      Number of genres to skip.
+     * @param count       Maximum number of genres to return.
+     * @return Sorted list of genres.
+     */
+    public List<Genre> getGenres(boolean sortByAlbum, long offset, int count) {
+        Sort sort = sortByAlbum ? Sort.by("albumCount") : Sort.by("songCount");
+        return genreRepository.findAllBy(new OffsetBasedPageRequest(offset, count, sort.and(Sort.by(Direction.ASC, "name"))));
+    }
+
+    /**
+     * Returns the number of genres in the music collection.
+     *
+     * @return Number of genres.
+     */
+    public long getGenreCount() {
+        return genreRepository.count();
+    }
+
     /**
      * update genres
      *
@@ -721,14 +847,42 @@ public class MediaFileService {
 
     /**
      * Returns random songs matching search criteria.
-     *
+     * <p>
+     * Candidates matching the folder, year, genre, format and starred conditions are drawn from
+     * {@link RandomSongIndex} and checked against the whole criteria in the database by ID, in batches growing until
+     * enough songs are found. Only when the album rating, play count or last played conditions reject most candidates
+     * are the remaining songs picked by sorting the matching songs by a random value.
      */
     @Transactional(isolation = Isolation.READ_COMMITTED)
     public List<MediaFile> getRandomSongs(RandomSearchCriteria criteria, String username) {
-        if (criteria == null || CollectionUtils.isEmpty(criteria.getMusicFolders())) {
+        if (criteria == null || CollectionUtils.isEmpty(criteria.getMusicFolders()) || criteria.getCount() <= 0) {
             return Collections.emptyList();
         }
-        return mediaFileRepository.findAll(MediaFileSpecifications.matchCriteria(criteria, username, settingsService.getDatabaseType()), Pageable.ofSize(criteria.getCount()));
+        int count = criteria.getCount();
+        Specification<MediaFile> matchCriteria = MediaFileSpecifications.matchCriteria(criteria, username);
+        RandomSongIndex.Sample sample = randomSongIndex.sample(criteria, username);
+        List<MediaFile> result = new ArrayList<>(count);
+        int batchSize = count;
+        for (int batch = 0; result.size() < count && sample.remaining() > 0; batch++) {
+            if (batch == MAX_RANDOM_SONG_BATCHES) {
+                Specification<MediaFile> spec = MediaFileSpecifications.matchCriteria(criteria, username, settingsService.getDatabaseType());
+                if (!result.isEmpty()) {
+                    spec = spec.and(Specification.not(MediaFileSpecifications.idIn(result.stream().map(MediaFile::getId).collect(Collectors.toList()))));
+                }
+                result.addAll(mediaFileRepository.findAll(spec, Pageable.ofSize(count - result.size())));
+                break;
+            }
+            List<Integer> ids = sample.next(Math.min(batchSize, MAX_IN_CLAUSE_SIZE));
+            Map<Integer, MediaFile> found = mediaFileRepository.findAll(matchCriteria.and(MediaFileSpecifications.idIn(ids)), Pageable.ofSize(ids.size())).stream()
+                    .collect(Collectors.toMap(MediaFile::getId, Function.identity()));
+            ids.stream()
+                    .map(found::get)
+                    .filter(Objects::nonNull)
+                    .limit(count - result.size())
+                    .forEachOrdered(result::add);
+            batchSize *= 2;
+        }
+        return result;
     }
 
     /**
@@ -742,9 +896,56 @@ public class MediaFileService {
         return starredMediaFileRepository.findByUsernameAndMediaFile(username, mediaFile).map(StarredMediaFile::getCreated).orElse(null);
     }
 
+    /**
+     * Returns the starred dates of the given media files for the given user, keyed by media file id.
+     * Media files which are not starred are absent from the map.
+     */
+    public Map<Integer, Instant> getMediaFileStarredDates(Collection<MediaFile> mediaFiles, String username) {
+        if (username == null || mediaFiles.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, Instant> result = new HashMap<>();
+        for (List<Integer> ids : Lists.partition(toDistinctIds(mediaFiles), MAX_IN_CLAUSE_SIZE)) {
+            starredMediaFileRepository.findStarredDatesByUsernameAndMediaFileIdIn(username, ids)
+                .forEach(row -> result.put(((Number) row[0]).intValue(), (Instant) row[1]));
+        }
+        return result;
+    }
+
+    /**
+     * Loads starred dates, user ratings and average ratings of the given media files with a few bulk queries.
+     *
+     * @param mediaFiles The media files.
+     * @param username   The user name, may be <code>null</code>.
+     * @return the annotations of the given media files.
+     */
+    @Transactional(readOnly = true)
+    public UserAnnotations getUserAnnotations(Collection<MediaFile> mediaFiles, String username) {
+        if (mediaFiles.isEmpty()) {
+            return UserAnnotations.EMPTY;
+        }
+        List<Integer> ids = toDistinctIds(mediaFiles);
+        Map<Integer, Integer> userRatings = new HashMap<>();
+        Map<Integer, Double> averageRatings = new HashMap<>();
+        for (List<Integer> chunk : Lists.partition(ids, MAX_IN_CLAUSE_SIZE)) {
+            if (username != null) {
+                userRatingRepository.findByUsernameAndMediaFileIdIn(username, chunk)
+                    .forEach(r -> userRatings.put(r.getMediaFileId(), r.getRating()));
+            }
+            userRatingRepository.getAverageRatingsByMediaFileIdIn(chunk)
+                .forEach(row -> averageRatings.put(((Number) row[0]).intValue(), ((Number) row[1]).doubleValue()));
+        }
+        return new UserAnnotations(getMediaFileStarredDates(mediaFiles, username), userRatings, averageRatings);
+    }
+
+    private static List<Integer> toDistinctIds(Collection<MediaFile> mediaFiles) {
+        return mediaFiles.stream().map(MediaFile::getId).filter(Objects::nonNull).distinct().collect(Collectors.toList());
+    }
+
     public void populateStarredDate(List<MediaFile> mediaFiles, String username) {
+        Map<Integer, Instant> starredDates = getMediaFileStarredDates(mediaFiles, username);
         for (MediaFile mediaFile : mediaFiles) {
-            populateStarredDate(mediaFile, username);
+            mediaFile.setStarredDate(starredDates.get(mediaFile.getId()));
         }
     }
 
@@ -777,7 +978,7 @@ public class MediaFileService {
         // Collect all children.
         try (Stream<Path> children = Files.list(parent.getFullPath())) {
             children.parallel()
-                .filter(x -> mediaFolderService.getMusicFolderForFile(x, true, true).map(f -> f.equals(folder)).orElse(false))
+                .filter(x -> mediaFolderService.isMusicFolderForFile(x, folder, true, true))
                 .forEach(x -> {
                     Path relativePath = folder.getPath().relativize(x);
                     if (includeMediaFileByPath(x)) {
@@ -1492,6 +1693,31 @@ public class MediaFileService {
         coverArtService.persistIfNeeded(mediaFile);
     }
 
+    /**
+     * Updates media files that are already persisted, such as those modified during a media scan, in a single
+     * transaction. The current rows are loaded up front so that the updates can be sent as JDBC batches.
+     *
+     * @param mediaFiles media files to update
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public void updateMediaFiles(@Nonnull Collection<MediaFile> mediaFiles) {
+        List<MediaFile> persisted = new ArrayList<>();
+        for (MediaFile mediaFile : mediaFiles) {
+            if (mediaFile.getId() == null) {
+                updateMediaFile(mediaFile);
+            } else {
+                mediaFileCache.removeMediaFile(mediaFile);
+                persisted.add(mediaFile);
+            }
+        }
+        if (persisted.isEmpty()) {
+            return;
+        }
+        Lists.partition(toDistinctIds(persisted), MAX_IN_CLAUSE_SIZE).forEach(mediaFileRepository::findAllById);
+        mediaFileRepository.saveAll(persisted);
+        persisted.forEach(coverArtService::persistIfNeeded);
+    }
+
     /**
      * Increments the play count and last played date for the given media file and its
      * directory and album.
@@ -1532,14 +1758,17 @@ public class MediaFileService {
             Function<MediaFile, String> streamUrlGenerator, Function<MediaFile, String> remoteStreamUrlGenerator,
             Function<MediaFile, String> remoteCoverArtUrlGenerator) {
         Locale locale = Optional.ofNullable(username).map(localeResolver::resolveLocale).orElse(null);
+        Map<Integer, Instant> starredDates = calculateStarred ? getMediaFileStarredDates(files, username) : Collections.emptyMap();
+        MusicFolderAccess folderAccesses = calculateFolderAccess && username != null
+                ? mediaFolderService.getMusicFolderAccessForUser(username) : null;
         List<MediaFileEntry> entries = new ArrayList<>(files.size());
         for (MediaFile file : files) {
             String streamUrl = Optional.ofNullable(streamUrlGenerator).map(g -> g.apply(file)).orElse(null);
             String remoteStreamUrl = Optional.ofNullable(remoteStreamUrlGenerator).map(g -> g.apply(file)).orElse(null);
             String remoteCoverArtUrl = Optional.ofNullable(remoteCoverArtUrlGenerator).map(g -> g.apply(file)).orElse(null);
 
-            boolean starred = calculateStarred && username != null && getMediaFileStarredDate(file, username) != null;
-            boolean folderAccess = !calculateFolderAccess || username == null || securityService.isFolderAccessAllowed(file, username);
+            boolean starred = starredDates.containsKey(file.getId());
+            boolean folderAccess = folderAccesses == null || folderAccesses.isAllowed(file.getFolder());
             entries.add(MediaFileEntry.fromMediaFile(file, locale, starred, folderAccess, streamUrl, remoteStreamUrl, remoteCoverArtUrl));
         }
 
@@ -1588,6 +1817,7 @@ public class MediaFileService {
                     starredMediaFileRepository.save(starredMediaFile);
                 });
         });
+        randomSongIndex.invalidateStarred(username);
     }
 
     /**
@@ -1602,44 +1832,26 @@ public class MediaFileService {
             return;
         }
         starredMediaFileRepository.deleteAllByMediaFileIdInAndUsername(ids, username);
+        randomSongIndex.invalidateStarred(username);
     }
 
     /**
      * mark media files present
      *
-     * @param paths paths to mark present by folder id
+     * @param ids ids of the media files to mark present
      * @param lastScanned last scanned time
-     * @return true if success, false otherwise
+     * @return true if all media files were marked present, false otherwise
      */
     @Transactional
-    public boolean markPresent(Map<Integer, Set<String>> paths, Instant lastScanned) {
-
-        final int BATCH_SIZE = 30000;
-
-        if (CollectionUtils.isEmpty(paths)) {
+    public boolean markPresent(Collection<Integer> ids, Instant lastScanned) {
+        if (CollectionUtils.isEmpty(ids)) {
             return true;
         }
         try {
-            paths.entrySet().parallelStream().map(e -> {
-                MusicFolder folder = mediaFolderService.getMusicFolderById(e.getKey());
-                if (folder == null) {
-                    return true;
-                }
-                Set<String> pathsInFolder = e.getValue();
-                int batches = (pathsInFolder.size() - 1) / BATCH_SIZE;
-                List<String> pathsInFolderList = new ArrayList<>(pathsInFolder);
-                Integer savedCount = IntStream.rangeClosed(0, batches).parallel().map(b -> {
-                    try {
-                        List<String> subList = pathsInFolderList.subList(b * BATCH_SIZE, Math.min((b + 1) * BATCH_SIZE, pathsInFolderList.size()));
-                        return mediaFileRepository.markPresent(folder, subList, lastScanned);
-                    } catch (Exception ex) {
-                        LOG.warn("Error marking media files present", ex);
-                        return 0;
-                    }
-                }).sum();
-                return savedCount == pathsInFolder.size();
-            }).reduce(true, (a, b) -> a && b);
-            return true;
+            int updated = Lists.partition(new ArrayList<>(ids), MAX_IN_CLAUSE_SIZE).stream()
+                    .mapToInt(chunk -> mediaFileRepository.markPresent(chunk, lastScanned))
+                    .sum();
+            return updated == ids.size();
         } catch (Exception e) {
             LOG.warn("Error marking media files present", e);
             return false;
@@ -1655,6 +1867,62 @@ public class MediaFileService {
         mediaFileRepository.markNonPresent(Instant.ofEpochMilli(1), lastScanned);
     }
 
+    /**
+     * mark directories and the media files directly inside them non present
+     *
+     * @param folder music folder of the directories
+     * @param paths relative paths of the directories
+     */
+    @Transactional
+    public void markNonPresent(MusicFolder folder, Collection<String> paths) {
+        if (CollectionUtils.isEmpty(paths)) {
+            return;
+        }
+        Lists.partition(new ArrayList<>(paths), MAX_IN_CLAUSE_SIZE)
+                .forEach(p -> mediaFileRepository.markNonPresent(folder, p, Instant.ofEpochMilli(1)));
+    }
+
+    /**
+     * Sets the number of present songs in the given folders, and their total duration and size, on the statistics.
+     * Indexed tracks are counted as songs but not added to the duration and size, as their base file already is.
+     *
+     * @param musicFolders music folders
+     * @param statistics statistics to update
+     */
+    public void updateSongStatistics(List<MusicFolder> musicFolders, MediaLibraryStatistics statistics) {
+        List<Object[]> rows = CollectionUtils.isEmpty(musicFolders) ? Collections.emptyList()
+                : mediaFileRepository.getStatisticsByFolderIn(musicFolders, List.of(MediaType.DIRECTORY, MediaType.ALBUM));
+        Object[] row = rows.isEmpty() ? new Object[3] : rows.get(0);
+        statistics.setSongCount(Optional.ofNullable((Number) row[0]).map(Number::intValue).orElse(0));
+        statistics.setTotalDurationInSeconds(Optional.ofNullable((Number) row[1]).map(Number::doubleValue).orElse(0.0));
+        statistics.setTotalLengthInBytes(Optional.ofNullable((Number) row[2]).map(Number::longValue).orElse(0L));
+    }
+
+    /**
+     * Counts the albums and songs of each genre among the present media files of the given folders.
+     *
+     * @param musicFolders music folders
+     * @return genres with their album and song count
+     */
+    public Genres getGenreCounts(List<MusicFolder> musicFolders) {
+        Genres genres = new Genres();
+        if (CollectionUtils.isEmpty(musicFolders)) {
+            return genres;
+        }
+        String separators = settingsService.getGenreSeparators();
+        for (Object[] row : mediaFileRepository.countGenresByFolderIn(musicFolders)) {
+            String genre = (String) row[0];
+            MediaType mediaType = (MediaType) row[1];
+            int count = ((Number) row[2]).intValue();
+            if (mediaType == MediaType.ALBUM) {
+                genres.incrementAlbumCount(genre, separators, count);
+            } else if (MediaType.audioTypes().contains(mediaType)) {
+                genres.incrementSongCount(genre, separators, count);
+            }
+        }
+        return genres;
+    }
+
     /**
      * soft delete media file
      *
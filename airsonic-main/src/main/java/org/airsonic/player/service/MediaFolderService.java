@@ -9,7 +9,6 @@ import org.airsonic.player.repository.CoverArtRepository;
 import org.airsonic.player.repository.MediaFileRepository;
 import org.airsonic.player.repository.MusicFolderRepository;
 import org.airsonic.player.repository.UserRepository;
-import org.airsonic.player.util.FileUtil;
 import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -50,7 +50,8 @@ public class MediaFolderService {
     private CoverArtRepository coverArtRepository;
 
     private List<MusicFolder> cachedMusicFolders;
-    private final ConcurrentMap<String, List<MusicFolder>> cachedMusicFoldersPerUser = new ConcurrentHashMap<>();
+    private volatile MusicFolderTrie musicFolderTrie;
+    private final ConcurrentMap<String, MusicFolderAccess> cachedMusicFoldersPerUser = new ConcurrentHashMap<>();
 
     /**
      * Returns all music folders. Non-existing and disabled folders are not included.
@@ -91,15 +92,27 @@ public class MediaFolderService {
      */
     @Transactional
     public List<MusicFolder> getMusicFoldersForUser(String username) {
+        return getMusicFolderAccessForUser(username).getMusicFolders();
+    }
+
+    /**
+     * Returns the music folders a user have access to, as a snapshot checking access to a folder without iterating
+     * the folders. Non-existing and disabled folders are not included.
+     *
+     * @param username Username to get music folders for.
+     * @return Music folder access of the user.
+     */
+    @Transactional
+    public MusicFolderAccess getMusicFolderAccessForUser(String username) {
         return cachedMusicFoldersPerUser.computeIfAbsent(username, u -> {
-            return userRepository.findByUsername(u)
+            return new MusicFolderAccess(userRepository.findByUsername(u)
                 .map(user -> {
                     return user.getMusicFolders()
                         .stream()
                         .filter(folder -> folder.isEnabled() && !folder.isDeleted() && Files.exists(folder.getPath()))
                         .collect(Collectors.toList());
                 })
-                .orElse(new ArrayList<>());
+                .orElse(new ArrayList<>()));
         });
     }
 
@@ -399,6 +412,7 @@ public class MediaFolderService {
 
     public void clearMusicFolderCache() {
         cachedMusicFolders = null;
+        musicFolderTrie = null;
         cachedMusicFoldersPerUser.clear();
     }
 
@@ -416,10 +430,32 @@ public class MediaFolderService {
      * @return Music folder that contains the file, or null if no music folder contains the file.
      */
     public Optional<MusicFolder> getMusicFolderForFile(Path file, boolean includeDisabled, boolean includeNonExisting) {
-        return getAllMusicFolders(includeDisabled, includeNonExisting).stream()
-                .filter(folder -> FileUtil.isFileInFolder(file, folder.getPath()))
-                .sorted(Comparator.comparing(folder -> folder.getPath().getNameCount(), Comparator.reverseOrder()))
-                .findFirst();
+        return Optional.ofNullable(getMusicFolderTrie().find(file, includeDisabled, includeNonExisting));
+    }
+
+    /**
+     * Returns whether the given music folder is the one containing the given file, i.e., the file is in the music
+     * folder and not in a music folder nested in it.
+     *
+     * @param file               File to check.
+     * @param folder             Music folder.
+     * @param includeDisabled    Whether to include disabled folders.
+     * @param includeNonExisting Whether to include non-existing folders.
+     * @return Whether the music folder contains the file.
+     */
+    public boolean isMusicFolderForFile(Path file, MusicFolder folder, boolean includeDisabled, boolean includeNonExisting) {
+        MusicFolder result = getMusicFolderTrie().find(file, includeDisabled, includeNonExisting);
+        return result != null && result.equals(folder);
+    }
+
+    private MusicFolderTrie getMusicFolderTrie() {
+        MusicFolderTrie trie = musicFolderTrie;
+        if (trie == null) {
+            // the trie is replaced as a whole, lookups running meanwhile keep using the previous one
+            trie = new MusicFolderTrie(getAllMusicFolders(true, true));
+            musicFolderTrie = trie;
+        }
+        return trie;
     }
 
     /**
@@ -431,4 +467,47 @@ public class MediaFolderService {
     public MusicFolder getMusicFolderForFile(Path file) {
         return getMusicFolderForFile(file, false, true).orElse(null);
     }
+
+    /**
+     * Snapshot of the music folders a user has access to. Access to a folder is checked with one array probe
+     * by folder id. Snapshots are dropped together with the music folder cache, and when the folders of the user change.
+     */
+    public static final class MusicFolderAccess {
+
+        private final List<MusicFolder> musicFolders;
+
+        // allowed[id] tells whether the folder with this id is accessible
+        private final boolean[] allowed;
+
+        MusicFolderAccess(List<MusicFolder> musicFolders) {
+            this.musicFolders = musicFolders;
+            this.allowed = new boolean[musicFolders.stream().map(MusicFolder::getId).filter(Objects::nonNull)
+                    .mapToInt(Integer::intValue).filter(id -> id >= 0).max().orElse(-1) + 1];
+            musicFolders.stream().map(MusicFolder::getId).filter(id -> id != null && id >= 0)
+                    .forEach(id -> allowed[id] = true);
+        }
+
+        /**
+         * @return The music folders the user has access to.
+         */
+        public List<MusicFolder> getMusicFolders() {
+            return musicFolders;
+        }
+
+        /**
+         * @param folder The music folder.
+         * @return Whether the user has access to the music folder.
+         */
+        public boolean isAllowed(MusicFolder folder) {
+            return folder != null && folder.getId() != null && isAllowed(folder.getId().intValue());
+        }
+
+        /**
+         * @param folderId The music folder id.
+         * @return Whether the user has access to the music folder with this id.
+         */
+        public boolean isAllowed(int folderId) {
+            return folderId >= 0 && folderId < allowed.length && allowed[folderId];
+        }
+    }
 }
@@ -23,6 +23,7 @@ package org.airsonic.player.service;
 import org.airsonic.player.config.AirsonicScanConfig;
 import org.airsonic.player.domain.*;
 import org.airsonic.player.domain.CoverArt.EntityType;
+import org.airsonic.player.service.metadata.FFmpegParser;
 import org.airsonic.player.service.search.IndexManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +32,7 @@ import org.springframework.stereotype.Service;
 import org.subsonic.restapi.ScanStatus;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
@@ -39,6 +41,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
 import java.util.concurrent.ForkJoinWorkerThread;
@@ -46,7 +49,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Provides services for scanning the music library.
@@ -72,7 +76,12 @@ public class MediaScannerService {
         AlbumService albumService,
         TaskSchedulingService taskService,
         SimpMessagingTemplate messagingTemplate,
-        AirsonicScanConfig scanConfig
+        AirsonicScanConfig scanConfig,
+        DirectoryChangeTracker changeTracker,
+        MusicIndexService musicIndexService,
+        SongTitleIndex songTitleIndex,
+        RandomSongIndex randomSongIndex,
+        FFmpegParser ffmpegParser
     ) {
         this.settingsService = settingsService;
         this.indexManager = indexManager;
@@ -85,6 +94,11 @@ public class MediaScannerService {
         this.taskService = taskService;
         this.messagingTemplate = messagingTemplate;
         this.scanConfig = scanConfig;
+        this.changeTracker = changeTracker;
+        this.musicIndexService = musicIndexService;
+        this.songTitleIndex = songTitleIndex;
+        this.randomSongIndex = randomSongIndex;
+        this.ffmpegParser = ffmpegParser;
         init();
     }
 
@@ -99,12 +113,21 @@ public class MediaScannerService {
     private final TaskSchedulingService taskService;
     private final SimpMessagingTemplate messagingTemplate;
     private final AirsonicScanConfig scanConfig;
+    private final DirectoryChangeTracker changeTracker;
+    private final MusicIndexService musicIndexService;
+    private final SongTitleIndex songTitleIndex;
+    private final RandomSongIndex randomSongIndex;
+    private final FFmpegParser ffmpegParser;
 
     private int scannerParallelism;
     private AtomicInteger scanCount = new AtomicInteger(0);
+    private final AtomicLong scannedDirectoryCount = new AtomicLong(0);
+    private final AtomicLong scannedFileCount = new AtomicLong(0);
+    private final AtomicLong indexedCount = new AtomicLong(0);
 
     public void init() {
         this.scannerParallelism = scanConfig.getParallelism();
+        changeTracker.setChangeListener(this::scheduleIncrementalScan);
         indexManager.initializeIndexDirectory();
         schedule();
     }
@@ -145,6 +168,17 @@ public class MediaScannerService {
         }
     }
 
+    /**
+     * Schedules an incremental scan once watched directories stopped changing for a while.
+     */
+    private void scheduleIncrementalScan() {
+        if (!scanConfig.isIncremental() || settingsService.getFullScan()) {
+            return;
+        }
+        taskService.scheduleOnce("mediascanner-IncrementalTask", () -> scanLibrary(),
+                Instant.now().plusSeconds(scanConfig.getWatchDelay()), true);
+    }
+
     boolean neverScanned() {
         return indexManager.getStatistics() == null;
     }
@@ -188,6 +222,27 @@ public class MediaScannerService {
         return scanCount.get();
     }
 
+    /**
+     * Returns the number of directories listed so far by the current or last scan.
+     */
+    public long getScannedDirectoryCount() {
+        return scannedDirectoryCount.get();
+    }
+
+    /**
+     * Returns the number of non-directory files (songs, videos, ...) processed so far by the current or last scan.
+     */
+    public long getScannedFileCount() {
+        return scannedFileCount.get();
+    }
+
+    /**
+     * Returns the number of media files, albums and artists handed to the search index so far by the current or last scan.
+     */
+    public long getIndexedCount() {
+        return indexedCount.get();
+    }
+
     private static ForkJoinWorkerThreadFactory mediaScannerThreadFactory = new ForkJoinWorkerThreadFactory() {
         @Override
         public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
@@ -212,11 +267,12 @@ public class MediaScannerService {
         ForkJoinPool pool = new ForkJoinPool(scannerParallelism, mediaScannerThreadFactory, null, true);
 
         boolean isFullScan = settingsService.getFullScan();
+        boolean incremental = scanConfig.isIncremental() && !isFullScan;
         long timeoutSeconds = isFullScan ? scanConfig.getFullTimeout() : scanConfig.getTimeout();
         MediaLibraryStatistics statistics = new MediaLibraryStatistics();
         LOG.info("Starting media library scan with timeout {} seconds.", timeoutSeconds);
         CompletableFuture.runAsync(() -> {
-            doScanLibrary(pool, statistics);
+            doScanLibrary(pool, statistics, incremental, isFullScan);
         }, pool)
                 .orTimeout(timeoutSeconds, TimeUnit.SECONDS)
                 .whenComplete((r,e) -> {
@@ -231,42 +287,135 @@ public class MediaScannerService {
                 })
                 .thenRunAsync(() -> playlistFileService.importPlaylists(), pool)
                 .whenComplete((r,e) -> {
-                    indexManager.stopIndexing(statistics);
-                    LOG.info("Indexing complete.");
+                    try {
+                        indexManager.stopIndexing(statistics);
+                        LOG.info("Indexing complete.");
+                        refreshQuietly("music index", musicIndexService::refresh);
+                        refreshQuietly("song title index", songTitleIndex::refresh);
+                        refreshQuietly("random song index", randomSongIndex::refresh);
+                    } finally {
+                        // a failure must not block later scans
+                        setScanning(false);
+                        pool.shutdown();
+                        if (incremental && changeTracker.hasPendingChanges()) {
+                            scheduleIncrementalScan();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Refreshes data derived from the scanned library, logging a failure instead of ending the scan with it.
+     */
+    private static void refreshQuietly(String name, Runnable refresh) {
+        try {
+            refresh.run();
+        } catch (RuntimeException e) {
+            LOG.error("Could not refresh the {} after the media library scan.", name, e);
+        }
+    }
+
+    /**
+     * Rebuilds the search index from the media files, albums and artists in the database, without reading the music
+     * folders, e.g. after the index was lost or its settings changed.
+     * The rebuilding is done asynchronously, i.e., this method returns immediately.
+     */
+    public synchronized void rebuildIndex() {
+        if (isScanning()) {
+            return;
+        }
+        setScanning(true);
+
+        ForkJoinPool pool = new ForkJoinPool(scannerParallelism, mediaScannerThreadFactory, null, true);
+        LOG.info("Starting to rebuild the search index from the database.");
+        CompletableFuture.runAsync(() -> {
+            if (!indexManager.startRebuilding()) {
+                LOG.warn("Search index could not be opened. Skipping rebuild.");
+                return;
+            }
+            MediaLibraryStatistics statistics = new MediaLibraryStatistics();
+            try {
+                Optional.ofNullable(indexManager.getStatistics())
+                        .ifPresent(previous -> statistics.setScanDate(previous.getScanDate()));
+                List<MusicFolder> musicFolders = mediaFolderService.getAllMusicFolders();
+                statistics.setArtistCount(artistService.getArtistCount(musicFolders));
+                statistics.setAlbumCount(albumService.getAlbumCount(musicFolders));
+                mediaFileService.updateSongStatistics(musicFolders, statistics);
+                indexManager.reindexFromDatabase(pool);
+            } catch (RuntimeException e) {
+                // a partial index must not replace the previous one
+                indexManager.abortIndexing();
+                throw e;
+            }
+            indexManager.stopIndexing(statistics);
+            LOG.info("Search index rebuild complete.");
+        }, pool)
+                .whenComplete((r, e) -> {
+                    if (e != null) {
+                        LOG.error("Search index rebuild failed.", e);
+                    }
                     setScanning(false);
                     pool.shutdown();
                 });
     }
 
-    private void doScanLibrary(ForkJoinPool pool, MediaLibraryStatistics statistics) {
+    private void doScanLibrary(ForkJoinPool pool, MediaLibraryStatistics statistics, boolean incremental,
+            boolean fullScan) {
         LOG.info("Starting to scan media library.");
         LOG.debug("New last scan date is {}", statistics.getScanDate());
 
+        // Maps from artist name to album count.
         Map<String, AtomicInteger> albumCount = new ConcurrentHashMap<>();
         Map<String, Artist> artists = new ConcurrentHashMap<>();
         Map<String, Album> albums = new ConcurrentHashMap<>();
         Set<Integer> albumsInDb = Collections.synchronizedSet(new HashSet<>());
         try {
-            // Maps from artist name to album count.
             Genres genres = new Genres();
+            ScanWriteBuffer writeBuffer = newWriteBuffer(statistics);
+            List<MusicFolder> musicFolders = mediaFolderService.getAllMusicFolders();
+            Set<Path> changedDirectories = null;
+            if (incremental) {
+                changedDirectories = changeTracker.collectChangedDirectories(musicFolders, scanConfig.isWatch());
+                LOG.info("Scanning {} changed directories.", changedDirectories.size());
+            } else if (scanConfig.isIncremental()) {
+                changeTracker.startFullScan();
+            }
+            ScanContext context = new ScanContext(statistics, albumCount, artists, albums, albumsInDb, genres, writeBuffer,
+                    changedDirectories);
 
             scanCount.set(0);
+            scannedDirectoryCount.set(0);
+            scannedFileCount.set(0);
+            indexedCount.set(0);
 
             indexManager.startIndexing();
             mediaFileService.setMemoryCacheEnabled(false);
 
             // Recurse through all files on disk.
-            pool.submit(() -> {
-                mediaFolderService.getAllMusicFolders()
-                        .parallelStream()
-                        .forEach(musicFolder -> scanFile(pool, null, mediaFileService.getMediaFile(Paths.get(""), musicFolder, false),
-                                musicFolder, statistics, albumCount, artists, albums, albumsInDb, genres));
+            pool.invoke(new LibraryScanTask(context, getScanRoots(musicFolders, changedDirectories)));
+            writeBuffer.flush();
+
+            // Directories visited by an incremental scan, and those that disappeared from them
+            Map<MusicFolder, Set<String>> checkedDirectories = new HashMap<>();
+            if (incremental) {
+                context.scannedDirectories.forEach((musicFolder, paths) -> {
+                    Set<String> deleted = paths.stream()
+                            .flatMap(p -> changeTracker.removeDeletedDirectories(musicFolder.getPath().resolve(p)).stream())
+                            .map(p -> musicFolder.getPath().relativize(p).toString())
+                            .collect(Collectors.toSet());
+                    mediaFileService.markNonPresent(musicFolder, deleted);
+                    Set<String> checked = new HashSet<>(paths);
+                    checked.addAll(deleted);
+                    checkedDirectories.put(musicFolder, checked);
+                });
+            } else {
                 // Update statistics
                 statistics.incrementArtists(albumCount.size());
-                statistics.incrementAlbums(albumCount.values().parallelStream().mapToInt(x -> x.get()).sum());
-            }).join();
+                statistics.incrementAlbums(albumCount.values().stream().mapToInt(x -> x.get()).sum());
+            }
 
-            LOG.info("Scanned media library with {} entries.", scanCount.get());
+            LOG.info("Scanned media library with {} entries ({} directories, {} files, {} indexed).", scanCount.get(),
+                    scannedDirectoryCount.get(), scannedFileCount.get(), indexedCount.get());
 
             if (!isMediaScanning()) {
                 LOG.info("Scan cancelled.");
@@ -275,29 +424,43 @@ public class MediaScannerService {
 
             LOG.info("Persisting albums");
             CompletableFuture<Void> albumPersistence = CompletableFuture
-                    .allOf(albums.values().stream()
-                            .distinct()
-                            .map(a -> CompletableFuture.supplyAsync(() -> {
-                                return albumService.save(a);
-                            }, pool).thenAcceptAsync(coverArtService::persistIfNeeded))
-                            .toArray(CompletableFuture[]::new))
+                    .runAsync(() -> {
+                        ScanWriteBuffer albumBuffer = newWriteBuffer(statistics);
+                        if (incremental) {
+                            // only part of the songs of an album may have been visited
+                            albums.values().stream().distinct().forEach(this::updateAlbumSongs);
+                        }
+                        albums.values().stream().distinct().forEach(albumBuffer::update);
+                        albumBuffer.flush();
+                        albums.values().stream().distinct().forEach(coverArtService::persistIfNeeded);
+                    }, pool)
                     .thenRunAsync(() -> {
                         LOG.info("Marking non-present albums.");
-                        albumService.markNonPresent(statistics.getScanDate());
+                        if (incremental) {
+                            checkedDirectories.forEach((musicFolder, paths) ->
+                                    albumService.markNonPresent(musicFolder, paths, statistics.getScanDate()));
+                        } else {
+                            albumService.markNonPresent(statistics.getScanDate());
+                        }
                     }, pool)
                     .thenRunAsync(() -> LOG.info("Album persistence complete"), pool);
 
             LOG.info("Persisting artists");
             CompletableFuture<Void> artistPersistence = CompletableFuture
-                    .allOf(artists.values().stream()
-                            .distinct()
-                            .map(a -> CompletableFuture.supplyAsync(() -> {
-                                return artistService.save(a);
-                            }, pool).thenAcceptAsync(coverArtService::persistIfNeeded))
-                            .toArray(CompletableFuture[]::new))
-                    .thenRunAsync(() -> {
+                    .runAsync(() -> {
+                        ScanWriteBuffer artistBuffer = newWriteBuffer(statistics);
+                        artists.values().stream().distinct().forEach(artistBuffer::update);
+                        artistBuffer.flush();
+                        artists.values().stream().distinct().forEach(coverArtService::persistIfNeeded);
+                    }, pool)
+                    .thenCombineAsync(albumPersistence, (r, a) -> {
                         LOG.info("Marking non-present artists.");
-                        artistService.markNonPresent(statistics.getScanDate());
+                        if (incremental) {
+                            artistService.markNonPresentWithoutAlbums(statistics.getScanDate());
+                        } else {
+                            artistService.markNonPresent(statistics.getScanDate());
+                        }
+                        return r;
                     }, pool)
                     .thenRunAsync(() -> LOG.info("Artist persistence complete"), pool);
 
@@ -305,12 +468,23 @@ public class MediaScannerService {
             CompletableFuture<Void> genrePersistence = CompletableFuture
                     .runAsync(() -> {
                         LOG.info("Updating genres");
-                        long count = mediaFileService.updateGenres(genres.getGenres()).size();
-                        boolean genresSuccessful = count == genres.getGenres().size();
+                        // an incremental scan only saw part of the songs, count them in the database instead
+                        Genres scannedGenres = incremental ? mediaFileService.getGenreCounts(musicFolders) : genres;
+                        long count = mediaFileService.updateGenres(scannedGenres.getGenres()).size();
+                        boolean genresSuccessful = count == scannedGenres.getGenres().size();
                         LOG.info("Genre persistence successfully complete: {}", genresSuccessful);
                     }, pool);
 
             CompletableFuture.allOf(albumPersistence, artistPersistence, genrePersistence).join();
+
+            if (incremental) {
+                statistics.setArtistCount(artistService.getArtistCount(musicFolders));
+                statistics.setAlbumCount(albumService.getAlbumCount(musicFolders));
+                mediaFileService.updateSongStatistics(musicFolders, statistics);
+            } else if (fullScan) {
+                // every file was parsed again, so the cached ffprobe outputs left unused are of files gone
+                ffmpegParser.pruneProbeCache(statistics.getScanDate());
+            }
             LOG.info("Completed media library scan.");
 
         } catch (Throwable x) {
@@ -331,9 +505,80 @@ public class MediaScannerService {
         }
     }
 
-    private void scanFile(ForkJoinPool pool, MediaFile parent, MediaFile file, MusicFolder musicFolder, MediaLibraryStatistics statistics,
-            Map<String, AtomicInteger> albumCount, Map<String, Artist> artists, Map<String, Album> albums,
-            Set<Integer> albumsInDb, Genres genres) {
+    private ScanWriteBuffer newWriteBuffer(MediaLibraryStatistics statistics) {
+        return new ScanWriteBuffer(mediaFileService, albumService, artistService, statistics.getScanDate(),
+                scanConfig.getWriteBatchSize(), Duration.ofSeconds(scanConfig.getWriteFlushInterval()));
+    }
+
+    /**
+     * Returns the directories to start scanning from, as paths relative to their music folder: the root of every music
+     * folder, or for an incremental scan the changed directories not already reached by the scan of a changed
+     * ancestor.
+     *
+     * @param musicFolders music folders to scan
+     * @param changedDirectories changed directories, or null for a scan of everything
+     * @return directories to scan by music folder
+     */
+    private Map<MusicFolder, List<Path>> getScanRoots(List<MusicFolder> musicFolders, Set<Path> changedDirectories) {
+        Map<MusicFolder, List<Path>> roots = new LinkedHashMap<>();
+        for (MusicFolder musicFolder : musicFolders) {
+            roots.put(musicFolder, new ArrayList<>());
+        }
+        if (changedDirectories == null) {
+            roots.values().forEach(paths -> paths.add(Paths.get("")));
+            return roots;
+        }
+        for (Path directory : changedDirectories) {
+            if (isScannedFromChangedAncestor(directory, changedDirectories)) {
+                continue;
+            }
+            // the innermost music folder the directory belongs to
+            musicFolders.stream()
+                    .filter(f -> directory.startsWith(f.getPath()))
+                    .max(Comparator.comparingInt(f -> f.getPath().getNameCount()))
+                    .ifPresent(f -> roots.get(f).add(f.getPath().relativize(directory)));
+        }
+        return roots;
+    }
+
+    /**
+     * Returns whether the scan of a changed ancestor reaches a directory. Scans descend into changed directories and
+     * into directories not recorded before, and stop at recorded unchanged ones.
+     */
+    private boolean isScannedFromChangedAncestor(Path directory, Set<Path> changedDirectories) {
+        for (Path parent = directory.getParent(); parent != null; parent = parent.getParent()) {
+            if (changedDirectories.contains(parent)) {
+                return true;
+            }
+            if (changeTracker.isKnown(parent)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recounts the songs and duration of an album from the database.
+     *
+     * @param album album to update
+     */
+    private void updateAlbumSongs(Album album) {
+        List<MediaFile> songs = mediaFileService.getSongsForAlbum(album.getArtist(), album.getName());
+        album.setSongCount(songs.size());
+        album.setDuration(songs.stream().map(MediaFile::getDuration).filter(Objects::nonNull).mapToDouble(Double::doubleValue).sum());
+    }
+
+    /**
+     * Scans a single media file. Children of a directory are forked as new tasks pending on {@code task}, so that no
+     * worker ever blocks waiting for a subtree to complete.
+     *
+     * @param task task scanning the file
+     */
+    private void scanFile(ScanTask task) {
+        MediaFile file = task.file;
+        MusicFolder musicFolder = task.musicFolder;
+        ScanContext context = task.context;
+        MediaLibraryStatistics statistics = context.statistics;
 
         if (!isMediaScanning()) {
             LOG.debug("Scan cancelled.");
@@ -348,44 +593,49 @@ public class MediaScannerService {
         // Update the root folder if it has changed
         if (!musicFolder.getId().equals(file.getFolder().getId())) {
             file.setFolder(musicFolder);
-            mediaFileService.updateMediaFile(file);
+            context.writeBuffer.update(file);
         }
 
         indexManager.index(file, musicFolder);
+        indexedCount.incrementAndGet();
 
-        try {
-            pool.submit(() -> {
-                if (file.isDirectory()) {
-                    try (Stream<MediaFile> children = mediaFileService.getChildrenOf(file, true, true, false, false)
-                            .parallelStream()) {
-                        children.forEach(child -> scanFile(pool, file, child, musicFolder, statistics, albumCount,
-                                artists, albums, albumsInDb, genres));
-                    }
-                } else {
-                    if (musicFolder.getType() == MusicFolder.Type.MEDIA) {
-                        updateAlbum(parent, file, musicFolder, statistics.getScanDate(), albumCount, albums, albumsInDb);
-                        updateArtist(parent, file, musicFolder, statistics.getScanDate(), albumCount, artists);
-                    }
-                    statistics.incrementSongs(1);
-                }
+        if (file.isDirectory()) {
+            if (scanConfig.isIncremental()) {
+                changeTracker.record(file.getFullPath(), scanConfig.isWatch());
+            }
+            List<MediaFile> children = mediaFileService.getChildrenOf(file, true, true, false, false).stream()
+                    .filter(child -> child.isFile() || context.isChanged(child))
+                    .collect(Collectors.toList());
+            scannedDirectoryCount.incrementAndGet();
+            if (context.changedDirectories != null) {
+                context.scannedDirectories.computeIfAbsent(musicFolder, k -> ConcurrentHashMap.newKeySet()).add(file.getPath());
+            }
+            task.addToPendingCount(children.size());
+            for (MediaFile child : children) {
+                new ScanTask(task, context, file, child, musicFolder).fork();
+            }
+        } else {
+            if (musicFolder.getType() == MusicFolder.Type.MEDIA) {
+                updateAlbum(task.parent, file, musicFolder, statistics.getScanDate(), context.albumCount, context.albums,
+                        context.albumsInDb, context.writeBuffer);
+                updateArtist(task.parent, file, musicFolder, statistics.getScanDate(), context.albumCount, context.artists);
+            }
+            statistics.incrementSongs(1);
+            scannedFileCount.incrementAndGet();
+        }
 
-                if (file.isPresent() && (file.getLastScanned() == null || file.getLastScanned().isBefore(statistics.getScanDate()))) {
-                    file.setLastScanned(statistics.getScanDate());
-                    mediaFileService.updateMediaFile(file);
-                }
-                updateGenres(file, genres);
+        if (file.isPresent() && (file.getLastScanned() == null || file.getLastScanned().isBefore(statistics.getScanDate()))) {
+            context.writeBuffer.markPresent(file);
+        }
+        updateGenres(file, context.genres);
 
-                // don't add indexed tracks to the total duration to avoid double-counting
-                if ((file.getDuration() != null) && (!file.isIndexedTrack())) {
-                    statistics.incrementTotalDurationInSeconds(file.getDuration());
-                }
-                // don't add indexed tracks to the total size to avoid double-counting
-                if ((file.getFileSize() != null) && (!file.isIndexedTrack())) {
-                    statistics.incrementTotalLengthInBytes(file.getFileSize());
-                }
-            }).join();
-        } catch (Exception e) {
-            LOG.warn("scan file failed : {} in {}", file.getPath(), musicFolder.getPath(), e);
+        // don't add indexed tracks to the total duration to avoid double-counting
+        if ((file.getDuration() != null) && (!file.isIndexedTrack())) {
+            statistics.incrementTotalDurationInSeconds(file.getDuration());
+        }
+        // don't add indexed tracks to the total size to avoid double-counting
+        if ((file.getFileSize() != null) && (!file.isIndexedTrack())) {
+            statistics.incrementTotalLengthInBytes(file.getFileSize());
         }
     }
 
@@ -410,10 +660,11 @@ public class MediaScannerService {
      * @param albumCount album count
      * @param albums albums
      * @param albumsInDb albums in db
+     * @param writeBuffer buffer for media file updates
      */
     private void updateAlbum(MediaFile parent, MediaFile file, MusicFolder musicFolder,
             Instant lastScanned, Map<String, AtomicInteger> albumCount, Map<String, Album> albums,
-            Set<Integer> albumsInDb) {
+            Set<Integer> albumsInDb, ScanWriteBuffer writeBuffer) {
 
         String artist = file.getAlbumArtist() != null ? file.getAlbumArtist() : file.getArtist();
         if (file.getAlbumName() == null || artist == null || file.getParentPath() == null || !file.isAudio()) {
@@ -480,12 +731,13 @@ public class MediaScannerService {
             albumService.save(album);
             albumCount.computeIfAbsent(artist, k -> new AtomicInteger(0)).incrementAndGet();
             indexManager.index(album);
+            indexedCount.incrementAndGet();
         }
 
         // Update the file's album artist, if necessary.
         if (!Objects.equals(album.getArtist(), file.getAlbumArtist())) {
             file.setAlbumArtist(album.getArtist());
-            mediaFileService.updateMediaFile(file);
+            writeBuffer.update(file);
         }
     }
 
@@ -532,6 +784,7 @@ public class MediaScannerService {
             artist.setFolder(musicFolder);
             artistService.save(artist);
             indexManager.index(artist, musicFolder);
+            indexedCount.incrementAndGet();
         }
 
         if (artist.getArt() == null && parent != null) {
@@ -541,4 +794,97 @@ public class MediaScannerService {
             }
         }
     }
+
+    /**
+     * State shared by all tasks of a single library scan.
+     */
+    private class ScanContext {
+        private final MediaLibraryStatistics statistics;
+        private final Map<String, AtomicInteger> albumCount;
+        private final Map<String, Artist> artists;
+        private final Map<String, Album> albums;
+        private final Set<Integer> albumsInDb;
+        private final Genres genres;
+        private final ScanWriteBuffer writeBuffer;
+        private final Set<Path> changedDirectories;
+        private final Map<MusicFolder, Set<String>> scannedDirectories = new ConcurrentHashMap<>();
+
+        ScanContext(MediaLibraryStatistics statistics, Map<String, AtomicInteger> albumCount, Map<String, Artist> artists,
+                Map<String, Album> albums, Set<Integer> albumsInDb, Genres genres, ScanWriteBuffer writeBuffer,
+                Set<Path> changedDirectories) {
+            this.statistics = statistics;
+            this.albumCount = albumCount;
+            this.artists = artists;
+            this.albums = albums;
+            this.albumsInDb = albumsInDb;
+            this.genres = genres;
+            this.writeBuffer = writeBuffer;
+            this.changedDirectories = changedDirectories;
+        }
+
+        /**
+         * Returns whether a directory has to be scanned: always, unless this is an incremental scan and the directory
+         * is unchanged since it was last scanned.
+         */
+        boolean isChanged(MediaFile directory) {
+            return changedDirectories == null || changedDirectories.contains(directory.getFullPath())
+                    || !changeTracker.isKnown(directory.getFullPath());
+        }
+    }
+
+    /**
+     * Root of a library scan: forks one {@link ScanTask} per directory to scan and completes once all of them have.
+     */
+    private class LibraryScanTask extends CountedCompleter<Void> {
+        private final ScanContext context;
+        private final Map<MusicFolder, List<Path>> roots;
+
+        LibraryScanTask(ScanContext context, Map<MusicFolder, List<Path>> roots) {
+            this.context = context;
+            this.roots = roots;
+        }
+
+        @Override
+        public void compute() {
+            roots.forEach((musicFolder, paths) -> {
+                for (Path path : paths) {
+                    MediaFile root = mediaFileService.getMediaFile(path, musicFolder, false);
+                    if (root != null) {
+                        addToPendingCount(1);
+                        new ScanTask(this, context, null, root, musicFolder).fork();
+                    }
+                }
+            });
+            tryComplete();
+        }
+    }
+
+    /**
+     * Scans a single media file and forks a task for each of its children.
+     * The task completes when the whole subtree has been scanned.
+     */
+    private class ScanTask extends CountedCompleter<Void> {
+        private final ScanContext context;
+        private final MediaFile parent;
+        private final MediaFile file;
+        private final MusicFolder musicFolder;
+
+        ScanTask(CountedCompleter<?> completer, ScanContext context, MediaFile parent, MediaFile file, MusicFolder musicFolder) {
+            super(completer);
+            this.context = context;
+            this.parent = parent;
+            this.file = file;
+            this.musicFolder = musicFolder;
+        }
+
+        @Override
+        public void compute() {
+            try {
+                scanFile(this);
+            } catch (Exception e) {
+                LOG.warn("scan file failed : {} in {}", file.getPath(), musicFolder.getPath(), e);
+            }
+            tryComplete();
+        }
+    }
 }
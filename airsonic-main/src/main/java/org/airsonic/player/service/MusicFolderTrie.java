@@ -0,0 +1,178 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.util.Util;
+import org.apache.commons.io.FilenameUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable trie of the music folders by path component, resolving the music folder of a file by longest prefix match
+ * in as many steps as the file has path components.
+ * <p>
+ * Paths are matched as {@link org.airsonic.player.util.FileUtil#isFileInFolder} does: both separators are accepted,
+ * and paths are normalized. Looking up a normalized path does not allocate. Components are compared regardless of
+ * case on Windows.
+ */
+public class MusicFolderTrie {
+
+    private static final boolean IGNORE_CASE = Util.isWindows();
+
+    private final Node absoluteRoot = new Node(null);
+
+    private final Node relativeRoot = new Node(null);
+
+    public MusicFolderTrie(Collection<MusicFolder> folders) {
+        for (MusicFolder folder : folders) {
+            if (folder.getPath() == null) {
+                continue;
+            }
+            String path = normalize(folder.getPath());
+            Node node = isSeparator(path, 0) ? absoluteRoot : relativeRoot;
+            int length = path.length();
+            int start = skipSeparators(path, 0);
+            while (start < length) {
+                int end = nextSeparator(path, start);
+                Node child = node.getChild(path, start, end);
+                if (child == null) {
+                    child = new Node(path.substring(start, end));
+                    node.children.add(child);
+                }
+                node = child;
+                start = skipSeparators(path, end);
+            }
+            if (node.folder == null) {
+                node.folder = folder;
+            }
+        }
+    }
+
+    /**
+     * Returns the music folder with the longest path containing the given file.
+     *
+     * @param file               The file.
+     * @param includeDisabled    Whether to include disabled folders.
+     * @param includeNonExisting Whether to include non-existing folders.
+     * @return The music folder containing the file, or null if none does.
+     */
+    public MusicFolder find(Path file, boolean includeDisabled, boolean includeNonExisting) {
+        if (file == null) {
+            return null;
+        }
+        String path = file.toString();
+        if (needsNormalization(path)) {
+            path = normalize(file);
+        }
+        Node node = isSeparator(path, 0) ? absoluteRoot : relativeRoot;
+        MusicFolder result = accept(node.folder, includeDisabled, includeNonExisting) ? node.folder : null;
+        int length = path.length();
+        int start = skipSeparators(path, 0);
+        while (start < length) {
+            int end = nextSeparator(path, start);
+            node = node.getChild(path, start, end);
+            if (node == null) {
+                break;
+            }
+            if (accept(node.folder, includeDisabled, includeNonExisting)) {
+                result = node.folder;
+            }
+            start = skipSeparators(path, end);
+        }
+        return result;
+    }
+
+    private static boolean accept(MusicFolder folder, boolean includeDisabled, boolean includeNonExisting) {
+        return folder != null
+                && (includeDisabled || folder.isEnabled())
+                && (includeNonExisting || Files.exists(folder.getPath()));
+    }
+
+    private static String normalize(Path path) {
+        return Paths.get(FilenameUtils.separatorsToUnix(path.toString())).normalize().toString();
+    }
+
+    /**
+     * Whether the given path has "." or ".." components.
+     */
+    private static boolean needsNormalization(String path) {
+        int length = path.length();
+        int start = skipSeparators(path, 0);
+        while (start < length) {
+            int end = nextSeparator(path, start);
+            if (path.charAt(start) == '.' && (end - start == 1 || end - start == 2 && path.charAt(start + 1) == '.')) {
+                return true;
+            }
+            start = skipSeparators(path, end);
+        }
+        return false;
+    }
+
+    private static boolean isSeparator(String path, int index) {
+        return index < path.length() && isSeparator(path.charAt(index));
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '\\';
+    }
+
+    private static int skipSeparators(String path, int index) {
+        while (index < path.length() && isSeparator(path.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int nextSeparator(String path, int index) {
+        while (index < path.length() && !isSeparator(path.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static class Node {
+
+        private final String name;
+
+        private final List<Node> children = new ArrayList<>(1);
+
+        private MusicFolder folder;
+
+        private Node(String name) {
+            this.name = name;
+        }
+
+        private Node getChild(String path, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < children.size(); i++) {
+                Node child = children.get(i);
+                if (child.name.length() == length && child.name.regionMatches(IGNORE_CASE, 0, path, start, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -27,8 +27,11 @@ import org.springframework.stereotype.Service;
 
 import java.io.Serializable;
 import java.nio.file.Paths;
+import java.text.CollationKey;
 import java.text.Collator;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -36,6 +39,10 @@ import static java.util.stream.Collectors.toList;
 
 /**
  * Provides services for grouping artists by index.
+ * <p>
+ * The artists and songs at the top of each music folder are kept in an immutable snapshot per folder, with their
+ * collation keys computed once. Snapshots are rebuilt after each scan, and when the folder or the index settings
+ * change. Listing the index serves a view combining the snapshots of the requested folders, built once per snapshot.
  *
  * @author Sindre Mehus
  */
@@ -46,6 +53,9 @@ public class MusicIndexService {
     @Autowired
     private MediaFileService mediaFileService;
 
+    private final Map<Integer, FolderIndex> folderIndexes = new ConcurrentHashMap<>();
+    private final Map<List<Integer>, FolderView> folderViews = new ConcurrentHashMap<>();
+
     /**
      * Returns a map from music indexes to sorted lists of artists that are direct children of the given music folders.
      *
@@ -54,8 +64,7 @@ public class MusicIndexService {
      * @return A map from music indexes to sets of artists that are direct children of this music file.
      */
     public SortedMap<MusicIndex, List<MusicIndex.SortableArtistWithMediaFiles>> getIndexedArtists(List<MusicFolder> folders, boolean refresh) {
-        List<MusicIndex.SortableArtistWithMediaFiles> artists = createSortableArtists(folders, refresh);
-        return sortArtists(artists);
+        return getMusicFolderContent(folders, refresh).getIndexedArtists();
     }
 
     public SortedMap<MusicIndex, List<MusicIndex.SortableArtistWithArtist>> getIndexedArtists(List<Artist> artists) {
@@ -63,16 +72,108 @@ public class MusicIndexService {
         return sortArtists(sortableArtists);
     }
 
+    /**
+     * Returns the indexed artists and the single songs of the given music folders. The content is shared between
+     * callers and must not be modified.
+     *
+     * @param musicFoldersToUse The music folders.
+     * @param refresh           Whether to rebuild the snapshots of the music folders from the database.
+     * @return The content of the music folders.
+     */
     public MusicFolderContent getMusicFolderContent(List<MusicFolder> musicFoldersToUse, boolean refresh) {
-        SortedMap<MusicIndex, List<MusicIndex.SortableArtistWithMediaFiles>> indexedArtists = getIndexedArtists(musicFoldersToUse, refresh);
-        List<MediaFile> singleSongs = getSingleSongs(musicFoldersToUse, refresh);
-        return new MusicFolderContent(indexedArtists, singleSongs);
+        List<FolderIndex> indexes = getFolderIndexes(musicFoldersToUse, refresh);
+        List<Integer> key = musicFoldersToUse.stream().map(MusicFolder::getId).collect(toList());
+        FolderView view = folderViews.get(key);
+        if (view == null || !view.isBuiltFrom(indexes)) {
+            view = new FolderView(indexes, createMusicFolderContent(indexes));
+            folderViews.put(key, view);
+        }
+        return view.content;
+    }
+
+    /**
+     * Returns when the index of the given music folders last changed, i.e. when the artists or songs at the top of one
+     * of the folders were last found to differ.
+     *
+     * @param musicFolders The music folders.
+     * @return The time of the last change, or {@link Instant#EPOCH} if there are no music folders.
+     */
+    public Instant getLastModified(List<MusicFolder> musicFolders) {
+        return getFolderIndexes(musicFolders, false).stream()
+                .map(index -> index.changed)
+                .max(Comparator.naturalOrder())
+                .orElse(Instant.EPOCH);
+    }
+
+    /**
+     * Rebuilds the snapshots of the music folders from the database, e.g. once a scan has completed.
+     */
+    public void refresh() {
+        String settingsKey = getSettingsKey();
+        folderIndexes.replaceAll((id, index) -> createFolderIndex(index.folder, settingsKey, true, index));
+        folderViews.clear();
+    }
+
+    private List<FolderIndex> getFolderIndexes(List<MusicFolder> folders, boolean refresh) {
+        String settingsKey = getSettingsKey();
+        List<FolderIndex> indexes = new ArrayList<>(folders.size());
+        for (MusicFolder folder : folders) {
+            FolderIndex index = folderIndexes.get(folder.getId());
+            if (refresh || index == null || !index.isValidFor(folder, settingsKey)) {
+                index = createFolderIndex(folder, settingsKey, refresh, index);
+                folderIndexes.put(folder.getId(), index);
+            }
+            indexes.add(index);
+        }
+        return indexes;
     }
 
-    private List<MediaFile> getSingleSongs(List<MusicFolder> folders, boolean refresh) {
-        return folders.stream().flatMap(f -> mediaFileService
-                .getChildrenOf(mediaFileService.getMediaFile(Paths.get(""), f, !refresh), true, false, true, !refresh)
-                .stream()).collect(toList());
+    private FolderIndex createFolderIndex(MusicFolder folder, String settingsKey, boolean refresh, FolderIndex previous) {
+        String[] ignoredArticles = settingsService.getIgnoredArticlesAsArray();
+        Set<String> shortcutSet = new HashSet<String>(Arrays.asList(settingsService.getShortcutsAsArray()));
+        Collator collator = createCollator();
+
+        MediaFile root = mediaFileService.getMediaFile(Paths.get(""), folder, !refresh);
+        Map<String, ArtistEntry> artistMap = new LinkedHashMap<>();
+        for (MediaFile child : mediaFileService.getChildrenOf(root, false, true, true, !refresh)) {
+            if (shortcutSet.contains(child.getName())) {
+                continue;
+            }
+            String sortableName = createSortableName(child.getName(), ignoredArticles);
+            artistMap.computeIfAbsent(sortableName,
+                k -> new ArtistEntry(child.getName(), sortableName, collator.getCollationKey(sortableName)))
+                    .mediaFiles.add(child);
+        }
+        List<MediaFile> singleSongs = mediaFileService.getChildrenOf(root, true, false, true, !refresh);
+
+        FolderIndex index = new FolderIndex(folder, settingsKey, new ArrayList<>(artistMap.values()), singleSongs);
+        if (previous != null && previous.settingsKey.equals(settingsKey) && previous.signature.equals(index.signature)) {
+            index.changed = previous.changed;
+        }
+        return index;
+    }
+
+    private MusicFolderContent createMusicFolderContent(List<FolderIndex> indexes) {
+        SortedMap<String, MusicIndex.SortableArtistWithMediaFiles> artistMap = new TreeMap<String, MusicIndex.SortableArtistWithMediaFiles>();
+        List<MediaFile> singleSongs = new ArrayList<>();
+        for (FolderIndex index : indexes) {
+            for (ArtistEntry entry : index.artists) {
+                artistMap.computeIfAbsent(entry.sortableName,
+                    k -> new MusicIndex.SortableArtistWithMediaFiles(entry.name, entry.sortableName, entry.collationKey))
+                        .getMediaFiles().addAll(entry.mediaFiles);
+            }
+            singleSongs.addAll(index.singleSongs);
+        }
+        SortedMap<MusicIndex, List<MusicIndex.SortableArtistWithMediaFiles>> indexedArtists = sortArtists(new ArrayList<>(artistMap.values()));
+        return new MusicFolderContent(Collections.unmodifiableSortedMap(indexedArtists), Collections.unmodifiableList(singleSongs));
+    }
+
+    /**
+     * Returns the settings the snapshots depend on, so that they are rebuilt when one of them changes.
+     */
+    private String getSettingsKey() {
+        return String.join("\n", settingsService.getIndexString(), settingsService.getIgnoredArticles(),
+                settingsService.getShortcuts(), String.valueOf(settingsService.getLocale()));
     }
 
     public List<MediaFile> getShortcuts(List<MusicFolder> musicFoldersToUse) {
@@ -151,34 +252,6 @@ public class MusicIndexService {
         return result;
     }
 
-    private List<MusicIndex.SortableArtistWithMediaFiles> createSortableArtists(List<MusicFolder> folders, boolean refresh) {
-        String[] ignoredArticles = settingsService.getIgnoredArticlesAsArray();
-        String[] shortcuts = settingsService.getShortcutsAsArray();
-        SortedMap<String, MusicIndex.SortableArtistWithMediaFiles> artistMap = new TreeMap<String, MusicIndex.SortableArtistWithMediaFiles>();
-        Set<String> shortcutSet = new HashSet<String>(Arrays.asList(shortcuts));
-        Collator collator = createCollator();
-
-        for (MusicFolder folder : folders) {
-            MediaFile root = mediaFileService.getMediaFile(Paths.get(""), folder, !refresh);
-            List<MediaFile> children = mediaFileService.getChildrenOf(root, false, true, true, !refresh);
-            for (MediaFile child : children) {
-                if (shortcutSet.contains(child.getName())) {
-                    continue;
-                }
-
-                String sortableName = createSortableName(child.getName(), ignoredArticles);
-                MusicIndex.SortableArtistWithMediaFiles artist = artistMap.get(sortableName);
-                if (artist == null) {
-                    artist = new MusicIndex.SortableArtistWithMediaFiles(child.getName(), sortableName, collator);
-                    artistMap.put(sortableName, artist);
-                }
-                artist.addMediaFile(child);
-            }
-        }
-
-        return new ArrayList<MusicIndex.SortableArtistWithMediaFiles>(artistMap.values());
-    }
-
     private List<MusicIndex.SortableArtistWithArtist> createSortableArtists(List<Artist> artists) {
         List<MusicIndex.SortableArtistWithArtist> result = new ArrayList<MusicIndex.SortableArtistWithArtist>();
         String[] ignoredArticles = settingsService.getIgnoredArticlesAsArray();
@@ -235,6 +308,78 @@ public class MusicIndexService {
         this.mediaFileService = mediaFileService;
     }
 
+    /**
+     * An artist at the top of a music folder, with the directories sharing its sortable name.
+     */
+    private static class ArtistEntry {
+
+        private final String name;
+        private final String sortableName;
+        private final CollationKey collationKey;
+        private final List<MediaFile> mediaFiles = new ArrayList<>();
+
+        public ArtistEntry(String name, String sortableName, CollationKey collationKey) {
+            this.name = name;
+            this.sortableName = sortableName;
+            this.collationKey = collationKey;
+        }
+    }
+
+    /**
+     * Snapshot of the artists and songs at the top of a music folder.
+     */
+    private static class FolderIndex {
+
+        private final MusicFolder folder;
+        private final String settingsKey;
+        private final List<ArtistEntry> artists;
+        private final List<MediaFile> singleSongs;
+        private final List<Object> signature;
+        private Instant changed = Instant.now();
+
+        public FolderIndex(MusicFolder folder, String settingsKey, List<ArtistEntry> artists, List<MediaFile> singleSongs) {
+            this.folder = folder;
+            this.settingsKey = settingsKey;
+            this.artists = artists;
+            this.singleSongs = singleSongs;
+            this.signature = Stream.concat(artists.stream().flatMap(a -> a.mediaFiles.stream()), singleSongs.stream())
+                    .flatMap(m -> Stream.of(m.getId(), m.getChanged()))
+                    .collect(toList());
+        }
+
+        public boolean isValidFor(MusicFolder folder, String settingsKey) {
+            return this.settingsKey.equals(settingsKey)
+                    && Objects.equals(this.folder.getPath(), folder.getPath())
+                    && Objects.equals(this.folder.getChanged(), folder.getChanged());
+        }
+    }
+
+    /**
+     * Content of a set of music folders, combined from their snapshots.
+     */
+    private static class FolderView {
+
+        private final List<FolderIndex> sources;
+        private final MusicFolderContent content;
+
+        public FolderView(List<FolderIndex> sources, MusicFolderContent content) {
+            this.sources = sources;
+            this.content = content;
+        }
+
+        public boolean isBuiltFrom(List<FolderIndex> indexes) {
+            if (sources.size() != indexes.size()) {
+                return false;
+            }
+            for (int i = 0; i < sources.size(); i++) {
+                if (sources.get(i) != indexes.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private static class MusicIndexComparator implements Comparator<MusicIndex>, Serializable {
 
         private List<MusicIndex> indexes;
@@ -2,6 +2,8 @@ package org.airsonic.player.service;
 
 import com.google.common.collect.ImmutableMap;
 import org.airsonic.player.ajax.MediaFileEntry;
+import org.airsonic.player.ajax.PlayQueueDelta;
+import org.airsonic.player.ajax.PlayQueueDelta.Operation;
 import org.airsonic.player.ajax.PlayQueueInfo;
 import org.airsonic.player.domain.InternetRadio;
 import org.airsonic.player.domain.InternetRadioSource;
@@ -396,23 +398,44 @@ public class PlayQueueService {
         if (removeVideoFiles) {
             mediaFileService.removeVideoFiles(files);
         }
-        if (index != null) {
-            playQueue.addFilesAt(files, index);
-        } else {
-            playQueue.addFiles(true, files);
+        List<MediaFileEntry> entries = broadcast ? convertMediaFileList(player, "", files) : null;
+        long baseVersion;
+        Operation insert;
+        synchronized (playQueue) {
+            baseVersion = playQueue.getVersion();
+            if (index != null) {
+                insert = Operation.insert(index, entries);
+                playQueue.addFilesAt(files, index);
+            } else {
+                insert = Operation.insert(playQueue.size(), entries);
+                playQueue.addFiles(true, files);
+            }
+            playQueue.setRandomSearchCriteria(null);
+            playQueue.setInternetRadio(null);
         }
-        playQueue.setRandomSearchCriteria(null);
-        playQueue.setInternetRadio(null);
         if (broadcast) {
-            broadcastPlayQueue(player);
+            broadcastPlayQueueDelta(player, baseVersion, insert);
         }
     }
 
     public void addRandomCriteria(Player player, boolean append, RandomSearchCriteria criteria, boolean autoRandom) {
-        player.getPlayQueue().addFiles(append, mediaFileService.getRandomSongs(criteria, player.getUsername()));
-        player.getPlayQueue().setRandomSearchCriteria(autoRandom ? criteria : null);
-        player.getPlayQueue().setInternetRadio(null);
-        broadcastPlayQueue(player);
+        PlayQueue playQueue = player.getPlayQueue();
+        List<MediaFile> files = mediaFileService.getRandomSongs(criteria, player.getUsername());
+        List<MediaFileEntry> entries = append ? convertMediaFileList(player, "", files) : null;
+        long baseVersion;
+        int size;
+        synchronized (playQueue) {
+            baseVersion = playQueue.getVersion();
+            size = playQueue.size();
+            playQueue.addFiles(append, files);
+            playQueue.setRandomSearchCriteria(autoRandom ? criteria : null);
+            playQueue.setInternetRadio(null);
+        }
+        if (append) {
+            broadcastPlayQueueDelta(player, baseVersion, Operation.insert(size, entries));
+        } else {
+            broadcastPlayQueue(player);
+        }
     }
 
     public void addPlaylist(Player player, int id, boolean removeVideoFiles) {
@@ -422,12 +445,19 @@ public class PlayQueueService {
         if (removeVideoFiles) {
             mediaFileService.removeVideoFiles(files);
         }
+        List<MediaFileEntry> entries = convertMediaFileList(player, "", files);
 
-        playQueue.addFiles(true, files);
+        long baseVersion;
+        Operation insert;
+        synchronized (playQueue) {
+            baseVersion = playQueue.getVersion();
+            insert = Operation.insert(playQueue.size(), entries);
+            playQueue.addFiles(true, files);
 
-        playQueue.setRandomSearchCriteria(null);
-        playQueue.setInternetRadio(null);
-        broadcastPlayQueue(player);
+            playQueue.setRandomSearchCriteria(null);
+            playQueue.setInternetRadio(null);
+        }
+        broadcastPlayQueueDelta(player, baseVersion, insert);
     }
 
     public void reset(Player player, List<Integer> ids, boolean removeVideoFiles) {
@@ -457,25 +487,91 @@ public class PlayQueueService {
     public void remove(Player player, List<Integer> indexes) {
         Collections.sort(indexes);
 
-        for (int i = indexes.size() - 1; i >= 0; i--) {
-            player.getPlayQueue().removeFileAt(indexes.get(i));
+        PlayQueue playQueue = player.getPlayQueue();
+        List<Operation> removals = new ArrayList<>(indexes.size());
+        long baseVersion;
+        synchronized (playQueue) {
+            baseVersion = playQueue.getVersion();
+            for (int i = indexes.size() - 1; i >= 0; i--) {
+                removals.add(Operation.remove(playQueue.removeFileAt(indexes.get(i))));
+            }
         }
-        broadcastPlayQueue(player);
+        broadcastPlayQueueDelta(player, baseVersion, removals.toArray(new Operation[0]));
     }
 
     public void rearrange(Player player, List<Integer> indexes) {
-        player.getPlayQueue().rearrange(indexes);
-        broadcastPlayQueue(player);
+        PlayQueue playQueue = player.getPlayQueue();
+        Operation move = toMove(indexes);
+        long baseVersion;
+        synchronized (playQueue) {
+            baseVersion = playQueue.getVersion();
+            playQueue.rearrange(indexes);
+        }
+        if (move != null) {
+            broadcastPlayQueueDelta(player, baseVersion, move);
+        } else {
+            broadcastPlayQueue(player);
+        }
+    }
+
+    /**
+     * Returns the move of a single entry that the given new order of the entries amounts to, as made by dragging an
+     * entry in the play queue.
+     *
+     * @param indexes For each new position, the former position of the entry.
+     * @return The move, or null if the new order is not a single move.
+     */
+    static Operation toMove(List<Integer> indexes) {
+        if (indexes == null) {
+            return null;
+        }
+        int first = 0;
+        int last = indexes.size() - 1;
+        while (first < last && indexes.get(first) == first) {
+            first++;
+        }
+        while (last > first && indexes.get(last) == last) {
+            last--;
+        }
+        if (first >= last) {
+            return null;
+        }
+        if (indexes.get(first) == last && isShifted(indexes, first + 1, last, -1)) {
+            return Operation.move(last, first);
+        }
+        if (indexes.get(last) == first && isShifted(indexes, first, last - 1, 1)) {
+            return Operation.move(first, last);
+        }
+        return null;
+    }
+
+    private static boolean isShifted(List<Integer> indexes, int from, int to, int shift) {
+        for (int i = from; i <= to; i++) {
+            if (indexes.get(i) != i + shift) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public void up(Player player, int index) {
-        player.getPlayQueue().moveUp(index);
-        broadcastPlayQueue(player);
+        PlayQueue playQueue = player.getPlayQueue();
+        long baseVersion;
+        synchronized (playQueue) {
+            baseVersion = playQueue.getVersion();
+            playQueue.moveUp(index);
+        }
+        broadcastPlayQueueDelta(player, baseVersion, Operation.move(index - 1, index));
     }
 
     public void down(Player player, int index) {
-        player.getPlayQueue().moveDown(index);
-        broadcastPlayQueue(player);
+        PlayQueue playQueue = player.getPlayQueue();
+        long baseVersion;
+        synchronized (playQueue) {
+            baseVersion = playQueue.getVersion();
+            playQueue.moveDown(index);
+        }
+        broadcastPlayQueueDelta(player, baseVersion, Operation.move(index, index + 1));
     }
 
     public void toggleRepeat(Player player) {
@@ -526,8 +622,32 @@ public class PlayQueueService {
 
     private void broadcastPlayQueue(Player player, Function<PlayQueueInfo, PlayQueueInfo> playQueueModifier, String triggeringSessionId) {
         PlayQueueInfo info = playQueueModifier.apply(getPlayQueueInfo(player, ""));
-        webSocketClient.sendToUser(player.getUsername(), "/queue/playqueues/" + player.getId() + "/updated", info).join();
-        postBroadcast(info, player, triggeringSessionId);
+        // the player is started once the new play queue is sent, without waiting for it here
+        webSocketClient.sendToUser(player.getUsername(), "/queue/playqueues/" + player.getId() + "/updated", info)
+                .thenRun(() -> postBroadcast(info, player, triggeringSessionId));
+    }
+
+    /**
+     * Sends the given changes of the play queue, made from the given version on, to the clients of the player. The
+     * whole play queue is sent instead if it was changed otherwise meanwhile, or if it plays an internet radio.
+     *
+     * @param player      The player.
+     * @param baseVersion The version of the play queue before the changes.
+     * @param operations  The changes, one for each new version of the play queue.
+     */
+    private void broadcastPlayQueueDelta(Player player, long baseVersion, Operation... operations) {
+        PlayQueue playQueue = player.getPlayQueue();
+        long version = playQueue.getVersion();
+        if (version == baseVersion) {
+            return;
+        }
+        if (version - baseVersion != operations.length || playQueue.isInternetRadioEnabled()) {
+            broadcastPlayQueue(player);
+            return;
+        }
+        PlayQueueDelta delta = new PlayQueueDelta(baseVersion, version, Arrays.asList(operations), playQueue.getStatus(),
+                playQueue.getRepeatStatus(), playQueue.isShuffleRadioEnabled(), false, jukeboxService.getGain(player));
+        webSocketClient.sendToUser(player.getUsername(), "/queue/playqueues/" + player.getId() + "/delta", delta);
     }
 
     private void postBroadcast(PlayQueueInfo info, Player player, String sessionId) {
@@ -548,32 +668,38 @@ public class PlayQueueService {
     public PlayQueueInfo getPlayQueueInfo(Player player, String basePath) {
         PlayQueue playQueue = player.getPlayQueue();
 
+        long version;
+        InternetRadio radio;
+        List<MediaFile> files;
+        synchronized (playQueue) {
+            version = playQueue.getVersion();
+            radio = playQueue.getInternetRadio();
+            files = new ArrayList<>(playQueue.getFiles());
+        }
+
         List<MediaFileEntry> entries;
-        if (playQueue.isInternetRadioEnabled()) {
-            entries = convertInternetRadio(player);
+        if (radio != null) {
+            entries = convertInternetRadio(radio);
         } else {
-            entries = convertMediaFileList(player, basePath);
+            entries = convertMediaFileList(player, basePath, files);
         }
 
         float gain = jukeboxService.getGain(player);
 
-        return new PlayQueueInfo(entries, playQueue.getStatus(), playQueue.getRepeatStatus(), playQueue.isShuffleRadioEnabled(), playQueue.isInternetRadioEnabled(), gain);
+        return new PlayQueueInfo(entries, playQueue.getStatus(), playQueue.getRepeatStatus(), playQueue.isShuffleRadioEnabled(), radio != null, gain, version);
     }
 
-    private List<MediaFileEntry> convertMediaFileList(Player player, String basePath) {
+    private List<MediaFileEntry> convertMediaFileList(Player player, String basePath, List<MediaFile> files) {
         Function<MediaFile, String> streamUrlGenerator = file -> basePath + "stream?player=" + player.getId() + "&id=" + file.getId();
         Function<MediaFile, String> remoteStreamUrlGenerator = file -> basePath + jwtSecurityService
                 .addJWTToken(player.getUsername(), "ext/stream?player=" + player.getId() + "&id=" + file.getId());
         Function<MediaFile, String> remoteCoverArtUrlGenerator = file -> basePath
                 + jwtSecurityService.addJWTToken(player.getUsername(), "ext/coverArt.view?id=" + file.getId());
-        return mediaFileService.toMediaFileEntryList(player.getPlayQueue().getFiles(), player.getUsername(), true, true,
+        return mediaFileService.toMediaFileEntryList(files, player.getUsername(), true, true,
                 streamUrlGenerator, remoteStreamUrlGenerator, remoteCoverArtUrlGenerator);
     }
 
-    private List<MediaFileEntry> convertInternetRadio(Player player) {
-        PlayQueue playQueue = player.getPlayQueue();
-        InternetRadio radio = playQueue.getInternetRadio();
-
+    private List<MediaFileEntry> convertInternetRadio(InternetRadio radio) {
         final String radioHomepageUrl = radio.getHomepageUrl();
         final String radioName = radio.getName();
         Instant now = Instant.now();
@@ -0,0 +1,310 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.service;
+
+import com.google.common.util.concurrent.Striped;
+import org.airsonic.player.domain.Player;
+import org.airsonic.player.repository.PlayerRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory registry of the players, so that resolving the player of a request does not hit the database nor take a
+ * global lock.
+ * <p>
+ * Players are loaded once, then looked up without locking by id and by (username, IP address, client ID). Creations
+ * and changes of a player are serialized per key through striped locks. Changes made while resolving players (last
+ * seen, IP address, type) are only marked dirty, {@link PlayerService} writes a snapshot of them back to the database
+ * periodically.
+ */
+@Component
+public class PlayerRegistry {
+
+    private final PlayerRepository playerRepository;
+
+    private final Map<Integer, Player> players = new ConcurrentHashMap<>();
+
+    private final Map<AddressKey, Integer> addresses = new ConcurrentHashMap<>();
+
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+    private final Striped<Lock> locks = Striped.lock(64);
+
+    private volatile boolean loaded;
+
+    public PlayerRegistry(PlayerRepository playerRepository) {
+        this.playerRepository = playerRepository;
+    }
+
+    /**
+     * Returns the player with the given ID, reading it from the database if it is not registered yet.
+     *
+     * @param id The player ID.
+     * @return The player, or <code>null</code> if no such player exists.
+     */
+    public Player get(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        ensureLoaded();
+        Player player = players.get(id);
+        if (player == null) {
+            player = playerRepository.findById(id).map(this::putIfAbsent).orElse(null);
+        }
+        return player;
+    }
+
+    /**
+     * Returns all players, ordered by ID.
+     *
+     * @param filter The players to return.
+     * @return The matching players.
+     */
+    public List<Player> getAll(Predicate<Player> filter) {
+        ensureLoaded();
+        return players.values().stream()
+                .filter(filter)
+                .sorted(Comparator.comparing(Player::getId))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the player with the given IP address, username and client ID. If no username is given, only IP address
+     * and client ID are used as search criteria.
+     *
+     * @param ipAddress The IP address.
+     * @param username  The remote user. May be <code>null</code>.
+     * @param clientId  The third-party client ID, <code>null</code> for players not managed over the REST API.
+     * @return The player with the lowest ID matching, or <code>null</code> if no such player exists.
+     */
+    public Player getByAddress(String ipAddress, String username, String clientId) {
+        if (ipAddress == null) {
+            return null;
+        }
+        ensureLoaded();
+        if (username != null) {
+            Integer id = addresses.get(new AddressKey(username, ipAddress, clientId));
+            Player player = id == null ? null : players.get(id);
+            if (player != null && matches(player, ipAddress, username, clientId)) {
+                return player;
+            }
+        }
+        // not indexed yet, or the indexed player moved
+        Player player = players.values().stream()
+                .filter(p -> matches(p, ipAddress, username, clientId))
+                .min(Comparator.comparing(Player::getId))
+                .orElse(null);
+        if (player != null && username != null) {
+            addresses.put(new AddressKey(username, ipAddress, clientId), player.getId());
+        }
+        return player;
+    }
+
+    /**
+     * Returns the player with the given IP address, username and client ID, creating it if it does not exist. Two
+     * concurrent calls for the same address, username and client ID create a single player.
+     *
+     * @param ipAddress The IP address.
+     * @param username  The remote user. May be <code>null</code>.
+     * @param clientId  The third-party client ID, <code>null</code> for players not managed over the REST API.
+     * @param creator   Creates and saves the player.
+     * @return The existing or created player.
+     */
+    public Player getOrCreateByAddress(String ipAddress, String username, String clientId, Supplier<Player> creator) {
+        Lock lock = locks.get(new AddressKey(username, ipAddress, clientId));
+        lock.lock();
+        try {
+            Player player = getByAddress(ipAddress, username, clientId);
+            if (player == null) {
+                player = creator.get();
+                put(player);
+            }
+            return player;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies a change to a registered player, serialized with other changes of the same player. The player is marked
+     * dirty if the change reports an update.
+     *
+     * @param player The player.
+     * @param change Changes the player, returns whether it was updated.
+     * @return Whether the player was updated.
+     */
+    public boolean update(Player player, Predicate<Player> change) {
+        Lock lock = locks.get(player.getId());
+        lock.lock();
+        try {
+            if (!change.test(player)) {
+                return false;
+            }
+            index(player);
+            dirty.add(player.getId());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a player that was saved, replacing any registered instance with the same ID.
+     *
+     * @param player The saved player.
+     */
+    public void put(Player player) {
+        if (player == null || player.getId() == null) {
+            return;
+        }
+        players.put(player.getId(), player);
+        index(player);
+    }
+
+    /**
+     * Unregisters a deleted player.
+     *
+     * @param id The player ID.
+     */
+    public void remove(int id) {
+        players.remove(id);
+        dirty.remove(id);
+        addresses.values().removeIf(v -> v == id);
+    }
+
+    /**
+     * Returns the players changed since the last call, and forgets about their changes. Each player is copied under
+     * its lock, so the copies can be read while the registered players keep changing.
+     *
+     * @return Copies of the dirty players still registered.
+     */
+    public List<Player> drainDirty() {
+        List<Player> result = new ArrayList<>();
+        for (Integer id : dirty) {
+            dirty.remove(id);
+            Player player = players.get(id);
+            if (player != null) {
+                result.add(snapshot(player));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops every registered player, e.g. after players were deleted in bulk. Dirty changes are kept.
+     */
+    public synchronized void clear() {
+        loaded = false;
+        players.clear();
+        addresses.clear();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                playerRepository.findAll().forEach(this::putIfAbsent);
+                loaded = true;
+            }
+        }
+    }
+
+    private Player putIfAbsent(Player player) {
+        Player existing = players.putIfAbsent(player.getId(), player);
+        if (existing != null) {
+            return existing;
+        }
+        index(player);
+        return player;
+    }
+
+    private Player snapshot(Player player) {
+        Lock lock = locks.get(player.getId());
+        lock.lock();
+        try {
+            Player copy = new Player();
+            copy.setId(player.getId());
+            copy.setName(player.getName());
+            copy.setClientId(player.getClientId());
+            copy.setTechnology(player.getTechnology());
+            copy.setType(player.getType());
+            copy.setUsername(player.getUsername());
+            copy.setIpAddress(player.getIpAddress());
+            copy.setLastSeen(player.getLastSeen());
+            return copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void index(Player player) {
+        if (player.getUsername() != null && player.getIpAddress() != null) {
+            addresses.merge(new AddressKey(player.getUsername(), player.getIpAddress(), player.getClientId()),
+                    player.getId(), Math::min);
+        }
+    }
+
+    private static boolean matches(Player player, String ipAddress, String username, String clientId) {
+        return Objects.equals(clientId, player.getClientId()) && ipAddress.equals(player.getIpAddress())
+                && (username == null || username.equals(player.getUsername()));
+    }
+
+    private static class AddressKey {
+        private final String username;
+        private final String ipAddress;
+        private final String clientId;
+
+        AddressKey(String username, String ipAddress, String clientId) {
+            this.username = username;
+            this.ipAddress = ipAddress;
+            this.clientId = clientId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || this.getClass() != o.getClass()) {
+                return false;
+            }
+            AddressKey key = (AddressKey) o;
+            return Objects.equals(this.username, key.username) && Objects.equals(this.ipAddress, key.ipAddress)
+                    && Objects.equals(this.clientId, key.clientId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.username, this.ipAddress, this.clientId);
+        }
+    }
+}
@@ -44,10 +44,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.ServletRequestUtils;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -55,7 +57,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * Provides services for maintaining the set of players.
@@ -70,6 +71,8 @@ public class PlayerService {
     private static final String COOKIE_NAME = "player";
     private static final int COOKIE_EXPIRY = 365 * 24 * 3600; // One year
 
+    private static final Duration WRITE_BACK_PERIOD = Duration.ofSeconds(10);
+
     private static final Logger LOG = LoggerFactory.getLogger(PlayerService.class);
 
     @Autowired
@@ -80,11 +83,39 @@ public class PlayerService {
     private PlayerRepository playerRepository;
     @Autowired
     private AsyncWebSocketClient asyncWebSocketClient;
+    @Autowired
+    private PlayerRegistry playerRegistry;
+    @Autowired
+    private TaskSchedulingService taskService;
 
     @EventListener
     @Transactional
     public void onApplicationEvent(ApplicationReadyEvent event) {
         deleteOldPlayers(60);
+        playerRegistry.clear();
+        taskService.scheduleFixedDelayTask("player-write-back", this::writeBackPlayers,
+                Instant.now().plus(WRITE_BACK_PERIOD), WRITE_BACK_PERIOD, true);
+    }
+
+    /**
+     * Writes the changes made while resolving players (last seen, IP address, type) to the database, coalescing all
+     * changes of a player since the previous write.
+     */
+    @PreDestroy
+    public void writeBackPlayers() {
+        for (Player player : playerRegistry.drainDirty()) {
+            try {
+                playerRepository.updateSeen(player.getId(), player.getUsername(), player.getIpAddress(),
+                        player.getType(), player.getLastSeen());
+            } catch (Exception e) {
+                LOG.warn("Could not update player {}", player.getId(), e);
+                continue;
+            }
+            if (player.getUsername() != null) {
+                asyncWebSocketClient.sendToUser(player.getUsername(), "/queue/players/updated",
+                        ImmutableMap.of("id", player.getId(), "description", player.getShortDescription(), "tech", player.getTechnology()));
+            }
+        }
     }
 
     private Map<Integer, PlayQueue> playlists = Collections.synchronizedMap(new HashMap<Integer, PlayQueue>());
@@ -94,12 +125,7 @@ public class PlayerService {
      * @param player The player to add the playlist to.
      */
     private void addPlaylist(Player player) {
-        PlayQueue playQueue = playlists.get(player.getId());
-        if (playQueue == null) {
-            playQueue = new PlayQueue();
-            playlists.put(player.getId(), playQueue);
-        }
-        player.setPlayQueue(playQueue);
+        player.setPlayQueue(playlists.computeIfAbsent(player.getId(), id -> new PlayQueue()));
     }
 
     /**
@@ -124,14 +150,14 @@ public class PlayerService {
         return getPlayer(request, response, null, username, remoteControlEnabled, isStreamRequest);
     }
 
-    public synchronized Player getPlayer(HttpServletRequest request, HttpServletResponse response,
+    public Player getPlayer(HttpServletRequest request, HttpServletResponse response,
             Integer playerId, String username, boolean remoteControlEnabled, boolean isStreamRequest) throws Exception {
         return getPlayer(request, response, playerId, username, request.getHeader("user-agent"), remoteControlEnabled, isStreamRequest, false);
     }
 
     /**
      * Returns the player associated with the given HTTP request.  If no such player exists, a new
-     * one is created.
+     * one is created. Players are resolved from the {@link PlayerRegistry}, without any global lock.
      *
      * @param request              The HTTP request.
      * @param response             The HTTP response.
@@ -143,7 +169,7 @@ public class PlayerService {
      * @param isWebSocketRequest   Whether the HTTP request is a request for a WebSocket.
      * @return The player associated with the given HTTP request. Never <code>null</code>.
      */
-    public synchronized Player getPlayer(HttpServletRequest request, HttpServletResponse response,
+    public Player getPlayer(HttpServletRequest request, HttpServletResponse response,
             Integer playerId, String username, String userAgent, boolean remoteControlEnabled, boolean isStreamRequest, boolean isWebSocketRequest) throws Exception {
 
         Player player = getPlayerById(playerId);
@@ -171,19 +197,23 @@ public class PlayerService {
             player = null;
         }
 
-        // Look for player with same IP address and user name.
+        // Look for a non-REST player with same IP address and user name. If no player was found, create it.
+        boolean created = false;
         if (player == null) {
-            player = getNonRestPlayerByIpAddressAndUsername(request.getRemoteAddr(), username);
+            String remoteAddress = request.getRemoteAddr();
+            Player[] createdPlayer = new Player[1];
+            player = playerRegistry.getOrCreateByAddress(remoteAddress, username, null, () -> {
+                Player p = new Player();
+                p.setLastSeen(Instant.now());
+                populatePlayer(p, username, remoteAddress, userAgent, isStreamRequest);
+                createdPlayer[0] = createPlayer(p);
+                return createdPlayer[0];
+            });
+            created = player == createdPlayer[0];
         }
-
-        // If no player was found, create it.
-        if (player == null) {
-            player = new Player();
-            player.setLastSeen(Instant.now());
-            populatePlayer(player, username, request.getRemoteAddr(), userAgent, isStreamRequest);
-            player = createPlayer(player);
-        } else if (populatePlayer(player, username, request.getRemoteAddr(), userAgent, isStreamRequest)) {
-            updatePlayer(player);
+        if (!created) {
+            // written back to the database later on
+            playerRegistry.update(player, p -> populatePlayer(p, username, request.getRemoteAddr(), userAgent, isStreamRequest));
         }
 
         // Set cookie in response.
@@ -204,6 +234,8 @@ public class PlayerService {
             request.getSession().setAttribute("player", player.getId());
         }
 
+        // players found by address, or loaded by the registry, have no play queue yet
+        addPlaylist(player);
         return player;
     }
 
@@ -236,6 +268,7 @@ public class PlayerService {
     @Transactional
     public void updatePlayer(Player player) {
         playerRepository.save(player);
+        playerRegistry.put(player);
         if (player.getUsername() != null) {
             asyncWebSocketClient.sendToUser(player.getUsername(), "/queue/players/updated",
                     ImmutableMap.of("id", player.getId(), "description", player.getShortDescription(), "tech", player.getTechnology()));
@@ -249,13 +282,11 @@ public class PlayerService {
      * @return The player with the given ID, or <code>null</code> if no such player exists.
      */
     public Player getPlayerById(Integer id) {
-        if (id == null) {
-            return null;
-        } else {
-            Optional<Player> optPlayer = playerRepository.findById(id);
-            optPlayer.ifPresent(p -> addPlaylist(p));
-            return optPlayer.orElse(null);
+        Player player = playerRegistry.get(id);
+        if (player != null) {
+            addPlaylist(player);
         }
+        return player;
     }
 
     /**
@@ -268,29 +299,6 @@ public class PlayerService {
         return !statusService.getStreamStatusesForPlayer(player).isEmpty();
     }
 
-    /**
-     * Returns the (non-REST) player with the given IP address and username. If no username is given, only IP address is
-     * used as search criteria.
-     *
-     * @param ipAddress The IP address.
-     * @param username  The remote user.
-     * @return The player with the given IP address, or <code>null</code> if no such player exists.
-     */
-    private Player getNonRestPlayerByIpAddressAndUsername(final String ipAddress, final String username) {
-        if (ipAddress == null) {
-            return null;
-        }
-        for (Player player : getAllPlayers()) {
-            boolean isRest = player.getClientId() != null;
-            boolean ipMatches = ipAddress.equals(player.getIpAddress());
-            boolean userMatches = username == null || username.equals(player.getUsername());
-            if (!isRest && ipMatches && userMatches) {
-                return player;
-            }
-        }
-        return null;
-    }
-
     /**
      * Reads the player ID from the cookie in the HTTP request.
      *
@@ -327,7 +335,7 @@ public class PlayerService {
             LOG.warn("Username is null");
             return new ArrayList<>();
         }
-        List<Player> players = playerRepository.findByUsername(username);
+        List<Player> players = playerRegistry.getAll(p -> username.equals(p.getUsername()));
         players.forEach(player -> addPlaylist(player));
         return players;
     }
@@ -341,12 +349,8 @@ public class PlayerService {
      * @return All relevant players.
      */
     public List<Player> getPlayersForUserAndClientId(String username, String clientId) {
-        List<Player> players;
-        if (clientId == null) {
-            players = playerRepository.findByUsernameAndClientIdIsNull(username);
-        } else {
-            players = playerRepository.findByUsernameAndClientId(username, clientId);
-        }
+        List<Player> players = playerRegistry.getAll(p -> StringUtils.equals(username, p.getUsername())
+                && StringUtils.equals(clientId, p.getClientId()));
         players.forEach(player -> addPlaylist(player));
         return players;
     }
@@ -357,7 +361,7 @@ public class PlayerService {
      * @return All currently registered players.
      */
     public List<Player> getAllPlayers() {
-        List<Player> players = playerRepository.findAll();
+        List<Player> players = playerRegistry.getAll(p -> true);
         players.forEach(player -> addPlaylist(player));
         return players;
     }
@@ -372,6 +376,7 @@ public class PlayerService {
         playerRepository.findById(id).ifPresentOrElse(player -> {
             playlists.remove(id);
             playerRepository.delete(player);
+            playerRegistry.remove(id);
             asyncWebSocketClient.send("/topic/players/deleted", id);
         },
             () -> {
@@ -442,6 +447,7 @@ public class PlayerService {
             saved = playerRepository.save(clone);
             playerRepository.delete(player);
         }
+        playerRegistry.put(saved);
 
         // Add player to playlist map.
         addPlaylist(saved);
@@ -490,6 +496,7 @@ public class PlayerService {
             player.setTechnology(PlayerTechnology.valueOf(command.getTechnologyName()));
             player.setTranscodings(transcodingRepository.findAllById(command.getActiveTranscodingIds()));
             playerRepository.save(player);
+            playerRegistry.put(player);
             addPlaylist(player);
             return player;
         }).orElse(null);
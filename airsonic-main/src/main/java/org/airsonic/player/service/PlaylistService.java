@@ -23,6 +23,8 @@ import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.PlayQueue;
 import org.airsonic.player.domain.Playlist;
 import org.airsonic.player.domain.User;
+import org.airsonic.player.repository.MediaFileRepository;
+import org.airsonic.player.repository.OffsetBasedPageRequest;
 import org.airsonic.player.repository.PlaylistRepository;
 import org.airsonic.player.repository.UserRepository;
 import org.airsonic.player.service.cache.PlaylistCache;
@@ -59,6 +61,8 @@ public class PlaylistService {
     @Autowired
     private PlaylistRepository playlistRepository;
     @Autowired
+    private MediaFileRepository mediaFileRepository;
+    @Autowired
     private AsyncWebSocketClient asyncWebSocketClient;
     @Autowired
     private PlaylistCache playlistCache;
@@ -74,6 +78,27 @@ public class PlaylistService {
         return playlistRepository.findAll(sort);
     }
 
+    /**
+     * Returns a page of all playlists.
+     *
+     * @param offset Number of playlists to skip.
+     * @param count  Maximum number of playlists to return.
+     * @return The playlists, sorted by name.
+     */
+    public List<Playlist> getAllPlaylists(long offset, int count) {
+        Sort sort = Sort.by("name").ascending().and(Sort.by("id"));
+        return playlistRepository.findAllBy(new OffsetBasedPageRequest(offset, count, sort));
+    }
+
+    /**
+     * Returns the number of playlists.
+     *
+     * @return Number of playlists.
+     */
+    public long getPlaylistCount() {
+        return playlistRepository.count();
+    }
+
 
     /**
      * Returns all playlists that the given user is allowed to read.
@@ -156,6 +181,28 @@ public class PlaylistService {
         ).stream().filter(x -> x.isPresent() || includeNotPresent).collect(Collectors.toList());
     }
 
+    /**
+     * Returns a page of the present files in a playlist, in playlist order, without loading the whole playlist.
+     *
+     * @param id     The playlist id.
+     * @param offset Number of files to skip.
+     * @param count  Maximum number of files to return.
+     * @return The files of the page.
+     */
+    public List<MediaFile> getFilesInPlaylist(int id, long offset, int count) {
+        return mediaFileRepository.findByPlaylistIdAndPresentTrue(id, new OffsetBasedPageRequest(offset, count, Sort.unsorted()));
+    }
+
+    /**
+     * Returns the number of present files in a playlist.
+     *
+     * @param id The playlist id.
+     * @return Number of files.
+     */
+    public int getFileCountInPlaylist(int id) {
+        return mediaFileRepository.countByPlaylistIdAndPresentTrue(id);
+    }
+
     @Transactional
     public Playlist setFilesInPlaylist(int id, List<MediaFile> files) {
         return playlistRepository.findById(id).map(p -> {
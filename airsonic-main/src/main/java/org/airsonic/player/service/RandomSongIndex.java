@@ -0,0 +1,246 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MediaFile.MediaType;
+import org.airsonic.player.domain.RandomSearchCriteria;
+import org.airsonic.player.repository.MediaFileRepository;
+import org.airsonic.player.repository.StarredMediaFileRepository;
+import org.airsonic.player.service.MediaFolderService.MusicFolderAccess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-memory index of the IDs of the present songs with their folder, year, genre and format, so that random songs are
+ * drawn without sorting the whole media table by a random value.
+ * <p>
+ * The index answers the folder, year, genre and format criteria, and the starred criteria from the IDs of the songs
+ * starred by each user. Candidates are drawn from it in random order and checked against the remaining criteria in the
+ * database by the caller. The index is built on first use and rebuilt by {@link MediaScannerService} after every scan,
+ * so songs added in between are only drawn after the next scan. The starred songs of a user are loaded on first use
+ * and reloaded after the user stars or unstars songs.
+ */
+@Component
+public class RandomSongIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RandomSongIndex.class);
+
+    private final MediaFileRepository mediaFileRepository;
+
+    private final StarredMediaFileRepository starredMediaFileRepository;
+
+    private final Map<String, Set<Integer>> starredIds = new ConcurrentHashMap<>();
+
+    private volatile Songs songs;
+
+    public RandomSongIndex(MediaFileRepository mediaFileRepository, StarredMediaFileRepository starredMediaFileRepository) {
+        this.mediaFileRepository = mediaFileRepository;
+        this.starredMediaFileRepository = starredMediaFileRepository;
+    }
+
+    /**
+     * Rebuilds the index from the present songs in the database.
+     */
+    public void refresh() {
+        songs = new Songs(mediaFileRepository.findRandomSelectionAttributesByMediaType(MediaType.MUSIC));
+        LOG.debug("Indexed {} songs for random selection", songs.size());
+    }
+
+    /**
+     * Returns the songs matching the folder, year, genre, format and starred conditions of the given criteria, to be
+     * drawn in random order.
+     *
+     * @param criteria The criteria. Its other conditions are ignored.
+     * @param username The user whose starred songs are matched. May be <code>null</code>.
+     * @return The candidate songs.
+     */
+    public Sample sample(RandomSearchCriteria criteria, String username) {
+        Set<Integer> starred = null;
+        if (criteria.isShowStarredSongs() != criteria.isShowUnstarredSongs()) {
+            starred = username == null ? Set.of() : starredIds.computeIfAbsent(username,
+                u -> Set.copyOf(starredMediaFileRepository.findMediaFileIdsByUsername(u)));
+        }
+        return getSongs().sample(criteria, starred, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Forgets the starred songs of a user, after the user starred or unstarred songs.
+     *
+     * @param username The user.
+     */
+    public void invalidateStarred(String username) {
+        starredIds.remove(username);
+    }
+
+    private Songs getSongs() {
+        if (songs == null) {
+            synchronized (this) {
+                if (songs == null) {
+                    refresh();
+                }
+            }
+        }
+        return songs;
+    }
+
+    /**
+     * Columns of the indexed songs, with genres and formats replaced by their position in a dictionary.
+     */
+    static class Songs {
+
+        private static final int NONE = -1;
+
+        private final int[] ids;
+
+        private final int[] folderIds;
+
+        private final int[] years;
+
+        private final boolean[] hasYear;
+
+        private final int[] genres;
+
+        private final int[] formats;
+
+        private final Map<String, Integer> genreDictionary = new HashMap<>();
+
+        private final Map<String, Integer> formatDictionary = new HashMap<>();
+
+        /**
+         * @param rows The ID, folder ID, year, genre and format of each song.
+         */
+        Songs(List<Object[]> rows) {
+            int size = rows.size();
+            ids = new int[size];
+            folderIds = new int[size];
+            years = new int[size];
+            hasYear = new boolean[size];
+            genres = new int[size];
+            formats = new int[size];
+            for (int i = 0; i < size; i++) {
+                Object[] row = rows.get(i);
+                ids[i] = (Integer) row[0];
+                folderIds[i] = row[1] == null ? NONE : (Integer) row[1];
+                hasYear[i] = row[2] != null;
+                years[i] = hasYear[i] ? (Integer) row[2] : 0;
+                genres[i] = encode(genreDictionary, (String) row[3]);
+                formats[i] = encode(formatDictionary, (String) row[4]);
+            }
+        }
+
+        private static int encode(Map<String, Integer> dictionary, String value) {
+            return value == null ? NONE : dictionary.computeIfAbsent(value, k -> dictionary.size());
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        /**
+         * @param starredIds The songs starred by the user, matched against the starred conditions of the criteria.
+         *                   May be <code>null</code> to ignore these conditions.
+         */
+        Sample sample(RandomSearchCriteria criteria, Set<Integer> starredIds, Random random) {
+            MusicFolderAccess folders = new MusicFolderAccess(criteria.getMusicFolders());
+            int genre = criteria.getGenre() == null ? NONE : genreDictionary.getOrDefault(criteria.getGenre(), Integer.MIN_VALUE);
+            int format = criteria.getFormat() == null ? NONE : formatDictionary.getOrDefault(criteria.getFormat(), Integer.MIN_VALUE);
+            if (genre == Integer.MIN_VALUE || format == Integer.MIN_VALUE) {
+                return new Sample(new int[0], random);
+            }
+            Integer fromYear = criteria.getFromYear();
+            Integer toYear = criteria.getToYear();
+            boolean filterYear = fromYear != null || toYear != null;
+            boolean filterStarred = starredIds != null && criteria.isShowStarredSongs() != criteria.isShowUnstarredSongs();
+
+            int[] candidates = new int[ids.length];
+            int count = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (!folders.isAllowed(folderIds[i])
+                        || genre != NONE && genres[i] != genre
+                        || format != NONE && formats[i] != format) {
+                    continue;
+                }
+                if (filterYear && (!hasYear[i]
+                        || fromYear != null && years[i] < fromYear
+                        || toYear != null && years[i] > toYear)) {
+                    continue;
+                }
+                if (filterStarred && starredIds.contains(ids[i]) != criteria.isShowStarredSongs()) {
+                    continue;
+                }
+                candidates[count++] = ids[i];
+            }
+            return new Sample(Arrays.copyOf(candidates, count), random);
+        }
+    }
+
+    /**
+     * Song IDs drawn in random order without replacement, shuffling only as many as are drawn.
+     */
+    public static class Sample {
+
+        private final int[] ids;
+
+        private final Random random;
+
+        private int drawn;
+
+        Sample(int[] ids, Random random) {
+            this.ids = ids;
+            this.random = random;
+        }
+
+        /**
+         * Returns the number of songs not drawn yet.
+         */
+        public int remaining() {
+            return ids.length - drawn;
+        }
+
+        /**
+         * Draws the next songs.
+         *
+         * @param count The maximum number of songs to draw.
+         * @return The IDs of the drawn songs, fewer than {@code count} if the sample is exhausted.
+         */
+        public List<Integer> next(int count) {
+            int end = drawn + Math.min(count, remaining());
+            List<Integer> result = new ArrayList<>(end - drawn);
+            for (; drawn < end; drawn++) {
+                int j = drawn + random.nextInt(ids.length - drawn);
+                int id = ids[j];
+                ids[j] = ids[drawn];
+                ids[drawn] = id;
+                result.add(id);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.Album;
+import org.airsonic.player.domain.Artist;
+import org.airsonic.player.domain.MediaFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-behind buffer scoped to a single media library scan.
+ * <p>
+ * Collects updates of already persisted media files, albums and artists as well as the media files seen by the scan,
+ * and writes them in batches once {@code batchSize} updates are pending or {@code flushInterval} has elapsed since
+ * the last write. Seen media files are marked present with a bulk update by id instead of being saved one by one;
+ * not by path, as the indexed tracks of a CUE sheet share the path of their base file. {@link #flush()} must be
+ * called once the scan is done.
+ * <p>
+ * The buffer is safe to use from all scanner threads; a batch is written by the thread that filled it.
+ */
+class ScanWriteBuffer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScanWriteBuffer.class);
+
+    private final MediaFileService mediaFileService;
+    private final AlbumService albumService;
+    private final ArtistService artistService;
+    private final Instant lastScanned;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+
+    private final Object lock = new Object();
+    private Set<Integer> presentIds = new HashSet<>();
+    private Map<Integer, MediaFile> mediaFiles = new LinkedHashMap<>();
+    private List<Album> albums = new ArrayList<>();
+    private List<Artist> artists = new ArrayList<>();
+    private int pendingCount;
+    private long lastFlush = System.nanoTime();
+
+    ScanWriteBuffer(MediaFileService mediaFileService, AlbumService albumService, ArtistService artistService,
+            Instant lastScanned, int batchSize, Duration flushInterval) {
+        this.mediaFileService = mediaFileService;
+        this.albumService = albumService;
+        this.artistService = artistService;
+        this.lastScanned = lastScanned;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+    }
+
+    /**
+     * Marks the media file as present and scanned at the scan date.
+     *
+     * @param mediaFile persisted media file seen by the scan
+     */
+    public void markPresent(MediaFile mediaFile) {
+        mediaFile.setLastScanned(lastScanned);
+        mediaFile.setPresent(true);
+        boolean due;
+        synchronized (lock) {
+            if (presentIds.add(mediaFile.getId())) {
+                pendingCount++;
+            }
+            due = isDue();
+        }
+        if (due) {
+            flush();
+        }
+    }
+
+    /**
+     * Schedules an update of the media file. Media files that are not persisted yet are saved right away.
+     *
+     * @param mediaFile media file to update
+     */
+    public void update(MediaFile mediaFile) {
+        if (mediaFile.getId() == null) {
+            mediaFileService.updateMediaFile(mediaFile);
+            return;
+        }
+        boolean due;
+        synchronized (lock) {
+            if (mediaFiles.put(mediaFile.getId(), mediaFile) == null) {
+                pendingCount++;
+            }
+            due = isDue();
+        }
+        if (due) {
+            flush();
+        }
+    }
+
+    /**
+     * Schedules saving the album.
+     *
+     * @param album album to save
+     */
+    public void update(Album album) {
+        boolean due;
+        synchronized (lock) {
+            albums.add(album);
+            pendingCount++;
+            due = isDue();
+        }
+        if (due) {
+            flush();
+        }
+    }
+
+    /**
+     * Schedules saving the artist.
+     *
+     * @param artist artist to save
+     */
+    public void update(Artist artist) {
+        boolean due;
+        synchronized (lock) {
+            artists.add(artist);
+            pendingCount++;
+            due = isDue();
+        }
+        if (due) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all pending updates to the database.
+     */
+    public void flush() {
+        Set<Integer> flushPresentIds;
+        Map<Integer, MediaFile> flushMediaFiles;
+        List<Album> flushAlbums;
+        List<Artist> flushArtists;
+        synchronized (lock) {
+            lastFlush = System.nanoTime();
+            if (pendingCount == 0) {
+                return;
+            }
+            flushPresentIds = presentIds;
+            flushMediaFiles = mediaFiles;
+            flushAlbums = albums;
+            flushArtists = artists;
+            presentIds = new HashSet<>();
+            mediaFiles = new LinkedHashMap<>();
+            albums = new ArrayList<>();
+            artists = new ArrayList<>();
+            pendingCount = 0;
+        }
+
+        LOG.debug("Writing {} media files, {} present media files, {} albums and {} artists", flushMediaFiles.size(),
+                flushPresentIds.size(), flushAlbums.size(), flushArtists.size());
+        if (!flushMediaFiles.isEmpty()) {
+            mediaFileService.updateMediaFiles(flushMediaFiles.values());
+        }
+        if (!flushPresentIds.isEmpty() && !mediaFileService.markPresent(flushPresentIds, lastScanned)) {
+            LOG.warn("Failed to mark {} media files present", flushPresentIds.size());
+        }
+        if (!flushAlbums.isEmpty()) {
+            albumService.saveAll(flushAlbums);
+        }
+        if (!flushArtists.isEmpty()) {
+            artistService.saveAll(flushArtists);
+        }
+    }
+
+    private boolean isDue() {
+        return pendingCount >= batchSize || System.nanoTime() - lastFlush >= flushIntervalNanos;
+    }
+}
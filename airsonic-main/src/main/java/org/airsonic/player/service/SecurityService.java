@@ -34,7 +34,9 @@ import org.airsonic.player.repository.UserCredentialRepository;
 import org.airsonic.player.repository.UserRepository;
 import org.airsonic.player.security.GlobalSecurityConfig;
 import org.airsonic.player.security.PasswordDecoder;
+import org.airsonic.player.service.MediaFolderService.MusicFolderAccess;
 import org.airsonic.player.service.cache.UserCache;
+import org.airsonic.player.service.cache.VerifiedCredentialCache;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.RandomStringGenerator;
@@ -94,6 +96,8 @@ public class SecurityService implements UserDetailsService {
     private UserCredentialRepository userCredentialRepository;
     @Autowired
     private UserCache userCache;
+    @Autowired
+    private VerifiedCredentialCache verifiedCredentialCache;
 
     /**
      * Locates the user based on the username.
@@ -204,6 +208,7 @@ public class SecurityService implements UserDetailsService {
                                     dbCreds.setUpdated(Instant.now());
                                     dbCreds.setExpiration(c.getExpirationInstant());
                                     userCredentialRepository.save(dbCreds);
+                                    verifiedCredentialCache.clear();
                                 } else {
                                     LOG.warn("Can't update credential for user {}", username);
                                     failures.add(true);
@@ -297,6 +302,7 @@ public class SecurityService implements UserDetailsService {
         }
         try {
             userCredentialRepository.delete(creds);
+            verifiedCredentialCache.clear();
         } catch (Exception e) {
             LOG.info("Can't delete a credential", e);
             return false;
@@ -355,6 +361,7 @@ public class SecurityService implements UserDetailsService {
             String encoder = App.AIRSONIC == c.getApp() ? nonDecodableEncoder : decodableEncoder;
             if (c.updateEncoder(encoder, false)) {
                 userCredentialRepository.save(c);
+                verifiedCredentialCache.clear();
             } else {
                 LOG.warn("System failed to migrate creds created on {} for user {}", c.getCreated(),
                         c.getUser().getUsername());
@@ -517,6 +524,7 @@ public class SecurityService implements UserDetailsService {
         }
         userCache.removeUser(username);
         userRepository.deleteById(username);
+        verifiedCredentialCache.clear();
         LOG.info("User {} deleted by {}", username, currentUsername);
     }
 
@@ -662,8 +670,19 @@ public class SecurityService implements UserDetailsService {
     }
 
     public boolean isFolderAccessAllowed(MediaFile file, String username) {
-        return mediaFolderService.getMusicFoldersForUser(username).parallelStream()
-                .anyMatch(musicFolder -> musicFolder.getId().equals(file.getFolder().getId()));
+        return mediaFolderService.getMusicFolderAccessForUser(username).isAllowed(file.getFolder());
+    }
+
+    /**
+     * Returns the files in a music folder the user has access to, keeping their order.
+     *
+     * @param files    The files to filter.
+     * @param username The username.
+     * @return The accessible files.
+     */
+    public List<MediaFile> filterFolderAccessAllowed(List<MediaFile> files, String username) {
+        MusicFolderAccess access = mediaFolderService.getMusicFolderAccessForUser(username);
+        return files.stream().filter(file -> access.isAllowed(file.getFolder())).collect(Collectors.toList());
     }
 
     public static class UserDetail extends org.springframework.security.core.userdetails.User {
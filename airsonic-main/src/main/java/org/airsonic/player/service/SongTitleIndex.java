@@ -0,0 +1,155 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MediaFile.MediaType;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.repository.MediaFileRepository;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of the present songs by artist and title, so that the songs returned by Last.fm for an artist are
+ * resolved to media files in one lookup instead of one query each.
+ * <p>
+ * Artists and titles are matched regardless of case and surrounding or repeated whitespace. The index is built on first
+ * use and rebuilt by {@link MediaScannerService} after every scan, so songs changed in between are only resolved
+ * after the next scan.
+ */
+@Component
+public class SongTitleIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SongTitleIndex.class);
+
+    private final MediaFileRepository mediaFileRepository;
+
+    // normalized artist -> normalized title -> songs
+    private volatile Map<String, Map<String, List<Song>>> songs;
+
+    public SongTitleIndex(MediaFileRepository mediaFileRepository) {
+        this.mediaFileRepository = mediaFileRepository;
+    }
+
+    /**
+     * Rebuilds the index from the present songs in the database.
+     */
+    public void refresh() {
+        Map<String, Map<String, List<Song>>> index = new HashMap<>();
+        List<Object[]> rows = mediaFileRepository.findArtistsAndTitlesByMediaType(MediaType.MUSIC);
+        for (Object[] row : rows) {
+            Song song = new Song((Integer) row[0], (Integer) row[1]);
+            index.computeIfAbsent(normalize((String) row[2]), k -> new HashMap<>())
+                    .computeIfAbsent(normalize((String) row[3]), k -> new ArrayList<>(1))
+                    .add(song);
+        }
+        songs = index;
+        LOG.debug("Indexed {} songs of {} artists by title", rows.size(), index.size());
+    }
+
+    /**
+     * Returns the IDs of the songs of an artist with the given titles, in the order of the titles. Titles without a
+     * song are skipped, and the first song found is returned for a title matching several songs.
+     *
+     * @param artist       The artist name.
+     * @param titles       The song titles.
+     * @param musicFolders Only return songs in these folders.
+     * @return The song IDs.
+     */
+    public List<Integer> getSongIds(String artist, List<String> titles, Collection<MusicFolder> musicFolders) {
+        Map<String, List<Song>> byTitle = getSongs().get(normalize(artist));
+        if (byTitle == null || titles.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Integer> folderIds = toFolderIds(musicFolders);
+        List<Integer> result = new ArrayList<>();
+        for (String title : titles) {
+            byTitle.getOrDefault(normalize(title), Collections.emptyList()).stream()
+                    .filter(song -> folderIds.contains(song.folderId))
+                    .findFirst()
+                    .ifPresent(song -> result.add(song.id));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs of all songs of the given artists.
+     *
+     * @param artists      The artist names.
+     * @param musicFolders Only return songs in these folders.
+     * @return The song IDs.
+     */
+    public List<Integer> getSongIds(Collection<String> artists, Collection<MusicFolder> musicFolders) {
+        Map<String, Map<String, List<Song>>> index = getSongs();
+        Set<Integer> folderIds = toFolderIds(musicFolders);
+        return artists.stream()
+                .map(SongTitleIndex::normalize)
+                .distinct()
+                .map(index::get)
+                .filter(Objects::nonNull)
+                .flatMap(byTitle -> byTitle.values().stream())
+                .flatMap(List::stream)
+                .filter(song -> folderIds.contains(song.folderId))
+                .map(song -> song.id)
+                .collect(Collectors.toList());
+    }
+
+    private Map<String, Map<String, List<Song>>> getSongs() {
+        if (songs == null) {
+            synchronized (this) {
+                if (songs == null) {
+                    refresh();
+                }
+            }
+        }
+        return songs;
+    }
+
+    private static Set<Integer> toFolderIds(Collection<MusicFolder> musicFolders) {
+        return musicFolders.stream().map(MusicFolder::getId).collect(Collectors.toSet());
+    }
+
+    static String normalize(String s) {
+        return StringUtils.lowerCase(StringUtils.normalizeSpace(StringUtils.defaultString(s)), Locale.ROOT);
+    }
+
+    private static class Song {
+
+        private final int id;
+
+        private final int folderId;
+
+        private Song(int id, int folderId) {
+            this.id = id;
+            this.folderId = folderId;
+        }
+    }
+}
@@ -27,6 +27,8 @@ import org.airsonic.player.domain.PlayStatus;
 import org.airsonic.player.domain.Player;
 import org.airsonic.player.domain.TransferStatus;
 import org.airsonic.player.domain.UserSettings;
+import org.airsonic.player.io.ShoutCastInputStream;
+import org.airsonic.player.monitor.MetricsManager;
 import org.airsonic.player.service.websocket.AsyncWebSocketClient;
 import org.airsonic.player.util.StringUtil;
 import org.apache.commons.lang.StringEscapeUtils;
@@ -35,6 +37,8 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -63,17 +67,25 @@ public class StatusService {
     private final PersonalSettingsService personalSettingsService;
     private final AsyncWebSocketClient asyncWebSocketClient;
     private final TaskSchedulingService taskService;
+    private final MetricsManager metricsManager;
 
     public StatusService(
         MediaFileService mediaFileService,
         AsyncWebSocketClient asyncWebSocketClient,
         TaskSchedulingService taskService,
-        PersonalSettingsService personalSettingsService
+        PersonalSettingsService personalSettingsService,
+        MetricsManager metricsManager
     ) {
         this.mediaFileService = mediaFileService;
         this.taskService = taskService;
         this.asyncWebSocketClient = asyncWebSocketClient;
         this.personalSettingsService = personalSettingsService;
+        this.metricsManager = metricsManager;
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        metricsManager.gauge(StatusService.class, "shoutCastStreams", ShoutCastInputStream::getOpenStreams);
     }
 
     @EventListener
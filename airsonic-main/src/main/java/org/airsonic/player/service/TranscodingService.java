@@ -21,13 +21,17 @@
 package org.airsonic.player.service;
 
 import com.google.common.io.MoreFiles;
+import org.airsonic.player.config.AirsonicTranscodeConfig;
 import org.airsonic.player.controller.VideoPlayerController;
 import org.airsonic.player.domain.*;
 import org.airsonic.player.io.TranscodeInputStream;
+import org.airsonic.player.monitor.MetricsManager;
 import org.airsonic.player.repository.PlayerRepository;
 import org.airsonic.player.repository.TranscodingRepository;
+import org.airsonic.player.service.cache.TranscodeCache;
 import org.airsonic.player.util.StringUtil;
 import org.airsonic.player.util.Util;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +39,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 import java.awt.Dimension;
 import java.io.BufferedInputStream;
 import java.io.IOException;
@@ -49,8 +56,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Provides services for transcoding media. Transcoding is the process of
@@ -74,6 +85,30 @@ public class TranscodingService {
     private TranscodingRepository transcodingRepository;
     @Autowired
     private PersonalSettingsService personalSettingsService;
+    @Autowired
+    private TranscodeCache transcodeCache;
+    @Autowired
+    private MetricsManager metricsManager;
+    @Autowired
+    private AirsonicTranscodeConfig transcodeConfig;
+
+    /**
+     * Copies data into chained transcoders, one thread per running chained transcoder, reused across transcodes. A
+     * transcode started while all threads are busy is refused, since a queued copy would stall its stream.
+     */
+    private ThreadPoolExecutor copyExecutor;
+
+    @PostConstruct
+    public void init() {
+        copyExecutor = new ThreadPoolExecutor(0, transcodeConfig.getCopyThreads(), 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), Util.getDaemonThreadfactory("transcode-copy"), new ThreadPoolExecutor.AbortPolicy());
+        metricsManager.gauge(TranscodingService.class, "copyThreads", copyExecutor::getActiveCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        copyExecutor.shutdownNow();
+    }
 
     /**
      * Returns all transcodings.
@@ -258,8 +293,15 @@ public class TranscodingService {
         }
 
         parameters.setMaxBitRate(maxBitRate);
-        parameters.setExpectedLength(getExpectedLength(parameters));
-        parameters.setRangeAllowed(isRangeAllowed(parameters));
+        Long cachedLength = Optional.ofNullable(getCacheKey(parameters)).map(transcodeCache::getCompletedLength).orElse(null);
+        if (cachedLength != null) {
+            // already transcoded, so the length is exact
+            parameters.setExpectedLength(cachedLength);
+            parameters.setRangeAllowed(true);
+        } else {
+            parameters.setExpectedLength(getExpectedLength(parameters));
+            parameters.setRangeAllowed(isRangeAllowed(parameters));
+        }
         return parameters;
     }
 
@@ -284,6 +326,10 @@ public class TranscodingService {
         try {
 
             if (parameters.getTranscoding() != null) {
+                TranscodeCache.Key key = getCacheKey(parameters);
+                if (key != null) {
+                    return transcodeCache.getInputStream(key, () -> createTranscodedInputStream(parameters));
+                }
                 return createTranscodedInputStream(parameters);
             }
 
@@ -296,6 +342,24 @@ public class TranscodingService {
         return new BufferedInputStream(Files.newInputStream(parameters.getMediaFile().getFullPath().toAbsolutePath()));
     }
 
+    /**
+     * Returns the key of the transcoded output in the transcode cache, or null if it must not be cached. Video
+     * transcodings depend on request specific settings, such as the time offset, and are never cached.
+     */
+    private TranscodeCache.Key getCacheKey(Parameters parameters) {
+        Transcoding transcoding = parameters.getTranscoding();
+        MediaFile mediaFile = parameters.getMediaFile();
+        if (!transcodeCache.isEnabled() || transcoding == null || parameters.getVideoTranscodingSettings() != null
+                || mediaFile.getId() == null) {
+            return null;
+        }
+        String transcodingId = transcoding.getId() != null ? String.valueOf(transcoding.getId()) : transcoding.getName();
+        String commands = DigestUtils.md5Hex(Stream.of(transcoding.getTargetFormat(), transcoding.getStep1(),
+                transcoding.getStep2(), transcoding.getStep3()).map(StringUtils::defaultString).collect(Collectors.joining("\n")));
+        return new TranscodeCache.Key(mediaFile.getId(), mediaFile.getChanged(), transcodingId, commands,
+                parameters.getMaxBitRate());
+    }
+
     /**
      * Returns the strictest transcoding scheme defined for the player and the user.
      */
@@ -405,7 +469,7 @@ public class TranscodingService {
                 Optional.ofNullable(videoTranscodingSettings).map(VideoTranscodingSettings::getOutputFilename).orElse(null));
 
         ProcessBuilder builder = transformTranscodingVariables(command, vars);
-        return new TranscodeInputStream(builder, in, tmpFile);
+        return new TranscodeInputStream(builder, in, tmpFile, copyExecutor);
     }
 
     public ProcessBuilder transformTranscodingVariables(String command, Map<String, String> vars) {
@@ -0,0 +1,31 @@
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.domain.CoverArt;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Serializes cover arts for the off-heap and disk tiers of the cover art cache. The artist, album and media file the
+ * art belongs to are left out: they are only needed when expunging, which reads cover arts from the database.
+ */
+public class CoverArtSerializer extends EntitySerializer<CoverArt> {
+
+    @Override
+    protected void write(CoverArt art, DataOutputStream out) throws IOException {
+        writeInteger(out, art.getEntityId());
+        writeEnum(out, art.getEntityType());
+        writeString(out, art.getPath());
+        writeFolder(out, art.getFolder());
+        out.writeBoolean(art.getOverridden());
+        writeInstant(out, art.getCreated());
+        writeInstant(out, art.getUpdated());
+    }
+
+    @Override
+    protected CoverArt read(DataInputStream in) throws IOException {
+        return new CoverArt(readInteger(in), readEnum(in, CoverArt.EntityType.class), readString(in), readFolder(in),
+                in.readBoolean(), readInstant(in), readInstant(in));
+    }
+}
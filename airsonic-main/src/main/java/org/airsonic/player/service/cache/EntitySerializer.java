@@ -0,0 +1,156 @@
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.domain.MusicFolder;
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+
+/**
+ * Base of the serializers letting entities be stored in the off-heap and disk tiers of the caches.
+ * <p>
+ * Only the persisted columns of an entity are written: transient fields and associations other than the music folder
+ * are left out, so a value read back is the entity as loaded from the database, detached.
+ */
+public abstract class EntitySerializer<T> implements Serializer<T> {
+
+    @Override
+    public ByteBuffer serialize(T object) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(object, out);
+        } catch (IOException e) {
+            throw new SerializerException(e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    @Override
+    public T read(ByteBuffer binary) {
+        ByteBuffer buffer = binary.duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new SerializerException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(T object, ByteBuffer binary) {
+        return serialize(object).equals(binary);
+    }
+
+    protected abstract void write(T object, DataOutputStream out) throws IOException;
+
+    protected abstract T read(DataInputStream in) throws IOException;
+
+    protected static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    protected static String readString(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    protected static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    protected static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    protected static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    protected static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    protected static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    protected static Double readDouble(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    protected static void writeInstant(DataOutputStream out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    protected static Instant readInstant(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+
+    protected static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+        writeString(out, value == null ? null : value.name());
+    }
+
+    protected static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> type) throws IOException {
+        String name = readString(in);
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    protected static void writeFolder(DataOutputStream out, MusicFolder folder) throws IOException {
+        out.writeBoolean(folder != null);
+        if (folder != null) {
+            writeInteger(out, folder.getId());
+            writeString(out, folder.getPath() == null ? null : folder.getPath().toString());
+            writeString(out, folder.getName());
+            writeEnum(out, folder.getType());
+            out.writeBoolean(folder.isEnabled());
+            writeInstant(out, folder.getChanged());
+            out.writeBoolean(folder.isDeleted());
+        }
+    }
+
+    protected static MusicFolder readFolder(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Integer id = readInteger(in);
+        String path = readString(in);
+        String name = readString(in);
+        MusicFolder.Type type = readEnum(in, MusicFolder.Type.class);
+        boolean enabled = in.readBoolean();
+        Instant changed = readInstant(in);
+        MusicFolder folder = new MusicFolder(id, path == null ? null : Paths.get(path), name, type, enabled, changed);
+        folder.setDeleted(in.readBoolean());
+        return folder;
+    }
+}
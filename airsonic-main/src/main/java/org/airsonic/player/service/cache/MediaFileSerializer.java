@@ -0,0 +1,90 @@
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.domain.MediaFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Serializes media files for the off-heap and disk tiers of the media file caches. The starred date, average rating
+ * and cover art are not persisted and are left out.
+ */
+public class MediaFileSerializer extends EntitySerializer<MediaFile> {
+
+    @Override
+    protected void write(MediaFile file, DataOutputStream out) throws IOException {
+        writeInteger(out, file.getId());
+        writeString(out, file.getPath());
+        writeFolder(out, file.getFolder());
+        writeEnum(out, file.getMediaType());
+        writeDouble(out, file.getStartPosition());
+        writeString(out, file.getFormat());
+        writeString(out, file.getTitle());
+        writeString(out, file.getAlbumName());
+        writeString(out, file.getArtist());
+        writeString(out, file.getAlbumArtist());
+        writeInteger(out, file.getDiscNumber());
+        writeInteger(out, file.getTrackNumber());
+        writeInteger(out, file.getYear());
+        writeString(out, file.getGenre());
+        writeInteger(out, file.getBitRate());
+        out.writeBoolean(file.isVariableBitRate());
+        writeDouble(out, file.getDuration());
+        writeLong(out, file.getFileSize());
+        writeInteger(out, file.getWidth());
+        writeInteger(out, file.getHeight());
+        writeString(out, file.getParentPath());
+        writeString(out, file.getIndexPath());
+        out.writeInt(file.getPlayCount());
+        writeInstant(out, file.getLastPlayed());
+        writeString(out, file.getComment());
+        writeInstant(out, file.getCreated());
+        writeInstant(out, file.getChanged());
+        writeInstant(out, file.getLastScanned());
+        writeInstant(out, file.getChildrenLastUpdated());
+        out.writeBoolean(file.isPresent());
+        out.writeInt(file.getVersion());
+        writeString(out, file.getMusicBrainzReleaseId());
+        writeString(out, file.getMusicBrainzRecordingId());
+    }
+
+    @Override
+    protected MediaFile read(DataInputStream in) throws IOException {
+        MediaFile file = new MediaFile();
+        file.setId(readInteger(in));
+        file.setPath(readString(in));
+        file.setFolder(readFolder(in));
+        file.setMediaType(readEnum(in, MediaFile.MediaType.class));
+        file.setStartPosition(readDouble(in));
+        file.setFormat(readString(in));
+        file.setTitle(readString(in));
+        file.setAlbumName(readString(in));
+        file.setArtist(readString(in));
+        file.setAlbumArtist(readString(in));
+        file.setDiscNumber(readInteger(in));
+        file.setTrackNumber(readInteger(in));
+        file.setYear(readInteger(in));
+        file.setGenre(readString(in));
+        file.setBitRate(readInteger(in));
+        file.setVariableBitRate(in.readBoolean());
+        file.setDuration(readDouble(in));
+        file.setFileSize(readLong(in));
+        file.setWidth(readInteger(in));
+        file.setHeight(readInteger(in));
+        file.setParentPath(readString(in));
+        file.setIndexPath(readString(in));
+        file.setPlayCount(in.readInt());
+        file.setLastPlayed(readInstant(in));
+        file.setComment(readString(in));
+        file.setCreated(readInstant(in));
+        file.setChanged(readInstant(in));
+        file.setLastScanned(readInstant(in));
+        file.setChildrenLastUpdated(readInstant(in));
+        file.setPresent(in.readBoolean());
+        file.setVersion(in.readInt());
+        file.setMusicBrainzReleaseId(readString(in));
+        file.setMusicBrainzRecordingId(readString(in));
+        return file;
+    }
+}
@@ -0,0 +1,419 @@
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicTranscodeConfig;
+import org.airsonic.player.io.TranscodeInputStream;
+import org.airsonic.player.util.FileUtil;
+import org.airsonic.player.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Transcoded outputs, so that identical concurrent or repeated streams share a single transcoder process.
+ * <p>
+ * The first request of an output starts the transcoder, whose output is copied to a file that every reader of the
+ * output follows while it grows. The transcoder is stopped when its last reader is closed before it completed.
+ * Completed outputs are kept on disk with a known length. The bytes of outputs in progress count as well, and once the
+ * total size exceeds {@link AirsonicTranscodeConfig#getCacheSize()}, the least recently used completed outputs are
+ * removed.
+ */
+@Component
+public class TranscodeCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TranscodeCache.class);
+
+    private final ExecutorService transcodeThreadPool = Executors.newCachedThreadPool(Util.getDaemonThreadfactory("transcode-cache"));
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    public TranscodeCache(AirsonicHomeConfig homeConfig, AirsonicTranscodeConfig transcodeConfig) {
+        this.directory = homeConfig.getAirsonicHome().resolve("transcode-cache");
+        this.maxSize = transcodeConfig.getCacheSize() * 1024L * 1024L;
+        // outputs of a previous run are not indexed
+        if (Files.exists(directory)) {
+            FileUtil.delete(directory);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transcodeThreadPool.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Returns the length of a completed output.
+     *
+     * @param key output
+     * @return length in bytes, or null if the output is not completed
+     */
+    public synchronized Long getCompletedLength(Key key) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.completed ? entry.length : null;
+    }
+
+    /**
+     * Returns a stream of an output, starting its transcoder if it is neither completed nor in progress.
+     *
+     * @param key        output
+     * @param transcoder starts the transcoder of the output
+     * @return the output
+     * @throws IOException if the transcoder could not be started
+     */
+    public InputStream getInputStream(Key key, TranscoderSupplier transcoder) throws IOException {
+        Entry entry;
+        boolean start;
+        synchronized (this) {
+            entry = entries.get(key);
+            start = entry == null;
+            if (start) {
+                entry = new Entry(directory.resolve(key.getFileName()));
+                entries.put(key, entry);
+            }
+            entry.readers++;
+        }
+        if (start) {
+            try {
+                Files.createDirectories(directory);
+                entry.source = transcoder.get();
+                OutputStream out = Files.newOutputStream(entry.file);
+                Entry e = entry;
+                transcodeThreadPool.submit(() -> copy(key, e, out));
+                synchronized (entry) {
+                    entry.started = true;
+                    entry.notifyAll();
+                }
+            } catch (IOException | RuntimeException x) {
+                FileUtil.closeQuietly(entry.source);
+                finish(key, entry, false);
+                release(key, entry);
+                throw x;
+            }
+        } else {
+            LOG.debug("Sharing transcoded output {}", key);
+            awaitStarted(key, entry);
+        }
+        return new EntryInputStream(key, entry);
+    }
+
+    /**
+     * Waits until the first request of an output started its transcoder, so that a failed start fails every request
+     * sharing it.
+     *
+     * @throws IOException if the transcoder could not be started
+     */
+    private void awaitStarted(Key key, Entry entry) throws IOException {
+        boolean started;
+        synchronized (entry) {
+            while (!entry.started && !entry.done) {
+                try {
+                    entry.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            started = entry.started;
+        }
+        if (!started) {
+            release(key, entry);
+            throw new IOException("Transcoder of " + key + " could not be started");
+        }
+    }
+
+    private void copy(Key key, Entry entry, OutputStream out) {
+        boolean successful = false;
+        try (InputStream in = entry.source; OutputStream o = out) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                o.write(buf, 0, n);
+                synchronized (entry) {
+                    if (entry.aborted) {
+                        return;
+                    }
+                    entry.length += n;
+                    entry.notifyAll();
+                }
+                grow(n);
+            }
+            successful = !(in instanceof TranscodeInputStream) || ((TranscodeInputStream) in).getProcess().waitFor() == 0;
+        } catch (IOException e) {
+            LOG.debug("Transcoding {} failed", key, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finish(key, entry, successful);
+        }
+    }
+
+    /**
+     * Counts bytes written to an output in progress, making room for them.
+     */
+    private synchronized void grow(long n) {
+        size += n;
+        evict();
+    }
+
+    /**
+     * Marks an output as done. Failed outputs are dropped, so that the next request transcodes again.
+     */
+    private void finish(Key key, Entry entry, boolean successful) {
+        synchronized (this) {
+            synchronized (entry) {
+                entry.done = true;
+                entry.completed = successful && !entry.aborted;
+                entry.notifyAll();
+            }
+            if (entry.completed) {
+                evict();
+            } else {
+                size -= entry.length;
+                entries.remove(key, entry);
+                if (entry.readers == 0) {
+                    deleteQuietly(entry.file);
+                }
+            }
+        }
+    }
+
+    private synchronized void release(Key key, Entry entry) {
+        entry.readers--;
+        if (entry.readers > 0) {
+            return;
+        }
+        if (!entry.done) {
+            // nobody listens anymore
+            synchronized (entry) {
+                entry.aborted = true;
+            }
+            entries.remove(key, entry);
+            FileUtil.closeQuietly(entry.source);
+        } else if (!entry.completed) {
+            deleteQuietly(entry.file);
+        } else {
+            evict();
+        }
+    }
+
+    /**
+     * Removes the least recently used completed outputs until the cache fits, skipping those being read.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            Entry entry = e.getValue();
+            if (entry.completed && entry.readers == 0) {
+                LOG.debug("Evicting transcoded output {}", e.getKey());
+                it.remove();
+                size -= entry.length;
+                deleteQuietly(entry.file);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Could not delete transcoded output {}", file, e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface TranscoderSupplier {
+        InputStream get() throws IOException;
+    }
+
+    /**
+     * Identifies a transcoded output: the media file as it was when it was last changed, the transcoding and the
+     * maximum bit rate.
+     */
+    public static class Key {
+        private final int mediaFileId;
+        private final Instant changed;
+        private final String transcoding;
+        private final String commands;
+        private final Integer maxBitRate;
+
+        /**
+         * @param mediaFileId id of the transcoded media file
+         * @param changed     when the media file last changed
+         * @param transcoding id or name of the transcoding
+         * @param commands    digest of the target format and commands of the transcoding, so that an edited
+         *                    transcoding does not reuse outputs of its former definition
+         * @param maxBitRate  maximum bit rate of the output
+         */
+        public Key(int mediaFileId, Instant changed, String transcoding, String commands, Integer maxBitRate) {
+            this.mediaFileId = mediaFileId;
+            this.changed = changed;
+            this.transcoding = transcoding;
+            this.commands = commands;
+            this.maxBitRate = maxBitRate;
+        }
+
+        String getFileName() {
+            return mediaFileId + "-" + (changed == null ? 0 : changed.toEpochMilli()) + "-" + transcoding + "-" + commands
+                    + "-" + maxBitRate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || this.getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return this.mediaFileId == key.mediaFileId && Objects.equals(this.changed, key.changed)
+                    && Objects.equals(this.transcoding, key.transcoding) && Objects.equals(this.commands, key.commands)
+                    && Objects.equals(this.maxBitRate, key.maxBitRate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.mediaFileId, this.changed, this.transcoding, this.commands, this.maxBitRate);
+        }
+
+        @Override
+        public String toString() {
+            return "{mediaFileId=" + this.mediaFileId + ", changed=" + this.changed + ", transcoding='"
+                    + this.transcoding + '\'' + ", commands=" + this.commands + ", maxBitRate=" + this.maxBitRate + '}';
+        }
+    }
+
+    private static class Entry {
+        private final Path file;
+        private InputStream source;
+        private int readers;
+        private long length;
+        private boolean started;
+        private boolean done;
+        private boolean completed;
+        private boolean aborted;
+
+        Entry(Path file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * Reads an output from its file, waiting for the transcoder while it is in progress.
+     */
+    private class EntryInputStream extends InputStream {
+        private final Key key;
+        private final Entry entry;
+        private FileChannel channel;
+        private long position;
+        private boolean closed;
+
+        EntryInputStream(Key key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            long available = awaitAvailable();
+            if (available <= 0) {
+                return -1;
+            }
+            if (channel == null) {
+                channel = FileChannel.open(entry.file, StandardOpenOption.READ);
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, available)), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            long skipped = Math.min(n, Math.max(0, awaitAvailable()));
+            position += skipped;
+            return skipped;
+        }
+
+        /**
+         * Waits until bytes after the current position are written or the output is done.
+         *
+         * @return number of bytes that can be read, 0 at the end of the output
+         * @throws IOException if the output ended without being completed, so that a failed or truncated transcode
+         *                     does not look like a successful one
+         */
+        private long awaitAvailable() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            synchronized (entry) {
+                while (position >= entry.length && !entry.done) {
+                    try {
+                        entry.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for transcoder");
+                    }
+                }
+                if (position >= entry.length && !entry.completed) {
+                    throw new IOException("Transcoding " + key + " failed");
+                }
+                return entry.length - position;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            FileUtil.closeQuietly(channel);
+            release(key, entry);
+        }
+    }
+}
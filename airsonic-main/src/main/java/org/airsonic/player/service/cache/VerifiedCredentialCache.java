@@ -0,0 +1,76 @@
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.domain.UserCredential;
+import org.airsonic.player.spring.CacheConfiguration;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.stereotype.Component;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Successful credential verifications, so that repeated requests presenting the same password or salted token do not
+ * run the password encoders again.
+ * <p>
+ * Entries are keyed by a digest of the username, the authentication mechanism and the presented secret, and point to
+ * a digest of the stored credential that matched. A hit is only used if that stored credential is still one of the
+ * user's credentials, unchanged.
+ */
+@Component
+public class VerifiedCredentialCache {
+
+    private final CacheManager cacheManager;
+
+    public VerifiedCredentialCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+        this.cacheManager.enableStatistics(CacheConfiguration.VERIFIED_CREDENTIAL_CACHE, true);
+    }
+
+    /**
+     * Returns the credential a secret was verified against.
+     *
+     * @param username    The user.
+     * @param mechanism   The authentication mechanism, e.g. salted token.
+     * @param presented   The presented password or salted token.
+     * @param credentials The current credentials of the user.
+     * @return The matching credential, or empty if the secret was not verified or the credential changed.
+     */
+    public Optional<UserCredential> getVerified(String username, String mechanism, String presented,
+            Collection<UserCredential> credentials) {
+        String key = key(username, mechanism, presented);
+        String verified = getCache().get(key);
+        if (verified == null) {
+            return Optional.empty();
+        }
+        Optional<UserCredential> credential = credentials.stream().filter(c -> verified.equals(digest(c))).findAny();
+        if (credential.isEmpty()) {
+            getCache().remove(key);
+        }
+        return credential;
+    }
+
+    public void putVerified(String username, String mechanism, String presented, UserCredential credential) {
+        getCache().put(key(username, mechanism, presented), digest(credential));
+    }
+
+    public void clear() {
+        getCache().clear();
+    }
+
+    private Cache<String, String> getCache() {
+        return cacheManager.getCache(CacheConfiguration.VERIFIED_CREDENTIAL_CACHE, String.class, String.class);
+    }
+
+    private static String key(String username, String mechanism, String presented) {
+        return DigestUtils.sha256Hex(username + '\n' + mechanism + '\n' + presented);
+    }
+
+    private static String digest(UserCredential credential) {
+        return DigestUtils.sha256Hex(Objects.toString(credential.getId()) + '\n' + credential.getEncoder() + '\n'
+                + credential.getCredential());
+    }
+}
@@ -0,0 +1,204 @@
+package org.airsonic.player.service.hls;
+
+import org.airsonic.player.config.AirsonicHlsConfig;
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completed HLS segments, shared by all sessions transcoding the same rendition (media file, bit rate, size, segment
+ * duration and audio track). Only the least recently used renditions are kept, within a number of renditions and a
+ * total size, so that seeks and other clients of a rendition reuse the segments already produced.
+ * <p>
+ * A rendition is pinned by every session using it, and its segments are only deleted once it is no longer pinned.
+ * The cache may therefore exceed its limits while many renditions are in use.
+ */
+@Service
+public class HlsSegmentCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HlsSegmentCache.class);
+
+    private final Path directory;
+
+    private final int maxRenditions;
+
+    private final long maxBytes;
+
+    // in access order, least recently used first
+    private final Map<HlsSession.Key, Rendition> renditions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    public HlsSegmentCache(AirsonicHomeConfig homeConfig, AirsonicHlsConfig hlsConfig) {
+        this.directory = homeConfig.getAirsonicHome().resolve("hls").resolve("segments");
+        this.maxRenditions = hlsConfig.getCacheSize();
+        this.maxBytes = hlsConfig.getCacheMegabytes() * 1024L * 1024L;
+    }
+
+    /**
+     * Keeps the segments of a rendition until {@link #unpin} is called as many times.
+     *
+     * @param key rendition
+     */
+    public synchronized void pin(HlsSession.Key key) {
+        getRendition(key).pins++;
+    }
+
+    /**
+     * Releases a rendition pinned by {@link #pin}, and drops the least recently used renditions no longer pinned if the
+     * cache is full.
+     *
+     * @param key rendition
+     */
+    public synchronized void unpin(HlsSession.Key key) {
+        Rendition rendition = renditions.get(key);
+        if (rendition != null && rendition.pins > 0) {
+            rendition.pins--;
+        }
+        evict(null);
+    }
+
+    /**
+     * Returns a completed segment.
+     *
+     * @param key          rendition of the segment
+     * @param segmentIndex index of the segment
+     * @return the segment file, or null if it was not produced yet
+     */
+    public Path getSegment(HlsSession.Key key, int segmentIndex) {
+        Rendition rendition = getRendition(key);
+        return rendition.segments.contains(segmentIndex) ? rendition.getSegmentFile(segmentIndex) : null;
+    }
+
+    /**
+     * Returns the first segment from {@code segmentIndex} on that was not produced yet.
+     *
+     * @param key          rendition of the segments
+     * @param segmentIndex index of the first segment to look at
+     * @return index of the first missing segment
+     */
+    public int getFirstMissingSegment(HlsSession.Key key, int segmentIndex) {
+        NavigableSet<Integer> segments = getRendition(key).segments;
+        int index = segmentIndex;
+        while (segments.contains(index)) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Moves a completed segment into the cache, and wakes up the requests waiting for it.
+     *
+     * @param key          rendition of the segment
+     * @param segmentIndex index of the segment
+     * @param file         segment file, moved away by this call
+     * @throws IOException if the segment could not be moved
+     */
+    public void putSegment(HlsSession.Key key, int segmentIndex, Path file) throws IOException {
+        Rendition rendition = getRendition(key);
+        Files.createDirectories(rendition.directory);
+        long size = Files.size(file);
+        Files.move(file, rendition.getSegmentFile(segmentIndex), StandardCopyOption.REPLACE_EXISTING);
+        synchronized (this) {
+            rendition.bytes += size;
+            totalBytes += size;
+            evict(rendition);
+        }
+        synchronized (rendition) {
+            rendition.segments.add(segmentIndex);
+            rendition.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until a segment is completed.
+     *
+     * @param key           rendition of the segment
+     * @param segmentIndex  index of the segment
+     * @param timeoutMillis maximum time to wait
+     * @return the segment file, or null if it was not produced in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Path awaitSegment(HlsSession.Key key, int segmentIndex, long timeoutMillis) throws InterruptedException {
+        Rendition rendition = getRendition(key);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (rendition) {
+            long remaining = deadline - System.nanoTime();
+            while (!rendition.segments.contains(segmentIndex) && remaining > 0) {
+                TimeUnit.NANOSECONDS.timedWait(rendition, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        }
+        return getSegment(key, segmentIndex);
+    }
+
+    /**
+     * Wakes up the requests waiting for segments of a rendition, e.g. because its transcoding stopped.
+     *
+     * @param key rendition
+     */
+    public void wakeUp(HlsSession.Key key) {
+        Rendition rendition = getRendition(key);
+        synchronized (rendition) {
+            rendition.notifyAll();
+        }
+    }
+
+    private synchronized Rendition getRendition(HlsSession.Key key) {
+        Rendition rendition = renditions.get(key);
+        if (rendition == null) {
+            rendition = new Rendition(directory.resolve(key.id()));
+            renditions.put(key, rendition);
+            evict(rendition);
+        }
+        return rendition;
+    }
+
+    /**
+     * Drops the least recently used renditions that are not pinned until the cache is within its limits.
+     *
+     * @param used rendition being used by the caller, which is kept
+     */
+    private synchronized void evict(Rendition used) {
+        Iterator<Map.Entry<HlsSession.Key, Rendition>> it = renditions.entrySet().iterator();
+        while ((renditions.size() > maxRenditions || totalBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<HlsSession.Key, Rendition> eldest = it.next();
+            Rendition rendition = eldest.getValue();
+            if (rendition.pins > 0 || rendition == used) {
+                continue;
+            }
+            LOG.debug("Evicting hls segments of {}", eldest.getKey());
+            it.remove();
+            totalBytes -= rendition.bytes;
+            FileUtil.delete(rendition.directory);
+        }
+    }
+
+    private static class Rendition {
+        private final Path directory;
+        private final NavigableSet<Integer> segments = new ConcurrentSkipListSet<>();
+        private int pins;
+        private long bytes;
+
+        Rendition(Path directory) {
+            this.directory = directory;
+        }
+
+        Path getSegmentFile(int segmentIndex) {
+            return directory.resolve(segmentIndex + ".ts");
+        }
+    }
+}
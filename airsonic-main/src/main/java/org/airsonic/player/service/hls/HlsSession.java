@@ -5,9 +5,11 @@ import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.VideoTranscodingSettings;
 import org.airsonic.player.io.InputStreamReaderThread;
 import org.airsonic.player.io.TranscodeInputStream;
+import org.airsonic.player.service.PathWatcherService;
 import org.airsonic.player.service.TranscodingService;
 import org.airsonic.player.util.FileUtil;
 import org.airsonic.player.util.Util;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,15 +17,14 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
+import java.time.Instant;
 import java.util.Objects;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class HlsSession {
@@ -33,50 +34,76 @@ public class HlsSession {
 
     private static final long SESSION_TIMEOUT_SECONDS = 120L;
 
+    /**
+     * Longest time a request waits for a watch event before looking at the transcoded files itself.
+     */
+    private static final long POLL_MILLIS = 1000L;
+
     private final Key sessionKey;
 
+    private final Key renditionKey;
+
     private final MediaFile mediaFile;
 
     private final TranscodingService transcodingService;
 
     private final Path hlsRootDirectory;
 
-    private Process process;
+    private final HlsSegmentCache segmentCache;
+
+    private final PathWatcherService pathWatcherService;
+
+    private final int lookAhead;
+
+    private Transcode transcode;
+
+    private int transcodeCount;
+
+    private volatile int latestRequestedIndex;
 
     private ScheduledFuture<?> destroySessionFuture;
 
-    public HlsSession(Key sessionKey, MediaFile mediaFile, TranscodingService transcodingService, Path hlsRootDirectory) {
+    // whether the rendition is pinned in the segment cache, from the first request until the session is destroyed
+    private boolean pinned;
+
+    public HlsSession(Key sessionKey, MediaFile mediaFile, TranscodingService transcodingService, Path hlsRootDirectory,
+            HlsSegmentCache segmentCache, PathWatcherService pathWatcherService, int lookAhead) {
         this.LOG = LoggerFactory.getLogger(HlsSession.class.toString() + "-" + sessionKey.id());
         this.LOG.info("Creating HLS session {}: {}", sessionKey.id(), sessionKey);
         this.sessionKey = sessionKey;
+        this.renditionKey = sessionKey.getRendition();
         this.mediaFile = mediaFile;
         this.transcodingService = transcodingService;
         this.hlsRootDirectory = hlsRootDirectory;
+        this.segmentCache = segmentCache;
+        this.pathWatcherService = pathWatcherService;
+        this.lookAhead = lookAhead;
     }
 
     public Path waitForSegment(int segmentIndex, long timeoutMillis) throws Exception {
         this.LOG.debug("Requesting hls segment {}", segmentIndex);
         scheduleSessionDestruction();
-        Path segment = getSegment(segmentIndex);
+        pinRendition();
+        this.latestRequestedIndex = segmentIndex;
+        ensureTranscoding(segmentIndex);
+        Path segment = segmentCache.getSegment(renditionKey, segmentIndex);
         if (segment != null) {
             this.LOG.debug("Segment {} already produced.", segmentIndex);
             return segment;
         }
-        if (!isProcessAlive()) {
-            startProcess(segmentIndex);
-        } else {
-            Integer latestCompleted = getLatestCompletedSegmentIndex();
-            if (latestCompleted != null
-                    && (segmentIndex < latestCompleted.intValue() || segmentIndex > latestCompleted.intValue() + 2)) {
-                destroySession();
-                startProcess(segmentIndex);
-            }
-        }
         long timeout = currentTimeMillis() + timeoutMillis;
         while (segment == null && currentTimeMillis() < timeout && isProcessAlive()) {
             this.LOG.debug("Segment {} not yet produced. Waiting.", segmentIndex);
-            Thread.sleep(2000L);
-            segment = getSegment(segmentIndex);
+            segment = segmentCache.awaitSegment(renditionKey, segmentIndex, Math.min(POLL_MILLIS, timeout - currentTimeMillis()));
+            if (segment == null) {
+                // in case a watch event is late or was lost
+                collectCompletedSegments();
+                segment = segmentCache.getSegment(renditionKey, segmentIndex);
+            }
+        }
+        if (segment == null) {
+            // the transcoding may just have finished
+            segment = segmentCache.getSegment(renditionKey, segmentIndex);
         }
         if (segment != null) {
             this.LOG.debug("Segment {} produced.", segmentIndex);
@@ -86,6 +113,29 @@ public class HlsSession {
         return segment;
     }
 
+    /**
+     * Makes sure the segments from {@code segmentIndex} on are being transcoded, unless at least {@code lookAhead}
+     * segments are already produced. The running transcoding is kept if it will reach the first missing segment within
+     * {@code lookAhead} segments, otherwise it is restarted at that segment.
+     */
+    private synchronized void ensureTranscoding(int segmentIndex) throws IOException {
+        int missingIndex = segmentCache.getFirstMissingSegment(renditionKey, segmentIndex);
+        if (missingIndex >= segmentIndex + lookAhead || isPastEnd(missingIndex)) {
+            return;
+        }
+        if (isProcessAlive() && missingIndex >= transcode.startIndex
+                && missingIndex <= transcode.latestCompletedIndex + lookAhead) {
+            return;
+        }
+        killProcess();
+        startProcess(missingIndex);
+    }
+
+    private boolean isPastEnd(int segmentIndex) {
+        return mediaFile.getDuration() != null && segmentIndex > 0
+                && (double) segmentIndex * this.sessionKey.getDuration() >= mediaFile.getDuration();
+    }
+
     private synchronized void scheduleSessionDestruction() {
         if (this.destroySessionFuture != null)
             this.destroySessionFuture.cancel(false);
@@ -96,32 +146,59 @@ public class HlsSession {
         this.LOG.debug("Destroying hls session");
         killProcess();
         FileUtil.delete(getDirectory());
+        unpinRendition();
     }
 
-    private Path getSegment(int segmentIndex) {
-        SortedSet<Integer> segmentIndexes = getCompletedSegmentIndexes();
-        return segmentIndexes.contains(Integer.valueOf(segmentIndex)) ? getDirectory().resolve(segmentIndex + ".ts") : null;
+    private synchronized void pinRendition() {
+        if (!pinned) {
+            segmentCache.pin(renditionKey);
+            pinned = true;
+        }
     }
 
-    private Integer getLatestCompletedSegmentIndex() {
-        SortedSet<Integer> completed = getCompletedSegmentIndexes();
-        return completed.isEmpty() ? null : completed.last();
+    private synchronized void unpinRendition() {
+        if (pinned) {
+            segmentCache.unpin(renditionKey);
+            pinned = false;
+        }
     }
 
-    private SortedSet<Integer> getCompletedSegmentIndexes() {
-        try (Stream<Path> children = Files.list(getDirectory())) {
-            SortedSet<Integer> result = children.filter(Files::isRegularFile)
-                    .filter(c -> "ts".equals(MoreFiles.getFileExtension(c))).map(MoreFiles::getNameWithoutExtension)
-                    .map(Integer::valueOf).collect(Collectors.toCollection(() -> new TreeSet<>()));
-            if (!result.isEmpty() && isProcessAlive()) {
-                result.remove(result.last());
+    /**
+     * Moves the segments completed by the running transcoding into the segment cache. A segment is complete once the
+     * next one is started, or once the transcoding finished successfully. Transcoding is stopped when it got twice the
+     * look-ahead past the latest requested segment.
+     */
+    private synchronized void collectCompletedSegments() {
+        if (transcode != null) {
+            collectCompletedSegments(transcode);
+            if (isProcessAlive() && transcode.latestCompletedIndex >= latestRequestedIndex + 2 * lookAhead) {
+                this.LOG.debug("Segments up to {} produced, pausing transcoding", transcode.latestCompletedIndex);
+                killProcess();
             }
-            return result;
-        } catch (IOException e) {
-            LOG.warn("Could not retrieve directory list for {} to find segment files", getDirectory(), e);
+        }
+    }
 
-            return Collections.emptySortedSet();
+    private synchronized void collectCompletedSegments(Transcode t) {
+        SortedMap<Integer, Path> segments = new TreeMap<>();
+        try (Stream<Path> children = Files.list(t.directory)) {
+            children.filter(Files::isRegularFile).filter(c -> "ts".equals(MoreFiles.getFileExtension(c)))
+                    .forEach(c -> segments.put(Integer.valueOf(MoreFiles.getNameWithoutExtension(c)), c));
+        } catch (IOException e) {
+            LOG.debug("Could not retrieve directory list for {} to find segment files", t.directory, e);
+            return;
+        }
+        if (!segments.isEmpty() && !t.isSuccessful()) {
+            // still being written, or left incomplete
+            segments.remove(segments.lastKey());
         }
+        segments.forEach((index, file) -> {
+            try {
+                segmentCache.putSegment(renditionKey, index, file);
+                t.latestCompletedIndex = Math.max(t.latestCompletedIndex, index);
+            } catch (IOException e) {
+                LOG.warn("Could not cache segment {}", file, e);
+            }
+        });
     }
 
     private Path getDirectory() {
@@ -143,55 +220,94 @@ public class HlsSession {
     }
 
     private void startProcess(int segmentIndex) throws IOException {
+        // every transcoding writes to its own directory, so that a stopped one can be cleaned up independently
+        Path directory = Files.createDirectories(getDirectory().resolve(String.valueOf(++transcodeCount)));
         String[] size = StringUtils.split(this.sessionKey.getSize(), "x");
         VideoTranscodingSettings vts = new VideoTranscodingSettings(
                 Integer.valueOf(size[0]), Integer.valueOf(size[1]),
                 segmentIndex * this.sessionKey.getDuration(), this.sessionKey.getDuration(),
                 (this.sessionKey.getAudioTrack() == null) ? 1 : this.sessionKey.getAudioTrack(), segmentIndex,
-                getDirectory().resolve("%d.ts").toString(), getDirectory().resolve("out.m3u8").toString());
+                directory.resolve("%d.ts").toString(), directory.resolve("out.m3u8").toString());
         TranscodingService.Parameters parameters = transcodingService.getParameters(mediaFile, null, this.sessionKey.getMaxBitRate(), "ts", vts);
+
+        // a new segment file means the previous one is complete
+        pathWatcherService.setWatcher(directory.toString(), directory, (dir, event) -> collectCompletedSegments(),
+                null, null, (dir, event) -> collectCompletedSegments());
         TranscodeInputStream in = (TranscodeInputStream) transcodingService.getTranscodedInputStream(parameters);
 
-        process = in.getProcess();
-        (new InputStreamReaderThread(process.getInputStream(), getClass().getSimpleName(), true)).start();
+        Transcode t = new Transcode(in.getProcess(), directory, segmentIndex);
+        transcode = t;
+        (new InputStreamReaderThread(t.process.getInputStream(), getClass().getSimpleName(), true)).start();
+        t.process.onExit().thenRun(() -> {
+            pathWatcherService.invalidateWatcher(directory.toString());
+            collectCompletedSegments(t);
+            FileUtil.delete(directory);
+            segmentCache.wakeUp(renditionKey);
+        });
     }
 
-    private void killProcess() {
-        if (this.process != null) {
+    private synchronized void killProcess() {
+        if (this.transcode != null && this.transcode.process.isAlive()) {
             this.LOG.info("Killing hls process");
             try {
-                this.process.destroy();
+                this.transcode.process.destroy();
             } catch (Exception e) {
                 this.LOG.error("Failed to kill hls process", e);
             }
         }
     }
 
-    private boolean isProcessAlive() {
-        if (this.process == null)
-            return false;
-        try {
-            this.process.exitValue();
-            return false;
-        } catch (IllegalThreadStateException e) {
-            return true;
-        }
+    private synchronized boolean isProcessAlive() {
+        return this.transcode != null && this.transcode.process.isAlive();
     }
 
     private long currentTimeMillis() {
         return System.nanoTime() / 1000000L;
     }
 
+    /**
+     * A single transcoding process, producing segments from {@code startIndex} on into its own directory.
+     */
+    private static class Transcode {
+        private final Process process;
+        private final Path directory;
+        private final int startIndex;
+        private int latestCompletedIndex;
+
+        Transcode(Process process, Path directory, int startIndex) {
+            this.process = process;
+            this.directory = directory;
+            this.startIndex = startIndex;
+            this.latestCompletedIndex = startIndex - 1;
+        }
+
+        boolean isSuccessful() {
+            return !process.isAlive() && process.exitValue() == 0;
+        }
+    }
+
     public static class Key {
         private final int mediaFileId;
+        private final Instant changed;
         private final String playerId;
         private final int maxBitRate;
         private final String size;
         private final Integer duration;
         private final Integer audioTrack;
 
-        public Key(int mediaFileId, String playerId, int maxBitRate, String size, Integer duration, Integer audioTrack) {
+        /**
+         * @param mediaFileId id of the media file
+         * @param changed     when the media file last changed, so that a replaced file gets a new rendition
+         * @param playerId    id of the player
+         * @param maxBitRate  maximum bit rate
+         * @param size        video size
+         * @param duration    segment duration
+         * @param audioTrack  audio track
+         */
+        public Key(int mediaFileId, Instant changed, String playerId, int maxBitRate, String size, Integer duration,
+                Integer audioTrack) {
             this.mediaFileId = mediaFileId;
+            this.changed = changed;
             this.playerId = playerId;
             this.maxBitRate = maxBitRate;
             this.size = size;
@@ -199,14 +315,33 @@ public class HlsSession {
             this.audioTrack = audioTrack;
         }
 
+        /**
+         * Returns an identifier of this key usable as a file name, derived from all of its fields.
+         *
+         * @return hex digest of the key
+         */
         public String id() {
-            return String.valueOf(Math.abs(this.hashCode()));
+            return DigestUtils.sha256Hex(toString());
+        }
+
+        /**
+         * Returns the key of the transcoded rendition, which is the same for every player.
+         *
+         * @return this key without player
+         */
+        public Key getRendition() {
+            return new Key(this.mediaFileId, this.changed, null, this.maxBitRate, this.size, this.duration,
+                    this.audioTrack);
         }
 
         public int getMediaFileId() {
             return this.mediaFileId;
         }
 
+        public Instant getChanged() {
+            return this.changed;
+        }
+
         public String getPlayerId() {
             return this.playerId;
         }
@@ -236,19 +371,21 @@ public class HlsSession {
                 return false;
             }
             Key key = (Key) o;
-            return this.mediaFileId == key.mediaFileId && Objects.equals(this.playerId, key.playerId)
+            return this.mediaFileId == key.mediaFileId && Objects.equals(this.changed, key.changed)
+                    && Objects.equals(this.playerId, key.playerId)
                     && Objects.equals(this.maxBitRate, key.maxBitRate) && Objects.equals(this.size, key.size)
                     && Objects.equals(this.audioTrack, key.audioTrack) && Objects.equals(this.duration, key.duration);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(this.mediaFileId, this.playerId, this.maxBitRate, this.size, this.duration, this.audioTrack);
+            return Objects.hash(this.mediaFileId, this.changed, this.playerId, this.maxBitRate, this.size, this.duration,
+                    this.audioTrack);
         }
 
         @Override
         public String toString() {
-            return "{mediaFileId=" + this.mediaFileId + ", playerId='" + this.playerId + '\'' + ", maxBitRate='"
+            return "{mediaFileId=" + this.mediaFileId + ", changed=" + this.changed + ", playerId='" + this.playerId + '\'' + ", maxBitRate='"
                     + this.maxBitRate + '\'' + ", size='" + this.size + '\'' + ", duration='" + this.duration + '\''
                     + ", audioTrack=" + this.audioTrack + '}';
         }
@@ -23,6 +23,8 @@ package org.airsonic.player.service.metadata;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicScanConfig;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.service.MediaFolderService;
 import org.airsonic.player.service.SettingsService;
@@ -31,23 +33,28 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Semaphore;
 
 /**
  * Parses meta data from video files using FFmpeg (http://ffmpeg.org/).
  * <p/>
- * Currently duration, bitrate and dimension are supported.
+ * Currently duration, bitrate and dimension are supported. At most
+ * {@link AirsonicScanConfig#getProbeParallelism()} ffprobe processes run at the same time, and their output is
+ * kept in an {@link FFprobeCache} unless disabled.
  *
  * @author Sindre Mehus
  */
@@ -60,11 +67,21 @@ public class FFmpegParser extends MetaDataParser {
         "-v", "quiet", "-print_format", "json", "-show_format", "-show_streams", "-show_chapters"
     };
 
-    @Autowired
-    private MediaFolderService mediaFolderService;
+    private final MediaFolderService mediaFolderService;
 
-    @Autowired
-    private SettingsService settingsService;
+    private final SettingsService settingsService;
+
+    private final Semaphore probes;
+
+    private final FFprobeCache cache;
+
+    public FFmpegParser(MediaFolderService mediaFolderService, SettingsService settingsService,
+            AirsonicHomeConfig homeConfig, AirsonicScanConfig scanConfig) {
+        this.mediaFolderService = mediaFolderService;
+        this.settingsService = settingsService;
+        this.probes = new Semaphore(scanConfig.getProbeParallelism());
+        this.cache = scanConfig.isProbeCache() ? new FFprobeCache(homeConfig.getAirsonicHome().resolve("ffprobe-cache")) : null;
+    }
 
     /**
      * Parses meta data for the given music file. No guessing or reformatting is done.
@@ -79,62 +96,101 @@ public class FFmpegParser extends MetaDataParser {
         MetaData metaData = new MetaData();
 
         try {
-            // Use `ffprobe` in the transcode directory if it exists, otherwise let the system sort it out.
-            String ffprobe = settingsService.resolveTranscodeExecutable("ffprobe", "ffprobe");
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            JsonNode result = cache == null ? null : cache.get(file.toAbsolutePath(), attributes);
+            if (result == null) {
+                result = probe(file);
+                if (cache != null && result.has("format")) {
+                    cache.put(file.toAbsolutePath(), attributes, result);
+                }
+            }
+            parse(result, metaData);
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted when parsing metadata in {}", file);
+        } catch (Throwable x) {
+            LOG.warn("Error when parsing metadata in {}", file, x);
+        }
 
-            List<String> command = new ArrayList<>();
-            command.add(ffprobe);
-            command.addAll(Arrays.asList(FFPROBE_OPTIONS));
-            command.add(file.toAbsolutePath().toString());
+        return metaData;
+    }
 
-            Process process = Runtime.getRuntime().exec(command.toArray(new String[0]));
-            JsonNode result = null;
+    /**
+     * Removes the cached ffprobe outputs not used since the given time, i.e. since the start of a full scan.
+     *
+     * @param since The start of the full scan.
+     */
+    public void pruneProbeCache(Instant since) {
+        if (cache != null) {
+            LOG.info("Removed {} unused cached ffprobe outputs", cache.prune(since));
+        }
+    }
+
+    /**
+     * Runs ffprobe on the given file, waiting while as many ffprobe processes as allowed are running.
+     */
+    private JsonNode probe(Path file) throws IOException, InterruptedException {
+        // Use `ffprobe` in the transcode directory if it exists, otherwise let the system sort it out.
+        String ffprobe = settingsService.resolveTranscodeExecutable("ffprobe", "ffprobe");
+
+        List<String> command = new ArrayList<>();
+        command.add(ffprobe);
+        command.addAll(Arrays.asList(FFPROBE_OPTIONS));
+        command.add(file.toAbsolutePath().toString());
+
+        probes.acquire();
+        try {
+            Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
             try (InputStream in = process.getInputStream();
-                BufferedInputStream bin = new BufferedInputStream(in); ) {
-                result = Util.getObjectMapper().readTree(bin);
+                BufferedInputStream bin = new BufferedInputStream(in)) {
+                JsonNode result = Util.getObjectMapper().readTree(bin);
+                process.waitFor();
+                return result == null ? Util.getObjectMapper().createObjectNode() : result;
+            } finally {
+                process.destroy();
             }
+        } finally {
+            probes.release();
+        }
+    }
 
-            metaData.setDuration(result.at("/format/duration").asDouble());
-            // Bitrate is in Kb/s
-            metaData.setBitRate(result.at("/format/bit_rate").asInt() / 1000);
+    static void parse(JsonNode result, MetaData metaData) {
+        metaData.setDuration(result.at("/format/duration").asDouble());
+        // Bitrate is in Kb/s
+        metaData.setBitRate(result.at("/format/bit_rate").asInt() / 1000);
 
-            metaData.setAlbumArtist(getData(result, "album_artist"));
-            metaData.setArtist(getData(result, "artist"));
-            metaData.setAlbumName(getData(result, "album"));
-            metaData.setGenre(getData(result, "genre"));
-            metaData.setTitle(getData(result, "title"));
+        metaData.setAlbumArtist(getData(result, "album_artist"));
+        metaData.setArtist(getData(result, "artist"));
+        metaData.setAlbumName(getData(result, "album"));
+        metaData.setGenre(getData(result, "genre"));
+        metaData.setTitle(getData(result, "title"));
 
-            String data = getData(result, "track");
-            if (NumberUtils.isCreatable(data)) {
-                metaData.setTrackNumber(NumberUtils.createInteger(data));
-            }
+        String data = getData(result, "track");
+        if (NumberUtils.isCreatable(data)) {
+            metaData.setTrackNumber(NumberUtils.createInteger(data));
+        }
 
-            data = getData(result, "date");
-            if (NumberUtils.isCreatable(data)) {
-                metaData.setYear(NumberUtils.createInteger(data));
-            }
+        data = getData(result, "date");
+        if (NumberUtils.isCreatable(data)) {
+            metaData.setYear(NumberUtils.createInteger(data));
+        }
 
-            // Find the first (if any) stream that has dimensions and use those.
-            // 'width' and 'height' are display dimensions; compare to 'coded_width', 'coded_height'.
-            for (JsonNode stream : result.at("/streams")) {
-                Track track = new Track(stream.get("index").asInt(), stream.get("codec_type").asText(), stream.at("/tags/language").asText(), stream.get("codec_name").asText());
-                metaData.addTrack(track);
+        // Find the first (if any) stream that has dimensions and use those.
+        // 'width' and 'height' are display dimensions; compare to 'coded_width', 'coded_height'.
+        for (JsonNode stream : result.at("/streams")) {
+            Track track = new Track(stream.get("index").asInt(), stream.get("codec_type").asText(), stream.at("/tags/language").asText(), stream.get("codec_name").asText());
+            metaData.addTrack(track);
 
-                if (track.isVideo() && stream.has("width") && stream.has("height")) {
-                    metaData.setWidth(stream.get("width").asInt());
-                    metaData.setHeight(stream.get("height").asInt());
-                }
+            if (track.isVideo() && stream.has("width") && stream.has("height")) {
+                metaData.setWidth(stream.get("width").asInt());
+                metaData.setHeight(stream.get("height").asInt());
             }
-            ObjectMapper mapper = Util.getObjectMapper();
-            for (JsonNode chapterJson : result.at("/chapters")) {
-                Chapter chapter = mapper.convertValue(chapterJson, Chapter.class);
-                metaData.addChapter(chapter);
-            }
-        } catch (Throwable x) {
-            LOG.warn("Error when parsing metadata in {}", file, x);
         }
-
-        return metaData;
+        ObjectMapper mapper = Util.getObjectMapper();
+        for (JsonNode chapterJson : result.at("/chapters")) {
+            Chapter chapter = mapper.convertValue(chapterJson, Chapter.class);
+            metaData.addChapter(chapter);
+        }
     }
 
     private static String getData(JsonNode node, String keyName) {
@@ -0,0 +1,160 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.service.metadata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.airsonic.player.util.Util;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the output of ffprobe on disk, so that files which did not change since they were last probed are not probed
+ * again, across restarts and index rebuilds.
+ * <p>
+ * An entry is stored per file, named after the hash of its path, and is only returned while the size and the last
+ * modification time of the file are those it was probed with. Every entry read or written gets its modification time
+ * updated, so that the entries not used by a full scan, of files deleted since, can be removed with {@link #prune}.
+ */
+public class FFprobeCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FFprobeCache.class);
+
+    private final Path directory;
+
+    public FFprobeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cached ffprobe output of the given file.
+     *
+     * @param file       The probed file.
+     * @param attributes The current attributes of the file.
+     * @return The ffprobe output, or null if the file was not probed or changed since.
+     */
+    public JsonNode get(Path file, BasicFileAttributes attributes) {
+        Path entry = getEntry(file);
+        try {
+            JsonNode node = Util.getObjectMapper().readTree(entry.toFile());
+            if (node != null
+                    && file.toString().equals(node.path("path").asText())
+                    && attributes.size() == node.path("size").asLong(-1)
+                    && attributes.lastModifiedTime().toMillis() == node.path("modified").asLong(-1)
+                    && node.hasNonNull("probe")) {
+                touch(entry);
+                return node.get("probe");
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // Not probed yet
+        } catch (IOException e) {
+            LOG.debug("Could not read cached ffprobe output of {}", file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Stores the ffprobe output of the given file.
+     *
+     * @param file       The probed file.
+     * @param attributes The attributes of the file when it was probed.
+     * @param probe      The ffprobe output.
+     */
+    public void put(Path file, BasicFileAttributes attributes, JsonNode probe) {
+        ObjectNode node = Util.getObjectMapper().createObjectNode();
+        node.put("path", file.toString());
+        node.put("size", attributes.size());
+        node.put("modified", attributes.lastModifiedTime().toMillis());
+        node.set("probe", probe);
+
+        Path entry = getEntry(file);
+        try {
+            Files.createDirectories(entry.getParent());
+            Path temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+            try {
+                Util.getObjectMapper().writeValue(temp.toFile(), node);
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not cache ffprobe output of {}", file, e);
+        }
+    }
+
+    /**
+     * Removes the entries neither read nor written since the given time. Called after a full scan, which reads the
+     * entry of every probed file, it removes those of the files which are gone.
+     *
+     * @param since The start of the full scan.
+     * @return The number of removed entries.
+     */
+    public int prune(Instant since) {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        List<Path> entries;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            entries = files.filter(Files::isRegularFile).collect(Collectors.toList());
+        } catch (IOException e) {
+            LOG.warn("Could not list cached ffprobe outputs in {}", directory, e);
+            return 0;
+        }
+        FileTime threshold = FileTime.from(since);
+        int removed = 0;
+        for (Path entry : entries) {
+            try {
+                if (Files.getLastModifiedTime(entry).compareTo(threshold) < 0) {
+                    Files.deleteIfExists(entry);
+                    removed++;
+                }
+            } catch (IOException e) {
+                LOG.debug("Could not remove cached ffprobe output {}", entry, e);
+            }
+        }
+        return removed;
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            LOG.debug("Could not mark cached ffprobe output {} as used", entry, e);
+        }
+    }
+
+    private Path getEntry(Path file) {
+        String hash = DigestUtils.sha256Hex(file.toString());
+        return directory.resolve(hash.substring(0, 2)).resolve(hash + ".json");
+    }
+}
@@ -19,11 +19,10 @@
  */
 package org.airsonic.player.service.scrobbler;
 
-import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.Scrobble;
 import org.airsonic.player.util.StringUtil;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
@@ -39,12 +38,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Provides services for "audioscrobbling" at www.last.fm.
@@ -55,173 +51,167 @@ import java.util.concurrent.LinkedBlockingQueue;
 public class LastFMScrobbler {
 
     private static final Logger LOG = LoggerFactory.getLogger(LastFMScrobbler.class);
-    private static final int MAX_PENDING_REGISTRATION = 2000;
 
-    private RegistrationThread thread;
-    private final LinkedBlockingQueue<RegistrationData> queue = new LinkedBlockingQueue<RegistrationData>();
+    /**
+     * Maximum number of submissions in a single request.
+     */
+    public static final int MAX_BATCH_SIZE = 50;
+
     private final RequestConfig requestConfig = RequestConfig.custom()
             .setConnectTimeout(15000)
             .setSocketTimeout(15000)
             .build();
 
+    private URI handshakeUri = URI.create("http://post.audioscrobbler.com/");
 
     /**
-     * Registers the given media file at www.last.fm. This method returns immediately, the actual registration is done
-     * by a separate thread.
+     * Submits plays at www.last.fm, using the protocol defined at http://www.last.fm/api/submissions.
      *
-     * @param mediaFile  The media file to register.
      * @param username   last.fm username.
      * @param password   last.fm password.
-     * @param submission Whether this is a submission or a now playing notification.
-     * @param time       Event time, or {@code null} to use current time.
+     * @param scrobbles  The plays to submit, at most {@link #MAX_BATCH_SIZE}.
+     * @return The outcome of the submission.
      */
-    public synchronized void register(MediaFile mediaFile, String username, String password, boolean submission, Instant time) {
-        if (thread == null) {
-            thread = new RegistrationThread();
-            thread.start();
-        }
-
-        if (queue.size() >= MAX_PENDING_REGISTRATION) {
-            LOG.warn("Last.fm scrobbler queue is full. Ignoring " + mediaFile);
-            return;
+    public ScrobbleResult submit(String username, String password, List<Scrobble> scrobbles) {
+        if (scrobbles.isEmpty()) {
+            return ScrobbleResult.SUCCESS;
         }
-
-        RegistrationData registrationData = createRegistrationData(mediaFile, username, password, submission, time);
-        if (registrationData == null) {
-            return;
+        if (scrobbles.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " scrobbles can be submitted at once");
         }
-
         try {
-            queue.put(registrationData);
-        } catch (InterruptedException x) {
-            LOG.warn("Interrupted while queuing Last.fm scrobble: " + x.toString());
+            Session session = authenticate(username, password);
+            if (session.result != ScrobbleResult.SUCCESS) {
+                return session.result;
+            }
+            ScrobbleResult result = checkResponse(registerSubmissions(scrobbles, session.id, session.submissionUrl));
+            if (result == ScrobbleResult.SUCCESS) {
+                LOG.info("Successfully registered {} submission(s) for user {} at Last.fm", scrobbles.size(), username);
+            }
+            return result;
+        } catch (IOException | URISyntaxException x) {
+            LOG.info("Last.fm submission for user {} encountered network error: {}. Will try again later.", username, x.toString());
+            return ScrobbleResult.RETRY;
         }
     }
 
-    private RegistrationData createRegistrationData(MediaFile mediaFile, String username, String password, boolean submission, Instant time) {
-        RegistrationData reg = new RegistrationData();
-        reg.username = username;
-        reg.password = password;
-        reg.artist = mediaFile.getArtist();
-        reg.album = mediaFile.getAlbumName();
-        reg.title = mediaFile.getTitle();
-        reg.duration = mediaFile.getDuration() == null ? 0 : (int) Math.round(mediaFile.getDuration());
-        reg.time = time == null ? Instant.now() : time;
-        reg.submission = submission;
-
-        return reg;
-    }
-
     /**
-     * Scrobbles the given song data at last.fm, using the protocol defined at http://www.last.fm/api/submissions.
+     * Registers a now playing notification at www.last.fm.
      *
-     * @param registrationData Registration data for the song.
+     * @param username  last.fm username.
+     * @param password  last.fm password.
+     * @param scrobble  The song being played.
+     * @return The outcome of the notification.
      */
-    private void scrobble(RegistrationData registrationData) throws URISyntaxException, ClientProtocolException, IOException {
-        if (registrationData == null) {
-            return;
-        }
-
-        String[] lines = authenticate(registrationData);
-        if (lines == null) {
-            return;
+    public ScrobbleResult nowPlaying(String username, String password, Scrobble scrobble) {
+        try {
+            Session session = authenticate(username, password);
+            if (session.result != ScrobbleResult.SUCCESS) {
+                return session.result;
+            }
+            ScrobbleResult result = checkResponse(registerNowPlaying(scrobble, session.id, session.nowPlayingUrl));
+            if (result == ScrobbleResult.SUCCESS) {
+                LOG.info("Successfully registered now playing for song '{}' for user {} at Last.fm", scrobble.getTitle(), username);
+            }
+            return result;
+        } catch (IOException | URISyntaxException x) {
+            LOG.info("Last.fm now playing for user {} encountered network error: {}", username, x.toString());
+            return ScrobbleResult.RETRY;
         }
+    }
 
-        String sessionId = lines[1];
-        String nowPlayingUrl = lines[2];
-        String submissionUrl = lines[3];
-
-        if (registrationData.submission) {
-            lines = registerSubmission(registrationData, sessionId, submissionUrl);
-        } else {
-            lines = registerNowPlaying(registrationData, sessionId, nowPlayingUrl);
+    private ScrobbleResult checkResponse(String[] lines) {
+        if (lines[0].startsWith("OK")) {
+            return ScrobbleResult.SUCCESS;
         }
-
-        if (lines[0].startsWith("FAILED")) {
-            LOG.warn("Failed to scrobble song '" + registrationData.title + "' at Last.fm: " + lines[0]);
-        } else if (lines[0].startsWith("BADSESSION")) {
-            LOG.warn("Failed to scrobble song '" + registrationData.title + "' at Last.fm.  Invalid session.");
-        } else if (lines[0].startsWith("OK")) {
-            LOG.info("Successfully registered " + (registrationData.submission ? "submission" : "now playing") +
-                      " for song '" + registrationData.title + "' for user " + registrationData.username + " at Last.fm: " + registrationData.time);
+        if (lines[0].startsWith("BADSESSION")) {
+            LOG.warn("Failed to scrobble at Last.fm.  Invalid session.");
+            return ScrobbleResult.RETRY;
         }
+        LOG.warn("Failed to scrobble at Last.fm: {}", lines[0]);
+        return lines[0].startsWith("FAILED") ? ScrobbleResult.RETRY : ScrobbleResult.REJECTED;
     }
 
     /**
-     * Returns the following lines if authentication succeeds:
+     * Performs the handshake. If it succeeds, the response contains the following lines:
      * <p/>
      * Line 0: Always "OK"
      * Line 1: Session ID, e.g., "17E61E13454CDD8B68E8D7DEEEDF6170"
      * Line 2: URL to use for now playing, e.g., "https://post.audioscrobbler.com:80/np_1.2"
      * Line 3: URL to use for submissions, e.g., "https://post2.audioscrobbler.com:80/protocol_1.2"
-     * <p/>
-     * If authentication fails, <code>null</code> is returned.
      */
-    private String[] authenticate(RegistrationData registrationData) throws URISyntaxException, ClientProtocolException, IOException {
+    private Session authenticate(String username, String password) throws URISyntaxException, IOException {
         String clientId = "sub";
         String clientVersion = "0.1";
         long timestamp = System.currentTimeMillis() / 1000L;
-        String authToken = calculateAuthenticationToken(registrationData.password, timestamp);
-        URI uri = new URI("http",
-                /* userInfo= */ null, "post.audioscrobbler.com", -1,
-                "/",
+        String authToken = calculateAuthenticationToken(password, timestamp);
+        URI uri = new URI(handshakeUri.getScheme(),
+                /* userInfo= */ null, handshakeUri.getHost(), handshakeUri.getPort(),
+                handshakeUri.getPath(),
                 String.format("hs=true&p=1.2.1&c=%s&v=%s&u=%s&t=%s&a=%s",
-                        clientId, clientVersion, registrationData.username,
+                        clientId, clientVersion, username,
                         timestamp, authToken),
                 /* fragment= */ null);
 
         String[] lines = executeGetRequest(uri);
 
         if (lines[0].startsWith("BANNED")) {
-            LOG.warn("Failed to scrobble song '" + registrationData.title + "' at Last.fm. Client version is banned.");
-            return null;
+            LOG.warn("Failed to scrobble at Last.fm. Client version is banned.");
+            return new Session(ScrobbleResult.REJECTED);
         }
 
         if (lines[0].startsWith("BADAUTH")) {
-            LOG.warn("Failed to scrobble song '" + registrationData.title + "' at Last.fm. Wrong username or password.");
-            return null;
+            LOG.warn("Failed to scrobble at Last.fm for user {}. Wrong username or password.", username);
+            return new Session(ScrobbleResult.REJECTED);
         }
 
         if (lines[0].startsWith("BADTIME")) {
-            LOG.warn("Failed to scrobble song '" + registrationData.title + "' at Last.fm. Bad timestamp, please check local clock.");
-            return null;
+            LOG.warn("Failed to scrobble at Last.fm. Bad timestamp, please check local clock.");
+            return new Session(ScrobbleResult.RETRY);
         }
 
         if (lines[0].startsWith("FAILED")) {
-            LOG.warn("Failed to scrobble song '" + registrationData.title + "' at Last.fm: " + lines[0]);
-            return null;
+            LOG.warn("Failed to scrobble at Last.fm: {}", lines[0]);
+            return new Session(ScrobbleResult.RETRY);
         }
 
-        if (!lines[0].startsWith("OK")) {
-            LOG.warn("Failed to scrobble song '" + registrationData.title + "' at Last.fm.  Unknown response: " + lines[0]);
-            return null;
+        if (!lines[0].startsWith("OK") || lines.length < 4) {
+            LOG.warn("Failed to scrobble at Last.fm.  Unknown response: {}", lines[0]);
+            return new Session(ScrobbleResult.RETRY);
         }
 
-        return lines;
+        Session session = new Session(ScrobbleResult.SUCCESS);
+        session.id = lines[1];
+        session.nowPlayingUrl = lines[2];
+        session.submissionUrl = lines[3];
+        return session;
     }
 
-    private String[] registerSubmission(RegistrationData registrationData, String sessionId, String url) throws UnsupportedEncodingException, ClientProtocolException, IOException {
-        Map<String, String> params = new HashMap<String, String>();
+    private String[] registerSubmissions(List<Scrobble> scrobbles, String sessionId, String url) throws IOException {
+        Map<String, String> params = new LinkedHashMap<String, String>();
         params.put("s", sessionId);
-        params.put("a[0]", registrationData.artist);
-        params.put("t[0]", registrationData.title);
-        params.put("i[0]", String.valueOf(registrationData.time.getEpochSecond()));
-        params.put("o[0]", "P");
-        params.put("r[0]", "");
-        params.put("l[0]", String.valueOf(registrationData.duration));
-        params.put("b[0]", registrationData.album);
-        params.put("n[0]", "");
-        params.put("m[0]", "");
+        for (int i = 0; i < scrobbles.size(); i++) {
+            Scrobble scrobble = scrobbles.get(i);
+            params.put("a[" + i + "]", scrobble.getArtist());
+            params.put("t[" + i + "]", scrobble.getTitle());
+            params.put("i[" + i + "]", String.valueOf(scrobble.getPlayed().getEpochSecond()));
+            params.put("o[" + i + "]", "P");
+            params.put("r[" + i + "]", "");
+            params.put("l[" + i + "]", String.valueOf(scrobble.getDuration()));
+            params.put("b[" + i + "]", scrobble.getAlbum());
+            params.put("n[" + i + "]", "");
+            params.put("m[" + i + "]", "");
+        }
         return executePostRequest(url, params);
     }
 
-    private String[] registerNowPlaying(RegistrationData registrationData, String sessionId, String url) throws UnsupportedEncodingException, ClientProtocolException, IOException {
+    private String[] registerNowPlaying(Scrobble scrobble, String sessionId, String url) throws IOException {
         Map<String, String> params = new HashMap<String, String>();
         params.put("s", sessionId);
-        params.put("a", registrationData.artist);
-        params.put("t", registrationData.title);
-        params.put("b", registrationData.album);
-        params.put("l", String.valueOf(registrationData.duration));
+        params.put("a", scrobble.getArtist());
+        params.put("t", scrobble.getTitle());
+        params.put("b", scrobble.getAlbum());
+        params.put("l", String.valueOf(scrobble.getDuration()));
         params.put("n", "");
         params.put("m", "");
         return executePostRequest(url, params);
@@ -231,13 +221,13 @@ public class LastFMScrobbler {
         return DigestUtils.md5Hex(DigestUtils.md5Hex(password) + timestamp);
     }
 
-    private String[] executeGetRequest(URI url) throws IOException, ClientProtocolException {
+    private String[] executeGetRequest(URI url) throws IOException {
         HttpGet method = new HttpGet(url);
         method.setConfig(requestConfig);
         return executeRequest(method);
     }
 
-    private String[] executePostRequest(String url, Map<String, String> parameters) throws UnsupportedEncodingException, ClientProtocolException, IOException {
+    private String[] executePostRequest(String url, Map<String, String> parameters) throws IOException {
         List<NameValuePair> params = new ArrayList<NameValuePair>();
         for (Map.Entry<String, String> entry : parameters.entrySet()) {
             params.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
@@ -249,7 +239,7 @@ public class LastFMScrobbler {
         return executeRequest(request);
     }
 
-    private String[] executeRequest(HttpUriRequest request) throws ClientProtocolException, IOException {
+    private String[] executeRequest(HttpUriRequest request) throws IOException {
         try (CloseableHttpClient client = HttpClients.createDefault()) {
             ResponseHandler<String> responseHandler = new BasicResponseHandler();
             String response = client.execute(request, responseHandler);
@@ -257,51 +247,19 @@ public class LastFMScrobbler {
         }
     }
 
-    private class RegistrationThread extends Thread {
-        private RegistrationThread() {
-            super("LastFMScrobbler Registration");
-        }
+    void setHandshakeUri(URI handshakeUri) {
+        this.handshakeUri = handshakeUri;
+    }
 
-        @Override
-        public void run() {
-            while (true) {
-                RegistrationData registrationData = null;
-                try {
-                    registrationData = queue.take();
-                    scrobble(registrationData);
-                } catch (IOException x) {
-                    handleNetworkError(registrationData, x.toString());
-                } catch (Exception x) {
-                    LOG.warn("Error in Last.fm registration: " + x.toString());
-                }
-            }
-        }
+    private static class Session {
+        private final ScrobbleResult result;
+        private String id;
+        private String nowPlayingUrl;
+        private String submissionUrl;
 
-        private void handleNetworkError(RegistrationData registrationData, String errorMessage) {
-            try {
-                queue.put(registrationData);
-                LOG.info("Last.fm registration for '" + registrationData.title +
-                         "' encountered network error: " + errorMessage + ".  Will try again later. In queue: " + queue.size());
-            } catch (InterruptedException x) {
-                LOG.error("Failed to reschedule Last.fm registration for '" + registrationData.title + "': " + x.toString());
-            }
-            try {
-                sleep(60L * 1000L);  // Wait 60 seconds.
-            } catch (InterruptedException x) {
-                LOG.error("Failed to sleep after Last.fm registration failure for '" + registrationData.title + "': " + x.toString());
-            }
+        Session(ScrobbleResult result) {
+            this.result = result;
         }
     }
 
-    private static class RegistrationData {
-        private String username;
-        private String password;
-        private String artist;
-        private String album;
-        private String title;
-        private int duration;
-        private Instant time;
-        public boolean submission;
-    }
-
 }
@@ -20,9 +20,8 @@
  */
 package org.airsonic.player.service.scrobbler;
 
-import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.Scrobble;
 import org.airsonic.player.util.Util;
-import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
@@ -34,9 +33,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Provides services for "audioscrobbling" at listenbrainz.org.
@@ -47,120 +44,101 @@ import java.util.concurrent.LinkedBlockingQueue;
 public class ListenBrainzScrobbler {
 
     private static final Logger LOG = LoggerFactory.getLogger(ListenBrainzScrobbler.class);
-    private static final int MAX_PENDING_REGISTRATION = 2000;
 
-    private RegistrationThread thread;
-    private final LinkedBlockingQueue<RegistrationData> queue = new LinkedBlockingQueue<RegistrationData>();
+    private static final String DEFAULT_URL = "https://api.listenbrainz.org/1/submit-listens";
 
     /**
-     * Registers the given media file at listenbrainz.org. This method returns
-     * immediately, the actual registration is done by a separate thread.
+     * Maximum number of listens in a single request.
+     */
+    public static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Submits listens at listenbrainz.org, using the protocol defined at
+     * https://listenbrainz.readthedocs.io/en/latest/dev/api.html. Several listens are submitted as an import.
      *
-     * @param mediaFile  The media file to register.
      * @param url        The ListenBrainz URL (null for default)
      * @param token      The token to authentication user on ListenBrainz.
-     * @param submission Whether this is a submission or a now playing notification.
-     * @param time       Event time, or {@code null} to use current time.
+     * @param scrobbles  The listens to submit, at most {@link #MAX_BATCH_SIZE}.
+     * @return The outcome of the submission.
      */
-    public synchronized void register(MediaFile mediaFile, String url, String token, boolean submission, Instant time) {
-        if (thread == null) {
-            thread = new RegistrationThread();
-            thread.start();
+    public ScrobbleResult submit(String url, String token, List<Scrobble> scrobbles) {
+        if (scrobbles.isEmpty()) {
+            return ScrobbleResult.SUCCESS;
         }
-
-        if (queue.size() >= MAX_PENDING_REGISTRATION) {
-            LOG.warn("ListenBrainz scrobbler queue is full. Ignoring '{}'", mediaFile.getTitle());
-            return;
+        if (scrobbles.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " listens can be submitted at once");
         }
-
-        RegistrationData registrationData = createRegistrationData(mediaFile, url, token, submission, time);
-        if (registrationData == null) {
-            return;
+        List<Map<String, Object>> payloads = new ArrayList<Map<String, Object>>();
+        for (Scrobble scrobble : scrobbles) {
+            Map<String, Object> payload = createPayload(scrobble);
+            payload.put("listened_at", Long.valueOf(scrobble.getPlayed().getEpochSecond()));
+            payloads.add(payload);
         }
-
-        try {
-            queue.put(registrationData);
-        } catch (InterruptedException x) {
-            LOG.warn("Interrupted while queuing ListenBrainz scrobble", x);
+        ScrobbleResult result = execute(url, token, scrobbles.size() == 1 ? "single" : "import", payloads);
+        if (result == ScrobbleResult.SUCCESS) {
+            LOG.info("Successfully registered {} submission(s) at ListenBrainz ({})", scrobbles.size(), getUrl(url));
         }
-    }
-
-    private RegistrationData createRegistrationData(MediaFile mediaFile, String url, String token, boolean submission, Instant time) {
-        RegistrationData reg = new RegistrationData();
-        reg.url = url == null ? "https://api.listenbrainz.org/1/submit-listens" : url;
-        reg.token = token;
-        reg.artist = mediaFile.getArtist();
-        reg.album = mediaFile.getAlbumName();
-        reg.title = mediaFile.getTitle();
-        reg.musicBrainzReleaseId = mediaFile.getMusicBrainzReleaseId();
-        reg.musicBrainzRecordingId = mediaFile.getMusicBrainzRecordingId();
-        reg.trackNumber = mediaFile.getTrackNumber();
-        reg.duration = mediaFile.getDuration() == null ? 0 : (int) Math.round(mediaFile.getDuration());
-        reg.time = time == null ? Instant.now() : time;
-        reg.submission = submission;
-
-        return reg;
+        return result;
     }
 
     /**
-     * Scrobbles the given song data at listenbrainz.org, using the protocol defined at https://listenbrainz.readthedocs.io/en/latest/dev/api.html.
+     * Registers a now playing notification at listenbrainz.org.
      *
-     * @param registrationData Registration data for the song.
+     * @param url       The ListenBrainz URL (null for default)
+     * @param token     The token to authentication user on ListenBrainz.
+     * @param scrobble  The song being played.
+     * @return The outcome of the notification.
      */
-    private void scrobble(RegistrationData registrationData) throws ClientProtocolException, IOException {
-        if (registrationData == null || registrationData.token == null) {
-            return;
-        }
-
-        if (!submit(registrationData)) {
-            LOG.warn("Failed to scrobble song '{}' at ListenBrainz ({}).", registrationData.title, registrationData.url);
-        } else {
-            LOG.info("Successfully registered {} for song '{}' at ListenBrainz ({}): {}",
-                    (registrationData.submission ? "submission" : "now playing"), registrationData.title,
-                    registrationData.url, registrationData.time);
+    public ScrobbleResult nowPlaying(String url, String token, Scrobble scrobble) {
+        ScrobbleResult result = execute(url, token, "playing_now", List.of(createPayload(scrobble)));
+        if (result == ScrobbleResult.SUCCESS) {
+            LOG.info("Successfully registered now playing for song '{}' at ListenBrainz ({})", scrobble.getTitle(), getUrl(url));
         }
+        return result;
     }
-    /**
-     * Returns if submission succeeds.
-     */
-    private boolean submit(RegistrationData registrationData) throws ClientProtocolException, IOException {
+
+    private Map<String, Object> createPayload(Scrobble scrobble) {
         Map<String, Object> additional_info = new HashMap<String, Object>();
-        additional_info.computeIfAbsent("release_mbid", k -> registrationData.musicBrainzReleaseId);
-        additional_info.computeIfAbsent("recording_mbid", k -> registrationData.musicBrainzRecordingId);
-        additional_info.computeIfAbsent("tracknumber", k -> registrationData.trackNumber);
+        additional_info.computeIfAbsent("release_mbid", k -> scrobble.getMusicBrainzReleaseId());
+        additional_info.computeIfAbsent("recording_mbid", k -> scrobble.getMusicBrainzRecordingId());
+        additional_info.computeIfAbsent("tracknumber", k -> scrobble.getTrackNumber());
 
         Map<String, Object> track_metadata = new HashMap<String, Object>();
         if (additional_info.size() > 0) {
             track_metadata.put("additional_info", additional_info);
         }
-        track_metadata.computeIfAbsent("artist_name", k -> registrationData.artist);
-        track_metadata.computeIfAbsent("track_name", k -> registrationData.title);
-        track_metadata.computeIfAbsent("release_name", k -> registrationData.album);
+        track_metadata.computeIfAbsent("artist_name", k -> scrobble.getArtist());
+        track_metadata.computeIfAbsent("track_name", k -> scrobble.getTitle());
+        track_metadata.computeIfAbsent("release_name", k -> scrobble.getAlbum());
 
         Map<String, Object> payload = new HashMap<String, Object>();
         if (track_metadata.size() > 0) {
             payload.put("track_metadata", track_metadata);
         }
+        return payload;
+    }
 
-        Map<String, Object> content = new HashMap<String, Object>();
-
-        if (registrationData.submission) {
-            payload.put("listened_at", Long.valueOf(registrationData.time.getEpochSecond()));
-            content.put("listen_type", "single");
-        } else {
-            content.put("listen_type", "playing_now");
+    private ScrobbleResult execute(String url, String token, String listenType, List<Map<String, Object>> payloads) {
+        if (token == null) {
+            return ScrobbleResult.REJECTED;
         }
-
-        List<Map<String, Object>> payloads = new ArrayList<Map<String, Object>>();
-        payloads.add(payload);
+        Map<String, Object> content = new HashMap<String, Object>();
+        content.put("listen_type", listenType);
         content.put("payload", payloads);
 
-        String json = Util.toJson(content);
+        try {
+            return executeJsonPostRequest(getUrl(url), token, Util.toJson(content));
+        } catch (IOException x) {
+            LOG.info("ListenBrainz registration at {} encountered network error. Will try again later.", getUrl(url), x);
+            return ScrobbleResult.RETRY;
+        }
+    }
 
-        return executeJsonPostRequest(registrationData.url, registrationData.token, json);
+    private static String getUrl(String url) {
+        return url == null ? DEFAULT_URL : url;
     }
 
-    private boolean executeJsonPostRequest(String url, String token, String json) throws ClientProtocolException, IOException {
+    private ScrobbleResult executeJsonPostRequest(String url, String token, String json) throws IOException {
         HttpPost request = new HttpPost(url);
         request.setEntity(new StringEntity(json, "UTF-8"));
         request.setHeader("Authorization", "token " + token);
@@ -169,67 +147,17 @@ public class ListenBrainzScrobbler {
         return executeRequest(request);
     }
 
-    private boolean executeRequest(HttpUriRequest request) throws ClientProtocolException, IOException {
+    private ScrobbleResult executeRequest(HttpUriRequest request) throws IOException {
         try (CloseableHttpClient client = HttpClients.createDefault();
                 CloseableHttpResponse resp = client.execute(request);) {
-            boolean ok = resp.getStatusLine().getStatusCode() == 200;
-            if (!ok) {
-                LOG.warn("Failed to execute ListenBrainz request: {}", resp.getEntity().toString());
-            }
-
-            return ok;
-        }
-    }
-
-    private class RegistrationThread extends Thread {
-        private RegistrationThread() {
-            super("ListenBrainzScrobbler Registration");
-        }
-
-        @Override
-        public void run() {
-            while (true) {
-                RegistrationData registrationData = null;
-                try {
-                    registrationData = queue.take();
-                    scrobble(registrationData);
-                } catch (ClientProtocolException x) {
-                } catch (IOException x) {
-                    handleNetworkError(registrationData, x);
-                } catch (Exception x) {
-                    LOG.warn("Error in ListenBrainz registration: " + x.toString());
-                }
+            int status = resp.getStatusLine().getStatusCode();
+            if (status == 200) {
+                return ScrobbleResult.SUCCESS;
             }
+            LOG.warn("Failed to execute ListenBrainz request: {}", resp.getStatusLine());
+            // rate limited or server error
+            return status == 429 || status >= 500 ? ScrobbleResult.RETRY : ScrobbleResult.REJECTED;
         }
-
-        private void handleNetworkError(RegistrationData registrationData, Exception error) {
-            try {
-                queue.put(registrationData);
-                LOG.info("ListenBrainz registration for '{}' encountered network error. Will try again later. In queue: {}", registrationData.title, queue.size(), error);
-            } catch (InterruptedException x) {
-                LOG.error("Failed to reschedule ListenBrainz registration for '{}'", registrationData.title, x);
-            }
-            try {
-                sleep(60L * 1000L);  // Wait 60 seconds.
-            } catch (InterruptedException x) {
-                LOG.error("Failed to sleep after ListenBrainz registration failure for '{}'", registrationData.title, x);
-            }
-        }
-    }
-
-    @SuppressWarnings("unused")
-    private static class RegistrationData {
-        private String url;
-        private String token;
-        private String artist;
-        private String album;
-        private String title;
-        private String musicBrainzReleaseId;
-        private String musicBrainzRecordingId;
-        private Integer trackNumber;
-        private int duration;
-        private Instant time;
-        public boolean submission;
     }
 
 }
@@ -0,0 +1,13 @@
+package org.airsonic.player.service.scrobbler;
+
+/**
+ * Outcome of submitting scrobbles to an audio scrobbling service.
+ */
+public enum ScrobbleResult {
+    /** The scrobbles were accepted. */
+    SUCCESS,
+    /** The service could not be reached or failed temporarily, the scrobbles should be submitted again later. */
+    RETRY,
+    /** The service refused the scrobbles, e.g. because of bad credentials. Submitting them again will not help. */
+    REJECTED
+}
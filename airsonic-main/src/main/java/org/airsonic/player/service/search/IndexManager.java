@@ -21,30 +21,42 @@
 package org.airsonic.player.service.search;
 
 import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicSearchConfig;
 import org.airsonic.player.domain.*;
 import org.airsonic.player.domain.MediaFile.MediaType;
 import org.airsonic.player.repository.AlbumRepository;
 import org.airsonic.player.repository.ArtistRepository;
 import org.airsonic.player.repository.MediaFileRepository;
+import org.airsonic.player.service.TaskSchedulingService;
 import org.airsonic.player.util.FileUtil;
 import org.airsonic.player.util.Util;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -81,7 +93,9 @@ public class IndexManager {
             ArtistRepository artistRepository,
             AlbumRepository albumRepository,
             MediaFileRepository mediaFileRepository,
-            AirsonicHomeConfig homeConfig
+            AirsonicHomeConfig homeConfig,
+            AirsonicSearchConfig searchConfig,
+            TaskSchedulingService taskService
     ) {
         this.analyzerFactory = analyzerFactory;
         this.documentFactory = documentFactory;
@@ -89,6 +103,8 @@ public class IndexManager {
         this.albumRepository = albumRepository;
         this.mediaFileRepository = mediaFileRepository;
         this.homeConfig = homeConfig;
+        this.searchConfig = searchConfig;
+        this.taskService = taskService;
         this.rootIndexDirectory = homeConfig.getAirsonicHome().resolve(INDEX_ROOT_DIR_NAME.concat(Integer.toString(INDEX_VERSION)));
     }
 
@@ -99,6 +115,13 @@ public class IndexManager {
     private final AlbumRepository albumRepository;
     private final MediaFileRepository mediaFileRepository;
     private final AirsonicHomeConfig homeConfig;
+    private final AirsonicSearchConfig searchConfig;
+    private final TaskSchedulingService taskService;
+
+    /**
+     * Name of the task refreshing the searchers while indexing.
+     */
+    private static final String REFRESH_TASK_NAME = "search-index-refresh";
 
     /**
      * Literal name of index top directory.
@@ -119,6 +142,11 @@ public class IndexManager {
 
     private Map<IndexType, IndexWriter> writers = new ConcurrentHashMap<>();
 
+    /**
+     * Indexes whose SearcherManager reads from their writer rather than from the last commit.
+     */
+    private Set<IndexType> nearRealTime = ConcurrentHashMap.newKeySet();
+
     public void index(Album album) {
         Term primarykey = documentFactory.createPrimarykey(album);
         Document document = documentFactory.createAlbumId3Document(album);
@@ -157,10 +185,66 @@ public class IndexManager {
         }
     }
 
+    /**
+     * Open the writer of all indexes. While indexing, the searchers see the indexed documents every
+     * {@link AirsonicSearchConfig#getRefreshInterval()} seconds, before they are committed.
+     */
     public final boolean startIndexing() {
+        boolean started = startIndexing(IndexWriterConfig.OpenMode.CREATE_OR_APPEND, searchConfig.getRefreshInterval() > 0);
+        if (!nearRealTime.isEmpty()) {
+            Duration interval = Duration.ofSeconds(searchConfig.getRefreshInterval());
+            taskService.scheduleAtFixedRate(REFRESH_TASK_NAME, this::refreshSearchers, Instant.now().plus(interval), interval, true);
+        }
+        return started;
+    }
+
+    /**
+     * Open the writer of all indexes, discarding their documents. The searchers keep seeing the previous documents
+     * until the new ones are committed by {@link #stopIndexing(MediaLibraryStatistics)}.
+     */
+    public boolean startRebuilding() {
+        if (!writers.isEmpty()) {
+            LOG.info("Search index is currently being updated.");
+            return false;
+        }
+        if (startIndexing(IndexWriterConfig.OpenMode.CREATE, false)) {
+            return true;
+        }
+        // keep the documents of the indexes that could be opened
+        abortIndexing();
+        return false;
+    }
+
+    /**
+     * Close the writer of all indexes without committing, discarding the documents indexed since
+     * {@link #startIndexing()} or {@link #startRebuilding()}. The searchers keep seeing the previous commit.
+     */
+    public void abortIndexing() {
+        taskService.unscheduleTask(REFRESH_TASK_NAME);
+        EnumSet.allOf(IndexType.class).forEach(indexType -> writers.computeIfPresent(indexType, (tw, writer) -> {
+            try {
+                writer.rollback();
+            } catch (IOException e) {
+                LOG.warn("Failed to roll back search index for {}", tw, e);
+            }
+            if (nearRealTime.remove(tw)) {
+                // the searchers read from the rolled back writer, read from the commit again
+                closeSearcherManager(tw, searchers.remove(tw));
+            }
+            //remove from map
+            return null;
+        }));
+    }
+
+    private boolean startIndexing(IndexWriterConfig.OpenMode openMode, boolean searchWhileIndexing) {
         return EnumSet.allOf(IndexType.class).parallelStream().map(x -> {
             try {
-                writers.put(x, createIndexWriter(x));
+                IndexWriter writer = createIndexWriter(x, openMode);
+                writers.put(x, writer);
+                if (searchWhileIndexing) {
+                    closeSearcherManager(x, searchers.put(x, new SearcherManager(writer, null)));
+                    nearRealTime.add(x);
+                }
             } catch (IOException e) {
                 LOG.error("Failed to create search index for {}", x, e);
                 return false;
@@ -169,12 +253,94 @@ public class IndexManager {
         }).reduce(true, (a, b) -> a && b);
     }
 
-    private IndexWriter createIndexWriter(IndexType indexType) throws IOException {
+    private IndexWriter createIndexWriter(IndexType indexType, IndexWriterConfig.OpenMode openMode) throws IOException {
         Path indexDirectory = getIndexDirectory.apply(indexType);
         IndexWriterConfig config = new IndexWriterConfig(analyzerFactory.getAnalyzer());
+        config.setOpenMode(openMode);
+        config.setRAMBufferSizeMB(toMegabytes(searchConfig.getRamBuffer().toBytes()));
+
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setSegmentsPerTier(searchConfig.getSegmentsPerTier());
+        mergePolicy.setMaxMergedSegmentMB(toMegabytes(searchConfig.getMaxMergedSegment().toBytes()));
+        config.setMergePolicy(mergePolicy);
+
+        if (searchConfig.getMergeThreads() != null || searchConfig.getMaxMerges() != null) {
+            int threads = Objects.requireNonNullElse(searchConfig.getMergeThreads(),
+                    Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+            int maxMerges = Objects.requireNonNullElse(searchConfig.getMaxMerges(), threads + 5);
+            ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+            mergeScheduler.setMaxMergesAndThreads(Math.max(maxMerges, threads), threads);
+            config.setMergeScheduler(mergeScheduler);
+        }
         return new IndexWriter(FSDirectory.open(indexDirectory), config);
     }
 
+    private static double toMegabytes(long bytes) {
+        return bytes / 1024.0 / 1024.0;
+    }
+
+    /**
+     * Make the documents indexed so far visible to the searchers reading from their writer.
+     */
+    private void refreshSearchers() {
+        for (IndexType indexType : nearRealTime) {
+            SearcherManager searcherManager = searchers.get(indexType);
+            if (searcherManager == null) {
+                continue;
+            }
+            try {
+                searcherManager.maybeRefresh();
+            } catch (IOException | AlreadyClosedException e) {
+                LOG.debug("Failed to refresh SearcherManager : [{}]", indexType, e);
+            }
+        }
+    }
+
+    private void closeSearcherManager(IndexType indexType, SearcherManager searcherManager) {
+        if (searcherManager == null) {
+            return;
+        }
+        try {
+            searcherManager.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close SearcherManager : [{}]", indexType, e);
+        }
+    }
+
+    /**
+     * Index every present media file, album and artist of the database again, without reading the music folders.
+     * Must be called between {@link #startRebuilding()} and {@link #stopIndexing(MediaLibraryStatistics)}.
+     *
+     * @param pool pool the rows are indexed in, a batch at a time
+     */
+    public void reindexFromDatabase(ForkJoinPool pool) {
+        int batchSize = searchConfig.getRebuildBatchSize();
+        CompletableFuture<Void> mediaFiles = CompletableFuture.runAsync(() -> reindex(
+            after -> mediaFileRepository.findByIdGreaterThanAndPresentTrue(after, PageRequest.of(0, batchSize, Sort.by("id"))),
+            MediaFile::getId, m -> index(m, m.getFolder())), pool);
+        CompletableFuture<Void> albums = CompletableFuture.runAsync(() -> reindex(
+            after -> albumRepository.findByIdGreaterThanAndPresentTrue(after, PageRequest.of(0, batchSize, Sort.by("id"))),
+            Album::getId, this::index), pool);
+        CompletableFuture<Void> artists = CompletableFuture.runAsync(() -> reindex(
+            after -> artistRepository.findByIdGreaterThanAndPresentTrue(after, PageRequest.of(0, batchSize, Sort.by("id"))),
+            Artist::getId, a -> index(a, a.getFolder())), pool);
+        CompletableFuture.allOf(mediaFiles, albums, artists).join();
+    }
+
+    /**
+     * Reads the rows in batches ordered by id, indexing each batch in parallel in the pool of the calling task.
+     */
+    private <T> void reindex(Function<Integer, List<T>> batches, Function<T, Integer> id, Consumer<T> indexer) {
+        int count = 0;
+        List<T> batch = batches.apply(-1);
+        while (!batch.isEmpty()) {
+            batch.parallelStream().filter(Objects::nonNull).forEach(indexer);
+            count += batch.size();
+            LOG.debug("Reindexed {} rows.", count);
+            batch = batches.apply(id.apply(batch.get(batch.size() - 1)));
+        }
+    }
+
     public void expunge() {
         Term[] primarykeys = mediaFileRepository.findByMediaTypeAndPresentFalse(MediaType.DIRECTORY).stream()
                 .map(m -> documentFactory.createPrimarykey(m.getId()))
@@ -228,6 +394,7 @@ public class IndexManager {
      * Called at the end of the Scan flow.
      */
     public void stopIndexing(MediaLibraryStatistics statistics) {
+        taskService.unscheduleTask(REFRESH_TASK_NAME);
         EnumSet.allOf(IndexType.class).parallelStream().forEach(indexType -> stopIndexing(indexType, statistics));
     }
 
@@ -242,7 +409,10 @@ public class IndexManager {
                 boolean updated = (-1 != writer.commit());
                 LOG.trace("Success to create or update search index : [{}]", tw);
 
-                if (updated) {
+                if (nearRealTime.remove(tw)) {
+                    // the writer is closed below, searchers read from the commit again
+                    closeSearcherManager(tw, searchers.remove(tw));
+                } else if (updated) {
                     searchers.computeIfPresent(tw, (ts, s) -> {
                         try {
                             s.maybeRefresh();
@@ -302,27 +472,37 @@ public class IndexManager {
      * if the user performs any search before performing a scan.
      */
     public IndexSearcher getSearcher(IndexType indexType) {
-        return Optional.ofNullable(searchers.computeIfAbsent(indexType, k -> {
-            Path indexDirectory = getIndexDirectory.apply(k);
-            try {
-                if (Files.exists(indexDirectory)) {
-                    return new SearcherManager(FSDirectory.open(indexDirectory), null);
-                } else {
-                    LOG.warn("{} does not exist. Please run a scan.", indexDirectory.toString());
-                }
-            } catch (IOException e) {
-                LOG.error("Failed to initialize SearcherManager for {}", k, e);
+        while (true) {
+            SearcherManager searcherManager = searchers.computeIfAbsent(indexType, this::openSearcherManager);
+            if (searcherManager == null) {
+                return null;
             }
-
-            return null;
-        })).map(s -> {
             try {
-                return s.acquire();
+                return searcherManager.acquire();
+            } catch (AlreadyClosedException e) {
+                // closed by the end of indexing after it was looked up, open the committed index instead
+                LOG.trace("SearcherManager has been closed, opening it again : [{}]", indexType);
+                searchers.remove(indexType, searcherManager);
             } catch (IOException e) {
                 LOG.warn("Failed to acquire IndexSearcher for {}.", indexType, e);
                 return null;
             }
-        }).orElse(null);
+        }
+    }
+
+    private SearcherManager openSearcherManager(IndexType indexType) {
+        Path indexDirectory = getIndexDirectory.apply(indexType);
+        try {
+            if (Files.exists(indexDirectory)) {
+                return new SearcherManager(FSDirectory.open(indexDirectory), null);
+            } else {
+                LOG.warn("{} does not exist. Please run a scan.", indexDirectory.toString());
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to initialize SearcherManager for {}", indexType, e);
+        }
+
+        return null;
     }
 
     public void release(IndexType indexType, IndexSearcher indexSearcher) {
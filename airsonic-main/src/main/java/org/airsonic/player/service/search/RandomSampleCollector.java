@@ -0,0 +1,107 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+
+package org.airsonic.player.service.search;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Collects a uniform random sample of the matching documents with reservoir sampling, so that picking k random
+ * documents takes O(hits) time and O(k) memory instead of materializing every hit.
+ */
+public class RandomSampleCollector extends SimpleCollector {
+
+    private final Random random;
+
+    private final Set<Integer> excluded;
+
+    private final int[] reservoir;
+
+    private int seen;
+
+    private int docBase;
+
+    /**
+     * @param size     maximum number of documents to sample
+     * @param random   source of randomness
+     * @param excluded global ids of documents not to sample
+     */
+    public RandomSampleCollector(int size, Random random, Set<Integer> excluded) {
+        this.random = random;
+        this.excluded = excluded;
+        this.reservoir = new int[Math.max(0, size)];
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) {
+        docBase = context.docBase;
+    }
+
+    @Override
+    public void collect(int doc) {
+        int id = docBase + doc;
+        if (excluded.contains(id)) {
+            return;
+        }
+        if (seen < reservoir.length) {
+            reservoir[seen] = id;
+        } else {
+            int pos = random.nextInt(seen + 1);
+            if (pos < reservoir.length) {
+                reservoir[pos] = id;
+            }
+        }
+        seen++;
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    /**
+     * @return number of matching documents that were not excluded
+     */
+    public int getTotalHits() {
+        return seen;
+    }
+
+    /**
+     * Returns the sampled global document ids in random order. The reservoir is filled in index order, so it is
+     * shuffled before being returned.
+     *
+     * @return at most {@code size} document ids
+     */
+    public int[] getSample() {
+        int[] sample = Arrays.copyOf(reservoir, Math.min(seen, reservoir.length));
+        for (int i = sample.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = sample[i];
+            sample[i] = sample[j];
+            sample[j] = tmp;
+        }
+        return sample;
+    }
+}
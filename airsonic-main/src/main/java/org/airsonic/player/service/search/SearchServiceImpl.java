@@ -33,7 +33,6 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.util.*;
 import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
 
 import static org.airsonic.player.service.search.IndexType.*;
 import static org.springframework.util.ObjectUtils.isEmpty;
@@ -94,6 +93,9 @@ public class SearchServiceImpl implements SearchService {
     /**
      * Common processing of random method.
      *
+     * Documents are drawn with a {@link RandomSampleCollector}, so only the sample is held in memory. Documents whose
+     * id no longer resolves are skipped by the callback; in that case the remaining documents are sampled again.
+     *
      * @param count Number of albums to return.
      * @param id2ListCallBack Callback to get D from id and store it in List
      */
@@ -101,18 +103,21 @@ public class SearchServiceImpl implements SearchService {
             int count, IndexSearcher searcher, Query query, BiConsumer<List<D>, Integer> id2ListCallBack)
             throws IOException {
 
-        List<Integer> docs = Arrays
-                .stream(searcher.search(query, Integer.MAX_VALUE).scoreDocs)
-                .map(sd -> sd.doc)
-                .collect(Collectors.toList());
-
         List<D> result = new ArrayList<>();
+        Set<Integer> sampled = new HashSet<>();
         StoredFields storedFields = searcher.storedFields();
-        while (!docs.isEmpty() && result.size() < count) {
-            int randomPos = random.nextInt(docs.size());
-            Document document = storedFields.document(docs.get(randomPos));
-            id2ListCallBack.accept(result, util.getId.apply(document));
-            docs.remove(randomPos);
+        while (result.size() < count) {
+            RandomSampleCollector collector = new RandomSampleCollector(count - result.size(), random, sampled);
+            searcher.search(query, collector);
+            int[] sample = collector.getSample();
+            if (sample.length == 0) {
+                break;
+            }
+            for (int doc : sample) {
+                sampled.add(doc);
+                Document document = storedFields.document(doc);
+                id2ListCallBack.accept(result, util.getId.apply(document));
+            }
         }
 
         return result;
@@ -36,11 +36,14 @@ import org.fourthline.cling.support.model.SortCriterion;
 import org.fourthline.cling.support.model.container.Container;
 import org.fourthline.cling.support.model.container.MusicAlbum;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
 import org.springframework.stereotype.Component;
 
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Allen Petersen
@@ -52,6 +55,13 @@ public class AlbumUpnpProcessor extends UpnpContentProcessor <Album, MediaFile>
     public static final String ALL_BY_ARTIST = "allByArtist";
     public static final String ALL_RECENT = "allRecent";
 
+    private static final Map<String, Order> ORDERS = Map.of(
+            "dc:title", Order.asc("name").ignoreCase(),
+            "upnp:artist", Order.asc("artist").ignoreCase(),
+            "dc:date", Order.asc("year"));
+
+    private static final Sort DEFAULT_SORT = Sort.by(Order.asc("name").ignoreCase());
+
     @Autowired
     private AlbumService albumService;
 
@@ -76,20 +86,16 @@ public class AlbumUpnpProcessor extends UpnpContentProcessor <Album, MediaFile>
     }
 
     /**
-     * Browses the top-level content of a type.
+     * Browses the albums a page at a time, sorted and paged by the database.
      */
     @Override
     public BrowseResult browseRoot(String filter, long firstResult, long maxResults, SortCriterion[] orderBy) throws Exception {
-        DIDLContent didl = new DIDLContent();
-
         List<MusicFolder> allFolders = mediaFolderService.getAllMusicFolders();
-        List<Album> selectedItems = albumService.getAlphabeticalAlbums(Ints.saturatedCast(firstResult), Ints.saturatedCast(maxResults), false, true, allFolders);
-        for (Album item : selectedItems) {
-            addItem(didl, item);
-        }
-
-        return createBrowseResult(didl, didl.getCount(), getAllItemsSize());
+        List<Album> selectedItems = albumService.getAlbums(allFolders, Ints.saturatedCast(maxResults), firstResult,
+                toSort(orderBy, ORDERS, DEFAULT_SORT));
+        return createItemsBrowseResult(selectedItems, getAllItemsSize());
     }
+
     @Override
     public Container createContainer(Album album) {
         MusicAlbum container = new MusicAlbum();
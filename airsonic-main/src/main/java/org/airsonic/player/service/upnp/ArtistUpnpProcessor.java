@@ -27,6 +27,7 @@ import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.domain.ParamSearchResult;
 import org.airsonic.player.repository.AlbumRepository;
 import org.airsonic.player.repository.ArtistRepository;
+import org.airsonic.player.repository.OffsetBasedPageRequest;
 import org.airsonic.player.service.MediaFolderService;
 import org.airsonic.player.service.SearchService;
 import org.fourthline.cling.support.model.BrowseResult;
@@ -36,12 +37,14 @@ import org.fourthline.cling.support.model.container.Container;
 import org.fourthline.cling.support.model.container.MusicArtist;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Allen Petersen
@@ -51,6 +54,10 @@ import java.util.List;
 @Transactional(readOnly = true)
 public class ArtistUpnpProcessor extends UpnpContentProcessor <Artist, Album> {
 
+    private static final Map<String, Order> ORDERS = Map.of("dc:title", Order.asc("name").ignoreCase());
+
+    private static final Sort DEFAULT_SORT = Sort.by(Order.asc("name").ignoreCase());
+
     @Autowired
     private ArtistRepository artistRepository;
 
@@ -82,17 +89,37 @@ public class ArtistUpnpProcessor extends UpnpContentProcessor <Artist, Album> {
         return container;
     }
 
+    /**
+     * Browses the artists a page at a time, sorted and paged by the database.
+     */
+    @Override
+    public BrowseResult browseRoot(String filter, long firstResult, long maxResults, SortCriterion[] orderBy) throws Exception {
+        List<MusicFolder> allFolders = mediaFolderService.getAllMusicFolders();
+        if (CollectionUtils.isEmpty(allFolders) || maxResults < 1) {
+            return createItemsBrowseResult(Collections.emptyList(), getAllItemsSize());
+        }
+        Sort sort = toSort(orderBy, ORDERS, DEFAULT_SORT).and(Sort.by("id"));
+        List<Artist> selectedItems = artistRepository.findByFolderInAndPresentTrue(allFolders,
+                new OffsetBasedPageRequest(firstResult, Ints.saturatedCast(maxResults), sort));
+        return createItemsBrowseResult(selectedItems, getAllItemsSize());
+    }
+
+    @Override
+    public int getAllItemsSize() {
+        List<MusicFolder> allFolders = mediaFolderService.getAllMusicFolders();
+        if (CollectionUtils.isEmpty(allFolders)) {
+            return 0;
+        }
+        return artistRepository.countByFolderInAndPresentTrue(allFolders);
+    }
+
     @Override
     public List<Artist> getAllItems() {
         List<MusicFolder> allFolders = mediaFolderService.getAllMusicFolders();
         if (CollectionUtils.isEmpty(allFolders)) {
             return Collections.emptyList();
         }
-        List<Artist> allArtists = artistRepository.findByFolderInAndPresentTrue(allFolders, Sort.by(Sort.Direction.ASC, "name"));
-        // alpha artists doesn't quite work :P
-        allArtists.sort((Artist o1, Artist o2) -> o1.getName().replaceAll("\\W", "").compareToIgnoreCase(o2.getName().replaceAll("\\W", "")));
-
-        return allArtists;
+        return artistRepository.findByFolderInAndPresentTrue(allFolders, DEFAULT_SORT.and(Sort.by("id")));
     }
 
     @Override
@@ -20,6 +20,7 @@
  */
 package org.airsonic.player.service.upnp;
 
+import com.google.common.primitives.Ints;
 import org.airsonic.player.domain.*;
 import org.airsonic.player.service.MediaFileService;
 import org.airsonic.player.service.MediaFolderService;
@@ -129,13 +130,12 @@ public class FolderBasedContentDirectory extends CustomContentDirectory {
 
     private BrowseResult browsePlaylistRoot(long firstResult, long maxResults) throws Exception {
         DIDLContent didl = new DIDLContent();
-        List<Playlist> allPlaylists = playlistService.getAllPlaylists();
-        List<Playlist> selectedPlaylists = Util.subList(allPlaylists, firstResult, maxResults);
+        List<Playlist> selectedPlaylists = playlistService.getAllPlaylists(firstResult, Ints.saturatedCast(maxResults));
         for (Playlist playlist : selectedPlaylists) {
             didl.addContainer(createPlaylistContainer(playlist));
         }
 
-        return createBrowseResult(didl, selectedPlaylists.size(), allPlaylists.size());
+        return createBrowseResult(didl, selectedPlaylists.size(), playlistService.getPlaylistCount());
     }
 
     private BrowseResult browsePlaylistMetadata(Playlist playlist) throws Exception {
@@ -145,14 +145,13 @@ public class FolderBasedContentDirectory extends CustomContentDirectory {
     }
 
     private BrowseResult browsePlaylist(Playlist playlist, long firstResult, long maxResults) throws Exception {
-        List<MediaFile> allChildren = playlistService.getFilesInPlaylist(playlist.getId());
-        List<MediaFile> selectedChildren = Util.subList(allChildren, firstResult, maxResults);
+        List<MediaFile> selectedChildren = playlistService.getFilesInPlaylist(playlist.getId(), firstResult, Ints.saturatedCast(maxResults));
 
         DIDLContent didl = new DIDLContent();
         for (MediaFile child : selectedChildren) {
             addContainerOrItem(didl, child);
         }
-        return createBrowseResult(didl, selectedChildren.size(), allChildren.size());
+        return createBrowseResult(didl, selectedChildren.size(), playlistService.getFileCountInPlaylist(playlist.getId()));
     }
 
     private BrowseResult browseRoot(long firstResult, long maxResults) throws Exception {
@@ -256,8 +255,7 @@ public class FolderBasedContentDirectory extends CustomContentDirectory {
         container.setId(CONTAINER_ID_PLAYLIST_ROOT);
         container.setTitle("Playlists");
 
-        List<Playlist> playlists = playlistService.getAllPlaylists();
-        container.setChildCount(playlists.size());
+        container.setChildCount(Ints.saturatedCast(playlistService.getPlaylistCount()));
         container.setParentID(CONTAINER_ID_ROOT);
         return container;
     }
@@ -268,7 +266,7 @@ public class FolderBasedContentDirectory extends CustomContentDirectory {
         container.setParentID(CONTAINER_ID_PLAYLIST_ROOT);
         container.setTitle(playlist.getName());
         container.setDescription(playlist.getComment());
-        container.setChildCount(playlistService.getFilesInPlaylist(playlist.getId()).size());
+        container.setChildCount(playlistService.getFileCountInPlaylist(playlist.getId()));
 
         return container;
     }
@@ -20,12 +20,12 @@
 */
 package org.airsonic.player.service.upnp;
 
+import com.google.common.primitives.Ints;
 import org.airsonic.player.domain.Genre;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.service.MediaFileService;
 import org.airsonic.player.service.MediaFolderService;
-import org.airsonic.player.util.Util;
 import org.fourthline.cling.support.model.BrowseResult;
 import org.fourthline.cling.support.model.DIDLContent;
 import org.fourthline.cling.support.model.SortCriterion;
@@ -64,19 +64,27 @@ public class GenreUpnpProcessor extends UpnpContentProcessor <Genre, MediaFile>
     public BrowseResult browseRoot(String filter, long firstResult, long maxResults, SortCriterion[] orderBy) throws Exception {
         // we have to override this to do an index-based id.
         DIDLContent didl = new DIDLContent();
-        List<Genre> allItems = getAllItems();
-        if (filter != null) {
-            // filter items
-        }
-        if (orderBy != null) {
-            // sort items
-        }
-        List<Genre> selectedItems = Util.subList(allItems, firstResult, maxResults);
+        List<Genre> selectedItems = mediaFileService.getGenres(false, firstResult, Ints.saturatedCast(maxResults));
         for (int i = 0; i < selectedItems.size(); i++) {
             Genre item = selectedItems.get(i);
             didl.addContainer(createContainer(item, (int) (i + firstResult)));
         }
-        return createBrowseResult(didl, didl.getCount(), allItems.size());
+        return createBrowseResult(didl, didl.getCount(), getAllItemsSize());
+    }
+
+    /**
+     * Browses the songs of a genre a page at a time.
+     */
+    @Override
+    public BrowseResult browseObject(String id, String filter, long firstResult, long maxResults, SortCriterion[] orderBy) throws Exception {
+        Genre item = getItemById(id);
+        if (item == null) {
+            return createChildrenBrowseResult(List.of(), 0);
+        }
+        List<MusicFolder> allFolders = mediaFolderService.getAllMusicFolders();
+        List<MediaFile> selectedChildren = mediaFileService.getSongsByGenre(Ints.saturatedCast(firstResult),
+                Ints.saturatedCast(maxResults), item.getName(), allFolders);
+        return createChildrenBrowseResult(selectedChildren, mediaFileService.getSongCountByGenre(item.getName(), allFolders));
     }
 
     @Override
@@ -100,14 +108,18 @@ public class GenreUpnpProcessor extends UpnpContentProcessor <Genre, MediaFile>
         return mediaFileService.getGenres(false);
     }
 
+    @Override
+    public int getAllItemsSize() {
+        return Ints.saturatedCast(mediaFileService.getGenreCount());
+    }
+
     @Override
     public Genre getItemById(String id) {
         int index = Integer.parseInt(id);
-        List<Genre> allGenres = getAllItems();
-        if (allGenres.size() > index) {
-            return allGenres.get(index);
+        if (index < 0) {
+            return null;
         }
-        return null;
+        return mediaFileService.getGenres(false, index, 1).stream().findFirst().orElse(null);
     }
 
     @Override
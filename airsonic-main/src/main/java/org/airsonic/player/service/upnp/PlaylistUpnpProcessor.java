@@ -20,10 +20,13 @@
 */
 package org.airsonic.player.service.upnp;
 
+import com.google.common.primitives.Ints;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.Playlist;
 import org.airsonic.player.service.PlaylistService;
+import org.fourthline.cling.support.model.BrowseResult;
 import org.fourthline.cling.support.model.DIDLContent;
+import org.fourthline.cling.support.model.SortCriterion;
 import org.fourthline.cling.support.model.container.Container;
 import org.fourthline.cling.support.model.container.PlaylistContainer;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,11 +57,35 @@ public class PlaylistUpnpProcessor extends UpnpContentProcessor <Playlist, Media
         container.setParentID(getRootId());
         container.setTitle(item.getName());
         container.setDescription(item.getComment());
-        container.setChildCount(playlistService.getFilesInPlaylist(item.getId()).size());
+        container.setChildCount(playlistService.getFileCountInPlaylist(item.getId()));
 
         return container;
     }
 
+    /**
+     * Browses the playlists a page at a time.
+     */
+    @Override
+    public BrowseResult browseRoot(String filter, long firstResult, long maxResults, SortCriterion[] orderBy) throws Exception {
+        List<Playlist> selectedItems = playlistService.getAllPlaylists(firstResult, Ints.saturatedCast(maxResults));
+        return createItemsBrowseResult(selectedItems, getAllItemsSize());
+    }
+
+    /**
+     * Browses the files of a playlist a page at a time, in playlist order.
+     */
+    @Override
+    public BrowseResult browseObject(String id, String filter, long firstResult, long maxResults, SortCriterion[] orderBy) throws Exception {
+        int playlistId = Integer.parseInt(id);
+        List<MediaFile> selectedChildren = playlistService.getFilesInPlaylist(playlistId, firstResult, Ints.saturatedCast(maxResults));
+        return createChildrenBrowseResult(selectedChildren, playlistService.getFileCountInPlaylist(playlistId));
+    }
+
+    @Override
+    public int getAllItemsSize() {
+        return Ints.saturatedCast(playlistService.getPlaylistCount());
+    }
+
     public List<Playlist> getAllItems() {
         return playlistService.getAllPlaylists();
     }
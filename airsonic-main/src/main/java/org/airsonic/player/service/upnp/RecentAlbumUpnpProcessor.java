@@ -25,7 +25,6 @@ import org.airsonic.player.service.AlbumService;
 import org.airsonic.player.service.MediaFolderService;
 import org.airsonic.player.util.Util;
 import org.fourthline.cling.support.model.BrowseResult;
-import org.fourthline.cling.support.model.DIDLContent;
 import org.fourthline.cling.support.model.SortCriterion;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -58,20 +57,8 @@ public class RecentAlbumUpnpProcessor extends AlbumUpnpProcessor {
     public BrowseResult browseRoot(String filter, long firstResult, long maxResults, SortCriterion[] orderBy) throws Exception {
         // AlbumUpnpProcessor overrides browseRoot() with an optimization;
         // this restores the default behavior for the subclass.
-        DIDLContent didl = new DIDLContent();
         List<Album> allItems = getAllItems();
-        if (filter != null) {
-            // filter items (not implemented yet)
-        }
-        if (orderBy != null) {
-            // sort items (not implemented yet)
-        }
-        List<Album> selectedItems = Util.subList(allItems, firstResult, maxResults);
-        for (Album item : selectedItems) {
-            addItem(didl, item);
-        }
-
-        return createBrowseResult(didl, didl.getCount(), allItems.size());
+        return createItemsBrowseResult(Util.subList(allItems, firstResult, maxResults), allItems.size());
     }
 
     @Override
@@ -94,6 +81,8 @@ public class RecentAlbumUpnpProcessor extends AlbumUpnpProcessor {
     public int getAllItemsSize() {
         List<MusicFolder> allFolders = mediaFolderService.getAllMusicFolders();
         int allAlbumCount = albumService.getAlbumCount(allFolders);
-        return Math.min(allAlbumCount, RECENT_COUNT);
+        int recentCount = Math.min(allAlbumCount, RECENT_COUNT);
+        // the option to view all the recent albums together is listed as well
+        return recentCount > 1 ? recentCount + 1 : recentCount;
     }
 }
@@ -27,8 +27,11 @@ import org.fourthline.cling.support.model.DIDLContent;
 import org.fourthline.cling.support.model.SortCriterion;
 import org.fourthline.cling.support.model.container.Container;
 import org.fourthline.cling.support.model.container.StorageFolder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Allen Petersen
@@ -63,20 +66,12 @@ public abstract class UpnpContentProcessor<T extends Object, U extends Object> {
      * Browses the top-level content of a type.
      */
     public BrowseResult browseRoot(String filter, long firstResult, long maxResults, SortCriterion[] orderBy) throws Exception {
-        DIDLContent didl = new DIDLContent();
         List<T> allItems = getAllItems();
         if (filter != null) {
             // filter items (not implemented yet)
         }
-        if (orderBy != null) {
-            // sort items (not implemented yet)
-        }
         List<T> selectedItems = Util.subList(allItems, firstResult, maxResults);
-        for (T item : selectedItems) {
-            addItem(didl, item);
-        }
-
-        return createBrowseResult(didl, didl.getCount(), allItems.size());
+        return createItemsBrowseResult(selectedItems, allItems.size());
     }
 
     /**
@@ -98,20 +93,62 @@ public abstract class UpnpContentProcessor<T extends Object, U extends Object> {
         if (filter != null) {
             // filter items (not implemented yet)
         }
-        if (orderBy != null) {
-            // sort items (not implemented yet)
-        }
         List<U> selectedChildren = Util.subList(allChildren, firstResult, maxResults);
+        return createChildrenBrowseResult(selectedChildren, allChildren.size());
+    }
+
+    protected BrowseResult createBrowseResult(DIDLContent didl, long count, long totalMatches) throws Exception {
+        return new BrowseResult(new DIDLParser().generate(didl), count, totalMatches);
+    }
+
+    /**
+     * Creates the result of browsing a page of top-level items.
+     *
+     * @param selectedItems the items of the page
+     * @param totalMatches  number of items in all pages
+     */
+    protected BrowseResult createItemsBrowseResult(List<T> selectedItems, long totalMatches) throws Exception {
+        DIDLContent didl = new DIDLContent();
+        for (T item : selectedItems) {
+            addItem(didl, item);
+        }
+        return createBrowseResult(didl, didl.getCount(), totalMatches);
+    }
 
+    /**
+     * Creates the result of browsing a page of children.
+     *
+     * @param selectedChildren the children of the page
+     * @param totalMatches     number of children in all pages
+     */
+    protected BrowseResult createChildrenBrowseResult(List<U> selectedChildren, long totalMatches) throws Exception {
         DIDLContent didl = new DIDLContent();
         for (U child : selectedChildren) {
             addChild(didl, child);
         }
-        return createBrowseResult(didl, selectedChildren.size(), allChildren.size());
+        return createBrowseResult(didl, selectedChildren.size(), totalMatches);
     }
 
-    protected BrowseResult createBrowseResult(DIDLContent didl, long count, long totalMatches) throws Exception {
-        return new BrowseResult(new DIDLParser().generate(didl), count, totalMatches);
+    /**
+     * Translates the sort criteria of a request to a sort of the repository queries, so that sorting and paging are
+     * done by the database. Criteria on properties that can not be sorted by are ignored.
+     *
+     * @param orderBy     the sort criteria of the request, may be null
+     * @param orders      ascending order of each sortable UPnP property, e.g. dc:title
+     * @param defaultSort the sort used when no criterion can be applied
+     * @return the sort
+     */
+    protected static Sort toSort(SortCriterion[] orderBy, Map<String, Order> orders, Sort defaultSort) {
+        Sort sort = Sort.unsorted();
+        if (orderBy != null) {
+            for (SortCriterion criterion : orderBy) {
+                Order order = orders.get(criterion.getPropertyName());
+                if (order != null) {
+                    sort = sort.and(Sort.by(criterion.isAscending() ? order : order.with(Sort.Direction.DESC)));
+                }
+            }
+        }
+        return sort.isSorted() ? sort : defaultSort;
     }
 
 
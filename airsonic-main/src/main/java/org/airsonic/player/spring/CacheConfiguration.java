@@ -1,23 +1,28 @@
 package org.airsonic.player.spring;
 
+import org.airsonic.player.config.AirsonicCacheConfig;
 import org.airsonic.player.config.AirsonicHomeConfig;
 import org.airsonic.player.domain.CoverArt;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.Playlist;
 import org.airsonic.player.domain.User;
 import org.airsonic.player.domain.UserSettings;
+import org.airsonic.player.service.cache.CoverArtSerializer;
+import org.airsonic.player.service.cache.MediaFileSerializer;
 import org.airsonic.player.service.cache.PlaylistCache.PlaylistUserList;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.ConfigurationBuilder;
 import org.ehcache.config.builders.ExpiryPolicyBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
 import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.event.CacheEvent;
 import org.ehcache.event.CacheEventListener;
 import org.ehcache.event.EventType;
 import org.ehcache.impl.config.event.DefaultCacheEventListenerConfiguration;
 import org.ehcache.impl.config.persistence.DefaultPersistenceConfiguration;
 import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.spi.serialization.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,10 +48,18 @@ public class CacheConfiguration {
     public static final String COVER_ART_CACHE = "coverArtCache";
     public static final String PLAYLIST_CACHE = "playlistCache";
     public static final String PLAYLIST_USERS_CACHE = "playlistUsersCache";
+    public static final String VERIFIED_CREDENTIAL_CACHE = "verifiedCredentialCache";
 
+    private static final Logger LOG = LoggerFactory.getLogger(CacheConfiguration.class);
+
+    private static final long DEFAULT_HEAP_ENTRIES = 1000L;
+    // a library holds far more media files than users or playlists
+    private static final long DEFAULT_MEDIA_FILE_HEAP_ENTRIES = 10000L;
 
     @Autowired
     private AirsonicHomeConfig homeConfig;
+    @Autowired
+    private AirsonicCacheConfig cacheConfig;
     @Bean
     public javax.cache.CacheManager jCacheCacheManager() {
         CachingProvider provider = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider");
@@ -57,54 +70,76 @@ public class CacheConfiguration {
     }
 
     private org.ehcache.config.Configuration createConfig(final ClassLoader cl) {
-        ResourcePoolsBuilder pools = ResourcePoolsBuilder.newResourcePoolsBuilder()
-                .heap(1000L, EntryUnit.ENTRIES);
-        // If needed, but will need to register serializers for the objects being stored
-        // .offheap(10L, MemoryUnit.MB)
-        // .disk(20, MemoryUnit.MB, false);
-
-        DefaultCacheEventListenerConfiguration cacheLogging = new DefaultCacheEventListenerConfiguration(EnumSet.allOf(EventType.class), CacheLogger.class);
-
         return ConfigurationBuilder.newConfigurationBuilder()
                 .withService(new DefaultPersistenceConfiguration(homeConfig.getAirsonicHome().resolve("cache").toFile()))
                 .withCache(USER_CACHE,
-                        CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, User.class, pools)
-                                .withClassLoader(cl)
-                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofDays(2)))
-                                .withService(cacheLogging))
+                        createCacheConfig(USER_CACHE, String.class, User.class, null, DEFAULT_HEAP_ENTRIES, Duration.ofDays(2), true, cl))
                 .withCache(USER_SETTINGS_CACHE,
-                        CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, UserSettings.class, pools)
-                                .withClassLoader(cl)
-                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofDays(2)))
-                                .withService(cacheLogging))
+                        createCacheConfig(USER_SETTINGS_CACHE, String.class, UserSettings.class, null, DEFAULT_HEAP_ENTRIES, Duration.ofDays(2), true, cl))
                 .withCache(MEDIA_FILE_PATH_CACHE,
-                        CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, MediaFile.class, pools)
-                                .withClassLoader(cl)
-                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofHours(2)))
-                                .withService(cacheLogging))
+                        createCacheConfig(MEDIA_FILE_PATH_CACHE, String.class, MediaFile.class, new MediaFileSerializer(), DEFAULT_MEDIA_FILE_HEAP_ENTRIES, Duration.ofHours(2), true, cl))
                 .withCache(MEDIA_FILE_ID_CACHE,
-                        CacheConfigurationBuilder.newCacheConfigurationBuilder(Integer.class, MediaFile.class, pools)
-                                .withClassLoader(cl)
-                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofHours(2)))
-                                .withService(cacheLogging))
+                        createCacheConfig(MEDIA_FILE_ID_CACHE, Integer.class, MediaFile.class, new MediaFileSerializer(), DEFAULT_MEDIA_FILE_HEAP_ENTRIES, Duration.ofHours(2), true, cl))
                 .withCache(COVER_ART_CACHE,
-                        CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, CoverArt.class, pools)
-                                .withClassLoader(cl)
-                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofDays(2)))
-                                .withService(cacheLogging))
+                        createCacheConfig(COVER_ART_CACHE, String.class, CoverArt.class, new CoverArtSerializer(), DEFAULT_HEAP_ENTRIES, Duration.ofDays(2), true, cl))
                 .withCache(PLAYLIST_CACHE,
-                        CacheConfigurationBuilder.newCacheConfigurationBuilder(Integer.class, Playlist.class, pools)
-                                .withClassLoader(cl)
-                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofDays(10)))
-                                .withService(cacheLogging))
+                        createCacheConfig(PLAYLIST_CACHE, Integer.class, Playlist.class, null, DEFAULT_HEAP_ENTRIES, Duration.ofDays(10), true, cl))
                 .withCache(PLAYLIST_USERS_CACHE,
-                        CacheConfigurationBuilder.newCacheConfigurationBuilder(Integer.class, PlaylistUserList.class, pools)
-                                .withClassLoader(cl)
-                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofDays(10)))
-                                .withService(cacheLogging))
+                        createCacheConfig(PLAYLIST_USERS_CACHE, Integer.class, PlaylistUserList.class, null, DEFAULT_HEAP_ENTRIES, Duration.ofDays(10), true, cl))
+                .withCache(VERIFIED_CREDENTIAL_CACHE,
+                        createCacheConfig(VERIFIED_CREDENTIAL_CACHE, String.class, String.class, null, DEFAULT_HEAP_ENTRIES, Duration.ofMinutes(10), false, cl))
                 .build();
     }
 
+    /**
+     * Creates the configuration of a cache, sized as configured in {@link AirsonicCacheConfig}.
+     *
+     * @param valueSerializer serializer of the values, null if the cache can only be kept on heap
+     * @param logged          whether to log the events of the cache, which is only done when debug logging is enabled
+     */
+    private <K, V> CacheConfigurationBuilder<K, V> createCacheConfig(String name, Class<K> keyType, Class<V> valueType,
+            Serializer<V> valueSerializer, long defaultHeapEntries, Duration timeToLive, boolean logged, ClassLoader cl) {
+        CacheConfigurationBuilder<K, V> builder = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(keyType, valueType, createPools(name, defaultHeapEntries, valueSerializer != null))
+                .withClassLoader(cl)
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive));
+        if (valueSerializer != null) {
+            builder = builder.withValueSerializer(valueSerializer);
+        }
+        if (logged && CacheLogger.LOG.isDebugEnabled()) {
+            builder = builder.withService(new DefaultCacheEventListenerConfiguration(EnumSet.allOf(EventType.class), CacheLogger.class));
+        }
+        return builder;
+    }
+
+    private ResourcePoolsBuilder createPools(String name, long defaultHeapEntries, boolean serializable) {
+        AirsonicCacheConfig.Size size = cacheConfig.getSize(name);
+        ResourcePoolsBuilder pools = ResourcePoolsBuilder.newResourcePoolsBuilder();
+        if (size == null) {
+            return pools.heap(defaultHeapEntries, EntryUnit.ENTRIES);
+        }
+        if (size.getHeap() == null) {
+            pools = pools.heap(defaultHeapEntries, EntryUnit.ENTRIES);
+        } else if (size.getHeapEntries() != null) {
+            pools = pools.heap(size.getHeapEntries(), EntryUnit.ENTRIES);
+        } else {
+            pools = pools.heap(size.getHeapMemory().toBytes(), MemoryUnit.B);
+        }
+        if (!serializable) {
+            if (size.getOffHeap() != null || size.getDisk() != null) {
+                LOG.warn("Cache {} can only be kept on heap, ignoring its off-heap and disk sizes", name);
+            }
+            return pools;
+        }
+        if (size.getOffHeap() != null) {
+            pools = pools.offheap(size.getOffHeap().toBytes(), MemoryUnit.B);
+        }
+        if (size.getDisk() != null) {
+            pools = pools.disk(size.getDisk().toBytes(), MemoryUnit.B, false);
+        }
+        return pools;
+    }
+
     public static class CacheLogger implements CacheEventListener<Object, Object> {
         private static final Logger LOG = LoggerFactory.getLogger(CacheLogger.class);
 
@@ -49,7 +49,7 @@ public class HLSControllerTestCase {
     @Test
     public void testParseBitRate() throws Exception {
         when(homeConfig.getAirsonicHome()).thenReturn(Files.createTempDirectory("airsonicTest").toAbsolutePath());
-        HLSController controller = new HLSController(null, null, null, null, null, null, null, homeConfig);
+        HLSController controller = new HLSController(null, null, null, null, null, null, null, homeConfig, null, null, null);
 
         Pair<Integer, Dimension> pair = controller.parseBitRate("1000", null);
         assertEquals(1000, pair.getLeft().intValue());
@@ -0,0 +1,126 @@
+package org.airsonic.player.controller;
+
+import org.airsonic.player.util.StringUtil;
+import org.eclipse.persistence.jaxb.MarshallerProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.subsonic.restapi.Child;
+import org.subsonic.restapi.ObjectFactory;
+import org.subsonic.restapi.Response;
+import org.subsonic.restapi.SearchResult3;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.Marshaller;
+
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former String based REST serialization with the streaming path of {@link JAXBWriter}
+ * on large synthetic responses. Run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JAXBWriterBenchmark {
+
+    @Param({"1000", "20000"})
+    private int songCount;
+
+    private JAXBWriter writer;
+    private JAXBContext jaxbContext;
+    private Response response;
+
+    @Setup
+    public void setUp() throws Exception {
+        writer = new JAXBWriter();
+        jaxbContext = JAXBContext.newInstance(new Class<?>[] {Response.class},
+                Map.of(JAXBContext.JAXB_CONTEXT_FACTORY, "org.eclipse.persistence.jaxb.JAXBContextFactory"));
+
+        SearchResult3 result = new SearchResult3();
+        for (int i = 0; i < songCount; i++) {
+            Child child = new Child();
+            child.setId(String.valueOf(i));
+            child.setParent(String.valueOf(i / 12));
+            child.setTitle("Song title number " + i);
+            child.setAlbum("Album " + i / 12);
+            child.setArtist("Artist " + i / 120);
+            child.setIsDir(false);
+            child.setCoverArt(String.valueOf(i / 12));
+            child.setYear(1970 + i % 50);
+            child.setGenre("Rock");
+            child.setCreated(writer.convertDate(Instant.ofEpochSecond(1_600_000_000L + i)));
+            child.setDuration(180 + i % 240);
+            child.setBitRate(320);
+            child.setTrack(i % 12 + 1);
+            child.setSize(8_000_000L + i);
+            child.setSuffix("flac");
+            child.setContentType("audio/flac");
+            child.setPath("Artist " + i / 120 + "/Album " + i / 12 + "/" + i + ".flac");
+            result.getSong().add(child);
+        }
+        response = writer.createResponse(true);
+        response.setSearchResult3(result);
+    }
+
+    @Benchmark
+    public int stringXml() throws Exception {
+        return marshalToString(false).length();
+    }
+
+    @Benchmark
+    public int stringJson() throws Exception {
+        return marshalToString(true).length();
+    }
+
+    @Benchmark
+    public void streamingXml() throws Exception {
+        writer.marshal(JAXBWriter.OutputFormat.XML, response, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void streamingJson() throws Exception {
+        writer.marshal(JAXBWriter.OutputFormat.JSON, response, OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Serialization as done before streaming support: a fresh, pretty-printing marshaller writing into a String
+     * that is then encoded onto the response.
+     */
+    private String marshalToString(boolean json) throws Exception {
+        Marshaller marshaller = jaxbContext.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, StringUtil.ENCODING_UTF8);
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        if (json) {
+            marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, "application/json");
+            marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, true);
+        }
+        StringWriter stringWriter = new StringWriter();
+        marshaller.marshal(new ObjectFactory().createSubsonicResponse(response), stringWriter);
+        String result = stringWriter.toString();
+        OutputStream.nullOutputStream().write(result.getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(JAXBWriterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package org.airsonic.player.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.subsonic.restapi.Response;
+
+import java.util.Map.Entry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JAXBWriterTest {
+
+    private final JAXBWriter writer = new JAXBWriter();
+
+    @Test
+    public void writeResponseStreamsXml() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.writeResponse(request, response, writer.createResponse(true));
+
+        assertEquals("text/xml; charset=utf-8", response.getContentType());
+        String body = response.getContentAsString();
+        assertTrue(body.contains("<subsonic-response"));
+        assertTrue(body.contains("status=\"ok\""));
+        assertFalse(body.contains("\n    "), "Output should not be pretty-printed");
+    }
+
+    @Test
+    public void writeResponseStreamsJson() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("f", "json");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.writeResponse(request, response, writer.createResponse(true));
+
+        assertEquals("application/json; charset=utf-8", response.getContentType());
+        assertTrue(response.getContentAsString().startsWith("{\"subsonic-response\":{\"status\":\"ok\""));
+    }
+
+    @Test
+    public void writeResponseWrapsJsonp() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("f", "jsonp");
+        request.setParameter("callback", "cb");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.writeResponse(request, response, writer.createErrorResponse(SubsonicRESTController.ErrorCode.NOT_FOUND, "gone"));
+
+        assertEquals("application/javascript; charset=utf-8", response.getContentType());
+        String body = response.getContentAsString();
+        assertTrue(body.startsWith("cb({\"subsonic-response\":"));
+        assertTrue(body.endsWith(");"));
+        assertTrue(body.contains("\"gone\""));
+    }
+
+    @Test
+    public void writeResponseFallsBackToWriter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setOutputStreamAccessAllowed(false);
+
+        writer.writeResponse(request, response, writer.createResponse(true));
+
+        assertTrue(response.getContentAsString().contains("<subsonic-response"));
+    }
+
+    @Test
+    public void serializeForTypeMatchesStreamedOutput() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter("f", "json");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Response resp = writer.createResponse(true);
+
+        writer.writeResponse(request, response, resp);
+        Entry<String, String> serialized = writer.serializeForType(request, resp);
+
+        assertEquals(response.getContentType(), serialized.getKey());
+        assertEquals(response.getContentAsString(), serialized.getValue());
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.controller;
+
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MediaFile.MediaType;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.airsonic.player.domain.PlayQueue;
+import org.airsonic.player.domain.Player;
+import org.airsonic.player.domain.TransferStatus;
+import org.airsonic.player.domain.User;
+import org.airsonic.player.domain.User.Role;
+import org.airsonic.player.monitor.MetricsManager;
+import org.airsonic.player.service.AudioScrobblerService;
+import org.airsonic.player.service.MediaFileService;
+import org.airsonic.player.service.PlayerService;
+import org.airsonic.player.service.PlaylistService;
+import org.airsonic.player.service.SearchService;
+import org.airsonic.player.service.SecurityService;
+import org.airsonic.player.service.SettingsService;
+import org.airsonic.player.service.StatusService;
+import org.airsonic.player.service.TranscodingService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.ConfigDataApplicationContextInitializer;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests the single file branches of {@link StreamController} which send the file straight from disk.
+ */
+@ExtendWith(MockitoExtension.class)
+@WebMvcTest
+@ContextConfiguration(classes = {StreamController.class}, initializers = ConfigDataApplicationContextInitializer.class)
+public class StreamControllerTest {
+
+    private static final String AIRSONIC_USER = "admin";
+    private static final String AIRSONIC_PASSWORD = "admin";
+    private static final String CONTENT = "0123456789";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private StatusService statusService;
+    @MockBean
+    private PlayerService playerService;
+    @MockBean
+    private PlaylistService playlistService;
+    @MockBean
+    private SecurityService securityService;
+    @MockBean
+    private SettingsService settingsService;
+    @MockBean
+    private TranscodingService transcodingService;
+    @MockBean
+    private AudioScrobblerService audioScrobblerService;
+    @MockBean
+    private MediaFileService mediaFileService;
+    @MockBean
+    private SearchService searchService;
+    @MockBean
+    private MetricsManager metricsManager;
+
+    @Mock
+    private MetricsManager.Timer timer;
+
+    @TempDir
+    private static Path tempDir;
+
+    private MediaFile mediaFile;
+    private Player player;
+
+    @BeforeAll
+    public static void setup() {
+        System.setProperty("airsonic.home", tempDir.toString());
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        System.clearProperty("airsonic.home");
+    }
+
+    @BeforeEach
+    public void setupMocks() throws Exception {
+        Files.writeString(tempDir.resolve("song.mp3"), CONTENT, StandardCharsets.US_ASCII);
+        MusicFolder folder = new MusicFolder(1, tempDir, "Music", Type.MEDIA, true, Instant.now());
+        mediaFile = new MediaFile();
+        mediaFile.setId(10);
+        mediaFile.setFolder(folder);
+        mediaFile.setPath("song.mp3");
+        mediaFile.setMediaType(MediaType.MUSIC);
+        mediaFile.setChanged(Instant.now());
+
+        player = new Player();
+        player.setUsername(AIRSONIC_USER);
+        player.setPlayQueue(new PlayQueue());
+
+        User user = new User(AIRSONIC_USER, "admin@example.com");
+        user.setRoles(Set.of(Role.STREAM));
+
+        TranscodingService.Parameters parameters = new TranscodingService.Parameters(mediaFile, null);
+        parameters.setRangeAllowed(true);
+        parameters.setExpectedLength((long) CONTENT.length());
+
+        when(metricsManager.timer(StreamController.class, "firstByte")).thenReturn(timer);
+        when(securityService.getCurrentUsername(any())).thenReturn(AIRSONIC_USER);
+        when(securityService.getUserByName(AIRSONIC_USER)).thenReturn(user);
+        when(securityService.isFolderAccessAllowed(mediaFile, AIRSONIC_USER)).thenReturn(true);
+        when(playerService.getPlayer(any(), any(), eq(AIRSONIC_USER), anyBoolean(), anyBoolean())).thenReturn(player);
+        when(mediaFileService.getMediaFile(10)).thenReturn(mediaFile);
+        when(transcodingService.getParameters(eq(mediaFile), eq(player), any(), any(), any())).thenReturn(parameters);
+        when(transcodingService.getSuffix(eq(player), eq(mediaFile), any())).thenReturn("mp3");
+        when(statusService.createStreamStatus(player)).thenReturn(new TransferStatus(player));
+    }
+
+    @Test
+    @WithMockUser(username = AIRSONIC_USER, password = AIRSONIC_PASSWORD)
+    public void testRangeRequestSendsPartialContent() throws Exception {
+        mvc.perform(get("/stream").param("id", "10").header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(content().string("2345"));
+
+        verify(securityService).incrementBytesStreamed(AIRSONIC_USER, 4L);
+        verify(timer).close();
+    }
+
+    @Test
+    @WithMockUser(username = AIRSONIC_USER, password = AIRSONIC_PASSWORD)
+    public void testUnsatisfiableRangeIsRejected() throws Exception {
+        mvc.perform(get("/stream").param("id", "10").header(HttpHeaders.RANGE, "bytes=20-30"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"))
+                .andExpect(content().string(""));
+
+        verify(audioScrobblerService, never()).register(any(), anyString(), anyBoolean(), any());
+        verify(securityService).incrementBytesStreamed(AIRSONIC_USER, 0L);
+    }
+
+    @Test
+    @WithMockUser(username = AIRSONIC_USER, password = AIRSONIC_PASSWORD)
+    public void testHeadRequestSendsHeadersOnly() throws Exception {
+        mvc.perform(head("/stream").param("id", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+                .andExpect(content().string(""));
+
+        verify(statusService, never()).addActiveLocalPlay(any());
+        verify(securityService).incrementBytesStreamed(AIRSONIC_USER, 0L);
+    }
+
+    @Test
+    @WithMockUser(username = AIRSONIC_USER, password = AIRSONIC_PASSWORD)
+    public void testSendfileIsHandedOffToContainer() throws Exception {
+        MvcResult result = mvc.perform(get("/stream").param("id", "10").header(HttpHeaders.RANGE, "bytes=4-")
+                .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 4-9/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 6))
+                .andExpect(content().string(""))
+                .andReturn();
+
+        assertEquals(tempDir.resolve("song.mp3").toAbsolutePath().toString(),
+                result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(4L, result.getRequest().getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(10L, result.getRequest().getAttribute("org.apache.tomcat.sendfile.end"));
+
+        // the transfer is counted as fully sent when it is handed off
+        verify(securityService).incrementBytesStreamed(AIRSONIC_USER, 6L);
+        verify(audioScrobblerService).register(mediaFile, AIRSONIC_USER, true, null);
+        verify(statusService).removeActiveLocalPlay(any());
+        verify(mediaFileService, never()).incrementPlayCount(any(), any());
+        verify(timer).close();
+    }
+
+    @Test
+    @WithMockUser(username = AIRSONIC_USER, password = AIRSONIC_PASSWORD)
+    public void testSendfileIsNotUsedWithDownloadLimit() throws Exception {
+        when(settingsService.getDownloadBitrateLimit()).thenReturn(1000L);
+
+        MvcResult result = mvc.perform(get("/stream").param("id", "10")
+                .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isOk())
+                .andExpect(content().string(CONTENT))
+                .andReturn();
+
+        assertNull(result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"));
+        verify(securityService).incrementBytesStreamed(eq(AIRSONIC_USER), anyLong());
+    }
+}
@@ -144,6 +144,25 @@ public class PlayQueueTestCase {
         assertPlaylistEquals(playQueue, -1);
     }
 
+    @Test
+    public void testVersion() {
+        PlayQueue playQueue = createPlaylist(0, "A", "B", "C");
+        long version = playQueue.getVersion();
+
+        playQueue.moveDown(2);
+        playQueue.setIndex(1);
+        assertEquals(version, playQueue.getVersion());
+
+        playQueue.moveDown(0);
+        assertEquals(version + 1, playQueue.getVersion());
+
+        assertEquals(2, playQueue.removeFileAt(9999));
+        assertEquals(version + 2, playQueue.getVersion());
+
+        playQueue.undo();
+        assertEquals(version + 3, playQueue.getVersion());
+    }
+
     @Test
     public void testNext() {
         PlayQueue playQueue = createPlaylist(0, "A", "B", "C");
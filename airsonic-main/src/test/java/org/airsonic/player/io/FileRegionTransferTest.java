@@ -0,0 +1,48 @@
+package org.airsonic.player.io;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.airsonic.player.domain.TransferStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileRegionTransferTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void testTransferRegion() throws IOException {
+        byte[] data = new byte[FileRegionTransfer.CHUNK_SIZE * 2 + 123];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Path file = Files.write(dir.resolve("song.flac"), data);
+        TransferStatus status = new TransferStatus(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long transferred = FileRegionTransfer.transfer(file, 100, data.length - 200, out, RateLimiter.create(Double.MAX_VALUE), status);
+
+        assertThat(transferred).isEqualTo(data.length - 200);
+        assertThat(status.getBytesTransferred()).isEqualTo(data.length - 200);
+        assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(data, 100, data.length - 100));
+    }
+
+    @Test
+    public void testTerminatedTransferStops() throws IOException {
+        Path file = Files.write(dir.resolve("song.flac"), new byte[FileRegionTransfer.CHUNK_SIZE * 2]);
+        TransferStatus status = new TransferStatus(null);
+        status.terminate();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(FileRegionTransfer.transfer(file, 0, Files.size(file), out, null, status)).isZero();
+        assertThat(out.size()).isZero();
+    }
+}
@@ -0,0 +1,50 @@
+package org.airsonic.player.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShoutCastInputStreamTest {
+
+    private static final int INTERVAL = ShoutCastInputStream.META_DATA_INTERVAL;
+
+    @Test
+    public void testMetaDataIsInterleaved() throws IOException {
+        byte[] audio = new byte[INTERVAL * 2 + 100];
+        Arrays.fill(audio, (byte) 7);
+        byte[] title = "StreamTitle='Song';".getBytes(StandardCharsets.UTF_8);
+
+        byte[] result;
+        int openStreams = ShoutCastInputStream.getOpenStreams();
+        try (InputStream in = new ShoutCastInputStream(new ByteArrayInputStream(audio), () -> "Song")) {
+            assertThat(ShoutCastInputStream.getOpenStreams()).isEqualTo(openStreams + 1);
+            result = in.readAllBytes();
+        }
+        assertThat(ShoutCastInputStream.getOpenStreams()).isEqualTo(openStreams);
+
+        // first block carries the title, padded to 16 bytes
+        assertThat(result[INTERVAL]).isEqualTo((byte) 2);
+        assertThat(Arrays.copyOfRange(result, INTERVAL + 1, INTERVAL + 1 + title.length)).isEqualTo(title);
+        int second = INTERVAL + 1 + 32 + INTERVAL;
+        // same title again, so an empty block
+        assertThat(result[second]).isEqualTo((byte) 0);
+        assertThat(result).hasSize(audio.length + 1 + 32 + 1);
+        assertThat(Arrays.copyOfRange(result, second + 1, result.length)).containsOnly((byte) 7);
+    }
+
+    @Test
+    public void testSkipCountsMetaData() throws IOException {
+        byte[] audio = new byte[INTERVAL + 10];
+        try (InputStream in = new ShoutCastInputStream(new ByteArrayInputStream(audio), () -> "")) {
+            assertThat(in.skip(INTERVAL)).isEqualTo(INTERVAL);
+            // empty title still gives a block with its quotes
+            assertThat(in.read()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.airsonic.player.io;
+
+import org.airsonic.player.domain.TransferStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class ZipStreamWriterTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void testWrittenArchiveIsReadableAndSized() throws IOException {
+        byte[] data = new byte[ZipStreamWriter.BUFFER_SIZE * 2 + 123];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Path album = Files.createDirectory(dir.resolve("Album"));
+        Path song = Files.write(album.resolve("01.flac"), data);
+        Path empty = Files.createFile(album.resolve("empty.txt"));
+        List<ZipStreamWriter.Entry> entries = Arrays.asList(
+                new ZipStreamWriter.Entry(album, "Album/", 0),
+                new ZipStreamWriter.Entry(song, "Album/01 - Café.flac", data.length),
+                new ZipStreamWriter.Entry(empty, "Album/empty.txt", 0));
+        TransferStatus status = new TransferStatus(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ZipStreamWriter zip = new ZipStreamWriter(out, null, status);
+        for (ZipStreamWriter.Entry entry : entries) {
+            zip.write(entry);
+        }
+        zip.finish();
+
+        assertThat(out.size()).isEqualTo(ZipStreamWriter.size(entries));
+        assertThat(zip.getBytesWritten()).isEqualTo(out.size());
+        assertThat(status.getBytesTransferred()).isEqualTo(out.size());
+
+        Path archive = Files.write(dir.resolve("archive.zip"), out.toByteArray());
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            assertThat(zipFile.size()).isEqualTo(3);
+            assertThat(zipFile.getEntry("Album/").isDirectory()).isTrue();
+
+            ZipEntry songEntry = zipFile.getEntry("Album/01 - Café.flac");
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            assertThat(songEntry.getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(songEntry.getCrc()).isEqualTo(crc.getValue());
+            try (InputStream in = zipFile.getInputStream(songEntry)) {
+                assertThat(in.readAllBytes()).isEqualTo(data);
+            }
+
+            ZipEntry emptyEntry = zipFile.getEntry("Album/empty.txt");
+            assertThat(emptyEntry.getSize()).isZero();
+            assertThat(emptyEntry.getCrc()).isZero();
+        }
+    }
+
+    @Test
+    public void testCrcIsWrittenInDataDescriptor() throws IOException {
+        byte[] data = new byte[ZipStreamWriter.BUFFER_SIZE + 7];
+        Arrays.fill(data, (byte) 42);
+        Path song = Files.write(dir.resolve("01.mp3"), data);
+        List<ZipStreamWriter.Entry> entries = List.of(new ZipStreamWriter.Entry(song, "01.mp3", data.length));
+
+        ByteBuffer archive = ByteBuffer.wrap(zip(entries)).order(ByteOrder.LITTLE_ENDIAN);
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        assertThat(archive.getShort(6) & 0x08).isEqualTo(0x08);
+        assertThat(archive.getInt(14)).isZero();
+        int descriptor = 30 + "01.mp3".length() + data.length;
+        assertThat(archive.getInt(descriptor)).isEqualTo(0x08074b50);
+        assertThat(archive.getInt(descriptor + 4) & 0xFFFFFFFFL).isEqualTo(crc.getValue());
+        assertThat(archive.getInt(descriptor + 8)).isEqualTo(data.length);
+    }
+
+    @Test
+    public void testShorterFileFails() throws IOException {
+        Path song = Files.write(dir.resolve("song.flac"), new byte[100]);
+        ZipStreamWriter zip = new ZipStreamWriter(new ByteArrayOutputStream(), null, new TransferStatus(null));
+
+        assertThatExceptionOfType(IOException.class)
+                .isThrownBy(() -> zip.write(new ZipStreamWriter.Entry(song, "song.flac", 200)));
+    }
+
+    @Test
+    public void testTerminatedTransferStops() throws IOException {
+        Path song = Files.write(dir.resolve("song.flac"), new byte[100]);
+        TransferStatus status = new TransferStatus(null);
+        status.terminate();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipStreamWriter zip = new ZipStreamWriter(out, null, status);
+
+        assertThatExceptionOfType(IOException.class)
+                .isThrownBy(() -> zip.write(new ZipStreamWriter.Entry(song, "song.flac", 100)));
+        assertThat(out.size()).isZero();
+    }
+
+    private static byte[] zip(List<ZipStreamWriter.Entry> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipStreamWriter zip = new ZipStreamWriter(out, null, new TransferStatus(null));
+        for (ZipStreamWriter.Entry entry : entries) {
+            zip.write(entry);
+        }
+        zip.finish();
+        return out.toByteArray();
+    }
+}
@@ -44,8 +44,11 @@ import jakarta.validation.ConstraintViolationException;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -235,4 +238,21 @@ public class UserRatingRepositoryTest {
         assertNull(userRatingRepository.getAverageRatingByMediaFileId(mediaFile.getId()));
     }
 
+    @Test
+    public void testBulkRatings() {
+        MediaFile mediaFile2 = mediaFileRepository.findByFolderAndPath(testFolder, "userrating2.wav").get(0);
+        userRatingRepository.saveAndFlush(new UserRating(TEST_USER_NAME, mediaFile.getId(), 1));
+        userRatingRepository.saveAndFlush(new UserRating(TEST_USER_NAME_2, mediaFile.getId(), 4));
+        userRatingRepository.saveAndFlush(new UserRating(TEST_USER_NAME_2, mediaFile2.getId(), 5));
+
+        List<Integer> ids = List.of(mediaFile.getId(), mediaFile2.getId());
+        List<UserRating> ratings = userRatingRepository.findByUsernameAndMediaFileIdIn(TEST_USER_NAME_2, ids);
+        assertEquals(2, ratings.size());
+
+        Map<Integer, Double> averages = userRatingRepository.getAverageRatingsByMediaFileIdIn(ids).stream()
+            .collect(Collectors.toMap(row -> ((Number) row[0]).intValue(), row -> ((Number) row[1]).doubleValue()));
+        assertEquals(2.5, averages.get(mediaFile.getId()));
+        assertEquals(5.0, averages.get(mediaFile2.getId()));
+    }
+
 }
@@ -0,0 +1,123 @@
+package org.airsonic.player.security;
+
+import org.airsonic.player.domain.User;
+import org.airsonic.player.domain.UserCredential;
+import org.airsonic.player.domain.UserCredential.App;
+import org.airsonic.player.monitor.MetricsManager;
+import org.airsonic.player.service.SecurityService.UserDetail;
+import org.airsonic.player.service.cache.VerifiedCredentialCache;
+import org.airsonic.player.spring.CacheConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class MultipleCredsMatchingAuthenticationProviderTest {
+
+    private static final String USERNAME = "user";
+
+    @Mock
+    private CacheManager cacheManager;
+    @Mock
+    private Cache<String, String> cache;
+    @Mock
+    private UserDetailsService userDetailsService;
+    @Mock
+    private PasswordEncoder passwordEncoder;
+    @Mock
+    private MetricsManager metricsManager;
+
+    private final Map<String, String> entries = new HashMap<>();
+
+    private UserCredential credential;
+
+    private MultipleCredsMatchingAuthenticationProvider provider;
+
+    @BeforeEach
+    public void setUp() {
+        when(cacheManager.getCache(CacheConfiguration.VERIFIED_CREDENTIAL_CACHE, String.class, String.class)).thenReturn(cache);
+        when(cache.get(anyString())).thenAnswer(i -> entries.get(i.getArgument(0)));
+        doAnswer(i -> entries.put(i.getArgument(0), i.getArgument(1))).when(cache).put(anyString(), anyString());
+        doAnswer(i -> entries.remove(i.getArgument(0))).when(cache).remove(anyString());
+        doAnswer(i -> {
+            entries.clear();
+            return null;
+        }).when(cache).clear();
+
+        credential = new UserCredential(new User(USERNAME, null), USERNAME, "hash", "bcrypt", App.AIRSONIC);
+        credential.setId(1);
+        when(userDetailsService.loadUserByUsername(USERNAME))
+                .thenAnswer(i -> new UserDetail(USERNAME, List.of(credential), true, true, true, true, List.of()));
+        when(passwordEncoder.matches("secret", "{bcrypt}hash")).thenReturn(true);
+
+        provider = new MultipleCredsMatchingAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService);
+        provider.setPasswordEncoder(passwordEncoder);
+        provider.setVerifiedCredentialCache(new VerifiedCredentialCache(cacheManager));
+        provider.setMetricsManager(metricsManager);
+    }
+
+    @Test
+    public void testVerifiedPasswordIsNotMatchedAgain() {
+        for (int i = 0; i < 3; i++) {
+            provider.authenticate(new UsernamePasswordAuthenticationToken(USERNAME, "secret"));
+        }
+
+        verify(passwordEncoder, times(1)).matches(anyString(), anyString());
+    }
+
+    @Test
+    public void testWrongPasswordIsNotCached() {
+        for (int i = 0; i < 2; i++) {
+            assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(new UsernamePasswordAuthenticationToken(USERNAME, "wrong")));
+        }
+
+        verify(passwordEncoder, times(2)).matches(eq("wrong"), any());
+    }
+
+    @Test
+    public void testChangedCredentialIsMatchedAgain() {
+        provider.authenticate(new UsernamePasswordAuthenticationToken(USERNAME, "secret"));
+
+        credential.setCredential("newhash");
+
+        assertThrows(BadCredentialsException.class,
+            () -> provider.authenticate(new UsernamePasswordAuthenticationToken(USERNAME, "secret")));
+        verify(passwordEncoder).matches("secret", "{bcrypt}newhash");
+    }
+
+    @Test
+    public void testTokenAndPasswordAreCachedSeparately() {
+        when(passwordEncoder.matches(anyString(), eq("{bcryptsalttoken}hash"))).thenReturn(false);
+        provider.authenticate(new UsernamePasswordAuthenticationToken(USERNAME, "secret"));
+
+        assertThrows(BadCredentialsException.class,
+            () -> provider.authenticate(new UsernameSaltedTokenAuthenticationToken(USERNAME, "salt", "secret")));
+    }
+}
@@ -19,33 +19,45 @@
 package org.airsonic.player.service;
 
 import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.Scrobble;
 import org.airsonic.player.domain.User;
 import org.airsonic.player.domain.UserCredential;
 import org.airsonic.player.domain.UserCredential.App;
 import org.airsonic.player.domain.UserSettings;
+import org.airsonic.player.repository.ScrobbleRepository;
 import org.airsonic.player.service.scrobbler.LastFMScrobbler;
 import org.airsonic.player.service.scrobbler.ListenBrainzScrobbler;
+import org.airsonic.player.service.scrobbler.ScrobbleResult;
 import org.airsonic.player.util.StringUtil;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -59,6 +71,8 @@ class AudioScrobblerServiceTest {
     private LastFMScrobbler lastFMScrobbler;
     @Mock
     private ListenBrainzScrobbler listenBrainzScrobbler;
+    @Mock
+    private ScrobbleRepository scrobbleRepository;
     @InjectMocks
     private AudioScrobblerService audioScrobblerService;
 
@@ -66,6 +80,8 @@ class AudioScrobblerServiceTest {
     private MediaFile mockedMediaFile;
     @Mock
     private UserSettings mockedUserSettings;
+    @Captor
+    private ArgumentCaptor<List<Scrobble>> scrobblesCaptor;
 
     private UserCredential lastFmCredential = new UserCredential(new User("testUser", "test@example.com"), "lastFmUser", StringUtil.utf8HexEncode("lastFmPassword"), "hex", App.LASTFM);
 
@@ -108,60 +124,134 @@ class AudioScrobblerServiceTest {
         "false, true",
         "false, false"
     })
-    void registerShouldRegister(boolean lastFmEnabled, boolean listenBrainzEnabled) {
+    void registerShouldAppendToOutbox(boolean lastFmEnabled, boolean listenBrainzEnabled) {
         // Arrange
         String username = "testUser";
         boolean submission = true;
         Instant time = Instant.now();
         when(mockedMediaFile.isVideo()).thenReturn(false);
+        lenient().when(mockedMediaFile.getTitle()).thenReturn("title");
         when(personalSettingsService.getUserSettings(ArgumentMatchers.eq(username))).thenReturn(mockedUserSettings);
         when(mockedUserSettings.getLastFmEnabled()).thenReturn(lastFmEnabled);
         when(mockedUserSettings.getListenBrainzEnabled()).thenReturn(listenBrainzEnabled);
-        Map<App, UserCredential> creds = new HashMap<>();
-        if (lastFmEnabled) {
-            creds.put(App.LASTFM, lastFmCredential);
+
+        // Act
+        audioScrobblerService.register(mockedMediaFile, username, submission, time);
+
+        // Assert
+        if (lastFmEnabled || listenBrainzEnabled) {
+            verify(scrobbleRepository).saveAll(scrobblesCaptor.capture());
+            List<Scrobble> scrobbles = scrobblesCaptor.getValue();
+            assertEquals((lastFmEnabled ? 1 : 0) + (listenBrainzEnabled ? 1 : 0), scrobbles.size());
+            assertEquals(lastFmEnabled, scrobbles.stream().anyMatch(s -> s.getApp() == App.LASTFM));
+            assertEquals(listenBrainzEnabled, scrobbles.stream().anyMatch(s -> s.getApp() == App.LISTENBRAINZ));
+            scrobbles.forEach(s -> {
+                assertEquals(username, s.getUsername());
+                assertEquals("title", s.getTitle());
+                assertEquals(time, s.getPlayed());
+                assertTrue(s.getSubmission());
+            });
+        } else {
+            verify(scrobbleRepository, never()).saveAll(any());
         }
-        if (listenBrainzEnabled) {
-            creds.put(App.LISTENBRAINZ, listenBreinzCredential);
-            when(mockedUserSettings.getListenBrainzUrl()).thenReturn("listenBrainzUrl");
+        verifyNoInteractions(lastFMScrobbler, listenBrainzScrobbler, securityService);
+    }
+
+    private List<Scrobble> createScrobbles(App app, int count, boolean submission) {
+        List<Scrobble> scrobbles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Scrobble scrobble = new Scrobble("testUser", app, mockedMediaFile, submission, Instant.now().minusSeconds(count - i));
+            scrobble.setId(i);
+            scrobbles.add(scrobble);
         }
-        doReturn(creds).when(securityService).getDecodableCredsForApps(eq(username), any(App[].class));
+        return scrobbles;
+    }
+
+    private void mockOutbox(App app, List<Scrobble> scrobbles) {
+        when(scrobbleRepository.findFirst500ByAppAndNextAttemptLessThanEqualOrderByIdAsc(any(App.class), any(Instant.class)))
+                .thenAnswer(i -> i.getArgument(0) == app ? scrobbles : new ArrayList<>());
+        when(personalSettingsService.getUserSettings("testUser")).thenReturn(mockedUserSettings);
+        lenient().when(mockedUserSettings.getLastFmEnabled()).thenReturn(true);
+        lenient().when(mockedUserSettings.getListenBrainzEnabled()).thenReturn(true);
+        lenient().when(securityService.getDecodableCredsForApps("testUser", app))
+                .thenReturn(Map.of(app, app == App.LASTFM ? lastFmCredential : listenBreinzCredential));
+    }
+
+    @Test
+    void submitPendingShouldSubmitInBatches() {
+        // Arrange
+        List<Scrobble> scrobbles = createScrobbles(App.LASTFM, 120, true);
+        mockOutbox(App.LASTFM, scrobbles);
+        when(lastFMScrobbler.submit(eq("lastFmUser"), eq("lastFmPassword"), any())).thenReturn(ScrobbleResult.SUCCESS);
 
         // Act
-        audioScrobblerService.register(mockedMediaFile, username, submission, time);
+        audioScrobblerService.submitPending();
 
         // Assert
-        verify(lastFMScrobbler, times(lastFmEnabled ? 1 : 0)).register(eq(mockedMediaFile), eq("lastFmUser"), anyString(), eq(submission), eq(time));
-        verify(listenBrainzScrobbler, times(listenBrainzEnabled ? 1 : 0)).register(eq(mockedMediaFile), eq("listenBrainzUrl"), anyString(), eq(submission), eq(time));
+        verify(lastFMScrobbler, times(3)).submit(eq("lastFmUser"), eq("lastFmPassword"), scrobblesCaptor.capture());
+        assertEquals(List.of(50, 50, 20), scrobblesCaptor.getAllValues().stream().map(List::size).collect(Collectors.toList()));
+        assertEquals(scrobbles.get(0), scrobblesCaptor.getAllValues().get(0).get(0));
+        verify(scrobbleRepository, times(3)).deleteAll(any());
+        verifyNoInteractions(listenBrainzScrobbler);
     }
 
-    @ParameterizedTest
-    @CsvSource({
-        "true, true",
-        "true, false",
-        "false, true",
-        "false, false"
-    })
-    void registerWithoutCredsShouldNotRegister(boolean lastFmEnabled, boolean listenBrainzEnabled) {
+    @Test
+    void submitPendingShouldBackOffOnNetworkError() {
         // Arrange
-        String username = "testUser";
-        boolean submission = true;
-        Instant time = Instant.now();
-        when(mockedMediaFile.isVideo()).thenReturn(false);
-        when(personalSettingsService.getUserSettings(ArgumentMatchers.eq(username))).thenReturn(mockedUserSettings);
-        when(mockedUserSettings.getLastFmEnabled()).thenReturn(lastFmEnabled);
-        when(mockedUserSettings.getListenBrainzEnabled()).thenReturn(listenBrainzEnabled);
-        Map<App, UserCredential> creds = new HashMap<>();
-        when(securityService.getDecodableCredsForApps(eq(username), any(App[].class))).thenReturn(creds);
+        List<Scrobble> scrobbles = createScrobbles(App.LISTENBRAINZ, 3, true);
+        mockOutbox(App.LISTENBRAINZ, scrobbles);
+        when(mockedUserSettings.getListenBrainzUrl()).thenReturn("listenBrainzUrl");
+        when(listenBrainzScrobbler.submit(eq("listenBrainzUrl"), eq("listenBrainzPassword"), any())).thenReturn(ScrobbleResult.RETRY);
 
         // Act
-        audioScrobblerService.register(mockedMediaFile, username, submission, time);
+        audioScrobblerService.submitPending();
+
+        // Assert
+        verify(scrobbleRepository, never()).deleteAll(any());
+        verify(scrobbleRepository).saveAll(scrobblesCaptor.capture());
+        assertEquals(3, scrobblesCaptor.getValue().size());
+        scrobblesCaptor.getValue().forEach(s -> {
+            assertEquals(1, s.getAttempts());
+            assertTrue(s.getNextAttempt().isAfter(Instant.now().plusSeconds(50)));
+        });
+    }
+
+    @Test
+    void submitPendingShouldOnlyNotifyLatestNowPlaying() {
+        // Arrange
+        List<Scrobble> scrobbles = createScrobbles(App.LASTFM, 3, false);
+        mockOutbox(App.LASTFM, scrobbles);
+
+        // Act
+        audioScrobblerService.submitPending();
 
         // Assert
-        verify(lastFMScrobbler, never()).register(any(), anyString(), anyString(), eq(submission), eq(time));
-        verify(listenBrainzScrobbler, never()).register(any(), anyString(), anyString(), eq(submission), eq(time));
+        verify(lastFMScrobbler).nowPlaying("lastFmUser", "lastFmPassword", scrobbles.get(2));
+        verify(lastFMScrobbler, never()).submit(anyString(), anyString(), any());
+        verify(scrobbleRepository).deleteAll(scrobbles);
     }
 
+    @Test
+    void submitPendingWithoutCredsShouldDrop() {
+        // Arrange
+        List<Scrobble> scrobbles = createScrobbles(App.LASTFM, 3, true);
+        mockOutbox(App.LASTFM, scrobbles);
+        when(securityService.getDecodableCredsForApps("testUser", App.LASTFM)).thenReturn(new HashMap<>());
+
+        // Act
+        audioScrobblerService.submitPending();
+
+        // Assert
+        verify(scrobbleRepository).deleteAll(scrobbles);
+        verifyNoInteractions(lastFMScrobbler);
+    }
 
+    @Test
+    void backoffShouldGrowExponentially() {
+        assertEquals(Duration.ofMinutes(1), AudioScrobblerService.getBackoff(1));
+        assertEquals(Duration.ofMinutes(8), AudioScrobblerService.getBackoff(4));
+        assertEquals(Duration.ofHours(6), AudioScrobblerService.getBackoff(20));
+        assertEquals(Duration.ofHours(6), AudioScrobblerService.getBackoff(100));
+    }
 
 }
@@ -0,0 +1,117 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MusicFolder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class DirectoryChangeTrackerTest {
+
+    @Mock
+    private PathWatcherService pathWatcherService;
+
+    @TempDir
+    private Path root;
+
+    private MusicFolder musicFolder;
+    private DirectoryChangeTracker tracker;
+
+    @BeforeEach
+    public void setUp() {
+        musicFolder = new MusicFolder(1, root, "Music", MusicFolder.Type.MEDIA, true, Instant.now());
+        tracker = new DirectoryChangeTracker(pathWatcherService);
+    }
+
+    @Test
+    public void unknownMusicFolderIsChanged() {
+        assertEquals(Set.of(root), tracker.collectChangedDirectories(List.of(musicFolder), false));
+    }
+
+    @Test
+    public void unchangedDirectoriesAreSkipped() throws IOException {
+        Path album = Files.createDirectories(root.resolve("artist/album"));
+        recordAll(root, root.resolve("artist"), album);
+
+        assertEquals(Set.of(), tracker.collectChangedDirectories(List.of(musicFolder), false));
+        verifyNoInteractions(pathWatcherService);
+    }
+
+    @Test
+    public void changedAndNewDirectoriesAreCollected() throws IOException {
+        Path artist = Files.createDirectories(root.resolve("artist"));
+        Path album = Files.createDirectories(artist.resolve("album"));
+        Path excluded = Files.createDirectories(album.resolve("excluded"));
+        recordAll(root, artist, album);
+
+        Files.createFile(album.resolve("song.mp3"));
+        Files.setLastModifiedTime(album, FileTime.fromMillis(Files.getLastModifiedTime(album).toMillis() + 1000));
+        Path added = Files.createDirectories(album.resolve("added"));
+        Files.createDirectories(excluded.resolve("below"));
+
+        assertEquals(Set.of(album, added), tracker.collectChangedDirectories(List.of(musicFolder), false));
+    }
+
+    @Test
+    public void deletedDirectoriesAreRemoved() throws IOException {
+        Path artist = Files.createDirectories(root.resolve("artist"));
+        Path album = Files.createDirectories(artist.resolve("album"));
+        Path sibling = Files.createDirectories(root.resolve("artist two"));
+        recordAll(root, artist, album, sibling);
+
+        Files.delete(album);
+        Files.delete(artist);
+
+        assertEquals(List.of(artist, album), tracker.removeDeletedDirectories(root));
+        assertFalse(tracker.isKnown(album));
+        assertTrue(tracker.isKnown(sibling));
+        assertTrue(tracker.removeDeletedDirectories(root).isEmpty());
+    }
+
+    @Test
+    public void failedWatchFallsBackToFingerprints() throws IOException {
+        Path artist = Files.createDirectories(root.resolve("artist"));
+        Path album = Files.createDirectories(artist.resolve("album"));
+        doThrow(new IOException("User limit of inotify watches reached")).when(pathWatcherService)
+                .setWatcher(eq(artist.toString()), eq(artist), any(), any(), any(), any());
+        tracker.startFullScan();
+        tracker.record(root, true);
+        tracker.record(artist, true);
+        tracker.record(album, true);
+
+        verify(pathWatcherService).invalidateWatcher(root.toString());
+        verify(pathWatcherService, never()).setWatcher(eq(album.toString()), eq(album), any(), any(), any(), any());
+
+        Files.createFile(album.resolve("song.mp3"));
+        Files.setLastModifiedTime(album, FileTime.fromMillis(Files.getLastModifiedTime(album).toMillis() + 1000));
+
+        assertEquals(Set.of(album), tracker.collectChangedDirectories(List.of(musicFolder), true));
+    }
+
+    private void recordAll(Path... directories) {
+        for (Path directory : directories) {
+            tracker.record(directory, false);
+        }
+    }
+}
@@ -3,8 +3,11 @@ package org.airsonic.player.service;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
 import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import org.airsonic.player.monitor.MetricsManager;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -12,12 +15,16 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
 
 @ExtendWith(SpringExtension.class)
 public class JWTSecurityServiceTest {
 
     private final String key = "someKey";
-    private final JWTSecurityService service = new JWTSecurityService(settingsWithKey(key));
+    private final JWTSecurityService service = new JWTSecurityService(settingsWithKey(key), mock(MetricsManager.class));
     private final Algorithm algorithm = JWTSecurityService.getAlgorithm(key);
     private final JWTVerifier verifier = JWT.require(algorithm).build();
 
@@ -35,6 +42,30 @@ public class JWTSecurityServiceTest {
         assertEquals("xyz", verify.getSubject());
     }
 
+    @Test
+    public void reuseTokens() {
+        String token = token(service, "xyz");
+
+        assertEquals(token, token(service, "xyz"));
+        assertNotEquals(token, token(service, "abc"));
+        assertSame(service.verify(token), service.verify(token));
+    }
+
+    @Test
+    public void changeKey() {
+        String token = token(service, "xyz");
+        JWTSecurityService otherService = new JWTSecurityService(settingsWithKey("otherKey"), mock(MetricsManager.class));
+
+        assertNotEquals(token, token(otherService, "xyz"));
+        assertThrows(SignatureVerificationException.class, () -> otherService.verify(token));
+        assertEquals("xyz", service.verify(token).getSubject());
+    }
+
+    private static String token(JWTSecurityService service, String user) {
+        String uri = service.addJWTToken(user, "ext/stream?player=1&id=4");
+        return UriComponentsBuilder.fromUriString(uri).build().getQueryParams().getFirst(JWTSecurityService.JWT_PARAM_NAME);
+    }
+
     private SettingsService settingsWithKey(String jwtKey) {
         return new SettingsService() {
             @Override
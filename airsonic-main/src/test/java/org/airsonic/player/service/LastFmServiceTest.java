@@ -5,6 +5,7 @@ import de.umass.lastfm.Artist;
 import de.umass.lastfm.ImageSize;
 import de.umass.lastfm.Track;
 import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicLastFmConfig;
 import org.airsonic.player.domain.AlbumNotes;
 import org.airsonic.player.domain.ArtistBio;
 import org.airsonic.player.domain.LastFmCoverArt;
@@ -31,7 +32,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -39,7 +40,6 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
-import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.when;
 
 
@@ -52,6 +52,10 @@ public class LastFmServiceTest {
     private ArtistRepository artistRepository;
     @Mock
     private MediaFileService mediaFileService;
+    @Mock
+    private AirsonicLastFmConfig lastFmConfig;
+    @Mock
+    private TaskSchedulingService taskService;
 
     private LastFmService lastFmService;
 
@@ -96,7 +100,13 @@ public class LastFmServiceTest {
     @BeforeEach
     public void setUpBeforeAll() {
         when(homeConfig.getAirsonicHome()).thenReturn(tempDir);
-        lastFmService = new LastFmService(homeConfig, artistRepository, mediaFileService);
+        lastFmService = new LastFmService(homeConfig, artistRepository, mediaFileService, lastFmConfig, taskService);
+    }
+
+    private static org.airsonic.player.domain.Artist createArtist(String name) {
+        org.airsonic.player.domain.Artist artist = new org.airsonic.player.domain.Artist();
+        artist.setName(name);
+        return artist;
     }
 
     private void setupMockedMediaFileReturnNullArtist() {
@@ -125,7 +135,7 @@ public class LastFmServiceTest {
         setupMockedMediaFileReturnTestArtist();
         when(mockedLastFmArtist1.getName()).thenReturn(similarArtists.get(0));
         when(mockedLastFmArtist2.getName()).thenReturn(similarArtistsWithNotPresent.get(0));
-        when(mediaFileService.getArtistByName(startsWith("artist"), any())).thenReturn(new MediaFile());
+        when(mediaFileService.getArtistsByNames(any(), any())).thenReturn(Map.of(similarArtists.get(0), new MediaFile()));
         when(mockedInfoArtist.getWikiSummary()).thenReturn("testSummary");
 
         try (MockedStatic<Artist> mockedArtist = org.mockito.Mockito.mockStatic(Artist.class)) {
@@ -146,7 +156,7 @@ public class LastFmServiceTest {
         setupMockedMediaFileReturnTestArtist();
         when(mockedLastFmArtist1.getName()).thenReturn(similarArtists.get(0));
         when(mockedLastFmArtist2.getName()).thenReturn(similarArtistsWithNotPresent.get(0));
-        when(mediaFileService.getArtistByName(startsWith("artist"), any())).thenReturn(new MediaFile());
+        when(mediaFileService.getArtistsByNames(any(), any())).thenReturn(Map.of(similarArtists.get(0), new MediaFile()));
         when(mockedInfoArtist.getWikiSummary()).thenReturn("testSummary");
 
         try (MockedStatic<Artist> mockedArtist = org.mockito.Mockito.mockStatic(Artist.class)) {
@@ -175,7 +185,7 @@ public class LastFmServiceTest {
         when(mockedArtist.getName()).thenReturn("testArtist");
         when(mockedLastFmArtist1.getName()).thenReturn(similarArtists.get(0));
         when(mockedLastFmArtist2.getName()).thenReturn(similarArtistsWithNotPresent.get(0));
-        when(artistRepository.findByNameAndFolderIn(startsWith("artist"), any())).thenReturn(Optional.of(new org.airsonic.player.domain.Artist()));
+        when(artistRepository.findByNameInAndFolderIn(any(), any())).thenReturn(Arrays.asList(createArtist(similarArtists.get(0))));
         when(mockedInfoArtist.getWikiSummary()).thenReturn("testSummary");
 
         try (MockedStatic<Artist> mockedStaticArtist = org.mockito.Mockito.mockStatic(Artist.class)) {
@@ -196,7 +206,7 @@ public class LastFmServiceTest {
         when(mockedArtist.getName()).thenReturn("testArtist");
         when(mockedLastFmArtist1.getName()).thenReturn(similarArtists.get(0));
         when(mockedLastFmArtist2.getName()).thenReturn(similarArtistsWithNotPresent.get(0));
-        when(mediaFileService.getArtistByName(startsWith("artist"), any())).thenReturn(new MediaFile());
+        when(mediaFileService.getArtistsByNames(any(), any())).thenReturn(Map.of(similarArtists.get(0), new MediaFile()));
         when(mockedInfoArtist.getWikiSummary()).thenReturn("testSummary");
 
         try (MockedStatic<Artist> mockedStaticArtist = org.mockito.Mockito.mockStatic(Artist.class)) {
@@ -219,15 +229,13 @@ public class LastFmServiceTest {
     @MockitoSettings(strictness = org.mockito.quality.Strictness.LENIENT)
     public void testGetSimilarSongs(int count, int expectedSize) {
         when(mockedArtist.getName()).thenReturn("testArtist");
-        when(mediaFileService.getSongsByArtist(0, 1000, "testArtist")).thenReturn(Arrays.asList(mockedMediaFile));
-        when(mediaFileService.getSongsByArtist(0, 1000, similarArtists.get(0))).thenReturn(Arrays.asList(new MediaFile()));
         when(mockedLastFmArtist1.getName()).thenReturn(similarArtists.get(0));
         when(mockedLastFmArtist2.getName()).thenReturn(similarArtistsWithNotPresent.get(0));
-        when(mediaFileService.getArtistByName(startsWith("artist"), any())).thenReturn(new MediaFile());
         when(mockedInfoArtist.getWikiSummary()).thenReturn("testSummary");
-        org.airsonic.player.domain.Artist artist = new org.airsonic.player.domain.Artist();
-        artist.setName("testArtist");
-        when(artistRepository.findByNameAndFolderIn(startsWith("artist"), any())).thenReturn(Optional.of(artist));
+        when(artistRepository.findByNameInAndFolderIn(any(), any())).thenReturn(Arrays.asList(createArtist(similarArtists.get(0))));
+        List<MediaFile> songs = Arrays.asList(mockedMediaFile, new MediaFile());
+        when(mediaFileService.getRandomSongsByArtists(eq(Arrays.asList("testArtist", similarArtists.get(0))), eq(count), any()))
+                .thenReturn(songs.subList(0, Math.min(count, songs.size())));
 
         try (MockedStatic<Artist> mockedStaticArtist = org.mockito.Mockito.mockStatic(Artist.class)) {
             mockedStaticArtist.when(() -> Artist.getSimilar(eq("testArtist"), anyString())).thenReturn(Arrays.asList(mockedLastFmArtist1, mockedLastFmArtist2));
@@ -247,7 +255,7 @@ public class LastFmServiceTest {
         when(mediaFileService.getArtistByName(eq("testArtist"),any())).thenReturn(null);
         when(mockedLastFmArtist1.getName()).thenReturn(similarArtists.get(0));
         when(mockedLastFmArtist2.getName()).thenReturn(similarArtistsWithNotPresent.get(0));
-        when(mediaFileService.getArtistByName(startsWith("artist"), any())).thenReturn(new MediaFile());
+        when(mediaFileService.getArtistsByNames(any(), any())).thenReturn(Map.of(similarArtists.get(0), new MediaFile()));
         when(mockedInfoArtist.getWikiSummary()).thenReturn("testSummary");
         when(mediaFileService.getRandomSongsForParent(any(), eq(count))).thenReturn(Arrays.asList(mockedMediaFile));
 
@@ -272,7 +280,7 @@ public class LastFmServiceTest {
         when(mediaFileService.getArtistByName(eq("testArtist"),any())).thenReturn(artistMediaFile);
         when(mockedLastFmArtist1.getName()).thenReturn(similarArtists.get(0));
         when(mockedLastFmArtist2.getName()).thenReturn(similarArtistsWithNotPresent.get(0));
-        when(mediaFileService.getArtistByName(startsWith("artist"), any())).thenReturn(new MediaFile());
+        when(mediaFileService.getArtistsByNames(any(), any())).thenReturn(Map.of(similarArtists.get(0), new MediaFile()));
         when(mockedInfoArtist.getWikiSummary()).thenReturn("testSummary");
         when(mediaFileService.getRandomSongsForParent(any(), eq(count))).thenReturn(Arrays.asList(mockedMediaFile));
 
@@ -419,8 +427,8 @@ public class LastFmServiceTest {
         when(mockedInfoArtist.getWikiSummary()).thenReturn("testSummary");
         when(mockedLastFmTrack1.getName()).thenReturn("testTrack");
         when(mockedLastFmTrack2.getName()).thenReturn("notPresentTestTrack");
-        when(mediaFileService.getSongByArtistAndTitle(eq("testArtist"), startsWith("testTrack"), any())).thenReturn(new MediaFile());
-        when(mediaFileService.getSongByArtistAndTitle(eq("testArtist"), startsWith("notPresentTestTrack"), any())).thenReturn(null);
+        when(mediaFileService.getSongsByArtistAndTitles(eq("testArtist"), eq(Arrays.asList("testTrack", "testTrack", "notPresentTestTrack")), eq(count), any()))
+                .thenReturn(Arrays.asList(new MediaFile(), new MediaFile()).subList(0, expectedSize));
 
         try (MockedStatic<Artist> mockedStaticArtist = org.mockito.Mockito.mockStatic(Artist.class)) {
             mockedStaticArtist.when(() -> Artist.getInfo(eq("testArtist"), anyString())).thenReturn(mockedInfoArtist);
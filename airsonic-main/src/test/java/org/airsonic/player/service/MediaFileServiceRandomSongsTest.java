@@ -0,0 +1,124 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.airsonic.player.domain.RandomSearchCriteria;
+import org.airsonic.player.repository.MediaFileRepository;
+import org.airsonic.player.service.RandomSongIndex.Sample;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the batches of {@link MediaFileService#getRandomSongs} and their fallback to sorting by a random value.
+ */
+@ExtendWith(MockitoExtension.class)
+public class MediaFileServiceRandomSongsTest {
+
+    @Mock
+    private MediaFileRepository mediaFileRepository;
+    @Mock
+    private RandomSongIndex randomSongIndex;
+    @Mock
+    private SettingsService settingsService;
+
+    @InjectMocks
+    private MediaFileService mediaFileService;
+
+    @Captor
+    private ArgumentCaptor<Pageable> pageCaptor;
+
+    private static MediaFile song(int id) {
+        MediaFile song = new MediaFile();
+        song.setId(id);
+        return song;
+    }
+
+    private static List<MediaFile> songs(int from, int to) {
+        return IntStream.rangeClosed(from, to).mapToObj(MediaFileServiceRandomSongsTest::song).collect(Collectors.toList());
+    }
+
+    private static RandomSearchCriteria criteria(int count) {
+        MusicFolder folder = new MusicFolder(1, Paths.get("/music"), "Music", Type.MEDIA, true, Instant.now());
+        return new RandomSearchCriteria(count, null, null, null, List.of(folder));
+    }
+
+    @Test
+    public void testFirstBatchIsEnough() {
+        RandomSearchCriteria criteria = criteria(3);
+        when(randomSongIndex.sample(criteria, "user")).thenReturn(new Sample(new int[] {1, 2, 3}, new Random(1)));
+        when(mediaFileRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(songs(1, 3));
+
+        List<MediaFile> result = mediaFileService.getRandomSongs(criteria, "user");
+
+        assertThat(result).extracting(MediaFile::getId).containsExactlyInAnyOrder(1, 2, 3);
+        verify(mediaFileRepository, times(1)).findAll(any(Specification.class), pageCaptor.capture());
+        assertThat(pageCaptor.getValue().getPageSize()).isEqualTo(3);
+    }
+
+    @Test
+    public void testExhaustedSampleReturnsFewerSongs() {
+        RandomSearchCriteria criteria = criteria(5);
+        when(randomSongIndex.sample(criteria, "user")).thenReturn(new Sample(new int[] {1, 2}, new Random(1)));
+        when(mediaFileRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(songs(1, 1));
+
+        List<MediaFile> result = mediaFileService.getRandomSongs(criteria, "user");
+
+        assertThat(result).extracting(MediaFile::getId).containsExactly(1);
+        verify(mediaFileRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    public void testRejectedBatchesFallBackToRandomOrder() {
+        RandomSearchCriteria criteria = criteria(2);
+        int[] ids = IntStream.rangeClosed(1, 100).toArray();
+        when(randomSongIndex.sample(criteria, "user")).thenReturn(new Sample(ids, new Random(1)));
+        when(settingsService.getDatabaseType()).thenReturn("HSQLDB");
+        when(mediaFileRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(
+                List.of(), List.of(), List.of(), List.of(), List.of(song(50), song(60)));
+
+        List<MediaFile> result = mediaFileService.getRandomSongs(criteria, "user");
+
+        assertThat(result).extracting(MediaFile::getId).containsExactly(50, 60);
+        verify(mediaFileRepository, times(5)).findAll(any(Specification.class), pageCaptor.capture());
+        assertThat(pageCaptor.getAllValues()).extracting(Pageable::getPageSize).containsExactly(2, 4, 8, 16, 2);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Airsonic Authors
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.airsonic.player.repository.MediaFileRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the bulk loading of the songs found by {@link SongTitleIndex}.
+ */
+@ExtendWith(MockitoExtension.class)
+public class MediaFileServiceSongLookupTest {
+
+    @Mock
+    private MediaFileRepository mediaFileRepository;
+    @Mock
+    private SongTitleIndex songTitleIndex;
+
+    @InjectMocks
+    private MediaFileService mediaFileService;
+
+    private final List<MusicFolder> musicFolders = List.of(
+            new MusicFolder(1, Paths.get("/music"), "Music", Type.MEDIA, true, Instant.now()));
+
+    private static MediaFile song(int id, boolean present) {
+        MediaFile song = new MediaFile();
+        song.setId(id);
+        song.setPresent(present);
+        return song;
+    }
+
+    @Test
+    public void testSongsAreLoadedInBulkUpToCount() {
+        List<String> titles = List.of("a", "b", "c", "d");
+        when(songTitleIndex.getSongIds("artist", titles, musicFolders)).thenReturn(List.of(4, 2, 3, 1));
+        when(mediaFileRepository.findAllById(List.of(4, 2))).thenReturn(List.of(song(2, true), song(4, true)));
+
+        List<MediaFile> result = mediaFileService.getSongsByArtistAndTitles("artist", titles, 2, musicFolders);
+
+        assertThat(result).extracting(MediaFile::getId).containsExactly(4, 2);
+        verify(mediaFileRepository, times(1)).findAllById(anyIterable());
+        verify(mediaFileRepository, never()).findById(anyInt());
+    }
+
+    @Test
+    public void testMissingSongsAreReplacedByNextIds() {
+        List<String> titles = List.of("a", "b", "c", "d");
+        when(songTitleIndex.getSongIds("artist", titles, musicFolders)).thenReturn(List.of(1, 2, 3, 4));
+        when(mediaFileRepository.findAllById(List.of(1, 2))).thenReturn(List.of(song(1, true), song(2, false)));
+        when(mediaFileRepository.findAllById(List.of(3))).thenReturn(List.of(song(3, true)));
+
+        List<MediaFile> result = mediaFileService.getSongsByArtistAndTitles("artist", titles, 2, musicFolders);
+
+        assertThat(result).extracting(MediaFile::getId).containsExactly(1, 3);
+        verify(mediaFileRepository, times(2)).findAllById(anyIterable());
+    }
+}
@@ -1,7 +1,12 @@
 package org.airsonic.player.service;
 
 import org.airsonic.player.config.AirsonicScanConfig;
+import org.airsonic.player.domain.Genres;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MediaFile.MediaType;
 import org.airsonic.player.domain.MediaLibraryStatistics;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.service.metadata.FFmpegParser;
 import org.airsonic.player.service.search.IndexManager;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,7 +14,22 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -38,16 +58,125 @@ public class MediaScannerServiceUnitTest {
     IndexManager indexManager;
     @Mock
     AirsonicScanConfig scanConfig;
+    @Mock
+    DirectoryChangeTracker changeTracker;
+    @Mock
+    MusicIndexService musicIndexService;
+    @Mock
+    SongTitleIndex songTitleIndex;
+    @Mock
+    RandomSongIndex randomSongIndex;
+    @Mock
+    FFmpegParser ffmpegParser;
 
     @Test
     public void neverScanned() {
         when(settingsService.getIndexCreationInterval()).thenReturn(-1);
         when(settingsService.getIndexCreationHour()).thenReturn(-1);
         when(indexManager.getStatistics()).thenReturn(null);
-        MediaScannerService mediaScannerService = new MediaScannerService(settingsService, indexManager, playlistFileService, mediaFileService, mediaFolderService, coverArtService, artistService, albumService, taskService, messagingTemplate, scanConfig);
+        MediaScannerService mediaScannerService = new MediaScannerService(settingsService, indexManager, playlistFileService, mediaFileService, mediaFolderService, coverArtService, artistService, albumService, taskService, messagingTemplate, scanConfig, changeTracker, musicIndexService, songTitleIndex, randomSongIndex, ffmpegParser);
         assertTrue(mediaScannerService.neverScanned());
 
         when(indexManager.getStatistics()).thenReturn(new MediaLibraryStatistics());
         assertFalse(mediaScannerService.neverScanned());
     }
+
+    @Test
+    public void scanLibraryCompletesDeepTreeWithoutBlockingWorkers() {
+        int depth = 500;
+        MusicFolder musicFolder = new MusicFolder(1, Paths.get("/music"), "Music", MusicFolder.Type.MEDIA, true, Instant.now());
+        MediaFile root = createMediaFile("", MediaType.DIRECTORY, musicFolder);
+
+        when(settingsService.getIndexCreationInterval()).thenReturn(-1);
+        when(settingsService.getIndexCreationHour()).thenReturn(-1);
+        when(scanConfig.getParallelism()).thenReturn(2);
+        when(scanConfig.getTimeout()).thenReturn(60);
+        when(scanConfig.getWriteBatchSize()).thenReturn(100);
+        when(scanConfig.getWriteFlushInterval()).thenReturn(10);
+        when(mediaFileService.markPresent(any(), any(Instant.class))).thenReturn(true);
+        when(mediaFolderService.getAllMusicFolders()).thenReturn(List.of(musicFolder));
+        when(mediaFileService.getMediaFile(any(Path.class), eq(musicFolder), eq(false))).thenReturn(root);
+        when(mediaFileService.getChildrenOf(any(MediaFile.class), eq(true), eq(true), eq(false), eq(false))).thenAnswer(invocation -> {
+            MediaFile dir = invocation.getArgument(0);
+            List<MediaFile> children = new ArrayList<>();
+            if (dir.getPath().split("/").length < depth) {
+                children.add(createMediaFile(dir.getPath() + "/d", MediaType.DIRECTORY, musicFolder));
+                children.add(createMediaFile(dir.getPath() + "/1.mp3", MediaType.MUSIC, musicFolder));
+                children.add(createMediaFile(dir.getPath() + "/2.mp3", MediaType.MUSIC, musicFolder));
+            }
+            return children;
+        });
+
+        MediaScannerService mediaScannerService = new MediaScannerService(settingsService, indexManager, playlistFileService, mediaFileService, mediaFolderService, coverArtService, artistService, albumService, taskService, messagingTemplate, scanConfig, changeTracker, musicIndexService, songTitleIndex, randomSongIndex, ffmpegParser);
+        mediaScannerService.scanLibrary();
+
+        verify(indexManager, timeout(30000)).stopIndexing(any(MediaLibraryStatistics.class));
+        assertEquals(depth, mediaScannerService.getScannedDirectoryCount());
+        assertEquals(2L * (depth - 1), mediaScannerService.getScannedFileCount());
+        assertEquals(depth + 2 * (depth - 1), mediaScannerService.getScanCount());
+        assertEquals(mediaScannerService.getScanCount(), mediaScannerService.getIndexedCount());
+    }
+
+    @Test
+    public void incrementalScanOnlyVisitsChangedDirectories() {
+        MusicFolder musicFolder = new MusicFolder(1, Paths.get("/music"), "Music", MusicFolder.Type.MEDIA, true, Instant.now());
+        MediaFile changed = createMediaFile("changed", MediaType.DIRECTORY, musicFolder);
+        MediaFile unchanged = createMediaFile("changed/unchanged", MediaType.DIRECTORY, musicFolder);
+        MediaFile added = createMediaFile("changed/added", MediaType.DIRECTORY, musicFolder);
+
+        when(settingsService.getIndexCreationInterval()).thenReturn(-1);
+        when(settingsService.getIndexCreationHour()).thenReturn(-1);
+        when(scanConfig.getParallelism()).thenReturn(2);
+        when(scanConfig.getTimeout()).thenReturn(60);
+        when(scanConfig.getWriteBatchSize()).thenReturn(100);
+        when(scanConfig.getWriteFlushInterval()).thenReturn(10);
+        when(scanConfig.isIncremental()).thenReturn(true);
+        when(scanConfig.isWatch()).thenReturn(false);
+        when(mediaFolderService.getAllMusicFolders()).thenReturn(List.of(musicFolder));
+        when(changeTracker.collectChangedDirectories(List.of(musicFolder), false)).thenReturn(Set.of(changed.getFullPath()));
+        when(changeTracker.isKnown(unchanged.getFullPath())).thenReturn(true);
+        when(changeTracker.removeDeletedDirectories(any(Path.class))).thenReturn(List.of());
+        when(mediaFileService.getGenreCounts(List.of(musicFolder))).thenReturn(new Genres());
+        when(mediaFileService.getMediaFile(Paths.get("changed"), musicFolder, false)).thenReturn(changed);
+        when(mediaFileService.getChildrenOf(any(MediaFile.class), eq(true), eq(true), eq(false), eq(false))).thenAnswer(invocation -> {
+            MediaFile dir = invocation.getArgument(0);
+            return dir == changed ? List.of(unchanged, added) : List.of();
+        });
+
+        MediaScannerService mediaScannerService = new MediaScannerService(settingsService, indexManager, playlistFileService, mediaFileService, mediaFolderService, coverArtService, artistService, albumService, taskService, messagingTemplate, scanConfig, changeTracker, musicIndexService, songTitleIndex, randomSongIndex, ffmpegParser);
+        mediaScannerService.scanLibrary();
+
+        verify(indexManager, timeout(30000)).stopIndexing(any(MediaLibraryStatistics.class));
+        assertEquals(2, mediaScannerService.getScannedDirectoryCount());
+        verify(changeTracker).record(changed.getFullPath(), false);
+        verify(changeTracker).record(added.getFullPath(), false);
+        verify(changeTracker, never()).record(eq(unchanged.getFullPath()), anyBoolean());
+        verify(mediaFileService).markNonPresent(musicFolder, Set.of());
+        verify(artistService).markNonPresentWithoutAlbums(any(Instant.class));
+        verify(mediaFileService).updateSongStatistics(eq(List.of(musicFolder)), any(MediaLibraryStatistics.class));
+    }
+
+    @Test
+    public void failedRebuildDoesNotCommitIndex() {
+        when(settingsService.getIndexCreationInterval()).thenReturn(-1);
+        when(settingsService.getIndexCreationHour()).thenReturn(-1);
+        when(scanConfig.getParallelism()).thenReturn(2);
+        when(indexManager.startRebuilding()).thenReturn(true);
+        doThrow(new IllegalStateException("database unavailable")).when(indexManager).reindexFromDatabase(any(ForkJoinPool.class));
+
+        MediaScannerService mediaScannerService = new MediaScannerService(settingsService, indexManager, playlistFileService, mediaFileService, mediaFolderService, coverArtService, artistService, albumService, taskService, messagingTemplate, scanConfig, changeTracker, musicIndexService, songTitleIndex, randomSongIndex, ffmpegParser);
+        mediaScannerService.rebuildIndex();
+
+        verify(indexManager, timeout(30000)).abortIndexing();
+        verify(indexManager, never()).stopIndexing(any(MediaLibraryStatistics.class));
+    }
+
+    private static MediaFile createMediaFile(String path, MediaType mediaType, MusicFolder musicFolder) {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setPath(path);
+        mediaFile.setMediaType(mediaType);
+        mediaFile.setFolder(musicFolder);
+        mediaFile.setPresent(true);
+        return mediaFile;
+    }
 }
@@ -0,0 +1,44 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.airsonic.player.service.MediaFolderService.MusicFolderAccess;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MusicFolderAccessTest {
+
+    private static MusicFolder folder(Integer id) {
+        return new MusicFolder(id, Paths.get("/music" + id), "Music " + id, Type.MEDIA, true, Instant.now());
+    }
+
+    @Test
+    public void testAllowedFolders() {
+        List<MusicFolder> folders = List.of(folder(1), folder(5));
+        MusicFolderAccess access = new MusicFolderAccess(folders);
+
+        assertThat(access.getMusicFolders()).isSameAs(folders);
+        assertThat(access.isAllowed(folder(1))).isTrue();
+        assertThat(access.isAllowed(folder(5))).isTrue();
+        assertThat(access.isAllowed(folder(0))).isFalse();
+        assertThat(access.isAllowed(folder(3))).isFalse();
+        assertThat(access.isAllowed(folder(6))).isFalse();
+        assertThat(access.isAllowed(-1)).isFalse();
+        assertThat(access.isAllowed(folder(null))).isFalse();
+        assertThat(access.isAllowed((MusicFolder) null)).isFalse();
+    }
+
+    @Test
+    public void testNoFolders() {
+        MusicFolderAccess access = new MusicFolderAccess(Collections.emptyList());
+
+        assertThat(access.isAllowed(folder(0))).isFalse();
+        assertThat(access.isAllowed(folder(1))).isFalse();
+    }
+}
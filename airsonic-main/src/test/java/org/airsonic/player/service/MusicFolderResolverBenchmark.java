@@ -0,0 +1,89 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.util.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolving the music folder of a file: {@link MusicFolderTrie} against filtering and sorting every music
+ * folder, as done by {@link MediaFolderService#getMusicFolderForFile} before the trie. Run with
+ * {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MusicFolderResolverBenchmark {
+
+    @Param({"40"})
+    private int folderCount;
+
+    private List<MusicFolder> folders;
+
+    private MusicFolderTrie trie;
+
+    private Path[] files;
+
+    @Setup
+    public void setUp() {
+        folders = new ArrayList<>();
+        for (int i = 0; i < folderCount; i++) {
+            // every fourth folder is nested in the previous one
+            Path path = i % 4 == 3
+                    ? folders.get(i - 1).getPath().resolve("Nested " + i)
+                    : Paths.get("/srv", "media", "library " + i);
+            folders.add(new MusicFolder(i, path, "Folder " + i, MusicFolder.Type.MEDIA, true, Instant.now()));
+        }
+        trie = new MusicFolderTrie(folders);
+        files = new Path[1024];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = folders.get(i % folderCount).getPath().resolve("Artist " + i).resolve("Album").resolve("01 - Song.flac");
+        }
+    }
+
+    @Benchmark
+    public MusicFolder trie() {
+        return trie.find(nextFile(), true, true);
+    }
+
+    @Benchmark
+    public MusicFolder filterAndSort() {
+        Path file = nextFile();
+        return folders.stream()
+                .filter(folder -> FileUtil.isFileInFolder(file, folder.getPath()))
+                .sorted(Comparator.comparing(folder -> folder.getPath().getNameCount(), Comparator.reverseOrder()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private Path nextFile() {
+        return files[ThreadLocalRandom.current().nextInt(files.length)];
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MusicFolderResolverBenchmark.class.getSimpleName()).build()).run();
+    }
+}
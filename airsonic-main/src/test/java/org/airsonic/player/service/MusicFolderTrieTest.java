@@ -0,0 +1,67 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MusicFolder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MusicFolderTrieTest {
+
+    @TempDir
+    private Path dir;
+
+    private static MusicFolder folder(int id, Path path, boolean enabled) {
+        return new MusicFolder(id, path, "Folder" + id, MusicFolder.Type.MEDIA, enabled, Instant.now());
+    }
+
+    @Test
+    public void testLongestPrefixIsFound() throws Exception {
+        Path root = Files.createDirectory(dir.resolve("music"));
+        Path nested = Files.createDirectories(root.resolve("Artist").resolve("Live"));
+        MusicFolder rootFolder = folder(1, root, true);
+        MusicFolder nestedFolder = folder(2, nested, true);
+        MusicFolder otherFolder = folder(3, dir.resolve("musicians"), true);
+        MusicFolderTrie trie = new MusicFolderTrie(Arrays.asList(nestedFolder, rootFolder, otherFolder));
+
+        assertThat(trie.find(root, true, true)).isEqualTo(rootFolder);
+        assertThat(trie.find(root.resolve("Artist").resolve("song.mp3"), true, true)).isEqualTo(rootFolder);
+        assertThat(trie.find(nested.resolve("song.mp3"), true, true)).isEqualTo(nestedFolder);
+        assertThat(trie.find(dir.resolve("musicians").resolve("song.mp3"), true, true)).isEqualTo(otherFolder);
+        assertThat(trie.find(dir.resolve("mus"), true, true)).isNull();
+        assertThat(trie.find(Paths.get("music", "Artist"), true, true)).isNull();
+        assertThat(trie.find(null, true, true)).isNull();
+    }
+
+    @Test
+    public void testPathsAreNormalized() throws Exception {
+        Path root = Files.createDirectory(dir.resolve("music"));
+        MusicFolder rootFolder = folder(1, root, true);
+        MusicFolder nestedFolder = folder(2, root.resolve("Nested"), true);
+        MusicFolderTrie trie = new MusicFolderTrie(Arrays.asList(rootFolder, nestedFolder));
+
+        assertThat(trie.find(root.resolve("Nested").resolve("..").resolve("song.mp3"), true, true)).isEqualTo(rootFolder);
+        assertThat(trie.find(root.resolve(".").resolve("Nested").resolve("song.mp3"), true, true)).isEqualTo(nestedFolder);
+        assertThat(trie.find(Paths.get(root.toString() + "/Nested//song.mp3"), true, true)).isEqualTo(nestedFolder);
+    }
+
+    @Test
+    public void testDisabledAndNonExistingFoldersAreSkipped() throws Exception {
+        Path root = Files.createDirectory(dir.resolve("music"));
+        MusicFolder rootFolder = folder(1, root, true);
+        MusicFolder disabledFolder = folder(2, Files.createDirectory(root.resolve("Disabled")), false);
+        MusicFolder missingFolder = folder(3, root.resolve("Missing"), true);
+        MusicFolderTrie trie = new MusicFolderTrie(Arrays.asList(rootFolder, disabledFolder, missingFolder));
+
+        assertThat(trie.find(root.resolve("Disabled").resolve("song.mp3"), true, true)).isEqualTo(disabledFolder);
+        assertThat(trie.find(root.resolve("Disabled").resolve("song.mp3"), false, true)).isEqualTo(rootFolder);
+        assertThat(trie.find(root.resolve("Missing").resolve("song.mp3"), true, true)).isEqualTo(missingFolder);
+        assertThat(trie.find(root.resolve("Missing").resolve("song.mp3"), true, false)).isEqualTo(rootFolder);
+    }
+}
@@ -19,12 +19,28 @@
  */
 package org.airsonic.player.service;
 
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolderContent;
 import org.airsonic.player.domain.MusicIndex;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit test of {@link MusicIndex}.
@@ -78,4 +94,49 @@ public class MusicIndexServiceTestCase {
         assertEquals("Y", indexes.get(3).getPrefixes().get(1));
         assertEquals("Z", indexes.get(3).getPrefixes().get(2));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMusicFolderContentIsKeptUntilRefresh() {
+        SettingsService settingsService = mock(SettingsService.class);
+        MediaFileService mediaFileService = mock(MediaFileService.class);
+        when(settingsService.getIndexString()).thenReturn("A B T X-Z(XYZ)");
+        when(settingsService.getIgnoredArticles()).thenReturn("The");
+        when(settingsService.getIgnoredArticlesAsArray()).thenReturn(new String[] {"The"});
+        when(settingsService.getShortcuts()).thenReturn("");
+        when(settingsService.getShortcutsAsArray()).thenReturn(new String[0]);
+        when(settingsService.getLocale()).thenReturn(Locale.ENGLISH);
+        MusicFolder folder = new MusicFolder(1, Paths.get("/music"), "Music", MusicFolder.Type.MEDIA, true, Instant.EPOCH);
+        MediaFile root = createDirectory(0, "");
+        when(mediaFileService.getMediaFile(eq(Paths.get("")), eq(folder), anyBoolean())).thenReturn(root);
+        when(mediaFileService.getChildrenOf(eq(root), eq(false), eq(true), eq(true), anyBoolean()))
+                .thenReturn(Arrays.asList(createDirectory(1, "Xtc"), createDirectory(2, "The Beatles"), createDirectory(3, "abba")));
+        when(mediaFileService.getChildrenOf(eq(root), eq(true), eq(false), eq(true), anyBoolean()))
+                .thenReturn(Collections.emptyList());
+        musicIndexService.setSettingsService(settingsService);
+        musicIndexService.setMediaFileService(mediaFileService);
+        List<MusicFolder> folders = Collections.singletonList(folder);
+
+        MusicFolderContent content = musicIndexService.getMusicFolderContent(folders, false);
+        Instant lastModified = musicIndexService.getLastModified(folders);
+
+        List<String> indexes = content.getIndexedArtists().keySet().stream().map(MusicIndex::getIndex).toList();
+        assertEquals(Arrays.asList("A", "B", "X-Z"), indexes);
+        assertEquals("Beatles, The", content.getIndexedArtists().values().stream().skip(1).findFirst().get().get(0).getSortableName());
+        assertSame(content, musicIndexService.getMusicFolderContent(folders, false));
+        verify(mediaFileService, times(1)).getChildrenOf(any(), eq(false), eq(true), eq(true), anyBoolean());
+
+        musicIndexService.refresh();
+
+        assertEquals(lastModified, musicIndexService.getLastModified(folders));
+        verify(mediaFileService, times(2)).getChildrenOf(any(), eq(false), eq(true), eq(true), anyBoolean());
+    }
+
+    private static MediaFile createDirectory(int id, String path) {
+        MediaFile file = new MediaFile();
+        file.setId(id);
+        file.setPath(path);
+        file.setMediaType(MediaFile.MediaType.DIRECTORY);
+        file.setChanged(Instant.EPOCH);
+        return file;
+    }
+}
@@ -19,6 +19,8 @@
 package org.airsonic.player.service;
 
 import com.google.common.collect.ImmutableMap;
+import org.airsonic.player.ajax.PlayQueueDelta;
+import org.airsonic.player.ajax.PlayQueueDelta.Operation;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.PlayQueue;
 import org.airsonic.player.domain.Player;
@@ -39,6 +41,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -50,6 +53,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -245,6 +249,50 @@ public class PlayQueueServiceTest {
         assertEquals("testuser", savedPlayQueue.getChangedBy());
     }
 
+    @Test
+    public void testDownSendsDelta() throws Exception {
+        // given
+        PlayQueue playQueue = new PlayQueue();
+        playQueue.addFiles(true, new MediaFile(), new MediaFile(), new MediaFile());
+        when(mockedPlayer.getPlayQueue()).thenReturn(playQueue);
+        when(mockedPlayer.getUsername()).thenReturn("testuser");
+        when(mockedPlayer.getId()).thenReturn(1);
+
+        // when
+        playQueueService.down(mockedPlayer, 1);
+
+        // then
+        ArgumentCaptor<PlayQueueDelta> captor = ArgumentCaptor.forClass(PlayQueueDelta.class);
+        verify(webSocketClient).sendToUser(eq("testuser"), eq("/queue/playqueues/1/delta"), captor.capture());
+        PlayQueueDelta delta = captor.getValue();
+        assertEquals(playQueue.getVersion() - 1, delta.getBaseVersion());
+        assertEquals(playQueue.getVersion(), delta.getVersion());
+        assertEquals(1, delta.getOperations().size());
+        assertEquals(Operation.Type.MOVE, delta.getOperations().get(0).getType());
+        assertEquals(1, delta.getOperations().get(0).getIndex());
+        assertEquals(2, delta.getOperations().get(0).getTo());
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "'0,3,1,2', 3, 1", "'1,2,0,3', 0, 2", "'1,0', 1, 0", "'0,1,3,2', 3, 2" })
+    public void testToMove(String order, int index, int to) {
+        Operation move = PlayQueueService.toMove(toIndexes(order));
+
+        assertNotNull(move);
+        assertEquals(index, move.getIndex());
+        assertEquals(to, move.getTo());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "0,1,2,3", "1,0,3,2", "3,1,2,0", "2,3,0,1" })
+    public void testToMoveNotSingleMove(String order) {
+        assertNull(PlayQueueService.toMove(toIndexes(order)));
+    }
+
+    private static List<Integer> toIndexes(String order) {
+        return Arrays.stream(order.split(",")).map(Integer::valueOf).toList();
+    }
+
     // TODO: test methods include broadcastPlayQueue
 
 
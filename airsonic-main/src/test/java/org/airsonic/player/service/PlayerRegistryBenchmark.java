@@ -0,0 +1,87 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.Player;
+import org.airsonic.player.repository.PlayerRepository;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures player resolution under contention: the registry against the same lookups behind a single lock, as done
+ * by {@link PlayerService#getPlayer} before the registry. Run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class PlayerRegistryBenchmark {
+
+    @Param({"50"})
+    private int playerCount;
+
+    private PlayerRegistry registry;
+
+    @Setup
+    public void setUp() {
+        List<Player> players = new ArrayList<>();
+        for (int i = 1; i <= playerCount; i++) {
+            Player player = new Player();
+            player.setId(i);
+            player.setUsername("user" + i % 10);
+            player.setIpAddress("10.0.0." + i);
+            players.add(player);
+        }
+        PlayerRepository repository = Mockito.mock(PlayerRepository.class);
+        Mockito.when(repository.findAll()).thenReturn(players);
+        registry = new PlayerRegistry(repository);
+    }
+
+    @Benchmark
+    public Player registry() {
+        return resolve();
+    }
+
+    @Benchmark
+    public Player globalLock() {
+        synchronized (this) {
+            return resolve();
+        }
+    }
+
+    private Player resolve() {
+        int i = ThreadLocalRandom.current().nextInt(1, playerCount + 1);
+        Player player = registry.getOrCreateByAddress("10.0.0." + i, "user" + i % 10, null, () -> {
+            throw new IllegalStateException("Player should exist");
+        });
+        registry.update(player, p -> {
+            p.setLastSeen(Instant.now());
+            return true;
+        });
+        return player;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PlayerRegistryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
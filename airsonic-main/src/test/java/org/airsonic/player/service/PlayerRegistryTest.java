@@ -0,0 +1,185 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.Player;
+import org.airsonic.player.repository.PlayerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PlayerRegistryTest {
+
+    @Mock
+    private PlayerRepository playerRepository;
+
+    private PlayerRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new PlayerRegistry(playerRepository);
+    }
+
+    private static Player player(int id, String username, String ipAddress, String clientId) {
+        Player player = new Player();
+        player.setId(id);
+        player.setUsername(username);
+        player.setIpAddress(ipAddress);
+        player.setClientId(clientId);
+        return player;
+    }
+
+    @Test
+    public void testPlayersAreLoadedOnce() {
+        Player player = player(1, "user", "10.0.0.1", null);
+        when(playerRepository.findAll()).thenReturn(List.of(player));
+
+        assertSame(player, registry.get(1));
+        assertSame(player, registry.get(1));
+        assertEquals(List.of(player), registry.getAll(p -> true));
+
+        verify(playerRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void testGetByAddress() {
+        Player rest = player(1, "user", "10.0.0.1", "client");
+        Player other = player(2, "other", "10.0.0.1", null);
+        Player web = player(3, "user", "10.0.0.1", null);
+        Player web2 = player(4, "user", "10.0.0.1", null);
+        when(playerRepository.findAll()).thenReturn(List.of(web2, rest, other, web));
+
+        assertSame(web, registry.getByAddress("10.0.0.1", "user", null));
+        assertSame(other, registry.getByAddress("10.0.0.1", null, null));
+        assertNull(registry.getByAddress("10.0.0.2", "user", null));
+        assertSame(rest, registry.getByAddress("10.0.0.1", "user", "client"));
+        assertNull(registry.getByAddress("10.0.0.1", "user", "other"));
+    }
+
+    @Test
+    public void testClientIdSeparatesPlayersOfAddress() {
+        when(playerRepository.findAll()).thenReturn(new ArrayList<>());
+        Player web = registry.getOrCreateByAddress("10.0.0.1", "user", null, () -> player(1, "user", "10.0.0.1", null));
+        Player rest = registry.getOrCreateByAddress("10.0.0.1", "user", "client",
+            () -> player(2, "user", "10.0.0.1", "client"));
+
+        assertEquals(1, web.getId());
+        assertEquals(2, rest.getId());
+        assertSame(web, registry.getByAddress("10.0.0.1", "user", null));
+        assertSame(rest, registry.getByAddress("10.0.0.1", "user", "client"));
+    }
+
+    @Test
+    public void testDrainDirtyReturnsSnapshots() {
+        Player web = player(3, "user", "10.0.0.1", null);
+        registry.put(web);
+        registry.update(web, p -> {
+            p.setIpAddress("10.0.0.2");
+            return true;
+        });
+
+        List<Player> drained = registry.drainDirty();
+        web.setIpAddress("10.0.0.3");
+
+        assertEquals(1, drained.size());
+        assertNotSame(web, drained.get(0));
+        assertEquals(3, drained.get(0).getId());
+        assertEquals("10.0.0.2", drained.get(0).getIpAddress());
+    }
+
+    @Test
+    public void testGetByAddressFollowsIpChanges() {
+        Player web = player(3, "user", "10.0.0.1", null);
+        when(playerRepository.findAll()).thenReturn(List.of(web));
+
+        assertTrue(registry.update(web, p -> {
+            p.setIpAddress("10.0.0.2");
+            return true;
+        }));
+
+        assertNull(registry.getByAddress("10.0.0.1", "user", null));
+        assertSame(web, registry.getByAddress("10.0.0.2", "user", null));
+        assertEquals(List.of(web), registry.drainDirty());
+        assertTrue(registry.drainDirty().isEmpty());
+    }
+
+    @Test
+    public void testUnchangedPlayerIsNotDirty() {
+        Player web = player(3, "user", "10.0.0.1", null);
+
+        assertFalse(registry.update(web, p -> false));
+
+        assertTrue(registry.drainDirty().isEmpty());
+    }
+
+    @Test
+    public void testMissingPlayerIsReadFromDatabase() {
+        Player player = player(5, "user", "10.0.0.1", null);
+        when(playerRepository.findAll()).thenReturn(new ArrayList<>());
+        when(playerRepository.findById(5)).thenReturn(Optional.of(player));
+
+        assertSame(player, registry.get(5));
+        assertSame(player, registry.get(5));
+
+        verify(playerRepository, times(1)).findById(5);
+    }
+
+    @Test
+    public void testRemove() {
+        Player web = player(3, "user", "10.0.0.1", null);
+        when(playerRepository.findAll()).thenReturn(new ArrayList<>());
+        registry.put(web);
+
+        registry.remove(3);
+
+        assertNull(registry.getByAddress("10.0.0.1", "user", null));
+        assertTrue(registry.getAll(p -> true).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentCreationCreatesOnePlayer() throws Exception {
+        when(playerRepository.findAll()).thenReturn(new ArrayList<>());
+        AtomicInteger created = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Player>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return registry.getOrCreateByAddress("10.0.0.1", "user", null,
+                        () -> player(created.incrementAndGet(), "user", "10.0.0.1", null));
+                }));
+            }
+            start.countDown();
+            Player first = futures.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Player> future : futures) {
+                assertSame(first, future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, created.get());
+    }
+}
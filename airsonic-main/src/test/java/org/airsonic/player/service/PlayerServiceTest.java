@@ -10,12 +10,18 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -32,6 +38,9 @@ public class PlayerServiceTest {
     @Mock
     private AsyncWebSocketClient asyncWebSocketClient;
 
+    @Mock
+    private PlayerRegistry playerRegistry;
+
     @InjectMocks
     private PlayerService playerService;
 
@@ -59,8 +68,53 @@ public class PlayerServiceTest {
         verify(playerRepository, times(2)).save(any(Player.class));
         verify(playerRepository).delete(any(Player.class));
         verify(asyncWebSocketClient).sendToUser(eq("test"), eq("/queue/players/created"), any());
+        verify(playerRegistry).put(actual);
         PlayQueue playQueue = actual.getPlayQueue();
         assertNotNull(playQueue);
     }
 
+    @Test
+    public void testPlayQueueOfPlayerFoundByAddress() throws Exception {
+
+        // given
+        Player player = new Player();
+        player.setId(2);
+        player.setUsername("test");
+        player.setIpAddress("127.0.0.1");
+        when(playerRegistry.getOrCreateByAddress(eq("127.0.0.1"), eq("test"), isNull(), any())).thenReturn(player);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("127.0.0.1");
+
+        // when
+        Player first = playerService.getPlayer(request, null, "test", false, true);
+        PlayQueue playQueue = first.getPlayQueue();
+        first.setPlayQueue(null);
+        Player second = playerService.getPlayer(request, null, "test", false, true);
+
+        // then
+        assertNotNull(playQueue);
+        assertSame(playQueue, second.getPlayQueue());
+    }
+
+    @Test
+    public void testWriteBackPlayers() {
+
+        // given
+        Player player = new Player();
+        player.setId(3);
+        player.setUsername("test");
+        player.setIpAddress("127.0.0.1");
+        player.setType("agent");
+        player.setLastSeen(Instant.ofEpochSecond(1000));
+        when(playerRegistry.drainDirty()).thenReturn(List.of(player));
+
+        // when
+        playerService.writeBackPlayers();
+
+        // then
+        verify(playerRepository).updateSeen(3, "test", "127.0.0.1", "agent", Instant.ofEpochSecond(1000));
+        verify(playerRepository, never()).save(any(Player.class));
+        verify(asyncWebSocketClient).sendToUser(eq("test"), eq("/queue/players/updated"), any());
+    }
+
 }
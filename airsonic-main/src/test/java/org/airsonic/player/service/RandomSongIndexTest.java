@@ -0,0 +1,127 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MediaFile.MediaType;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.airsonic.player.domain.RandomSearchCriteria;
+import org.airsonic.player.repository.MediaFileRepository;
+import org.airsonic.player.repository.StarredMediaFileRepository;
+import org.airsonic.player.service.RandomSongIndex.Sample;
+import org.airsonic.player.service.RandomSongIndex.Songs;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RandomSongIndexTest {
+
+    private static final List<Object[]> ROWS = List.of(
+            new Object[] {1, 1, 1990, "Rock", "mp3"},
+            new Object[] {2, 1, 2005, "Jazz", "flac"},
+            new Object[] {3, 2, 2010, "Rock", "flac"},
+            new Object[] {4, 2, null, null, "mp3"},
+            new Object[] {5, 3, 2000, "Rock", "mp3"});
+
+    private final Songs songs = new Songs(ROWS);
+
+    private static MusicFolder folder(int id) {
+        return new MusicFolder(id, Paths.get("/music" + id), "Music " + id, Type.MEDIA, true, Instant.now());
+    }
+
+    private static List<Integer> drawAll(Sample sample) {
+        List<Integer> result = new ArrayList<>();
+        while (sample.remaining() > 0) {
+            result.addAll(sample.next(2));
+        }
+        return result;
+    }
+
+    private static RandomSearchCriteria starredCriteria(List<MusicFolder> folders, boolean starred, boolean unstarred) {
+        return new RandomSearchCriteria(10, null, null, null, folders, null, null, null, null, null, null,
+                starred, unstarred, null);
+    }
+
+    @Test
+    public void testFolders() {
+        RandomSearchCriteria criteria = new RandomSearchCriteria(10, null, null, null, List.of(folder(1), folder(2)));
+
+        assertThat(drawAll(songs.sample(criteria, null, new Random(1)))).containsExactlyInAnyOrder(1, 2, 3, 4);
+    }
+
+    @Test
+    public void testGenreAndYears() {
+        List<MusicFolder> folders = List.of(folder(1), folder(2), folder(3));
+
+        assertThat(drawAll(songs.sample(new RandomSearchCriteria(10, "Rock", null, null, folders), null, new Random(1))))
+                .containsExactlyInAnyOrder(1, 3, 5);
+        assertThat(drawAll(songs.sample(new RandomSearchCriteria(10, "Rock", 2000, null, folders), null, new Random(1))))
+                .containsExactlyInAnyOrder(3, 5);
+        assertThat(drawAll(songs.sample(new RandomSearchCriteria(10, null, null, 2005, folders), null, new Random(1))))
+                .containsExactlyInAnyOrder(1, 2, 5);
+        assertThat(drawAll(songs.sample(new RandomSearchCriteria(10, "Blues", null, null, folders), null, new Random(1))))
+                .isEmpty();
+    }
+
+    @Test
+    public void testFormat() {
+        RandomSearchCriteria criteria = new RandomSearchCriteria(10, null, null, null, List.of(folder(1), folder(2), folder(3)),
+                null, null, null, null, null, null, true, true, "flac");
+
+        assertThat(drawAll(songs.sample(criteria, null, new Random(1)))).containsExactlyInAnyOrder(2, 3);
+    }
+
+    @Test
+    public void testStarred() {
+        List<MusicFolder> folders = List.of(folder(1), folder(2), folder(3));
+        Set<Integer> starred = Set.of(1, 3);
+
+        assertThat(drawAll(songs.sample(starredCriteria(folders, true, false), starred, new Random(1))))
+                .containsExactlyInAnyOrder(1, 3);
+        assertThat(drawAll(songs.sample(starredCriteria(folders, false, true), starred, new Random(1))))
+                .containsExactlyInAnyOrder(2, 4, 5);
+        assertThat(drawAll(songs.sample(starredCriteria(folders, true, true), starred, new Random(1))))
+                .containsExactlyInAnyOrder(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void testStarredSongsAreReloadedAfterInvalidation() {
+        MediaFileRepository mediaFileRepository = mock(MediaFileRepository.class);
+        StarredMediaFileRepository starredMediaFileRepository = mock(StarredMediaFileRepository.class);
+        when(mediaFileRepository.findRandomSelectionAttributesByMediaType(MediaType.MUSIC)).thenReturn(ROWS);
+        when(starredMediaFileRepository.findMediaFileIdsByUsername("user")).thenReturn(List.of(1, 3), List.of(2));
+        RandomSongIndex index = new RandomSongIndex(mediaFileRepository, starredMediaFileRepository);
+        RandomSearchCriteria criteria = starredCriteria(List.of(folder(1), folder(2), folder(3)), true, false);
+
+        assertThat(drawAll(index.sample(criteria, "user"))).containsExactlyInAnyOrder(1, 3);
+        assertThat(drawAll(index.sample(criteria, "user"))).containsExactlyInAnyOrder(1, 3);
+        index.invalidateStarred("user");
+        assertThat(drawAll(index.sample(criteria, "user"))).containsExactly(2);
+        assertThat(drawAll(index.sample(criteria, null))).isEmpty();
+
+        verify(starredMediaFileRepository, times(2)).findMediaFileIdsByUsername("user");
+    }
+
+    @Test
+    public void testDrawWithoutReplacement() {
+        RandomSearchCriteria criteria = new RandomSearchCriteria(10, null, null, null, List.of(folder(1), folder(2), folder(3)));
+        Sample sample = songs.sample(criteria, null, new Random(1));
+
+        List<Integer> first = sample.next(3);
+        assertThat(first).hasSize(3);
+        assertThat(sample.remaining()).isEqualTo(2);
+        List<Integer> rest = sample.next(10);
+        assertThat(rest).hasSize(2).doesNotContainAnyElementsOf(first);
+        assertThat(sample.remaining()).isZero();
+        assertThat(sample.next(1)).isEmpty();
+    }
+}
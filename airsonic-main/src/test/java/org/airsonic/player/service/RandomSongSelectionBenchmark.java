@@ -0,0 +1,164 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.RandomSearchCriteria;
+import org.airsonic.player.service.RandomSongIndex.Sample;
+import org.airsonic.player.service.RandomSongIndex.Songs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares drawing random songs by sorting the media table by a random value, as done before {@link RandomSongIndex},
+ * with drawing candidates from the index and fetching them by ID, on a synthetic in-memory HSQLDB table. Run with
+ * {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomSongSelectionBenchmark {
+
+    private static final String[] GENRES = {"Rock", "Jazz", "Pop", "Classical", "Electronic", "Folk", "Metal", "Blues"};
+
+    private static final String COLUMNS = "id, path, title, artist, folder_id, year, genre, format, play_count";
+
+    private static final String CONDITIONS = "present = true AND media_type = 'MUSIC' AND genre = ?";
+
+    @Param({"500000"})
+    private int songCount;
+
+    @Param({"20"})
+    private int count;
+
+    private final Random random = new Random(42);
+
+    private Connection connection;
+
+    private Songs songs;
+
+    private RandomSearchCriteria criteria;
+
+    @Setup
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:hsqldb:mem:randomsongs", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE media_file (id INT PRIMARY KEY, path VARCHAR(500), title VARCHAR(500), "
+                    + "artist VARCHAR(500), folder_id INT, year INT, genre VARCHAR(100), format VARCHAR(20), "
+                    + "play_count INT, present BOOLEAN, media_type VARCHAR(20))");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO media_file VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < songCount; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "Artist " + i % 5000 + "/Album " + i % 40000 + "/" + i + " - Song.flac");
+                insert.setString(3, "Song " + i);
+                insert.setString(4, "Artist " + i % 5000);
+                insert.setInt(5, i % 4);
+                insert.setInt(6, 1960 + i % 60);
+                insert.setString(7, GENRES[i % GENRES.length]);
+                insert.setString(8, i % 3 == 0 ? "mp3" : "flac");
+                insert.setInt(9, i % 50);
+                insert.setBoolean(10, i % 100 != 0);
+                insert.setString(11, "MUSIC");
+                insert.addBatch();
+                if (i % 10000 == 9999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+
+        List<Object[]> rows = new ArrayList<>(songCount);
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT id, folder_id, year, genre, format FROM media_file "
+                        + "WHERE present = true AND media_type = 'MUSIC'")) {
+            while (rs.next()) {
+                rows.add(new Object[] {rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getString(4), rs.getString(5)});
+            }
+        }
+        songs = new Songs(rows);
+        List<MusicFolder> folders = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            folders.add(new MusicFolder(i, Paths.get("/music" + i), "Music " + i, MusicFolder.Type.MEDIA, true, Instant.now()));
+        }
+        criteria = new RandomSearchCriteria(count, "Jazz", null, null, folders);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public List<Integer> orderByRand() throws Exception {
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM media_file WHERE " + CONDITIONS + " ORDER BY RAND() LIMIT ?")) {
+            query.setString(1, criteria.getGenre());
+            query.setInt(2, count);
+            return readIds(query);
+        }
+    }
+
+    @Benchmark
+    public List<Integer> indexSample() throws Exception {
+        Sample sample = songs.sample(criteria, null, random);
+        List<Integer> ids = sample.next(count);
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM media_file WHERE " + CONDITIONS + " AND id IN (" + placeholders + ")")) {
+            query.setString(1, criteria.getGenre());
+            for (int i = 0; i < ids.size(); i++) {
+                query.setInt(i + 2, ids.get(i));
+            }
+            List<Integer> found = readIds(query);
+            return ids.stream().filter(found::contains).collect(Collectors.toList());
+        }
+    }
+
+    private static List<Integer> readIds(PreparedStatement query) throws Exception {
+        List<Integer> result = new ArrayList<>();
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                result.add(rs.getInt(1));
+            }
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(RandomSongSelectionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,123 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.Album;
+import org.airsonic.player.domain.Artist;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MusicFolder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ScanWriteBufferTest {
+
+    @Mock
+    private MediaFileService mediaFileService;
+    @Mock
+    private AlbumService albumService;
+    @Mock
+    private ArtistService artistService;
+    @Captor
+    private ArgumentCaptor<Collection<Integer>> idsCaptor;
+    @Captor
+    private ArgumentCaptor<Collection<MediaFile>> mediaFilesCaptor;
+
+    private final Instant scanDate = Instant.now();
+    private MusicFolder musicFolder;
+
+    @BeforeEach
+    public void setUp() {
+        musicFolder = new MusicFolder(1, Paths.get("/music"), "Music", MusicFolder.Type.MEDIA, true, Instant.now());
+    }
+
+    @Test
+    public void markPresentIsWrittenOnceBatchIsFull() {
+        when(mediaFileService.markPresent(any(), eq(scanDate))).thenReturn(true);
+        ScanWriteBuffer buffer = new ScanWriteBuffer(mediaFileService, albumService, artistService, scanDate, 3, Duration.ofHours(1));
+
+        MediaFile first = createMediaFile(1, "a/1.mp3");
+        buffer.markPresent(first);
+        buffer.markPresent(createMediaFile(2, "a/2.mp3"));
+        verify(mediaFileService, never()).markPresent(any(), any());
+        assertEquals(scanDate, first.getLastScanned());
+        assertTrue(first.isPresent());
+
+        buffer.markPresent(createMediaFile(3, "a/3.mp3"));
+        verify(mediaFileService).markPresent(idsCaptor.capture(), eq(scanDate));
+        assertEquals(Set.of(1, 2, 3), Set.copyOf(idsCaptor.getValue()));
+    }
+
+    @Test
+    public void flushWritesAllPendingUpdates() {
+        ScanWriteBuffer buffer = new ScanWriteBuffer(mediaFileService, albumService, artistService, scanDate, 100, Duration.ofHours(1));
+        MediaFile mediaFile = createMediaFile(1, "a/1.mp3");
+        Album album = new Album();
+        Artist artist = new Artist("artist");
+
+        buffer.update(mediaFile);
+        buffer.update(mediaFile);
+        buffer.update(album);
+        buffer.update(artist);
+        verifyNoInteractions(mediaFileService, albumService, artistService);
+
+        buffer.flush();
+        verify(mediaFileService).updateMediaFiles(mediaFilesCaptor.capture());
+        assertEquals(List.of(mediaFile), List.copyOf(mediaFilesCaptor.getValue()));
+        verify(albumService).saveAll(List.of(album));
+        verify(artistService).saveAll(List.of(artist));
+        verify(mediaFileService, never()).markPresent(any(), any());
+
+        buffer.flush();
+        verify(mediaFileService).updateMediaFiles(any());
+    }
+
+    @Test
+    public void unpersistedMediaFileIsSavedRightAway() {
+        ScanWriteBuffer buffer = new ScanWriteBuffer(mediaFileService, albumService, artistService, scanDate, 100, Duration.ofHours(1));
+        MediaFile mediaFile = createMediaFile(null, "a/1.mp3");
+
+        buffer.update(mediaFile);
+
+        verify(mediaFileService).updateMediaFile(mediaFile);
+        buffer.flush();
+        verify(mediaFileService, never()).updateMediaFiles(any());
+    }
+
+    @Test
+    public void pendingUpdatesAreWrittenOnceFlushIntervalElapsed() {
+        ScanWriteBuffer buffer = new ScanWriteBuffer(mediaFileService, albumService, artistService, scanDate, 100, Duration.ZERO);
+        Album album = new Album();
+
+        buffer.update(album);
+
+        verify(albumService).saveAll(List.of(album));
+    }
+
+    private MediaFile createMediaFile(Integer id, String path) {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(id);
+        mediaFile.setPath(path);
+        mediaFile.setFolder(musicFolder);
+        return mediaFile;
+    }
+}
@@ -0,0 +1,64 @@
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MediaFile.MediaType;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.repository.MediaFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SongTitleIndexTest {
+
+    @Mock
+    private MediaFileRepository mediaFileRepository;
+
+    private final MusicFolder folder1 = new MusicFolder(1, Paths.get("/music1"), "Music1", MusicFolder.Type.MEDIA, true, Instant.now());
+
+    private final MusicFolder folder2 = new MusicFolder(2, Paths.get("/music2"), "Music2", MusicFolder.Type.MEDIA, true, Instant.now());
+
+    private SongTitleIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        when(mediaFileRepository.findArtistsAndTitlesByMediaType(MediaType.MUSIC)).thenReturn(Arrays.asList(
+                new Object[] {10, 1, "The Artist", "First Song"},
+                new Object[] {11, 1, "The Artist", "Second  Song "},
+                new Object[] {12, 2, "the artist", "first song"},
+                new Object[] {13, 2, "Other Artist", "Third Song"},
+                new Object[] {14, 1, "Other Artist", null}));
+        index = new SongTitleIndex(mediaFileRepository);
+    }
+
+    @Test
+    public void testSongsAreResolvedByNormalizedArtistAndTitle() {
+        List<MusicFolder> folders = Arrays.asList(folder1, folder2);
+
+        assertThat(index.getSongIds(" THE ARTIST", Arrays.asList("second song", "Missing", "First Song"), folders))
+                .containsExactly(11, 10);
+        assertThat(index.getSongIds("The Artist", Arrays.asList("First Song"), Arrays.asList(folder2)))
+                .containsExactly(12);
+        assertThat(index.getSongIds("Unknown", Arrays.asList("First Song"), folders)).isEmpty();
+        verify(mediaFileRepository, times(1)).findArtistsAndTitlesByMediaType(MediaType.MUSIC);
+    }
+
+    @Test
+    public void testSongsAreResolvedByArtists() {
+        assertThat(index.getSongIds(Arrays.asList("the artist", "Other artist"), Arrays.asList(folder1)))
+                .containsExactlyInAnyOrder(10, 11, 14);
+        assertThat(index.getSongIds(Arrays.asList("The Artist", "the artist"), Arrays.asList(folder1, folder2)))
+                .containsExactlyInAnyOrder(10, 11, 12);
+    }
+}
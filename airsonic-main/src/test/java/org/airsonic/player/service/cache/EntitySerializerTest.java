@@ -0,0 +1,67 @@
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.domain.CoverArt;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MusicFolder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EntitySerializerTest {
+
+    private final MusicFolder folder = new MusicFolder(3, Paths.get("/music"), "Music", MusicFolder.Type.MEDIA, true,
+            Instant.ofEpochSecond(1700000000L, 123));
+
+    @Test
+    public void testMediaFileRoundTrip() throws Exception {
+        MediaFile file = new MediaFile();
+        file.setId(42);
+        file.setPath("Artist/Album/01 - Café.flac");
+        file.setFolder(folder);
+        file.setMediaType(MediaFile.MediaType.MUSIC);
+        file.setFormat("flac");
+        file.setTitle("Café");
+        file.setArtist("Artist");
+        file.setTrackNumber(1);
+        file.setDuration(215.5);
+        file.setFileSize(31415926L);
+        file.setVariableBitRate(true);
+        file.setPlayCount(7);
+        file.setChanged(Instant.ofEpochSecond(1710000000L));
+        file.setPresent(true);
+        file.setVersion(3);
+        file.setStarredDate(Instant.now());
+        MediaFileSerializer serializer = new MediaFileSerializer();
+
+        ByteBuffer binary = serializer.serialize(file);
+        MediaFile read = serializer.read(binary);
+
+        assertThat(read).usingRecursiveComparison().ignoringFields("starredDate", "art").isEqualTo(file);
+        assertThat(read.getStarredDate()).isNull();
+        assertThat(read.getFolder().getPath()).isEqualTo(Paths.get("/music"));
+        assertThat(serializer.equals(file, binary)).isTrue();
+        assertThat(binary.remaining()).isEqualTo(binary.capacity());
+    }
+
+    @Test
+    public void testCoverArtRoundTrip() throws Exception {
+        CoverArt art = new CoverArt(42, CoverArt.EntityType.ALBUM, "Artist/Album/cover.jpg", folder, true,
+                Instant.ofEpochSecond(1700000000L), Instant.ofEpochSecond(1710000000L));
+        CoverArtSerializer serializer = new CoverArtSerializer();
+
+        CoverArt read = serializer.read(serializer.serialize(art));
+
+        assertThat(read).usingRecursiveComparison().isEqualTo(art);
+    }
+
+    @Test
+    public void testNullArtRoundTrip() throws Exception {
+        CoverArtSerializer serializer = new CoverArtSerializer();
+
+        assertThat(serializer.read(serializer.serialize(CoverArt.NULL_ART))).isEqualTo(CoverArt.NULL_ART);
+    }
+}
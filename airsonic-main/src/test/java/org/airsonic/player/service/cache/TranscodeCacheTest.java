@@ -0,0 +1,173 @@
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicTranscodeConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TranscodeCacheTest {
+
+    @Mock
+    private AirsonicHomeConfig homeConfig;
+
+    @Mock
+    private AirsonicTranscodeConfig transcodeConfig;
+
+    @TempDir
+    private Path home;
+
+    private TranscodeCache cache;
+
+    private final TranscodeCache.Key key = new TranscodeCache.Key(1, Instant.ofEpochMilli(1000), "3", "commands", 128);
+
+    @BeforeEach
+    public void setUp() {
+        when(homeConfig.getAirsonicHome()).thenReturn(home);
+        when(transcodeConfig.getCacheSize()).thenReturn(1L);
+        cache = new TranscodeCache(homeConfig, transcodeConfig);
+    }
+
+    @Test
+    public void concurrentReadersShareOneTranscoder() throws Exception {
+        PipedOutputStream transcoder = new PipedOutputStream();
+        PipedInputStream output = new PipedInputStream(transcoder);
+        AtomicInteger started = new AtomicInteger();
+
+        InputStream first = cache.getInputStream(key, () -> {
+            started.incrementAndGet();
+            return output;
+        });
+        InputStream second = cache.getInputStream(key, () -> {
+            started.incrementAndGet();
+            return output;
+        });
+        CompletableFuture<byte[]> firstRead = CompletableFuture.supplyAsync(() -> readFully(first));
+        CompletableFuture<byte[]> secondRead = CompletableFuture.supplyAsync(() -> readFully(second));
+
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        transcoder.write(data);
+        transcoder.close();
+
+        assertArrayEquals(data, firstRead.get(30, TimeUnit.SECONDS));
+        assertArrayEquals(data, secondRead.get(30, TimeUnit.SECONDS));
+        assertEquals(1, started.get());
+        assertEquals(Long.valueOf(data.length), cache.getCompletedLength(key));
+
+        try (InputStream third = cache.getInputStream(key, () -> {
+            started.incrementAndGet();
+            return new ByteArrayInputStream(new byte[0]);
+        })) {
+            assertEquals(10, third.skip(10));
+            assertEquals(10, third.read());
+        }
+        assertEquals(1, started.get());
+    }
+
+    @Test
+    public void transcoderIsStoppedWhenLastReaderCloses() throws Exception {
+        AtomicBoolean stopped = new AtomicBoolean();
+        PipedOutputStream transcoder = new PipedOutputStream();
+        InputStream output = new PipedInputStream(transcoder) {
+            @Override
+            public void close() throws IOException {
+                stopped.set(true);
+                super.close();
+            }
+        };
+
+        InputStream in = cache.getInputStream(key, () -> output);
+        transcoder.write(new byte[] { 1, 2, 3 });
+        assertEquals(1, in.read());
+        in.close();
+
+        assertTrue(stopped.get());
+        assertNull(cache.getCompletedLength(key));
+    }
+
+    @Test
+    public void failedTranscodeIsReportedToReaders() throws Exception {
+        InputStream output = new InputStream() {
+            private int remaining = 3;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining-- > 0) {
+                    return 1;
+                }
+                throw new IOException("Transcoder crashed");
+            }
+        };
+
+        try (InputStream in = cache.getInputStream(key, () -> output)) {
+            assertThrows(IOException.class, in::readAllBytes);
+        }
+        assertNull(cache.getCompletedLength(key));
+    }
+
+    @Test
+    public void leastRecentlyUsedOutputIsEvicted() throws Exception {
+        TranscodeCache.Key other = new TranscodeCache.Key(2, Instant.ofEpochMilli(1000), "3", "commands", 128);
+        try (InputStream in = cache.getInputStream(key, () -> new ByteArrayInputStream(new byte[600 * 1024]))) {
+            readFully(in);
+        }
+        try (InputStream in = cache.getInputStream(other, () -> new ByteArrayInputStream(new byte[600 * 1024]))) {
+            readFully(in);
+        }
+
+        assertNull(cache.getCompletedLength(key));
+        assertEquals(Long.valueOf(600 * 1024), cache.getCompletedLength(other));
+    }
+
+    @Test
+    public void outputInProgressCountsTowardSize() throws Exception {
+        TranscodeCache.Key other = new TranscodeCache.Key(2, Instant.ofEpochMilli(1000), "3", "commands", 128);
+        try (InputStream in = cache.getInputStream(key, () -> new ByteArrayInputStream(new byte[600 * 1024]))) {
+            readFully(in);
+        }
+        PipedOutputStream transcoder = new PipedOutputStream();
+        PipedInputStream output = new PipedInputStream(transcoder, 8192);
+
+        try (InputStream in = cache.getInputStream(other, () -> output)) {
+            // returns once the copy passed the size of the cache
+            transcoder.write(new byte[600 * 1024 + 8192 + 1]);
+
+            assertNull(cache.getCompletedLength(key));
+            assertNull(cache.getCompletedLength(other));
+        }
+    }
+
+    private static byte[] readFully(InputStream in) {
+        try {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
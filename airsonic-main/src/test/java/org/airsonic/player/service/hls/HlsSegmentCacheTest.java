@@ -0,0 +1,142 @@
+package org.airsonic.player.service.hls;
+
+import org.airsonic.player.config.AirsonicHlsConfig;
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class HlsSegmentCacheTest {
+
+    @Mock
+    private AirsonicHomeConfig homeConfig;
+
+    @Mock
+    private AirsonicHlsConfig hlsConfig;
+
+    @TempDir
+    private Path home;
+
+    private HlsSegmentCache cache;
+
+    private static final Instant CHANGED = Instant.ofEpochMilli(1000);
+
+    private final HlsSession.Key key = new HlsSession.Key(1, CHANGED, "player", 1000, "640x480", 10, null);
+
+    @BeforeEach
+    public void setUp() {
+        when(homeConfig.getAirsonicHome()).thenReturn(home);
+        when(hlsConfig.getCacheSize()).thenReturn(1);
+        when(hlsConfig.getCacheMegabytes()).thenReturn(1L);
+        cache = new HlsSegmentCache(homeConfig, hlsConfig);
+    }
+
+    @Test
+    public void segmentsAreSharedByPlayers() throws IOException {
+        cache.putSegment(key.getRendition(), 0, createSegment("0.ts"));
+        cache.putSegment(key.getRendition(), 1, createSegment("1.ts"));
+
+        HlsSession.Key otherPlayer = new HlsSession.Key(1, CHANGED, "other", 1000, "640x480", 10, null);
+        Path segment = cache.getSegment(otherPlayer.getRendition(), 1);
+        assertNotNull(segment);
+        assertTrue(Files.exists(segment));
+        assertNull(cache.getSegment(key.getRendition(), 2));
+        assertEquals(2, cache.getFirstMissingSegment(key.getRendition(), 0));
+        assertEquals(5, cache.getFirstMissingSegment(key.getRendition(), 5));
+    }
+
+    @Test
+    public void leastRecentlyUsedRenditionIsEvicted() throws IOException {
+        cache.putSegment(key.getRendition(), 0, createSegment("0.ts"));
+        Path segment = cache.getSegment(key.getRendition(), 0);
+
+        HlsSession.Key otherRendition = new HlsSession.Key(1, CHANGED, "player", 2000, "640x480", 10, null);
+        cache.putSegment(otherRendition.getRendition(), 0, createSegment("0.ts"));
+
+        assertFalse(Files.exists(segment));
+        assertNull(cache.getSegment(key.getRendition(), 0));
+        assertNotNull(cache.getSegment(otherRendition.getRendition(), 0));
+    }
+
+    @Test
+    public void pinnedRenditionIsKeptUntilUnpinned() throws IOException {
+        cache.pin(key.getRendition());
+        cache.putSegment(key.getRendition(), 0, createSegment("0.ts"));
+        Path segment = cache.getSegment(key.getRendition(), 0);
+
+        HlsSession.Key otherRendition = new HlsSession.Key(1, CHANGED, "player", 2000, "640x480", 10, null);
+        cache.putSegment(otherRendition.getRendition(), 0, createSegment("0.ts"));
+        assertTrue(Files.exists(segment));
+        assertNotNull(cache.getSegment(key.getRendition(), 0));
+
+        cache.unpin(key.getRendition());
+        assertFalse(Files.exists(segment));
+        assertNull(cache.getSegment(key.getRendition(), 0));
+        assertNotNull(cache.getSegment(otherRendition.getRendition(), 0));
+    }
+
+    @Test
+    public void renditionsAreEvictedBeyondCacheBytes() throws IOException {
+        when(hlsConfig.getCacheSize()).thenReturn(10);
+        cache = new HlsSegmentCache(homeConfig, hlsConfig);
+        cache.putSegment(key.getRendition(), 0, createSegment("0.ts", 600_000));
+        Path segment = cache.getSegment(key.getRendition(), 0);
+
+        HlsSession.Key otherRendition = new HlsSession.Key(1, CHANGED, "player", 2000, "640x480", 10, null);
+        cache.putSegment(otherRendition.getRendition(), 0, createSegment("0.ts", 600_000));
+
+        assertFalse(Files.exists(segment));
+        assertNotNull(cache.getSegment(otherRendition.getRendition(), 0));
+    }
+
+    @Test
+    public void keyIdsDependOnEveryField() {
+        assertEquals(key.id(), new HlsSession.Key(1, CHANGED, "player", 1000, "640x480", 10, null).id());
+        assertNotEquals(key.id(), key.getRendition().id());
+        assertNotEquals(key.id(), new HlsSession.Key(1, CHANGED, "player", 1000, "640x480", 10, 2).id());
+        assertNotEquals(key.id(), new HlsSession.Key(1, CHANGED, "player", 1000, "640x360", 10, null).id());
+        assertNotEquals(key.id(), new HlsSession.Key(1, CHANGED.plusSeconds(1), "player", 1000, "640x480", 10, null).id());
+    }
+
+    @Test
+    public void waitingRequestIsWokenUpByCompletedSegment() throws Exception {
+        CompletableFuture<Path> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.awaitSegment(key.getRendition(), 3, 30000L);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        cache.putSegment(key.getRendition(), 3, createSegment("3.ts"));
+
+        assertEquals(cache.getSegment(key.getRendition(), 3), waiting.get());
+        assertNull(cache.awaitSegment(key.getRendition(), 4, 10L));
+    }
+
+    private Path createSegment(String name) throws IOException {
+        return createSegment(name, 3);
+    }
+
+    private Path createSegment(String name, int size) throws IOException {
+        Path dir = Files.createDirectories(home.resolve("transcode"));
+        return Files.write(dir.resolve(name), new byte[size]);
+    }
+}
@@ -0,0 +1,94 @@
+package org.airsonic.player.service.metadata;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicScanConfig;
+import org.airsonic.player.service.MediaFolderService;
+import org.airsonic.player.service.SettingsService;
+import org.apache.commons.io.FileUtils;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures how many files per second {@link FFmpegParser} reads the metadata of, with and without the ffprobe cache.
+ * The files are those of the directory given by the {@code ffprobe.benchmark.dir} system property, and ffprobe must
+ * be on the path. Run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class FFmpegParserBenchmark {
+
+    @Param({"false", "true"})
+    private boolean cache;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private List<Path> files;
+
+    private Path home;
+
+    private FFmpegParser parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        String dir = System.getProperty("ffprobe.benchmark.dir");
+        if (dir == null) {
+            throw new IllegalStateException("Set ffprobe.benchmark.dir to a directory of media files");
+        }
+        try (Stream<Path> paths = Files.walk(Paths.get(dir))) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        home = Files.createTempDirectory("ffprobe-benchmark");
+        SettingsService settingsService = Mockito.mock(SettingsService.class);
+        Mockito.when(settingsService.resolveTranscodeExecutable("ffprobe", "ffprobe")).thenReturn("ffprobe");
+        AirsonicScanConfig scanConfig = new AirsonicScanConfig();
+        scanConfig.setProbeCache(cache);
+        parser = new FFmpegParser(Mockito.mock(MediaFolderService.class), settingsService,
+                new AirsonicHomeConfig(home.toString(), null), scanConfig);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(home.toFile());
+    }
+
+    @Benchmark
+    public MetaData probe() {
+        return parser.getRawMetaData(files.get(Math.floorMod(next.getAndIncrement(), files.size())));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(FFmpegParserBenchmark.class.getSimpleName())
+                .jvmArgsAppend("-Dffprobe.benchmark.dir=" + System.getProperty("ffprobe.benchmark.dir"))
+                .build()).run();
+    }
+}
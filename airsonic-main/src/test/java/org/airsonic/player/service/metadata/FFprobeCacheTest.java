@@ -0,0 +1,91 @@
+package org.airsonic.player.service.metadata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.airsonic.player.util.Util;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FFprobeCacheTest {
+
+    private static final String PROBE = "{\"format\":{\"duration\":\"12.5\",\"bit_rate\":\"256000\",\"tags\":{\"TITLE\":\"Clip\"}},"
+            + "\"streams\":[{\"index\":0,\"codec_type\":\"video\",\"codec_name\":\"h264\",\"width\":640,\"height\":360}]}";
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void testCachedOutputIsReturnedUntilFileChanges() throws IOException {
+        Path video = Files.write(dir.resolve("clip.mp4"), new byte[100]);
+        Files.setLastModifiedTime(video, FileTime.from(Instant.ofEpochSecond(1700000000L)));
+        FFprobeCache cache = new FFprobeCache(dir.resolve("cache"));
+        JsonNode probe = Util.getObjectMapper().readTree(PROBE);
+
+        assertThat(cache.get(video, attributes(video))).isNull();
+
+        cache.put(video, attributes(video), probe);
+        assertThat(new FFprobeCache(dir.resolve("cache")).get(video, attributes(video))).isEqualTo(probe);
+
+        Files.setLastModifiedTime(video, FileTime.from(Instant.ofEpochSecond(1700000001L)));
+        assertThat(cache.get(video, attributes(video))).isNull();
+
+        cache.put(video, attributes(video), probe);
+        Files.write(video, new byte[200]);
+        Files.setLastModifiedTime(video, FileTime.from(Instant.ofEpochSecond(1700000001L)));
+        assertThat(cache.get(video, attributes(video))).isNull();
+    }
+
+    @Test
+    public void testPruneRemovesEntriesNotUsedSince() throws IOException {
+        Path kept = Files.write(dir.resolve("kept.mp4"), new byte[100]);
+        Path gone = Files.write(dir.resolve("gone.mp4"), new byte[100]);
+        Path cacheDir = dir.resolve("cache");
+        FFprobeCache cache = new FFprobeCache(cacheDir);
+        JsonNode probe = Util.getObjectMapper().readTree(PROBE);
+        cache.put(kept, attributes(kept), probe);
+        cache.put(gone, attributes(gone), probe);
+        // both entries were written before the scan
+        FileTime before = FileTime.from(Instant.now().minusSeconds(3600));
+        try (Stream<Path> entries = Files.walk(cacheDir)) {
+            for (Path entry : entries.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                Files.setLastModifiedTime(entry, before);
+            }
+        }
+        Instant scanStart = Instant.now().minusSeconds(60);
+
+        assertThat(cache.get(kept, attributes(kept))).isEqualTo(probe);
+        assertThat(cache.prune(scanStart)).isEqualTo(1);
+
+        assertThat(cache.get(kept, attributes(kept))).isEqualTo(probe);
+        assertThat(cache.get(gone, attributes(gone))).isNull();
+        assertThat(new FFprobeCache(dir.resolve("missing")).prune(scanStart)).isZero();
+    }
+
+    @Test
+    public void testCachedOutputIsParsed() throws IOException {
+        MetaData metaData = new MetaData();
+
+        FFmpegParser.parse(Util.getObjectMapper().readTree(PROBE), metaData);
+
+        assertThat(metaData.getDuration()).isEqualTo(12.5);
+        assertThat(metaData.getBitRate()).isEqualTo(256);
+        assertThat(metaData.getTitle()).isEqualTo("Clip");
+        assertThat(metaData.getWidth()).isEqualTo(640);
+        assertThat(metaData.getHeight()).isEqualTo(360);
+        assertThat(metaData.getVideoTracks()).hasSize(1);
+    }
+
+    private static BasicFileAttributes attributes(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+}
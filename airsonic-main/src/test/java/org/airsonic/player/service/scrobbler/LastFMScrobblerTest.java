@@ -0,0 +1,114 @@
+package org.airsonic.player.service.scrobbler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.Scrobble;
+import org.airsonic.player.domain.UserCredential.App;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LastFMScrobblerTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final LastFMScrobbler scrobbler = new LastFMScrobbler();
+    private final Map<String, String> submitted = new ConcurrentHashMap<>();
+    private volatile String handshakeResponse;
+    private volatile String submissionResponse = "OK";
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+        handshakeResponse = "OK\nsession\n" + baseUrl + "/np\n" + baseUrl + "/submit\n";
+        server.createContext("/handshake", exchange -> respond(exchange, handshakeResponse));
+        server.createContext("/submit", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            for (String param : body.split("&")) {
+                String[] pair = param.split("=", 2);
+                submitted.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair[1], StandardCharsets.UTF_8));
+            }
+            respond(exchange, submissionResponse);
+        });
+        server.start();
+        scrobbler.setHandshakeUri(URI.create(baseUrl + "/handshake"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, String response) throws IOException {
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static List<Scrobble> createScrobbles(int count) {
+        List<Scrobble> scrobbles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MediaFile mediaFile = new MediaFile();
+            mediaFile.setArtist("artist");
+            mediaFile.setTitle("title " + i);
+            mediaFile.setDuration(180.0);
+            scrobbles.add(new Scrobble("user", App.LASTFM, mediaFile, true, Instant.ofEpochSecond(1000 + i)));
+        }
+        return scrobbles;
+    }
+
+    @Test
+    public void testSubmitBatch() {
+        assertEquals(ScrobbleResult.SUCCESS, scrobbler.submit("user", "password", createScrobbles(3)));
+
+        assertEquals("session", submitted.get("s"));
+        assertEquals("title 0", submitted.get("t[0]"));
+        assertEquals("title 2", submitted.get("t[2]"));
+        assertEquals("1002", submitted.get("i[2]"));
+        assertEquals("180", submitted.get("l[1]"));
+        assertNull(submitted.get("t[3]"));
+    }
+
+    @Test
+    public void testBadAuthIsRejected() {
+        handshakeResponse = "BADAUTH\n";
+
+        assertEquals(ScrobbleResult.REJECTED, scrobbler.submit("user", "password", createScrobbles(1)));
+        assertNull(submitted.get("s"));
+    }
+
+    @Test
+    public void testFailureIsRetried() {
+        submissionResponse = "FAILED Plugins bug\n";
+
+        assertEquals(ScrobbleResult.RETRY, scrobbler.submit("user", "password", createScrobbles(1)));
+    }
+
+    @Test
+    public void testNetworkErrorIsRetried() {
+        server.stop(0);
+
+        assertEquals(ScrobbleResult.RETRY, scrobbler.submit("user", "password", createScrobbles(1)));
+    }
+}
@@ -0,0 +1,92 @@
+package org.airsonic.player.service.scrobbler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.Scrobble;
+import org.airsonic.player.domain.UserCredential.App;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ListenBrainzScrobblerTest {
+
+    private HttpServer server;
+    private String url;
+    private final ListenBrainzScrobbler scrobbler = new ListenBrainzScrobbler();
+    private volatile int status = 200;
+    private volatile String authorization;
+    private volatile JsonNode submitted;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        url = "http://localhost:" + server.getAddress().getPort() + "/1/submit-listens";
+        server.createContext("/1/submit-listens", exchange -> {
+            authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            submitted = new ObjectMapper().readTree(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static List<Scrobble> createScrobbles(int count) {
+        List<Scrobble> scrobbles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MediaFile mediaFile = new MediaFile();
+            mediaFile.setArtist("artist");
+            mediaFile.setTitle("title " + i);
+            scrobbles.add(new Scrobble("user", App.LISTENBRAINZ, mediaFile, true, Instant.ofEpochSecond(1000 + i)));
+        }
+        return scrobbles;
+    }
+
+    @Test
+    public void testSubmitBatchAsImport() {
+        assertEquals(ScrobbleResult.SUCCESS, scrobbler.submit(url, "token", createScrobbles(3)));
+
+        assertEquals("token token", authorization);
+        assertEquals("import", submitted.get("listen_type").asText());
+        assertEquals(3, submitted.get("payload").size());
+        assertEquals(1002, submitted.get("payload").get(2).get("listened_at").asLong());
+        assertEquals("title 2", submitted.get("payload").get(2).get("track_metadata").get("track_name").asText());
+    }
+
+    @Test
+    public void testSubmitSingle() {
+        assertEquals(ScrobbleResult.SUCCESS, scrobbler.submit(url, "token", createScrobbles(1)));
+
+        assertEquals("single", submitted.get("listen_type").asText());
+    }
+
+    @Test
+    public void testServerErrorIsRetried() {
+        status = 503;
+
+        assertEquals(ScrobbleResult.RETRY, scrobbler.submit(url, "token", createScrobbles(2)));
+    }
+
+    @Test
+    public void testBadTokenIsRejected() {
+        status = 401;
+
+        assertEquals(ScrobbleResult.REJECTED, scrobbler.submit(url, "token", createScrobbles(2)));
+    }
+}
@@ -26,6 +26,7 @@ import org.airsonic.player.domain.Album;
 import org.airsonic.player.domain.Artist;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.MediaFile.MediaType;
+import org.airsonic.player.domain.MediaLibraryStatistics;
 import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.domain.MusicFolder.Type;
 import org.airsonic.player.domain.SearchCriteria;
@@ -38,6 +39,8 @@ import org.airsonic.player.service.MediaFolderService;
 import org.airsonic.player.service.MediaScannerService;
 import org.airsonic.player.service.SearchService;
 import org.airsonic.player.util.MusicFolderTestData;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -50,14 +53,22 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.data.domain.Sort;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
@@ -242,6 +253,92 @@ public class IndexManagerTestCase {
 
     }
 
+    @Test
+    public void testRebuildFromDatabase() {
+
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.setOffset(0);
+        criteria.setCount(Integer.MAX_VALUE);
+        criteria.setQuery("_DIR_ Ravel");
+
+        SearchCriteria criteriaSong = new SearchCriteria();
+        criteriaSong.setOffset(0);
+        criteriaSong.setCount(Integer.MAX_VALUE);
+        criteriaSong.setQuery("Gaspard");
+
+        MediaLibraryStatistics statistics = indexManager.getStatistics();
+
+        /* Does not scan, only indexes the database again. */
+        assertTrue(indexManager.startRebuilding());
+        indexManager.reindexFromDatabase(ForkJoinPool.commonPool());
+        indexManager.stopIndexing(statistics);
+
+        SearchResult result = searchService.search(criteria, musicFolders, IndexType.ARTIST);
+        assertEquals(2, result.getMediaFiles().size());
+
+        result = searchService.search(criteria, musicFolders, IndexType.ALBUM);
+        assertEquals(2, result.getMediaFiles().size());
+
+        result = searchService.search(criteriaSong, musicFolders, IndexType.SONG);
+        assertEquals(2, result.getMediaFiles().size());
+
+        result = searchService.search(criteria, musicFolders, IndexType.ARTIST_ID3);
+        assertEquals(1, result.getArtists().size());
+
+        assertEquals(statistics, indexManager.getStatistics());
+    }
+
+    @Test
+    public void testFailedRebuildKeepsPreviousIndex() {
+
+        SearchCriteria criteriaSong = new SearchCriteria();
+        criteriaSong.setOffset(0);
+        criteriaSong.setCount(Integer.MAX_VALUE);
+        criteriaSong.setQuery("Gaspard");
+
+        MediaLibraryStatistics statistics = indexManager.getStatistics();
+        ForkJoinPool pool = new ForkJoinPool(1);
+        pool.shutdown();
+
+        /* The documents are discarded when rebuilding starts, and the rebuild fails before indexing any. */
+        assertTrue(indexManager.startRebuilding());
+        assertThrows(RejectedExecutionException.class, () -> indexManager.reindexFromDatabase(pool));
+        indexManager.abortIndexing();
+
+        SearchResult result = searchService.search(criteriaSong, musicFolders, IndexType.SONG);
+        assertEquals(2, result.getMediaFiles().size());
+        assertEquals(statistics, indexManager.getStatistics());
+
+        /* The writers are released. */
+        assertTrue(indexManager.startRebuilding());
+        indexManager.abortIndexing();
+    }
+
+    @Test
+    public void testSearcherIsReopenedWhenClosedByIndexing() throws IOException {
+
+        SearchCriteria criteriaSong = new SearchCriteria();
+        criteriaSong.setOffset(0);
+        criteriaSong.setCount(Integer.MAX_VALUE);
+        criteriaSong.setQuery("Gaspard");
+
+        /* A search looked the SearcherManager up right before the end of indexing closed it. */
+        IndexSearcher searcher = indexManager.getSearcher(IndexType.SONG);
+        indexManager.release(IndexType.SONG, searcher);
+        @SuppressWarnings("unchecked")
+        Map<IndexType, SearcherManager> searchers = (Map<IndexType, SearcherManager>) ReflectionTestUtils.getField(indexManager, "searchers");
+        SearcherManager closed = searchers.get(IndexType.SONG);
+        closed.close();
+
+        searcher = indexManager.getSearcher(IndexType.SONG);
+        assertNotNull(searcher);
+        indexManager.release(IndexType.SONG, searcher);
+        assertNotSame(closed, searchers.get(IndexType.SONG));
+
+        SearchResult result = searchService.search(criteriaSong, musicFolders, IndexType.SONG);
+        assertEquals(2, result.getMediaFiles().size());
+    }
+
     private void deleteMediaFile(MediaFile mediaFile) {
 
         mediaFileRepository.findByPathAndFolderAndStartPosition(mediaFile.getPath(), mediaFile.getFolder(), mediaFile.getStartPosition())
@@ -0,0 +1,108 @@
+package org.airsonic.player.service.search;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the former random document selection, which materialized every hit, with {@link RandomSampleCollector}
+ * on a synthetic index. Run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomSampleBenchmark {
+
+    @Param({"20000", "400000"})
+    private int docCount;
+
+    @Param({"20"})
+    private int count;
+
+    private final Random random = new Random(42);
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+    private Query query;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()))) {
+            for (int i = 0; i < docCount; i++) {
+                Document document = new Document();
+                document.add(new StringField("id", String.valueOf(i), Field.Store.YES));
+                writer.addDocument(document);
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        query = new MatchAllDocsQuery();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        reader.close();
+        directory.close();
+    }
+
+    /**
+     * Selection as done before the collector: all hits collected, then removed from a list at random positions.
+     */
+    @Benchmark
+    public int[] allHits() throws Exception {
+        List<Integer> docs = Arrays
+                .stream(searcher.search(query, Integer.MAX_VALUE).scoreDocs)
+                .map(sd -> sd.doc)
+                .collect(Collectors.toList());
+        int[] result = new int[Math.min(count, docs.size())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = docs.remove(random.nextInt(docs.size()));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int[] reservoir() throws Exception {
+        RandomSampleCollector collector = new RandomSampleCollector(count, random, Collections.emptySet());
+        searcher.search(query, collector);
+        return collector.getSample();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(RandomSampleBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,118 @@
+package org.airsonic.player.service.search;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RandomSampleCollectorTest {
+
+    private static final int DOC_COUNT = 1000;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = new ByteBuffersDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(new KeywordAnalyzer());
+        // small segments, so that doc bases of several leaves are involved
+        config.setMaxBufferedDocs(100);
+        try (IndexWriter writer = new IndexWriter(directory, config)) {
+            for (int i = 0; i < DOC_COUNT; i++) {
+                Document document = new Document();
+                document.add(new StringField("parity", i % 2 == 0 ? "even" : "odd", Field.Store.YES));
+                writer.addDocument(document);
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void testSampleIsDistinctMatchingDocs() throws Exception {
+        assertTrue(reader.leaves().size() > 1);
+        RandomSampleCollector collector = new RandomSampleCollector(50, new Random(1), Collections.emptySet());
+        searcher.search(new TermQuery(new Term("parity", "even")), collector);
+
+        int[] sample = collector.getSample();
+        assertEquals(50, sample.length);
+        assertEquals(DOC_COUNT / 2, collector.getTotalHits());
+        assertEquals(50, Arrays.stream(sample).distinct().count());
+        for (int doc : sample) {
+            assertEquals("even", searcher.storedFields().document(doc).get("parity"));
+        }
+    }
+
+    @Test
+    public void testSampleSmallerThanRequested() throws Exception {
+        RandomSampleCollector collector = new RandomSampleCollector(DOC_COUNT, new Random(1), Collections.emptySet());
+        searcher.search(new TermQuery(new Term("parity", "odd")), collector);
+
+        assertEquals(DOC_COUNT / 2, collector.getSample().length);
+    }
+
+    @Test
+    public void testExcludedDocsAreNotSampled() throws Exception {
+        Set<Integer> excluded = new HashSet<>();
+        for (int i = 0; i < DOC_COUNT - 10; i++) {
+            excluded.add(i);
+        }
+        RandomSampleCollector collector = new RandomSampleCollector(20, new Random(1), excluded);
+        searcher.search(new MatchAllDocsQuery(), collector);
+
+        int[] sample = collector.getSample();
+        assertEquals(10, sample.length);
+        for (int doc : sample) {
+            assertFalse(excluded.contains(doc));
+        }
+    }
+
+    @Test
+    public void testSampleIsUniform() throws Exception {
+        Random random = new Random(42);
+        int[] counts = new int[DOC_COUNT];
+        int rounds = 2000;
+        for (int i = 0; i < rounds; i++) {
+            RandomSampleCollector collector = new RandomSampleCollector(10, random, Collections.emptySet());
+            searcher.search(new MatchAllDocsQuery(), collector);
+            for (int doc : collector.getSample()) {
+                counts[doc]++;
+            }
+        }
+        // every doc is expected 20 times, the first and last segments must not be favoured
+        int firstHalf = Arrays.stream(counts, 0, DOC_COUNT / 2).sum();
+        int secondHalf = Arrays.stream(counts, DOC_COUNT / 2, DOC_COUNT).sum();
+        assertEquals(rounds * 10, firstHalf + secondHalf);
+        assertTrue(Math.abs(firstHalf - secondHalf) < rounds * 10 / 10);
+    }
+}
@@ -0,0 +1,36 @@
+package org.airsonic.player.service.upnp;
+
+import org.fourthline.cling.support.model.SortCriterion;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UpnpContentProcessorTest {
+
+    private static final Map<String, Order> ORDERS = Map.of(
+            "dc:title", Order.asc("name").ignoreCase(),
+            "upnp:artist", Order.asc("artist").ignoreCase());
+
+    private static final Sort DEFAULT_SORT = Sort.by("id");
+
+    @Test
+    public void testToSortTranslatesCriteria() {
+        SortCriterion[] orderBy = {new SortCriterion(false, "upnp:artist"), new SortCriterion(true, "dc:title")};
+
+        Sort sort = UpnpContentProcessor.toSort(orderBy, ORDERS, DEFAULT_SORT);
+
+        assertThat(sort).containsExactly(Order.desc("artist").ignoreCase(), Order.asc("name").ignoreCase());
+    }
+
+    @Test
+    public void testToSortIgnoresUnknownCriteria() {
+        SortCriterion[] orderBy = {new SortCriterion(true, "upnp:genre")};
+
+        assertThat(UpnpContentProcessor.toSort(orderBy, ORDERS, DEFAULT_SORT)).isEqualTo(DEFAULT_SORT);
+        assertThat(UpnpContentProcessor.toSort(null, ORDERS, DEFAULT_SORT)).isEqualTo(DEFAULT_SORT);
+    }
+}